@@ -0,0 +1,56 @@
+package tentsandtrees.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks with the gc profiler on, so every result comes with
+ * its allocation rate and bytes allocated per operation (the same as
+ * passing -prof gc to JMH).  Takes the usual JMH command line, for example
+ * <pre>
+ *     java tentsandtrees.benchmarks.BenchmarkMain SolveBenchmark -p size=20,30
+ * </pre>
+ * and --no-gc turns the profiler off.  Asking for -prof gc as well doesn't
+ * add it twice.
+ *
+ * @author Lyx Huston
+ */
+public class BenchmarkMain {
+    /**
+     * The main method.
+     *
+     * @param args JMH command line, plus --no-gc
+     * @throws CommandLineOptionException if JMH can't read the command line
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        boolean gc = true;
+        String[] jmhArgs = new String[args.length];
+        int count = 0;
+        for (String arg : args) {
+            if (arg.equals("--no-gc")) {
+                gc = false;
+            } else {
+                jmhArgs[count++] = arg;
+            }
+        }
+        CommandLineOptions commandLine = new CommandLineOptions(Arrays.copyOf(jmhArgs, count));
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        boolean asked = commandLine.getProfilers().stream().anyMatch(profiler ->
+                profiler.getKlass().equals("gc") || profiler.getKlass().equals(GCProfiler.class.getName()));
+        if (gc && !asked) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include("tentsandtrees\\.benchmarks\\..*");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,31 @@
+package tentsandtrees.benchmarks;
+
+/**
+ * Where the benchmark puzzles live.  The corpus is one solvable puzzle per
+ * size in data/bench, graded so the plain Backtracker over TentConfig goes
+ * from a single config at 3x3 to tens of thousands at 30x30.  Benchmarks
+ * run from the project directory; set the tentsandtrees.corpus system
+ * property to read the puzzles from somewhere else.
+ *
+ * @author Lyx Huston
+ */
+final class Corpus {
+    /** every size in the corpus, smallest first */
+    static final String[] SIZES = {"3", "5", "8", "10", "12", "15", "20", "25", "30"};
+
+    /** directory holding the puzzles */
+    private static final String DIRECTORY =
+            System.getProperty("tentsandtrees.corpus", "data/bench");
+
+    /** not for making */
+    private Corpus() {
+    }
+
+    /**
+     * @param size square dimension of the puzzle
+     * @return file name of the corpus puzzle of that size
+     */
+    static String file(String size) {
+        return DIRECTORY + "/" + size + "x" + size + ".txt";
+    }
+}
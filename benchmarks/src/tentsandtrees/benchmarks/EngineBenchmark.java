@@ -0,0 +1,82 @@
+package tentsandtrees.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.Solver;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.dlx.DlxSolver;
+import tentsandtrees.sat.SatSolver;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the custom searches against the CDCL SAT solver and the dancing
+ * links exact cover search on every puzzle of the corpus, from start to
+ * finish.  The SAT time includes encoding the puzzle as CNF, and the
+ * dancing links time building the matrix.  The puzzle is read outside the
+ * timed part.
+ *
+ * @author Lyx Huston
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+    /** square dimension of the corpus puzzle */
+    @Param({"3", "5", "8", "10", "12", "15", "20", "25", "30"})
+    public String size;
+
+    /** engine: copy (Backtracker over TentConfig), mrv (the most
+     * constrained InPlaceSolver), sat (SatSolver) or dlx (DlxSolver) */
+    @Param({"copy", "mrv", "sat", "dlx"})
+    public String engine;
+
+    /** initial config, read again before every solve */
+    private Configuration init;
+
+    /**
+     * reads the puzzle
+     * @throws IOException if the corpus is missing
+     */
+    @Setup(Level.Invocation)
+    public void setup() throws IOException {
+        this.init = new TentConfig(Corpus.file(this.size));
+    }
+
+    /**
+     * solves the puzzle
+     * @return the solution
+     */
+    @Benchmark
+    public Optional<Configuration> solve() {
+        Solver solver = switch (this.engine) {
+            case "copy" -> new Backtracker(false);
+            case "sat" -> new SatSolver(false);
+            case "dlx" -> new DlxSolver(false);
+            default -> new InPlaceSolver(false, InPlaceSolver.TreeOrder.MOST_CONSTRAINED);
+        };
+        Optional<Configuration> solution = solver.solve(this.init);
+        if (solution.isEmpty()) {
+            throw new IllegalStateException("No solution for " + Corpus.file(this.size));
+        }
+        return solution;
+    }
+}
@@ -0,0 +1,105 @@
+package tentsandtrees.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.MetricsReporter;
+import tentsandtrees.backtracker.SearchMetrics;
+import tentsandtrees.backtracker.TentConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the most constrained in place solver with its metrics off,
+ * sampled, and sampled while a reporter reads them every 100 ms, to keep
+ * an eye on what watching a search costs.  The puzzle is read outside the
+ * timed part.
+ *
+ * @author Lyx Huston
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+    /** square dimension of the corpus puzzle */
+    @Param({"20", "25", "30"})
+    public String size;
+
+    /** off, on (sampled), or report (sampled and read by a reporter) */
+    @Param({"off", "on", "report"})
+    public String metrics;
+
+    /** the solver, metrics set once */
+    private InPlaceSolver solver;
+    /** the reporter, null unless reporting */
+    private MetricsReporter reporter;
+    /** initial config, read again before every solve */
+    private Configuration init;
+
+    /**
+     * makes the solver and starts the reporter
+     */
+    @Setup(Level.Trial)
+    public void start() {
+        this.solver = new InPlaceSolver(false, InPlaceSolver.TreeOrder.MOST_CONSTRAINED);
+        if (!this.metrics.equals("off")) {
+            SearchMetrics published = new SearchMetrics();
+            this.solver.setMetrics(published);
+            if (this.metrics.equals("report")) {
+                this.reporter = new MetricsReporter(published, 0.1,
+                        new PrintStream(OutputStream.nullOutputStream()));
+            }
+        }
+    }
+
+    /**
+     * reads the puzzle
+     * @throws IOException if the corpus is missing
+     */
+    @Setup(Level.Invocation)
+    public void setup() throws IOException {
+        this.init = new TentConfig(Corpus.file(this.size));
+    }
+
+    /**
+     * solves the puzzle
+     * @return the solution
+     */
+    @Benchmark
+    public Optional<Configuration> solve() {
+        Optional<Configuration> solution = this.solver.solve(this.init);
+        if (solution.isEmpty()) {
+            throw new IllegalStateException("No solution for " + Corpus.file(this.size));
+        }
+        return solution;
+    }
+
+    /**
+     * stops the reporter
+     */
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (this.reporter != null) {
+            this.reporter.close();
+        }
+    }
+}
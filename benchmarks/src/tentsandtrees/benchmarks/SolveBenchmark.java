@@ -0,0 +1,70 @@
+package tentsandtrees.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.BitTentConfig;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.TentConfig;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times Backtracker.solve from start to finish on every puzzle of the
+ * corpus.  The puzzle is read outside the timed part.
+ *
+ * @author Lyx Huston
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+    /** square dimension of the corpus puzzle */
+    @Param({"3", "5", "8", "10", "12", "15", "20", "25", "30"})
+    public String size;
+
+    /** configuration to search with: copy (TentConfig) or bits (BitTentConfig) */
+    @Param({"copy", "bits"})
+    public String config;
+
+    /** initial config, read again before every solve */
+    private Configuration init;
+
+    /**
+     * reads the puzzle
+     * @throws IOException if the corpus is missing
+     */
+    @Setup(Level.Invocation)
+    public void setup() throws IOException {
+        String file = Corpus.file(this.size);
+        this.init = this.config.equals("bits") ? new BitTentConfig(file) : new TentConfig(file);
+    }
+
+    /**
+     * solves the puzzle
+     * @return the solution
+     */
+    @Benchmark
+    public Optional<Configuration> solve() {
+        Optional<Configuration> solution = new Backtracker(false).solve(this.init);
+        if (solution.isEmpty()) {
+            throw new IllegalStateException("No solution for " + Corpus.file(this.size));
+        }
+        return solution;
+    }
+}
@@ -0,0 +1,145 @@
+package tentsandtrees.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tentsandtrees.backtracker.TentConfig;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the pieces of TentConfig the search spends its time in: reading a
+ * puzzle, making successors with the copy constructor, and the validPlace
+ * and checkRequired/skipRequired checks every successor runs.
+ * <p>
+ * The checks are timed on the initial config, after the constructor has
+ * already placed its forced tents, so skipRequired measures the usual case
+ * of a config with nothing left to force.  The 3x3 puzzle is solved by the
+ * constructor alone, so it has no tree to check.
+ *
+ * @author Lyx Huston
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TentConfigBenchmark {
+    /** square dimension of the corpus puzzle */
+    @Param({"3", "5", "8", "10", "12", "15", "20", "25", "30"})
+    public String size;
+
+    /** puzzle file */
+    private String file;
+    /** initial config the checks run on */
+    private TentConfig root;
+    /** whether the initial config still has a tree to place */
+    private boolean hasTree;
+
+    /**
+     * loads the initial config
+     * @throws IOException if the corpus is missing
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.file = Corpus.file(this.size);
+        this.root = new TentConfig(this.file);
+        this.hasTree = this.root.isValid();
+    }
+
+    /**
+     * reading and setting up a puzzle
+     * @return the initial config
+     * @throws IOException if the corpus is missing
+     */
+    @Benchmark
+    public TentConfig load() throws IOException {
+        return new TentConfig(this.file);
+    }
+
+    /**
+     * checks every cell of the board
+     * @return number of cells a tent could go in
+     */
+    @Benchmark
+    public int validPlace() {
+        int dim = this.root.getDIM();
+        int valid = 0;
+        for (int row = 0; row < dim; row++) {
+            for (int col = 0; col < dim; col++) {
+                if (this.root.validPlace(row, col)) {
+                    valid++;
+                }
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * works out which directions the current tree can go
+     * @param blackhole sink for the result
+     */
+    @Benchmark
+    public void checkRequired(Blackhole blackhole) {
+        if (this.hasTree) {
+            this.root.checkRequired();
+        }
+        blackhole.consume(this.root);
+    }
+
+    /**
+     * looks for forced tents
+     * @param blackhole sink for the result
+     */
+    @Benchmark
+    public void skipRequired(Blackhole blackhole) {
+        this.root.skipRequired();
+        blackhole.consume(this.root);
+    }
+
+    /**
+     * A fresh initial config for every call, so its successors can be used
+     * up.  The puzzle is read outside the timed part.
+     */
+    @State(Scope.Thread)
+    public static class FreshRoot {
+        /** config whose successors get made */
+        private TentConfig config;
+
+        /**
+         * reads the puzzle again
+         * @param parent benchmark state holding the puzzle file
+         * @throws IOException if the corpus is missing
+         */
+        @Setup(Level.Invocation)
+        public void setup(TentConfigBenchmark parent) throws IOException {
+            this.config = new TentConfig(parent.file);
+        }
+    }
+
+    /**
+     * makes every successor of the initial config through the copy
+     * constructor
+     * @param fresh an unused initial config
+     * @param blackhole sink for the successors
+     */
+    @Benchmark
+    public void successors(FreshRoot fresh, Blackhole blackhole) {
+        TentConfig config = fresh.config;
+        while (config.hasNext()) {
+            blackhole.consume(config.next());
+        }
+    }
+}
@@ -0,0 +1,705 @@
+package tentsandtrees.backtracker;
+
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static tentsandtrees.test.ITentsAndTreesTest.EMPTY;
+import static tentsandtrees.test.ITentsAndTreesTest.TENT;
+import static tentsandtrees.test.ITentsAndTreesTest.TREE;
+
+/**
+ * Backtracking with conflict-directed backjumping and learned nogoods.
+ * Every direction a tree can't use is given a reason: the earlier trees
+ * whose tents are in the way, fill its row or column, leave a row or
+ * column short of tents, or leave a nearby tree with nowhere to go.  When
+ * a tree runs out of directions, the union of those reasons is the set of
+ * placements that caused it.  The search jumps straight back to the latest
+ * of them, skipping every frame in between, since nothing chosen there can
+ * help.  The set is also kept as a nogood, so the same placements are
+ * ruled out wherever they turn up together again.
+ * <p>
+ * Nogoods live in a bounded store; the ones that rule things out most
+ * often, and most recently, survive when it fills up.  Once a frame has a
+ * solution below it, it can't be jumped over, so counting falls back to
+ * stepping back one frame at a time above a solution.
+ * <p>
+ * With the static tree order, trees are placed in the same order TentConfig
+ * uses.  The most constrained order picks the tree with the fewest usable
+ * directions at every frame.
+ *
+ * @author Lyx Huston
+ */
+public class BackjumpingSolver implements Solver {
+    /** default number of nogoods kept */
+    public static final int DEFAULT_NOGOOD_CAPACITY = 1 << 14;
+    /** default longest nogood kept */
+    public static final int DEFAULT_NOGOOD_LENGTH = 24;
+
+    /** Should debug output be enabled? */
+    private final boolean debug;
+    /** order to visit trees in */
+    private final InPlaceSolver.TreeOrder order;
+    /** counts number of configurations generated */
+    private long configCount;
+    /** prune counters */
+    private final SearchStats stats = new SearchStats();
+    /** number of nogoods kept */
+    private int nogoodCapacity = DEFAULT_NOGOOD_CAPACITY;
+    /** longest nogood kept */
+    private int nogoodLength = DEFAULT_NOGOOD_LENGTH;
+    /** frames skipped by backjumps */
+    private long backjumps;
+    /** learned nogoods of the current search */
+    private NogoodStore nogoods;
+
+    /** the puzzle */
+    private PuzzleDefinition puzzle;
+    /** square dimension of field */
+    private int dim;
+    /** number of trees */
+    private int trees;
+    /** tree on each cell, -1 if none */
+    private int[] treeAt;
+    /** where each row's nearby trees start in nearRowTrees, dim + 1 long */
+    private int[] nearRowStart;
+    /** trees within one row of each row */
+    private int[] nearRowTrees;
+    /** where each column's nearby trees start in nearColTrees */
+    private int[] nearColStart;
+    /** trees within one column of each column */
+    private int[] nearColTrees;
+
+    /** direction of each tree's tent, -1 if it has none */
+    private int[] assignment;
+    /** frame each tree got its tent in, -1 if it has none */
+    private int[] levelOf;
+    /** tree each frame is placing for */
+    private int[] levelTree;
+    /** tree whose tent is on each cell, -1 if none */
+    private int[] owner;
+    /** tents in each row */
+    private int[] tentsInRow;
+    /** tents in each column */
+    private int[] tentsInCol;
+    /** trees without a tent within one row of each row */
+    private int[] freeNearRow;
+    /** trees without a tent within one column of each column */
+    private int[] freeNearCol;
+    /** next direction each frame tries */
+    private int[] nextDirection;
+    /** whether each frame has had a solution below it */
+    private boolean[] solvedBelow;
+    /** trees causing each frame's failed directions, as bit sets */
+    private long[][] conflicts;
+    /** scratch bit set for checking a nearby tree */
+    private long[] scratch;
+
+    /**
+     * Initialize a new backjumping solver using the static tree order.
+     *
+     * @param debug Is debugging output enabled?
+     */
+    public BackjumpingSolver(boolean debug) {
+        this(debug, InPlaceSolver.TreeOrder.STATIC);
+    }
+
+    /**
+     * Initialize a new backjumping solver.
+     *
+     * @param debug Is debugging output enabled?
+     * @param order order to visit trees in
+     */
+    public BackjumpingSolver(boolean debug, InPlaceSolver.TreeOrder order) {
+        this.debug = debug;
+        this.order = order;
+        if (this.debug) {
+            System.out.println("BackjumpingSolver debugging enabled...");
+        }
+        this.configCount = 0;
+    }
+
+    /**
+     * Sets how many nogoods are kept, and how long they may be.  Longer
+     * nogoods rarely rule anything out again, so aren't worth checking.
+     *
+     * @param capacity most nogoods kept at once, at least 2
+     * @param maxLength longest nogood kept, 0 to learn nothing
+     */
+    public void setNogoodLimits(int capacity, int maxLength) {
+        if (capacity < 2 || maxLength < 0) {
+            throw new IllegalArgumentException("Need room for 2 nogoods and a length of " +
+                    "at least 0, got " + capacity + " and " + maxLength);
+        }
+        this.nogoodCapacity = capacity;
+        this.nogoodLength = maxLength;
+    }
+
+    /**
+     * Gets the prune counters.
+     *
+     * @return the search stats
+     */
+    public SearchStats getStats() {
+        return this.stats;
+    }
+
+    /**
+     * @return frames skipped by backjumps, over every search
+     */
+    public long getBackjumps() {
+        return this.backjumps;
+    }
+
+    /**
+     * @return nogoods learned in the last search
+     */
+    public long getNogoodsLearned() {
+        return this.nogoods == null ? 0 : this.nogoods.getLearned();
+    }
+
+    /**
+     * @return nogoods thrown away to make room in the last search
+     */
+    public long getNogoodsEvicted() {
+        return this.nogoods == null ? 0 : this.nogoods.getEvicted();
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid initial configuration, must implement
+     *               ITentsAndTreesTest so the puzzle can be read from it
+     * @return A solution config, or empty if no solution
+     */
+    @Override
+    public Optional<Configuration> solve(Configuration config) {
+        Configuration[] found = new Configuration[1];
+        search((ITentsAndTreesTest) config, SolutionCounter.first(solution -> found[0] = solution));
+        return Optional.ofNullable(found[0]);
+    }
+
+    /**
+     * Keeps searching past each goal, handing every solution to the
+     * consumer as a snapshot, until the search is exhausted or the limit is
+     * reached.
+     *
+     * @param config A valid initial configuration, must implement
+     *               ITentsAndTreesTest
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    @Override
+    public long countSolutions(Configuration config, long limit, Consumer<Configuration> consumer) {
+        return countPuzzleSolutions((ITentsAndTreesTest) config, limit, consumer);
+    }
+
+    /**
+     * Same as countSolutions, for a puzzle that isn't a configuration, such
+     * as a freshly generated board.  Only the trees and counts are read.
+     *
+     * @param puzzle the puzzle
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    public long countPuzzleSolutions(ITentsAndTreesTest puzzle, long limit,
+                                     Consumer<Configuration> consumer) {
+        SolutionCounter counter = new SolutionCounter(limit, consumer);
+        search(puzzle, counter);
+        return counter.getCount();
+    }
+
+    @Override
+    public long getConfigCount() {
+        return this.configCount;
+    }
+
+    /**
+     * Reads the puzzle and sizes every array the search needs.
+     *
+     * @param board the initial board; only trees and counts are read
+     */
+    private void load(ITentsAndTreesTest board) {
+        this.puzzle = PuzzleDefinition.of(board);
+        this.dim = this.puzzle.getDim();
+        this.trees = this.puzzle.getTreeCount();
+        this.treeAt = new int[this.dim * this.dim];
+        Arrays.fill(this.treeAt, -1);
+        for (int tree = 0; tree < this.trees; tree++) {
+            this.treeAt[this.puzzle.getTreeRow(tree) * this.dim + this.puzzle.getTreeCol(tree)] = tree;
+        }
+        int[][] near = nearTrees(true);
+        this.nearRowStart = near[0];
+        this.nearRowTrees = near[1];
+        near = nearTrees(false);
+        this.nearColStart = near[0];
+        this.nearColTrees = near[1];
+
+        this.assignment = new int[this.trees];
+        this.levelOf = new int[this.trees];
+        Arrays.fill(this.assignment, -1);
+        Arrays.fill(this.levelOf, -1);
+        this.levelTree = new int[this.trees];
+        this.owner = new int[this.dim * this.dim];
+        Arrays.fill(this.owner, -1);
+        this.tentsInRow = new int[this.dim];
+        this.tentsInCol = new int[this.dim];
+        this.freeNearRow = new int[this.dim];
+        this.freeNearCol = new int[this.dim];
+        for (int i = 0; i < this.dim; i++) {
+            this.freeNearRow[i] = this.nearRowStart[i + 1] - this.nearRowStart[i];
+            this.freeNearCol[i] = this.nearColStart[i + 1] - this.nearColStart[i];
+        }
+        this.nextDirection = new int[this.trees];
+        this.solvedBelow = new boolean[this.trees];
+        int words = (this.trees + 63) >>> 6;
+        this.conflicts = new long[this.trees][words];
+        this.scratch = new long[words];
+        this.nogoods = new NogoodStore(4 * this.trees, this.nogoodCapacity, this.nogoodLength);
+    }
+
+    /**
+     * lists the trees within one row, or one column, of each row or column
+     * @param rows true for rows, false for columns
+     * @return the start of each line's list, dim + 1 long, and the lists
+     */
+    private int[][] nearTrees(boolean rows) {
+        int[] start = new int[this.dim + 1];
+        for (int tree = 0; tree < this.trees; tree++) {
+            int line = rows ? this.puzzle.getTreeRow(tree) : this.puzzle.getTreeCol(tree);
+            for (int near = Math.max(0, line - 1); near <= Math.min(this.dim - 1, line + 1); near++) {
+                start[near + 1]++;
+            }
+        }
+        for (int i = 0; i < this.dim; i++) {
+            start[i + 1] += start[i];
+        }
+        int[] list = new int[start[this.dim]];
+        int[] fill = start.clone();
+        for (int tree = 0; tree < this.trees; tree++) {
+            int line = rows ? this.puzzle.getTreeRow(tree) : this.puzzle.getTreeCol(tree);
+            for (int near = Math.max(0, line - 1); near <= Math.min(this.dim - 1, line + 1); near++) {
+                list[fill[near]++] = tree;
+            }
+        }
+        return new int[][]{start, list};
+    }
+
+    /**
+     * runs the search, offering a snapshot of each goal to the counter and
+     * backing out of it until the counter says to stop
+     * @param board the puzzle
+     * @param counter where goals go
+     */
+    private void search(ITentsAndTreesTest board, SolutionCounter counter) {
+        load(board);
+        if (!this.puzzle.countsMatch()) {
+            return;
+        }
+        for (int i = 0; i < this.dim; i++) {
+            if (this.puzzle.getTentsRow(i) > this.freeNearRow[i] ||
+                    this.puzzle.getTentsCol(i) > this.freeNearCol[i]) {
+                return;
+            }
+        }
+        this.configCount++;
+        if (this.trees == 0) {
+            counter.offer(snapshot());
+            return;
+        }
+        int level = 0;
+        enter(level);
+        while (true) {
+            if (level == this.trees) {
+                // other pairings of the same tents are reached too; when
+                // counting, only the first is a solution of its own, but each
+                // is a goal below
+                if (!counter.isCounting() || firstPairing()) {
+                    SolutionConfig solution = snapshot();
+                    if (this.debug) {
+                        System.out.print("Goal config: " + System.lineSeparator() + solution);
+                    }
+                    if (counter.offer(solution)) {
+                        return;
+                    }
+                }
+                level--;
+                this.solvedBelow[level] = true;
+                continue;
+            }
+            int tree = this.levelTree[level];
+            if (this.assignment[tree] >= 0) {
+                unassign(tree);
+            }
+            if (place(level, tree)) {
+                this.configCount++;
+                if ((this.configCount & INTERRUPT_CHECK_MASK) == 0 && SolveBudget.shouldStop()) {
+                    return;
+                }
+                level++;
+                if (level < this.trees) {
+                    enter(level);
+                }
+                continue;
+            }
+
+            // out of directions: back up to the latest frame that matters
+            int target;
+            if (this.solvedBelow[level]) {
+                target = level - 1;
+                if (target >= 0) {
+                    this.solvedBelow[target] = true;
+                }
+            } else {
+                long[] conflict = this.conflicts[level];
+                conflict[tree >>> 6] &= ~(1L << tree);
+                target = learn(conflict);
+                if (target >= 0) {
+                    long[] into = this.conflicts[target];
+                    for (int i = 0; i < conflict.length; i++) {
+                        into[i] |= conflict[i];
+                    }
+                    int targetTree = this.levelTree[target];
+                    into[targetTree >>> 6] &= ~(1L << targetTree);
+                }
+            }
+            if (target < 0) {
+                return;
+            }
+            for (int skipped = level - 1; skipped > target; skipped--) {
+                unassign(this.levelTree[skipped]);
+            }
+            this.backjumps += level - 1 - target;
+            level = target;
+        }
+    }
+
+    /**
+     * starts a frame: picks its tree and clears what it has learned
+     * @param level the frame
+     */
+    private void enter(int level) {
+        this.levelTree[level] = this.order == InPlaceSolver.TreeOrder.STATIC ?
+                this.trees - 1 - level : mostConstrained();
+        this.nextDirection[level] = 0;
+        this.solvedBelow[level] = false;
+        Arrays.fill(this.conflicts[level], 0);
+    }
+
+    /**
+     * gives the frame's tree its next direction that works, adding the
+     * reason each skipped direction doesn't to the frame's conflicts
+     * @param level the frame
+     * @param tree the frame's tree
+     * @return true if a tent was placed
+     */
+    private boolean place(int level, int tree) {
+        long[] conflict = this.conflicts[level];
+        while (this.nextDirection[level] < 4) {
+            int direction = this.nextDirection[level]++;
+            if (!consistent(tree, direction, conflict)) {
+                continue;
+            }
+            assign(tree, direction, level);
+            if (lookahead(tree, conflict)) {
+                return true;
+            }
+            this.stats.prune(SearchStats.PruneReason.LOOKAHEAD);
+            unassign(tree);
+        }
+        return false;
+    }
+
+    /**
+     * Turns a frame's conflict set into a nogood and finds the frame to
+     * jump back to.
+     * @param conflict trees whose placements left the frame's tree nowhere
+     *                 to go
+     * @return the latest frame among them, -1 if there are none
+     */
+    private int learn(long[] conflict) {
+        int size = 0;
+        int target = -1;
+        for (int word = 0; word < conflict.length; word++) {
+            size += Long.bitCount(conflict[word]);
+        }
+        int[] placements = new int[size];
+        int at = 0;
+        for (int word = 0; word < conflict.length; word++) {
+            for (long bits = conflict[word]; bits != 0; bits &= bits - 1) {
+                int tree = (word << 6) + Long.numberOfTrailingZeros(bits);
+                placements[at++] = tree * 4 + this.assignment[tree];
+                target = Math.max(target, this.levelOf[tree]);
+            }
+        }
+        this.nogoods.add(placements);
+        return target;
+    }
+
+    /**
+     * Checks a direction against the tents already placed and the learned
+     * nogoods.
+     * @param tree the tree
+     * @param direction direction from the tree
+     * @param reasons where to add the trees in the way, null to skip the
+     *                nogoods and not explain
+     * @return true if a tent can go there
+     */
+    private boolean consistent(int tree, int direction, long[] reasons) {
+        int cell = this.puzzle.getSide(tree, direction);
+        if (cell < 0 || this.treeAt[cell] >= 0) {
+            return false;
+        }
+        if (this.owner[cell] >= 0) {
+            addReason(reasons, this.owner[cell]);
+            return false;
+        }
+        // the earliest tent touching the cell lets the search jump furthest
+        int touching = -1;
+        for (int i = this.puzzle.getAroundStart(cell); i < this.puzzle.getAroundEnd(cell); i++) {
+            int other = this.owner[this.puzzle.getAroundRow(i) * this.dim + this.puzzle.getAroundCol(i)];
+            if (other >= 0 && (touching < 0 || this.levelOf[other] < this.levelOf[touching])) {
+                touching = other;
+            }
+        }
+        if (touching >= 0) {
+            addReason(reasons, touching);
+            return false;
+        }
+        int row = cell / this.dim;
+        int col = cell % this.dim;
+        if (this.tentsInRow[row] >= this.puzzle.getTentsRow(row)) {
+            for (int at = row * this.dim; reasons != null && at < (row + 1) * this.dim; at++) {
+                addReason(reasons, this.owner[at]);
+            }
+            return false;
+        }
+        if (this.tentsInCol[col] >= this.puzzle.getTentsCol(col)) {
+            for (int at = col; reasons != null && at < this.dim * this.dim; at += this.dim) {
+                addReason(reasons, this.owner[at]);
+            }
+            return false;
+        }
+        if (reasons != null) {
+            int[] nogood = this.nogoods.find(tree * 4 + direction, this.assignment);
+            if (nogood != null) {
+                for (int placement : nogood) {
+                    if (placement >> 2 != tree) {
+                        addReason(reasons, placement >> 2);
+                    }
+                }
+                this.stats.prune(SearchStats.PruneReason.NOGOOD);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks what a tent just placed did to the lines around its tree and
+     * the trees around it.  A row or column near the tree may no longer be
+     * able to get enough tents, and a tree near the tent, or in a line it
+     * filled, may have nowhere left to go.
+     * @param tree tree just given its tent
+     * @param reasons where to add the trees to blame if it did
+     * @return true if nothing was left impossible
+     */
+    private boolean lookahead(int tree, long[] reasons) {
+        int treeRow = this.puzzle.getTreeRow(tree);
+        int treeCol = this.puzzle.getTreeCol(tree);
+        for (int line = Math.max(0, treeRow - 1); line <= Math.min(this.dim - 1, treeRow + 1); line++) {
+            if (this.puzzle.getTentsRow(line) - this.tentsInRow[line] > this.freeNearRow[line]) {
+                blameShort(line, true, tree, reasons);
+                return false;
+            }
+        }
+        for (int line = Math.max(0, treeCol - 1); line <= Math.min(this.dim - 1, treeCol + 1); line++) {
+            if (this.puzzle.getTentsCol(line) - this.tentsInCol[line] > this.freeNearCol[line]) {
+                blameShort(line, false, tree, reasons);
+                return false;
+            }
+        }
+
+        int cell = this.puzzle.getSide(tree, this.assignment[tree]);
+        int row = cell / this.dim;
+        int col = cell % this.dim;
+        for (int lookRow = Math.max(0, row - 2); lookRow <= Math.min(this.dim - 1, row + 2); lookRow++) {
+            for (int lookCol = Math.max(0, col - 2); lookCol <= Math.min(this.dim - 1, col + 2); lookCol++) {
+                if (!canPlace(this.treeAt[lookRow * this.dim + lookCol], reasons)) {
+                    return false;
+                }
+            }
+        }
+        if (this.tentsInRow[row] == this.puzzle.getTentsRow(row)) {
+            for (int at = this.nearRowStart[row]; at < this.nearRowStart[row + 1]; at++) {
+                if (!canPlace(this.nearRowTrees[at], reasons)) {
+                    return false;
+                }
+            }
+        }
+        if (this.tentsInCol[col] == this.puzzle.getTentsCol(col)) {
+            for (int at = this.nearColStart[col]; at < this.nearColStart[col + 1]; at++) {
+                if (!canPlace(this.nearColTrees[at], reasons)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Blames a row or column that can't get enough tents on the trees near
+     * it whose tents went elsewhere; every other tree near it either put
+     * its tent there or still could.
+     * @param line the row or column
+     * @param rows true for a row
+     * @param tree tree just placed, already blamed by being the frame's own
+     * @param reasons where to add the trees
+     */
+    private void blameShort(int line, boolean rows, int tree, long[] reasons) {
+        int[] start = rows ? this.nearRowStart : this.nearColStart;
+        int[] list = rows ? this.nearRowTrees : this.nearColTrees;
+        for (int at = start[line]; at < start[line + 1]; at++) {
+            int other = list[at];
+            if (other == tree || this.assignment[other] < 0) {
+                continue;
+            }
+            int cell = this.puzzle.getSide(other, this.assignment[other]);
+            if ((rows ? cell / this.dim : cell % this.dim) != line) {
+                addReason(reasons, other);
+            }
+        }
+    }
+
+    /**
+     * checks that a tree without a tent still has somewhere to put one
+     * @param tree the tree, or -1 for none
+     * @param reasons where to add the trees in the way if it doesn't
+     * @return true if it has, or is no tree or already has its tent
+     */
+    private boolean canPlace(int tree, long[] reasons) {
+        if (tree < 0 || this.assignment[tree] >= 0) {
+            return true;
+        }
+        Arrays.fill(this.scratch, 0);
+        for (int direction = 0; direction < 4; direction++) {
+            if (consistent(tree, direction, this.scratch)) {
+                return true;
+            }
+        }
+        for (int i = 0; i < reasons.length; i++) {
+            reasons[i] |= this.scratch[i];
+        }
+        return false;
+    }
+
+    /**
+     * @return the tree without a tent that has the fewest directions left
+     */
+    private int mostConstrained() {
+        int best = -1;
+        int bestCount = 5;
+        for (int tree = this.trees - 1; tree >= 0; tree--) {
+            if (this.assignment[tree] >= 0) {
+                continue;
+            }
+            int count = 0;
+            for (int direction = 0; direction < 4; direction++) {
+                if (consistent(tree, direction, null)) {
+                    count++;
+                }
+            }
+            if (count < bestCount) {
+                best = tree;
+                bestCount = count;
+                if (count <= 1) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param reasons a bit set of trees, or null
+     * @param tree tree to add, or -1 for none
+     */
+    private static void addReason(long[] reasons, int tree) {
+        if (reasons != null && tree >= 0) {
+            reasons[tree >>> 6] |= 1L << tree;
+        }
+    }
+
+    /**
+     * places a tree's tent
+     * @param tree the tree
+     * @param direction direction from the tree
+     * @param level frame placing it
+     */
+    private void assign(int tree, int direction, int level) {
+        int cell = this.puzzle.getSide(tree, direction);
+        this.assignment[tree] = direction;
+        this.levelOf[tree] = level;
+        this.owner[cell] = tree;
+        this.tentsInRow[cell / this.dim]++;
+        this.tentsInCol[cell % this.dim]++;
+        changeFree(tree, -1);
+    }
+
+    /**
+     * takes a tree's tent away
+     * @param tree the tree
+     */
+    private void unassign(int tree) {
+        int cell = this.puzzle.getSide(tree, this.assignment[tree]);
+        this.assignment[tree] = -1;
+        this.levelOf[tree] = -1;
+        this.owner[cell] = -1;
+        this.tentsInRow[cell / this.dim]--;
+        this.tentsInCol[cell % this.dim]--;
+        changeFree(tree, 1);
+    }
+
+    /**
+     * changes the free tree counts of the lines around a tree
+     * @param tree the tree
+     * @param value value to change by
+     */
+    private void changeFree(int tree, int value) {
+        int row = this.puzzle.getTreeRow(tree);
+        int col = this.puzzle.getTreeCol(tree);
+        for (int line = Math.max(0, row - 1); line <= Math.min(this.dim - 1, row + 1); line++) {
+            this.freeNearRow[line] += value;
+        }
+        for (int line = Math.max(0, col - 1); line <= Math.min(this.dim - 1, col + 1); line++) {
+            this.freeNearCol[line] += value;
+        }
+    }
+
+    /**
+     * @return true if the trees own their tents the first way they can
+     */
+    private boolean firstPairing() {
+        int[] cells = new int[this.trees];
+        for (int tree = 0; tree < this.trees; tree++) {
+            cells[tree] = this.puzzle.getSide(tree, this.assignment[tree]);
+        }
+        return this.puzzle.isFirstPairing(cells);
+    }
+
+    /**
+     * @return the board as it stands, as a solution
+     */
+    private SolutionConfig snapshot() {
+        char[] cells = new char[this.dim * this.dim];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = this.treeAt[cell] >= 0 ? TREE : this.owner[cell] >= 0 ? TENT : EMPTY;
+        }
+        return new SolutionConfig(this.dim, this.puzzle.getTentsPerRow(),
+                this.puzzle.getTentsPerColumn(), cells);
+    }
+}
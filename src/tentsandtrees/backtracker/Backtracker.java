@@ -1,7 +1,11 @@
 package tentsandtrees.backtracker;
 
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.util.Iterator;
 import java.util.Optional;
 import java.util.Stack;
+import java.util.function.Consumer;
 
 /**
  * This class represents the classic recursive backtracking algorithm.
@@ -11,11 +15,27 @@ import java.util.Stack;
  * @author Lyx Husont
  * @author RIT CS
  */
-public class Backtracker {
+public class Backtracker implements Solver {
     /** Should debug output be enabled? */
     private final boolean debug;
     /** counts number of configurations generated */
-    private int configCount;
+    private long configCount;
+    /** where progress is published, null if nowhere */
+    private SearchMetrics metrics;
+    /** config count when the search started */
+    private long searchStart;
+    /** config count at the last search event */
+    private long lastEvent;
+    /** frames popped since the last push */
+    private int popped;
+    /** deepest the stack has been this search */
+    private int deepest;
+    /** JFR event for the whole search */
+    private SearchEvents.Search searchEvent;
+    /** where checkpoints go, null if nowhere */
+    private Checkpointer checkpointer;
+    /** checkpoint the next search carries on from, null to start afresh */
+    private Checkpoint resume;
 
     /**
      * Initialize a new backtracker.
@@ -31,6 +51,40 @@ public class Backtracker {
         // changed because the initial config will be counted in solve()
     }
 
+    /**
+     * Publishes the progress of every later search.
+     *
+     * @param metrics where progress goes, or null for nowhere
+     */
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Checkpoints every later search now and then, and when it is
+     * interrupted, so it can be resumed.  The checkpoint is deleted when a
+     * search finishes.  Only searches from a TentConfig can be
+     * checkpointed.
+     *
+     * @param checkpointer where checkpoints go, or null for nowhere
+     */
+    public void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * Makes the next search carry on from a checkpoint instead of starting
+     * afresh.  It must be given the same puzzle, with the same pruning, as
+     * the search the checkpoint was made from; the configs and solutions
+     * counted then are counted again, and those solutions aren't handed to
+     * the consumer again.
+     *
+     * @param checkpoint where to carry on from, or null to start afresh
+     */
+    public void setResume(Checkpoint checkpoint) {
+        this.resume = checkpoint;
+    }
+
     /**
      * A utility routine for printing out various debug messages.
      *
@@ -55,28 +109,39 @@ public class Backtracker {
      * that configcount is only updated one time more than prior.
      * <p>
      * Also, due to changes made in TentConfig, uses the config itself as an
-     * iterable.
+     * iterable.  Any configuration that iterates over its own successors
+     * (TentConfig, BitTentConfig) can be solved.
      *
      * @param config A valid configuration
      * @return A solution config, or null if no solution
      */
+    @Override
     public Optional<Configuration> solve(Configuration config) {
-        Stack<TentConfig> configStack = new Stack<>();
-        configStack.push((TentConfig) config);
-        configCount++;
+        Stack<Configuration> configStack = begin(config, null);
+        Optional<Configuration> found = Optional.empty();
         while (!configStack.isEmpty()) {
-            TentConfig onConfig = configStack.peek();
+            Configuration onConfig = configStack.peek();
             if (onConfig.isGoal()) {
-                return Optional.of(onConfig);
+                solved(configStack.size());
+                found = Optional.of(onConfig);
+                break;
             }
-            if (onConfig.hasNext()) {
-                configStack.push(onConfig.next());
+            Iterator<?> successors = (Iterator<?>) onConfig;
+            if (successors.hasNext()) {
+                configStack.push((Configuration) successors.next());
                 configCount++;
+                pushed(configStack);
+                if ((configCount & INTERRUPT_CHECK_MASK) == 0 && interrupted(configStack, null)) {
+                    break;
+                }
             } else {
                 configStack.pop();
+                popped++;
             }
         }
-        return Optional.empty();
+        finishCheckpoint(configStack, null, found.isPresent() || configStack.isEmpty());
+        publishFinish(configStack.isEmpty(), found.isPresent() ? 1 : 0);
+        return found;
 //        configCount++;
 //        if (configCount == 0) { // 30x30 goes over max integer count.  Somehow.
 //            System.out.println("On config " + configCount + System.lineSeparator() + config);
@@ -101,12 +166,269 @@ public class Backtracker {
 //        return Optional.empty();
     }
 
+    /**
+     * Keeps backtracking past each goal, handing every solution to the
+     * consumer, until the search is exhausted or the limit is reached.
+     *
+     * @param config A valid configuration
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    @Override
+    public long countSolutions(Configuration config, long limit, Consumer<Configuration> consumer) {
+        SolutionCounter counter = new SolutionCounter(limit, consumer);
+        Stack<Configuration> configStack = begin(config, counter);
+        while (!configStack.isEmpty()) {
+            Configuration onConfig = configStack.peek();
+            if (onConfig.isGoal()) {
+                if (!onConfig.isRepeat()) {
+                    debugPrint("Goal config", onConfig);
+                    solved(configStack.size());
+                    if (counter.offer(onConfig)) {
+                        break;
+                    }
+                }
+                configStack.pop();
+                popped++;
+                continue;
+            }
+            Iterator<?> successors = (Iterator<?>) onConfig;
+            if (successors.hasNext()) {
+                configStack.push((Configuration) successors.next());
+                configCount++;
+                pushed(configStack);
+                if ((configCount & INTERRUPT_CHECK_MASK) == 0 && interrupted(configStack, counter)) {
+                    break;
+                }
+            } else {
+                configStack.pop();
+                popped++;
+            }
+        }
+        finishCheckpoint(configStack, counter, configStack.isEmpty() || counter.isDone());
+        publishFinish(configStack.isEmpty(), counter.getCount());
+        return counter.getCount();
+    }
+
+    /**
+     * Tells the metrics, if any, a search is starting, and starts timing it
+     * for JFR.
+     *
+     * @param config the initial configuration, whose prune counters are
+     *               published if it keeps any
+     */
+    private void start(Configuration config) {
+        this.searchStart = this.configCount;
+        this.lastEvent = this.configCount;
+        this.popped = 0;
+        this.deepest = 0;
+        this.searchEvent = new SearchEvents.Search();
+        this.searchEvent.begin();
+        if (config instanceof ITentsAndTreesTest board) {
+            this.searchEvent.dim = board.getDIM();
+        }
+        if (this.metrics != null) {
+            this.metrics.start(this.configCount,
+                    config instanceof TentConfig tentConfig ? tentConfig.getStats() : null);
+        }
+    }
+
+    /**
+     * Starts a search: pushes the initial config, then, if resuming, the
+     * configs the checkpoint says were on the stack, each made again from
+     * the one below it.
+     *
+     * @param config the initial configuration
+     * @param counter the solution counter, null if solving
+     * @return the config stack
+     * @throws IllegalArgumentException if checkpointing or resuming a
+     * search that isn't from a TentConfig, or resuming on another puzzle
+     */
+    private Stack<Configuration> begin(Configuration config, SolutionCounter counter) {
+        Checkpoint checkpoint = this.resume;
+        this.resume = null;
+        if ((checkpoint != null || this.checkpointer != null) && !(config instanceof TentConfig)) {
+            throw new IllegalArgumentException("Only TentConfig searches can be checkpointed");
+        }
+        Stack<Configuration> configStack = new Stack<>();
+        start(config);
+        configStack.push(config);
+        configCount++;
+        if (checkpoint != null) {
+            TentConfig below = (TentConfig) config;
+            checkpoint.check(below);
+            int top = checkpoint.getDepth() - 1;
+            for (int frame = 0; frame < top; frame++) {
+                below = below.replay(checkpoint.getOn(frame), checkpoint.getStep(frame),
+                        checkpoint.getRecord(frame));
+                configStack.push(below);
+            }
+            below.restore(checkpoint.getOn(top), checkpoint.getStep(top), checkpoint.getRecord(top));
+            configCount += checkpoint.getNodes() - 1;
+            if (counter != null) {
+                counter.restore(checkpoint.getSolutions());
+            }
+        }
+        return configStack;
+    }
+
+    /**
+     * Called every INTERRUPT_CHECK_MASK + 1 configs: samples the metrics
+     * when it is their turn, and checkpoints when one is due, then looks at
+     * the budget, or the interrupt flag if there is none.  How far through
+     * the tree the search is can't be told, since configs hand out their
+     * successors one at a time.
+     *
+     * @param configStack the config stack
+     * @param counter the solution counter, null if solving
+     * @return true if the search should stop
+     */
+    private boolean interrupted(Stack<Configuration> configStack, SolutionCounter counter) {
+        if ((this.configCount & SearchMetrics.SAMPLE_MASK) == 0) {
+            if (this.metrics != null) {
+                this.metrics.sample(this.configCount, configStack.size(), Double.NaN);
+            }
+            if (this.checkpointer != null && this.checkpointer.due()) {
+                this.checkpointer.offer(snapshot(configStack, counter));
+            }
+        }
+        return SolveBudget.shouldStop();
+    }
+
+    /**
+     * Takes a checkpoint of the search.  Only called right after a push,
+     * so every config below the top has made the one above it.
+     *
+     * @param configStack the config stack
+     * @param counter the solution counter, null if solving
+     * @return the checkpoint
+     */
+    private Checkpoint snapshot(Stack<Configuration> configStack, SolutionCounter counter) {
+        TentConfig init = (TentConfig) configStack.get(0);
+        byte[] frames = new byte[3 * configStack.size()];
+        for (int i = 0; i < configStack.size(); i++) {
+            TentConfig config = (TentConfig) configStack.get(i);
+            frames[3 * i] = (byte) config.getOn();
+            frames[3 * i + 1] = (byte) config.getStep();
+            frames[3 * i + 2] = (byte) config.getRecord();
+        }
+        return new Checkpoint(Checkpoint.fingerprint(init), init.getSearchOptions(),
+                this.configCount - this.searchStart,
+                counter == null ? 0 : counter.getCount(), frames);
+    }
+
+    /**
+     * Leaves the checkpoint for a search that was interrupted, or deletes
+     * it for one that finished.
+     *
+     * @param configStack the config stack
+     * @param counter the solution counter, null if solving
+     * @param finished true if the search got to its end
+     */
+    private void finishCheckpoint(Stack<Configuration> configStack, SolutionCounter counter, boolean finished) {
+        if (this.checkpointer == null) {
+            return;
+        }
+        if (finished) {
+            this.checkpointer.completed();
+        } else {
+            this.checkpointer.writeNow(snapshot(configStack, counter));
+        }
+    }
+
+    /**
+     * Called after every push: records a backtrack event if a burst of pops
+     * just ended, and a depth event if the stack is deeper than before.
+     *
+     * @param configStack the stack, new config on top
+     */
+    private void pushed(Stack<Configuration> configStack) {
+        int depth = configStack.size();
+        if (this.popped >= SearchEvents.BACKTRACK_BURST) {
+            SearchEvents.Backtrack event = new SearchEvents.Backtrack();
+            if (event.shouldCommit()) {
+                event.from = depth - 1 + this.popped;
+                event.depth = depth - 1;
+                event.tree = tree(configStack.get(depth - 2));
+                event.nodes = sinceLastEvent();
+                event.commit();
+            }
+        }
+        this.popped = 0;
+        if (depth > this.deepest) {
+            this.deepest = depth;
+            SearchEvents.DepthMilestone event = new SearchEvents.DepthMilestone();
+            if (event.shouldCommit()) {
+                event.depth = depth;
+                event.tree = depth > 1 ? tree(configStack.get(depth - 2)) : -1;
+                event.nodes = sinceLastEvent();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Records a solution event.
+     *
+     * @param depth size of the config stack
+     */
+    private void solved(int depth) {
+        SearchEvents.Solution event = new SearchEvents.Solution();
+        if (event.shouldCommit()) {
+            event.depth = depth;
+            event.nodes = sinceLastEvent();
+            event.commit();
+        }
+    }
+
+    /**
+     * @return configs since the last search event, now the latest
+     */
+    private long sinceLastEvent() {
+        long nodes = this.configCount - this.lastEvent;
+        this.lastEvent = this.configCount;
+        return nodes;
+    }
+
+    /**
+     * @param config a config
+     * @return the tree its successors place a tent for, -1 if it can't say
+     */
+    private static int tree(Configuration config) {
+        return config instanceof TentConfig tentConfig ? tentConfig.getTreeIndex() : -1;
+    }
+
+    /**
+     * Tells the metrics, if any, the search is over, and records the search
+     * event.
+     *
+     * @param exhausted true if the whole tree was searched
+     * @param solutions solutions found
+     */
+    private void publishFinish(boolean exhausted, long solutions) {
+        if (this.metrics != null) {
+            this.metrics.finish(this.configCount, exhausted);
+        }
+        SearchEvents.Search event = this.searchEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.solver = getClass().getSimpleName();
+            event.nodes = this.configCount - this.searchStart;
+            event.solutions = solutions;
+            event.exhausted = exhausted;
+            event.commit();
+        }
+        this.searchEvent = null;
+    }
+
     /**
      * Get the number of configurations processed during backtracking.
      *
      * @return config count
      */
-    public int getConfigCount() {
+    @Override
+    public long getConfigCount() {
         return this.configCount;
     }
 }
@@ -0,0 +1,467 @@
+package tentsandtrees.backtracker;
+
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ *  A bitboard version of TentConfig.  Searches the same tree order with the
+ *  same required-move logic, but each configuration only holds one long per
+ *  row for tents, one long per row for blocked cells, and one byte per
+ *  row/column counter.  The puzzle data itself (dimension, tree masks, tree
+ *  order, row/column counts) is shared between every configuration of the
+ *  same search.
+ *  <p>
+ *  Boards are limited to 64 columns, since a row has to fit in a long.
+ *
+ *  @author Lyx Huston
+ */
+public class BitTentConfig implements Configuration, ITentsAndTreesTest, Iterator<BitTentConfig> {
+
+    /** widest board a row mask can hold */
+    public static final int MAX_DIM = Long.SIZE;
+
+    /** direction to row change, same direction order as TentConfig (S, E, N, W) */
+    private static final int[] dirToRow = {1, 0, -1, 0};
+    /** direction to column change */
+    private static final int[] dirToCol = {0, 1, 0, -1};
+
+    /**
+     * @param tree read order index of the tree given a tent
+     * @param cell cell of its tent
+     * @param previous the tent placed before it, shared with the configs
+     *                 above this one
+     */
+    private record Placed(int tree, int cell, Placed previous) {
+    }
+
+    /** the puzzle, shared by every config of the search */
+    private final PuzzleDefinition puzzle;
+    /** square dimension of field */
+    private final int dim;
+    /** mask with the low dim bits set */
+    private final long widthMask;
+    /** number of tents per row */
+    private final int[] tentsPerRow;
+    /** number of tents per column */
+    private final int[] tentsPerColumn;
+    /** tree mask for each row */
+    private final long[] trees;
+    /** rows of the trees, in search order */
+    private final int[] treeRows;
+    /** columns of the trees, in search order */
+    private final int[] treeCols;
+
+    /** tent masks in [0, dim), blocked masks (trees, tents and the cells
+     * around tents) in [dim, 2 * dim) */
+    private final long[] masks;
+    /** check against row count in [0, dim), against column count in
+     * [dim, 2 * dim), max row in [2 * dim, 3 * dim), max column in
+     * [3 * dim, 4 * dim).  Read unsigned. */
+    private final byte[] counts;
+
+    /** index of the tree placing around, treeRows.length when done */
+    private int treeOn;
+    /** the tent placed last, null until one is */
+    private Placed placed;
+    /** direction to look at from the tree */
+    private int on = 0;
+    /** how much to step when turning.  Changed to 2 if locked on a column/row,
+     * 4 if single direction
+     */
+    private int step = 1;
+    /** bit per direction already generated */
+    private int dirRecord = 0;
+    /** set once isGoal() has succeeded, empty cells then display as grass */
+    private boolean goal = false;
+
+    /**
+     * Construct the initial configuration from an input file, in the same
+     * format read by TentConfig.
+     * @param filename the name of the file to read from
+     * @throws IOException if the file is not found, there are errors reading,
+     * or the board is wider than MAX_DIM
+     */
+    public BitTentConfig(String filename) throws IOException {
+        this(readNarrow(filename));
+    }
+
+    /**
+     * Construct the initial configuration for a puzzle.
+     * @param puzzle the puzzle
+     * @throws IllegalArgumentException if the board is wider than MAX_DIM
+     */
+    public BitTentConfig(PuzzleDefinition puzzle) {
+        this.puzzle = puzzle;
+        this.dim = puzzle.getDim();
+        if (this.dim > MAX_DIM) {
+            throw new IllegalArgumentException(tooWide(this.dim));
+        }
+        this.widthMask = this.dim == MAX_DIM ? -1L : (1L << this.dim) - 1;
+        this.tentsPerRow = puzzle.getTentsPerRow();
+        this.tentsPerColumn = puzzle.getTentsPerColumn();
+        this.trees = new long[this.dim];
+        this.masks = new long[2 * this.dim];
+        this.counts = new byte[4 * this.dim];
+        for (int i = 0; i < this.dim; i++) {
+            this.counts[i] = (byte) this.tentsPerRow[i];
+            this.counts[this.dim + i] = (byte) this.tentsPerColumn[i];
+        }
+        int treeCount = puzzle.getTreeCount();
+        // TentConfig pushes onto the front of its list, so it searches
+        // the trees in reverse read order.  Keep the same order here.
+        this.treeRows = new int[treeCount];
+        this.treeCols = new int[treeCount];
+        for (int tree = 0; tree < treeCount; tree++) {
+            int row = puzzle.getTreeRow(tree);
+            int col = puzzle.getTreeCol(tree);
+            this.trees[row] |= 1L << col;
+            this.treeRows[treeCount - 1 - tree] = row;
+            this.treeCols[treeCount - 1 - tree] = col;
+            changeMaxRow(row, 1);
+            changeMaxCol(col, 1);
+        }
+        System.arraycopy(this.trees, 0, this.masks, this.dim, this.dim);
+        this.treeOn = 0;
+        if (!puzzle.countsMatch()) {
+            System.out.println("Error in data file: different number of" +
+                    "required tents by tree count and row/column count.");
+            this.treeOn = -1;
+            return;
+        }
+        this.skipRequired();
+    }
+
+    /**
+     * reads a puzzle file, turning away boards too wide for a bitboard
+     * @param filename the name of the file to read from
+     * @return the puzzle
+     * @throws IOException if the file can't be read or the board is too wide
+     */
+    private static PuzzleDefinition readNarrow(String filename) throws IOException {
+        PuzzleDefinition puzzle = PuzzleDefinition.read(filename);
+        if (puzzle.getDim() > MAX_DIM) {
+            throw new IOException(tooWide(puzzle.getDim()));
+        }
+        return puzzle;
+    }
+
+    /**
+     * @param dim dimension of a board
+     * @return message for a board too wide for a bitboard
+     */
+    private static String tooWide(int dim) {
+        return "Board of dimension " + dim + " is too wide for a bitboard (max " + MAX_DIM + ").";
+    }
+
+    /**
+     * Copy constructor.  Shares the puzzle data, copies the masks and counts,
+     * then places a tent for the current tree of other.
+     * @param other the config to copy
+     * @param lookRow row to place the tent in
+     * @param lookCol column to place the tent in
+     */
+    private BitTentConfig(BitTentConfig other, int lookRow, int lookCol) {
+        this.puzzle = other.puzzle;
+        this.dim = other.dim;
+        this.widthMask = other.widthMask;
+        this.tentsPerRow = other.tentsPerRow;
+        this.tentsPerColumn = other.tentsPerColumn;
+        this.trees = other.trees;
+        this.treeRows = other.treeRows;
+        this.treeCols = other.treeCols;
+        this.masks = other.masks.clone();
+        this.counts = other.counts.clone();
+        this.treeOn = other.treeOn;
+        this.placed = other.placed;
+
+        this.placeTent(lookRow, lookCol);
+        this.skipRequired();
+    }
+
+    /**
+     * places a tent for the current tree and moves on to the next tree
+     * @param row row of the tent
+     * @param col column of the tent
+     */
+    private void placeTent(int row, int col) {
+        long bit = 1L << col;
+        long around = (bit | (bit << 1) | (bit >>> 1)) & this.widthMask;
+        this.masks[row] |= bit;
+        this.masks[this.dim + row] |= around;
+        if (row > 0) {
+            this.masks[this.dim + row - 1] |= around;
+        }
+        if (row + 1 < this.dim) {
+            this.masks[this.dim + row + 1] |= around;
+        }
+        this.counts[row]--;
+        this.counts[this.dim + col]--;
+        changeMaxRow(this.treeRows[this.treeOn], -1);
+        changeMaxCol(this.treeCols[this.treeOn], -1);
+        this.placed = new Placed(this.treeRows.length - 1 - this.treeOn, row * this.dim + col, this.placed);
+        this.treeOn++;
+    }
+
+    /**
+     * changes values in max detector arrays
+     * @param row row centered at
+     * @param value value to change by
+     */
+    private void changeMaxRow(int row, int value) {
+        int base = 2 * this.dim;
+        this.counts[base + row] += value;
+        if (row + 1 < this.dim) {
+            this.counts[base + row + 1] += value;
+        }
+        if (row > 0) {
+            this.counts[base + row - 1] += value;
+        }
+    }
+
+    /**
+     * changes values in max detector arrays
+     * @param col column centered at
+     * @param value value to change by
+     */
+    private void changeMaxCol(int col, int value) {
+        int base = 3 * this.dim;
+        this.counts[base + col] += value;
+        if (col + 1 < this.dim) {
+            this.counts[base + col + 1] += value;
+        }
+        if (col > 0) {
+            this.counts[base + col - 1] += value;
+        }
+    }
+
+    /**
+     * reads an unsigned counter
+     * @param index index into counts
+     * @return the counter value
+     */
+    private int count(int index) {
+        return this.counts[index] & 0xFF;
+    }
+
+    /**
+     * checks if the solver has to place a tent in a given row
+     * @param row row to check
+     * @return 1 if it has to place a tent there, 0 otherwise
+     */
+    private int checkRequiredRow(int row) {
+        if (row < 0 || row >= this.dim) {
+            return 0;
+        }
+        int max = count(2 * this.dim + row);
+        int check = count(row);
+        return max > 0 && check > 0 && max == check ? 1 : 0;
+    }
+
+    /**
+     * checks if the solver has to place a tent in a given column
+     * @param col column to check
+     * @return 1 if it has to place a tent there, 0 otherwise
+     */
+    private int checkRequiredColumn(int col) {
+        if (col < 0 || col >= this.dim) {
+            return 0;
+        }
+        int max = count(3 * this.dim + col);
+        int check = count(this.dim + col);
+        return max > 0 && check > 0 && max == check ? 1 : 0;
+    }
+
+    /**
+     * skips creating a config if there is a singular required move forwards
+     */
+    public void skipRequired() {
+        while (this.treeOn < this.treeRows.length) {
+            checkRequired();
+            if (this.on >= 4 || this.step != 4 || !this.validPlace(this.on)) {
+                return;
+            }
+            this.placeTent(this.treeRows[this.treeOn] + dirToRow[this.on],
+                    this.treeCols[this.treeOn] + dirToCol[this.on]);
+        }
+    }
+
+    /**
+     * checks if there is a required move forwards, and where it is.  Same
+     * table as TentConfig.checkRequired().
+     */
+    public void checkRequired() {
+        int row = this.treeRows[this.treeOn];
+        int col = this.treeCols[this.treeOn];
+        int requiredConstant =
+                this.checkRequiredColumn(col - 1) +
+                        this.checkRequiredColumn(col) * 2 +
+                        this.checkRequiredColumn(col + 1) * 4 +
+                        this.checkRequiredRow(row - 1) * 8 +
+                        this.checkRequiredRow(row) * 16 +
+                        this.checkRequiredRow(row + 1) * 32;
+        switch (requiredConstant) {
+            case 0 -> { this.on = 0; this.step = 1; }
+            case 16 -> { this.on = 1; this.step = 2; }
+            case 1, 17 -> { this.on = 3; this.step = 4; }
+            case 4, 20 -> { this.on = 1; this.step = 4; }
+            case 2 -> { this.on = 0; this.step = 2; }
+            case 8, 10 -> { this.on = 2; this.step = 4; }
+            case 32, 34 -> { this.on = 0; this.step = 4; }
+            default -> this.on = 4;
+        }
+    }
+
+    /**
+     * checks if it's ok to place in a direction from the current tree
+     * @param direction direction to look from tree
+     * @return if it's ok to place there
+     */
+    public boolean validPlace(int direction) {
+        if ((this.dirRecord & (1 << direction)) != 0) {
+            return false;
+        }
+        return this.validPlace(this.treeRows[this.treeOn] + dirToRow[direction],
+                this.treeCols[this.treeOn] + dirToCol[direction]);
+    }
+
+    /**
+     * makes sure it's ok to place a tent in a certain row and column.  The
+     * cell must be on the board, not a tree, tent, or next to a tent, and
+     * the row and column must still need tents.
+     * @param row row to place in
+     * @param col column to place in
+     * @return if it's ok to place a tent there
+     */
+    public boolean validPlace(int row, int col) {
+        if (row < 0 || row >= this.dim || col < 0 || col >= this.dim) {
+            return false;
+        }
+        return (this.masks[this.dim + row] & (1L << col)) == 0 &&
+                this.counts[row] != 0 && this.counts[this.dim + col] != 0;
+    }
+
+    /**
+     * checks if a certain place is a tent, returns false if out of range
+     * @param row row looking at
+     * @param col column looking at
+     * @return if the cell is a tent
+     */
+    public boolean isTent(int row, int col) {
+        if (row < 0 || row >= this.dim || col < 0 || col >= this.dim) {
+            return false;
+        }
+        return (this.masks[row] & (1L << col)) != 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.treeOn < 0 || this.treeOn >= this.treeRows.length) {
+            return false;
+        }
+        while (this.on < 4) {
+            if (this.validPlace(this.on)) {
+                return true;
+            }
+            this.on += this.step;
+        }
+        return false;
+    }
+
+    @Override
+    public BitTentConfig next() {
+        int direction = this.on;
+        this.on += this.step;
+        this.dirRecord |= 1 << direction;
+        return new BitTentConfig(this,
+                this.treeRows[this.treeOn] + dirToRow[direction],
+                this.treeCols[this.treeOn] + dirToCol[direction]);
+    }
+
+    /**
+     * successors are generated one at a time through the iterator, see
+     * TentConfig.getSuccessors()
+     * @return null
+     */
+    @Override
+    public Collection<Configuration> getSuccessors() {
+        return null;
+    }
+
+    @Override
+    public boolean isValid() {
+        return this.treeOn >= 0 && this.treeOn < this.treeRows.length && this.on < 4;
+    }
+
+    @Override
+    public boolean isGoal() {
+        if (this.treeOn != this.treeRows.length) {
+            return false;
+        }
+        for (int i = 0; i < 2 * this.dim; i++) {
+            if (this.counts[i] != 0) {
+                return false;
+            }
+        }
+        this.goal = true;
+        return true;
+    }
+
+    /**
+     * A goal is a repeat unless its trees own their tents the first way
+     * they can; see PuzzleDefinition.isFirstPairing.
+     * @return true if the same tents are counted at another goal
+     */
+    @Override
+    public boolean isRepeat() {
+        int[] cells = new int[this.treeRows.length];
+        for (Placed tent = this.placed; tent != null; tent = tent.previous) {
+            cells[tent.tree] = tent.cell;
+        }
+        return !this.puzzle.isFirstPairing(cells);
+    }
+
+    @Override
+    public String toString() {
+        return getDisplay();
+    }
+
+    @Override
+    public int getDIM() {
+        return this.dim;
+    }
+
+    @Override
+    public int getTentsRow(int row) {
+        return this.tentsPerRow[row];
+    }
+
+    @Override
+    public int getTentsCol(int col) {
+        return this.tentsPerColumn[col];
+    }
+
+    @Override
+    public char getCell(int row, int col) {
+        long bit = 1L << col;
+        if ((this.trees[row] & bit) != 0) {
+            return TREE;
+        }
+        if ((this.masks[row] & bit) != 0) {
+            return TENT;
+        }
+        return this.goal ? GRASS : EMPTY;
+    }
+
+    @Override
+    public int getCursorRow() {
+        return this.treeRows[this.treeOn];
+    }
+
+    @Override
+    public int getCursorCol() {
+        return this.treeCols[this.treeOn];
+    }
+}
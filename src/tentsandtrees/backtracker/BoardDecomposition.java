@@ -0,0 +1,301 @@
+package tentsandtrees.backtracker;
+
+import java.util.Arrays;
+
+import static tentsandtrees.test.ITentsAndTreesTest.EMPTY;
+import static tentsandtrees.test.ITentsAndTreesTest.TREE;
+
+/**
+ * Splits a puzzle into parts that can be searched on their own.  Two trees
+ * interact directly when a cell one could put its tent on is the same as,
+ * or touches, a cell the other could; the connected components of that
+ * graph are the components here.  Tents of different components can never
+ * clash on the board, so components only affect each other through the
+ * row and column counts they share.
+ * <p>
+ * Components sharing a row or column are put in the same group.  Groups
+ * share nothing at all: each can be solved by itself, as a puzzle with only
+ * its own trees and only its own lines' counts, and any solution of each
+ * put together is a solution of the whole.
+ * <p>
+ * Components are numbered by their lowest tree, groups by their lowest
+ * component.  Lines are numbered rows first: row r is line r, column c is
+ * line dim + c.
+ *
+ * @author Lyx Huston
+ */
+public final class BoardDecomposition {
+    /** the puzzle */
+    private final PuzzleDefinition puzzle;
+    /** trees of each component, lowest first */
+    private final int[][] components;
+    /** component of each tree */
+    private final int[] componentOf;
+    /** lines each component could put a tent in, lowest first */
+    private final int[][] componentLines;
+    /** components of each group, lowest first */
+    private final int[][] groups;
+    /** group of each line, -1 if no tree can put a tent in it */
+    private final int[] lineGroup;
+
+    /**
+     * Decomposes a puzzle.
+     * @param puzzle the puzzle
+     */
+    public BoardDecomposition(PuzzleDefinition puzzle) {
+        this.puzzle = puzzle;
+        int dim = puzzle.getDim();
+        int trees = puzzle.getTreeCount();
+
+        // join every tree to a tree with a candidate on or touching each of its candidates
+        int[] parent = new int[trees];
+        for (int tree = 0; tree < trees; tree++) {
+            parent[tree] = tree;
+        }
+        int[] someTree = new int[dim * dim];
+        Arrays.fill(someTree, -1);
+        for (int tree = 0; tree < trees; tree++) {
+            for (int side = 0; side < 4; side++) {
+                int cell = candidate(tree, side);
+                if (cell >= 0 && someTree[cell] < 0) {
+                    someTree[cell] = tree;
+                }
+            }
+        }
+        for (int tree = 0; tree < trees; tree++) {
+            for (int side = 0; side < 4; side++) {
+                int cell = candidate(tree, side);
+                if (cell < 0) {
+                    continue;
+                }
+                union(parent, tree, someTree[cell]);
+                for (int i = puzzle.getAroundStart(cell); i < puzzle.getAroundEnd(cell); i++) {
+                    int other = someTree[puzzle.getAroundRow(i) * dim + puzzle.getAroundCol(i)];
+                    if (other >= 0) {
+                        union(parent, tree, other);
+                    }
+                }
+            }
+        }
+        this.componentOf = new int[trees];
+        this.components = collect(parent, this.componentOf);
+
+        // join components sharing a line
+        this.componentLines = new int[this.components.length][];
+        int[] lineComponent = new int[2 * dim];
+        Arrays.fill(lineComponent, -1);
+        int[] groupParent = new int[this.components.length];
+        for (int component = 0; component < this.components.length; component++) {
+            groupParent[component] = component;
+            boolean[] touched = new boolean[2 * dim];
+            for (int tree : this.components[component]) {
+                for (int side = 0; side < 4; side++) {
+                    int cell = candidate(tree, side);
+                    if (cell >= 0) {
+                        touched[cell / dim] = true;
+                        touched[dim + cell % dim] = true;
+                    }
+                }
+            }
+            int[] lines = new int[2 * dim];
+            int size = 0;
+            for (int line = 0; line < 2 * dim; line++) {
+                if (touched[line]) {
+                    lines[size++] = line;
+                    if (lineComponent[line] < 0) {
+                        lineComponent[line] = component;
+                    } else {
+                        union(groupParent, component, lineComponent[line]);
+                    }
+                }
+            }
+            this.componentLines[component] = Arrays.copyOf(lines, size);
+        }
+        int[] groupOf = new int[this.components.length];
+        this.groups = collect(groupParent, groupOf);
+        this.lineGroup = new int[2 * dim];
+        for (int line = 0; line < 2 * dim; line++) {
+            this.lineGroup[line] = lineComponent[line] < 0 ? -1 : groupOf[lineComponent[line]];
+        }
+    }
+
+    /**
+     * @return the puzzle
+     */
+    public PuzzleDefinition getPuzzle() {
+        return this.puzzle;
+    }
+
+    /**
+     * @return number of components
+     */
+    public int getComponentCount() {
+        return this.components.length;
+    }
+
+    /**
+     * @param component a component
+     * @return its trees, lowest first; not to be changed
+     */
+    public int[] getComponent(int component) {
+        return this.components[component];
+    }
+
+    /**
+     * @param tree a tree
+     * @return its component
+     */
+    public int getComponentOf(int tree) {
+        return this.componentOf[tree];
+    }
+
+    /**
+     * @param component a component
+     * @return lines its trees could put a tent in, lowest first; not to be
+     * changed
+     */
+    public int[] getComponentLines(int component) {
+        return this.componentLines[component];
+    }
+
+    /**
+     * @return number of groups
+     */
+    public int getGroupCount() {
+        return this.groups.length;
+    }
+
+    /**
+     * @param group a group
+     * @return its components, lowest first; not to be changed
+     */
+    public int[] getGroup(int group) {
+        return this.groups[group];
+    }
+
+    /**
+     * @param line a line, rows first
+     * @return the group that can put tents in it, -1 if none can
+     */
+    public int getLineGroup(int line) {
+        return this.lineGroup[line];
+    }
+
+    /**
+     * @return true if every line needing a tent has a group that can put
+     * one there; if not, the puzzle has no solution
+     */
+    public boolean linesReachable() {
+        int dim = this.puzzle.getDim();
+        for (int line = 0; line < 2 * dim; line++) {
+            int count = line < dim ? this.puzzle.getTentsRow(line) : this.puzzle.getTentsCol(line - dim);
+            if (count > 0 && this.lineGroup[line] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes the puzzle of one group by itself: its trees, its lines' counts,
+     * and nothing needed anywhere else.
+     * @param group a group
+     * @return the group's puzzle, on a board the same size
+     */
+    public PuzzleDefinition subPuzzle(int group) {
+        int dim = this.puzzle.getDim();
+        char[] cells = new char[dim * dim];
+        Arrays.fill(cells, EMPTY);
+        for (int component : this.groups[group]) {
+            for (int tree : this.components[component]) {
+                cells[this.puzzle.getTreeRow(tree) * dim + this.puzzle.getTreeCol(tree)] = TREE;
+            }
+        }
+        int[] rows = new int[dim];
+        int[] cols = new int[dim];
+        for (int i = 0; i < dim; i++) {
+            rows[i] = this.lineGroup[i] == group ? this.puzzle.getTentsRow(i) : 0;
+            cols[i] = this.lineGroup[dim + i] == group ? this.puzzle.getTentsCol(i) : 0;
+        }
+        return new PuzzleDefinition(dim, rows, cols, cells);
+    }
+
+    /**
+     * @param tree a tree
+     * @param side S, E, N or W, 0 to 3
+     * @return the cell there if a tent could go on it, or -1
+     */
+    int candidate(int tree, int side) {
+        int cell = this.puzzle.getSide(tree, side);
+        int dim = this.puzzle.getDim();
+        return cell >= 0 && this.puzzle.getCell(cell / dim, cell % dim) != TREE ? cell : -1;
+    }
+
+    /**
+     * @param parent union find forest
+     * @param a one member
+     * @param b another member
+     */
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        // the lower root wins, so every set is named by its lowest member
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else {
+            parent[rootA] = rootB;
+        }
+    }
+
+    /**
+     * @param parent union find forest
+     * @param a a member
+     * @return the root of its set
+     */
+    private static int find(int[] parent, int a) {
+        while (parent[a] != a) {
+            parent[a] = parent[parent[a]];
+            a = parent[a];
+        }
+        return a;
+    }
+
+    /**
+     * @param parent union find forest
+     * @param setOf filled with the set number of each member
+     * @return members of each set, lowest first, sets numbered by their
+     * lowest member
+     */
+    private static int[][] collect(int[] parent, int[] setOf) {
+        int sets = 0;
+        int[] number = new int[parent.length];
+        int[] size = new int[parent.length];
+        for (int i = 0; i < parent.length; i++) {
+            int root = find(parent, i);
+            if (root == i) {
+                number[i] = sets++;
+            }
+            setOf[i] = number[root];
+            size[setOf[i]]++;
+        }
+        int[][] result = new int[sets][];
+        for (int set = 0; set < sets; set++) {
+            result[set] = new int[size[set]];
+            size[set] = 0;
+        }
+        for (int i = 0; i < parent.length; i++) {
+            result[setOf[i]][size[setOf[i]]++] = i;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        int largest = 0;
+        for (int[] component : this.components) {
+            largest = Math.max(largest, component.length);
+        }
+        return "Components: " + this.components.length + ", largest " + largest + " trees, groups: " +
+                this.groups.length + System.lineSeparator();
+    }
+}
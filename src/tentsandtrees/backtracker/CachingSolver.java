@@ -0,0 +1,121 @@
+package tentsandtrees.backtracker;
+
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Sits in front of another solver, a Backtracker by default, and keeps
+ * what it finds in a SolutionCache.  A puzzle seen before, or any rotation
+ * or reflection of one, is answered from the cache with the solution
+ * turned to fit, and no configs are generated; otherwise the solver under
+ * it searches and the answer goes in the cache for next time.  Puzzles
+ * with no solution are remembered too.  A search that is interrupted, or
+ * runs out of budget, isn't, since it didn't get to an answer.
+ * <p>
+ * The cache is bounded by bytes, roughly what each answer takes up, and
+ * may be shared by several CachingSolvers on different threads.  Only
+ * solve() is cached; countSolutions() goes straight to the solver under it.
+ *
+ * @author Lyx Huston
+ */
+public class CachingSolver implements Solver {
+    /** cached answer for a puzzle with no solution */
+    private static final int[] UNSOLVABLE = new int[0];
+    /** default cache size, in bytes */
+    public static final long DEFAULT_BYTES = 64L << 20;
+
+    /** the solver under this one */
+    private final Solver solver;
+    /** tent cells of each solution in the canonical orientation, or
+     * UNSOLVABLE */
+    private final SolutionCache<int[]> cache;
+    /** configs generated by the solver under this one */
+    private long configCount;
+
+    /**
+     * Caches a Backtracker's answers in a cache of its own.
+     * @param debug Is debugging output enabled?
+     */
+    public CachingSolver(boolean debug) {
+        this(new Backtracker(debug), newCache(DEFAULT_BYTES));
+    }
+
+    /**
+     * Caches a solver's answers.
+     * @param solver the solver under this one
+     * @param cache where answers go, from newCache
+     */
+    public CachingSolver(Solver solver, SolutionCache<int[]> cache) {
+        this.solver = solver;
+        this.cache = cache;
+    }
+
+    /**
+     * Makes a cache for CachingSolvers.  An answer is counted as its tent
+     * cells plus a fixed overhead for the key, the array and the entry.
+     * @param bytes roughly the most memory the answers may take up
+     * @return the cache
+     */
+    public static SolutionCache<int[]> newCache(long bytes) {
+        return new SolutionCache<>(bytes, tents -> 96 + 4L * tents.length);
+    }
+
+    /**
+     * @return the cache
+     */
+    public SolutionCache<int[]> getCache() {
+        return this.cache;
+    }
+
+    /**
+     * Answers from the cache if it can, otherwise solves and caches the
+     * answer.
+     *
+     * @param config A valid configuration, which must be a board
+     * @return A solution config, or empty if there is none
+     */
+    @Override
+    public Optional<Configuration> solve(Configuration config) {
+        CanonicalPuzzle canonical = CanonicalPuzzle.of(PuzzleDefinition.of((ITentsAndTreesTest) config));
+        int[] tents = this.cache.get(canonical.getKey());
+        if (tents != null) {
+            return tents == UNSOLVABLE ? Optional.empty() : Optional.of(canonical.fromCanonical(tents));
+        }
+        long before = this.solver.getConfigCount();
+        Optional<Configuration> solution = this.solver.solve(config);
+        this.configCount += this.solver.getConfigCount() - before;
+        if (solution.isPresent()) {
+            this.cache.put(canonical.getKey(), canonical.toCanonical((ITentsAndTreesTest) solution.get()));
+        } else if (!SolveBudget.stopped()) {
+            this.cache.put(canonical.getKey(), UNSOLVABLE);
+        }
+        return solution;
+    }
+
+    /**
+     * Counts with the solver under this one; counts aren't cached.
+     *
+     * @param config A valid configuration
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    @Override
+    public long countSolutions(Configuration config, long limit, Consumer<Configuration> consumer) {
+        long before = this.solver.getConfigCount();
+        long count = this.solver.countSolutions(config, limit, consumer);
+        this.configCount += this.solver.getConfigCount() - before;
+        return count;
+    }
+
+    /**
+     * @return configs generated by the solver under this one for this one;
+     * none for answers from the cache
+     */
+    @Override
+    public long getConfigCount() {
+        return this.configCount;
+    }
+}
@@ -0,0 +1,248 @@
+package tentsandtrees.backtracker;
+
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.util.Arrays;
+
+import static tentsandtrees.test.ITentsAndTreesTest.EMPTY;
+import static tentsandtrees.test.ITentsAndTreesTest.TENT;
+import static tentsandtrees.test.ITentsAndTreesTest.TREE;
+
+/**
+ * A puzzle's key that is the same for all eight of its rotations and
+ * reflections, and the way from the puzzle to the orientation the key was
+ * taken in, so an answer worked out for one of them can be turned to fit
+ * any other.
+ * <p>
+ * Each of the eight symmetries of the square is a transpose or not, then
+ * flipping the rows or not and the columns or not; the row and column
+ * counts move with their lines.  Every orientation is hashed (the
+ * dimension, the counts, then the tree cells in order) into 128 bits, two
+ * independent 64 bit lanes, and the smallest hash is the key.  Which
+ * orientation that was is the canonical one; a symmetric puzzle may have
+ * more than one, and then they are the same puzzle, so any will do.
+ *
+ * @author Lyx Huston
+ */
+public final class CanonicalPuzzle {
+    /**
+     * A 128 bit puzzle key.
+     * @param high first lane
+     * @param low second lane
+     */
+    public record Key(long high, long low) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int high = Long.compareUnsigned(this.high, other.high);
+            return high != 0 ? high : Long.compareUnsigned(this.low, other.low);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", this.high, this.low);
+        }
+    }
+
+    /** the puzzle */
+    private final PuzzleDefinition puzzle;
+    /** symmetry from the puzzle to the canonical orientation: bit 4 transposes,
+     * then bit 1 flips the rows and bit 2 the columns */
+    private final int transform;
+    /** the key */
+    private final Key key;
+
+    /**
+     * @param puzzle the puzzle
+     * @param transform symmetry to the canonical orientation
+     * @param key the key
+     */
+    private CanonicalPuzzle(PuzzleDefinition puzzle, int transform, Key key) {
+        this.puzzle = puzzle;
+        this.transform = transform;
+        this.key = key;
+    }
+
+    /**
+     * Finds a puzzle's canonical orientation and key.
+     * @param puzzle the puzzle
+     * @return its canonical form
+     */
+    public static CanonicalPuzzle of(PuzzleDefinition puzzle) {
+        int best = 0;
+        Key bestKey = null;
+        for (int transform = 0; transform < 8; transform++) {
+            Key key = hash(puzzle, transform);
+            if (bestKey == null || key.compareTo(bestKey) < 0) {
+                best = transform;
+                bestKey = key;
+            }
+        }
+        return new CanonicalPuzzle(puzzle, best, bestKey);
+    }
+
+    /**
+     * @return the key, the same for every rotation and reflection
+     */
+    public Key getKey() {
+        return this.key;
+    }
+
+    /**
+     * @return symmetry from the puzzle to the canonical orientation, 0 to 7
+     */
+    public int getTransform() {
+        return this.transform;
+    }
+
+    /**
+     * @return the puzzle, in its own orientation
+     */
+    public PuzzleDefinition getPuzzle() {
+        return this.puzzle;
+    }
+
+    /**
+     * Hashes the puzzle as one symmetry leaves it.
+     * @param puzzle the puzzle
+     * @param transform the symmetry
+     * @return the hash
+     */
+    private static Key hash(PuzzleDefinition puzzle, int transform) {
+        int dim = puzzle.getDim();
+        int[] rows = new int[dim];
+        int[] cols = new int[dim];
+        for (int i = 0; i < dim; i++) {
+            // see where the first cell of row i and of column i go; a
+            // transpose turns rows into columns
+            int rowStart = map(transform, dim, i, 0);
+            int colStart = map(transform, dim, 0, i);
+            if ((transform & 4) == 0) {
+                rows[rowStart / dim] = puzzle.getTentsRow(i);
+                cols[colStart % dim] = puzzle.getTentsCol(i);
+            } else {
+                cols[rowStart % dim] = puzzle.getTentsRow(i);
+                rows[colStart / dim] = puzzle.getTentsCol(i);
+            }
+        }
+        int[] trees = new int[puzzle.getTreeCount()];
+        for (int tree = 0; tree < trees.length; tree++) {
+            trees[tree] = map(transform, dim, puzzle.getTreeRow(tree), puzzle.getTreeCol(tree));
+        }
+        Arrays.sort(trees);
+
+        long high = Hashing.mix(dim);
+        long low = Hashing.mix(~(long) dim);
+        for (int count : rows) {
+            high = Hashing.mix(high + count);
+            low = lane(low, count);
+        }
+        for (int count : cols) {
+            high = Hashing.mix(high + count);
+            low = lane(low, count);
+        }
+        high = Hashing.mix(high + trees.length);
+        low = lane(low, trees.length);
+        for (int cell : trees) {
+            high = Hashing.mix(high + cell);
+            low = lane(low, cell);
+        }
+        return new Key(high, low);
+    }
+
+    /**
+     * Steps the second lane, scrambled differently from the first.
+     * @param lane the lane so far
+     * @param value next value
+     * @return the lane
+     */
+    private static long lane(long lane, long value) {
+        return Hashing.mix((lane ^ value) * 0xD6E8FEB86659FD93L + 0x632BE59BD9B4E019L);
+    }
+
+    /**
+     * Moves a cell by a symmetry.
+     * @param transform the symmetry
+     * @param dim square dimension
+     * @param row row of the cell
+     * @param col column of the cell
+     * @return the cell it moves to
+     */
+    private static int map(int transform, int dim, int row, int col) {
+        if ((transform & 4) != 0) {
+            int swap = row;
+            row = col;
+            col = swap;
+        }
+        if ((transform & 1) != 0) {
+            row = dim - 1 - row;
+        }
+        if ((transform & 2) != 0) {
+            col = dim - 1 - col;
+        }
+        return row * dim + col;
+    }
+
+    /**
+     * Moves a cell back by a symmetry: the flips first, then the transpose.
+     * @param transform the symmetry
+     * @param dim square dimension
+     * @param cell the cell it moved to
+     * @return the cell it came from
+     */
+    private static int unmap(int transform, int dim, int cell) {
+        int row = cell / dim;
+        int col = cell % dim;
+        if ((transform & 1) != 0) {
+            row = dim - 1 - row;
+        }
+        if ((transform & 2) != 0) {
+            col = dim - 1 - col;
+        }
+        return (transform & 4) != 0 ? col * dim + row : row * dim + col;
+    }
+
+    /**
+     * Takes the tents off a solution to this puzzle, in the canonical
+     * orientation.
+     * @param solution a solved board of this puzzle
+     * @return its tent cells, canonical orientation, in order
+     */
+    public int[] toCanonical(ITentsAndTreesTest solution) {
+        int dim = this.puzzle.getDim();
+        int[] tents = new int[this.puzzle.getTreeCount()];
+        int count = 0;
+        for (int row = 0; row < dim; row++) {
+            for (int col = 0; col < dim; col++) {
+                if (solution.getCell(row, col) == TENT) {
+                    if (count == tents.length) {
+                        tents = Arrays.copyOf(tents, count + 1);
+                    }
+                    tents[count++] = map(this.transform, dim, row, col);
+                }
+            }
+        }
+        tents = Arrays.copyOf(tents, count);
+        Arrays.sort(tents);
+        return tents;
+    }
+
+    /**
+     * Puts tents worked out for any puzzle with this key on this puzzle, in
+     * its own orientation.
+     * @param tents tent cells in the canonical orientation
+     * @return the solved board
+     */
+    public SolutionConfig fromCanonical(int[] tents) {
+        int dim = this.puzzle.getDim();
+        char[] board = new char[dim * dim];
+        for (int row = 0; row < dim; row++) {
+            for (int col = 0; col < dim; col++) {
+                board[row * dim + col] = this.puzzle.getCell(row, col) == TREE ? TREE : EMPTY;
+            }
+        }
+        for (int cell : tents) {
+            board[unmap(this.transform, dim, cell)] = TENT;
+        }
+        return new SolutionConfig(dim, this.puzzle.getTentsPerRow(), this.puzzle.getTentsPerColumn(), board);
+    }
+}
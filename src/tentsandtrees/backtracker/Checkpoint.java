@@ -0,0 +1,205 @@
+package tentsandtrees.backtracker;
+
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Where a Backtracker search over TentConfig had got to, enough to carry on
+ * from there exactly.  Each config on the stack is made from the one below
+ * it, so the stack is kept as each config's successor iterator (on, step
+ * and a record of the directions tried, a byte each): the config below the
+ * top made the one above it in direction on - step, and the top one carries
+ * on from on.  The record also says whether a goal was found below, which
+ * the transposition table needs to know.  A count also keeps how many
+ * solutions it has found; the table itself isn't kept, it fills again as
+ * it goes.
+ * <p>
+ * The file is
+ * <pre>
+ * header     "TTCK", version
+ * puzzle     8 byte fingerprint of the trees and counts, options byte
+ * progress   8 byte configs generated, 8 byte solutions found
+ * frames     4 byte count, then on, step, record of each config
+ * </pre>
+ * and is written to a temporary file that is then renamed over the old
+ * one, so a crash never leaves half a checkpoint.
+ *
+ * @author Lyx Huston
+ */
+public final class Checkpoint {
+    /** "TTCK" */
+    private static final int MAGIC = 0x5454434B;
+    /** file format version */
+    private static final byte VERSION = 2;
+
+    /** fingerprint of the puzzle */
+    private final long puzzle;
+    /** options that change the successors, see TentConfig.getSearchOptions */
+    private final int options;
+    /** configs generated so far */
+    private final long nodes;
+    /** distinct solutions found so far */
+    private final long solutions;
+    /** on, step and record of each config on the stack, bottom first */
+    private final byte[] frames;
+
+    /**
+     * Makes a checkpoint.
+     * @param puzzle fingerprint of the puzzle
+     * @param options options that change the successors
+     * @param nodes configs generated so far
+     * @param solutions distinct solutions found so far
+     * @param frames on, step and record of each config on the stack
+     */
+    Checkpoint(long puzzle, int options, long nodes, long solutions, byte[] frames) {
+        this.puzzle = puzzle;
+        this.options = options;
+        this.nodes = nodes;
+        this.solutions = solutions;
+        this.frames = frames;
+    }
+
+    /**
+     * Reads a checkpoint.
+     * @param file the file
+     * @return the checkpoint
+     * @throws IOException if it can't be read or isn't a checkpoint
+     */
+    public static Checkpoint read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + ": not a checkpoint");
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException(file + ": checkpoint version " + version + " isn't supported");
+            }
+            long puzzle = in.readLong();
+            int options = in.readUnsignedByte();
+            long nodes = in.readLong();
+            long solutions = in.readLong();
+            int depth = in.readInt();
+            if (solutions < 0 || depth < 1 || depth > 1 << 20) {
+                throw new IOException(file + ": broken checkpoint");
+            }
+            byte[] frames = new byte[3 * depth];
+            in.readFully(frames);
+            return new Checkpoint(puzzle, options, nodes, solutions, frames);
+        }
+    }
+
+    /**
+     * Writes the checkpoint next to the file, then renames it over the
+     * file.
+     * @param file the file
+     * @throws IOException if it can't be written
+     */
+    public void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(this.puzzle);
+            out.writeByte(this.options);
+            out.writeLong(this.nodes);
+            out.writeLong(this.solutions);
+            out.writeInt(this.frames.length / 3);
+            out.write(this.frames);
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * @return configs generated before the checkpoint
+     */
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * @return distinct solutions found before the checkpoint
+     */
+    public long getSolutions() {
+        return this.solutions;
+    }
+
+    /**
+     * @return number of configs on the stack
+     */
+    public int getDepth() {
+        return this.frames.length / 3;
+    }
+
+    /**
+     * Checks the checkpoint was made searching this initial config.
+     * @param init the initial config
+     * @throws IllegalArgumentException if the puzzle or options differ
+     */
+    void check(TentConfig init) {
+        if (this.puzzle != fingerprint(init)) {
+            throw new IllegalArgumentException("Checkpoint is of a different puzzle");
+        }
+        if (this.options != init.getSearchOptions()) {
+            throw new IllegalArgumentException("Checkpoint was made with different pruning options");
+        }
+    }
+
+    /**
+     * @param frame a config on the stack, bottom first
+     * @return its iterator's direction
+     */
+    int getOn(int frame) {
+        return this.frames[3 * frame];
+    }
+
+    /**
+     * @param frame a config on the stack, bottom first
+     * @return its iterator's step
+     */
+    int getStep(int frame) {
+        return this.frames[3 * frame + 1];
+    }
+
+    /**
+     * @param frame a config on the stack, bottom first
+     * @return directions it had made successors in, plus 16 if a goal had
+     * been found below it
+     */
+    int getRecord(int frame) {
+        return this.frames[3 * frame + 2];
+    }
+
+    /**
+     * Hashes the trees and counts of a board, so a checkpoint isn't
+     * resumed on another puzzle.
+     * @param board a board
+     * @return the fingerprint
+     */
+    static long fingerprint(ITentsAndTreesTest board) {
+        int dim = board.getDIM();
+        long hash = Hashing.mix(dim);
+        for (int i = 0; i < dim; i++) {
+            hash = Hashing.mix(hash + board.getTentsRow(i));
+            hash = Hashing.mix(hash + board.getTentsCol(i));
+        }
+        for (int cell = 0; cell < dim * dim; cell++) {
+            if (board.getCell(cell / dim, cell % dim) == ITentsAndTreesTest.TREE) {
+                hash = Hashing.mix(hash + cell + 1);
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,188 @@
+package tentsandtrees.backtracker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes a search's checkpoints to a file every so often.  The search takes
+ * a snapshot of its stack when one is due and hands it over; a daemon
+ * thread of its own writes it, so the search never waits on the disk.  If
+ * the last snapshot is still being written the new one is dropped, and the
+ * next is due straight away.
+ *
+ * @author Lyx Huston
+ */
+public class Checkpointer implements AutoCloseable {
+    /** the file checkpoints go to */
+    private final Path file;
+    /** time between checkpoints */
+    private final long period;
+    /** the writer thread */
+    private final ExecutorService writer;
+    /** whether a checkpoint is being written */
+    private final AtomicBoolean busy = new AtomicBoolean();
+    /** the last background write, null before the first */
+    private Future<?> pending;
+    /** when the next checkpoint is due, by System.nanoTime() */
+    private long due;
+    /** checkpoints written */
+    private volatile int written;
+    /** why the last background write failed, null if it didn't */
+    private volatile IOException failure;
+
+    /**
+     * Makes a checkpointer.  The first checkpoint is due a period from now.
+     * @param file the file checkpoints go to
+     * @param seconds time between checkpoints
+     */
+    public Checkpointer(Path file, double seconds) {
+        if (!(seconds > 0)) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive, got " + seconds);
+        }
+        this.file = file;
+        this.period = (long) (seconds * 1e9);
+        this.due = System.nanoTime() + this.period;
+        this.writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the file checkpoints go to
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * @return true if it is time for a checkpoint
+     */
+    boolean due() {
+        return System.nanoTime() - this.due >= 0;
+    }
+
+    /**
+     * Writes a snapshot in the background, unless the last one is still
+     * being written.
+     * @param checkpoint the snapshot
+     */
+    void offer(Checkpoint checkpoint) {
+        if (!this.busy.compareAndSet(false, true)) {
+            return;
+        }
+        this.due = System.nanoTime() + this.period;
+        this.pending = this.writer.submit(() -> {
+            try {
+                checkpoint.write(this.file);
+                this.written++;
+                this.failure = null;
+            } catch (IOException e) {
+                this.failure = e;
+            } finally {
+                this.busy.set(false);
+            }
+        });
+    }
+
+    /**
+     * Writes a snapshot now, after any background write, when the search
+     * stops early.  The interrupt flag is cleared while writing, since it
+     * would close the file channel, and then set again.
+     * @param checkpoint the snapshot
+     * @throws UncheckedIOException if it can't be written
+     */
+    void writeNow(Checkpoint checkpoint) {
+        drain();
+        boolean interrupted = Thread.interrupted();
+        try {
+            checkpoint.write(this.file);
+            this.written++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Deletes the checkpoint once the search has finished, so it isn't
+     * resumed.
+     * @throws UncheckedIOException if it can't be deleted
+     */
+    void completed() {
+        drain();
+        try {
+            Files.deleteIfExists(this.file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Waits for a background write to finish.  An interrupt doesn't stop
+     * the wait, since the search is stopping anyway; the flag is set again
+     * afterwards.
+     */
+    private void drain() {
+        if (this.pending == null) {
+            return;
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    this.pending.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            // an IOException is kept as the failure, anything else is a bug
+            throw new IllegalStateException("Checkpoint writer failed", e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return checkpoints written so far
+     */
+    public int getWritten() {
+        return this.written;
+    }
+
+    /**
+     * @return why the last background write failed, null if it didn't
+     */
+    public IOException getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * Stops the writer thread, after any write it has started.
+     */
+    @Override
+    public void close() {
+        this.writer.shutdown();
+        try {
+            this.writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
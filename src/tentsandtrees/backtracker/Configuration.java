@@ -30,4 +30,14 @@ public interface Configuration {
      * @return true if goal; false otherwise
      */
     public boolean isGoal();
+
+    /**
+     * Is the current goal a repeat of a solution the search also reaches
+     * another way?  Searches that count solutions skip repeats.
+     * @return true if another goal of the same search is the same solution
+     * and is the one counted
+     */
+    public default boolean isRepeat() {
+        return false;
+    }
 }
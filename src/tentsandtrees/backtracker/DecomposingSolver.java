@@ -0,0 +1,701 @@
+package tentsandtrees.backtracker;
+
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static tentsandtrees.test.ITentsAndTreesTest.EMPTY;
+import static tentsandtrees.test.ITentsAndTreesTest.TENT;
+import static tentsandtrees.test.ITentsAndTreesTest.TREE;
+
+/**
+ * Solves a puzzle a part at a time, using a BoardDecomposition.  First every
+ * component's tent layouts are listed, on a pool of worker threads, with no
+ * more tents in any line than its count allows; each layout is filed under
+ * how many tents it puts in each of the component's lines.  Then every
+ * group is worked out on its own worker:
+ * <ul>
+ *     <li>If each of its components was small enough to list, the group's
+ *     components are fitted together through the count budgets: each takes
+ *     one of its line usages out of what its lines still need, and no line
+ *     may be left needing more than the components after it can give.
+ *     How many ways the rest can be finished from each budget is
+ *     remembered, so budgets reached again cost nothing.</li>
+ *     <li>Otherwise the group's puzzle is handed to the inner solver.</li>
+ * </ul>
+ * Solutions of the whole are every choice of one solution per group.
+ * <p>
+ * Listing a component gives up after a set number of search nodes, so a
+ * dense board that is one big component costs little more than the inner
+ * solver on its own.
+ *
+ * @author Lyx Huston
+ */
+public class DecomposingSolver implements Solver {
+    /** default search nodes spent listing one component before giving up */
+    public static final int DEFAULT_LISTING_LIMIT = 1 << 16;
+
+    /** number of worker threads */
+    private final int parallelism;
+    /** makes a solver for a group too big to list */
+    private final Supplier<Solver> inner;
+    /** search nodes spent listing one component before giving up */
+    private int listingLimit = DEFAULT_LISTING_LIMIT;
+    /** listing nodes, budgets tried and inner configs, over every worker
+     * and every search */
+    private final LongAdder configCount = new LongAdder();
+    /** decomposition of the last puzzle */
+    private BoardDecomposition decomposition;
+
+    /**
+     * Initialize a decomposing solver using every available processor, with
+     * the most constrained InPlaceSolver for groups too big to list.
+     */
+    public DecomposingSolver() {
+        this(Runtime.getRuntime().availableProcessors(),
+                () -> new InPlaceSolver(false, InPlaceSolver.TreeOrder.MOST_CONSTRAINED));
+    }
+
+    /**
+     * Initialize a decomposing solver.
+     *
+     * @param parallelism number of worker threads
+     * @param inner makes a solver for each group too big to list; it is
+     *              given a TentConfig of the group's puzzle
+     */
+    public DecomposingSolver(int parallelism, Supplier<Solver> inner) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.inner = inner;
+    }
+
+    /**
+     * Sets how hard to try listing a component before handing its group to
+     * the inner solver.
+     *
+     * @param nodes search nodes per component, 0 to always use the inner
+     *              solver
+     */
+    public void setListingLimit(int nodes) {
+        if (nodes < 0) {
+            throw new IllegalArgumentException("Listing limit must be at least 0, got " + nodes);
+        }
+        this.listingLimit = nodes;
+    }
+
+    /**
+     * @return decomposition of the last puzzle searched, or null
+     */
+    public BoardDecomposition getDecomposition() {
+        return this.decomposition;
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid initial configuration, must implement
+     *               ITentsAndTreesTest so the puzzle can be read from it
+     * @return A solution config, or empty if no solution
+     */
+    @Override
+    public Optional<Configuration> solve(Configuration config) {
+        Configuration[] found = new Configuration[1];
+        countPuzzleSolutions((ITentsAndTreesTest) config, 1, solution -> found[0] = solution);
+        return Optional.ofNullable(found[0]);
+    }
+
+    /**
+     * Hands every solution to the consumer, from the calling thread, until
+     * there are no more or the limit is reached.
+     *
+     * @param config A valid initial configuration, must implement
+     *               ITentsAndTreesTest
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    @Override
+    public long countSolutions(Configuration config, long limit, Consumer<Configuration> consumer) {
+        return countPuzzleSolutions((ITentsAndTreesTest) config, limit, consumer);
+    }
+
+    /**
+     * Same as countSolutions, for a puzzle that isn't a configuration, such
+     * as a freshly generated board.  Only the trees and counts are read.
+     *
+     * @param puzzle the puzzle
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    public long countPuzzleSolutions(ITentsAndTreesTest puzzle, long limit,
+                                     Consumer<Configuration> consumer) {
+        SolutionCounter counter = new SolutionCounter(limit, consumer);
+        search(PuzzleDefinition.of(puzzle), counter, limit);
+        return counter.getCount();
+    }
+
+    @Override
+    public long getConfigCount() {
+        return this.configCount.sum();
+    }
+
+    /**
+     * Lists the components and works out the groups on a fresh pool, then
+     * puts the groups' solutions together.  An interrupt stops the workers
+     * and ends the search as if there were no more solutions.  A budget
+     * bound to this thread is bound on the workers too, so running out of
+     * it does the same.
+     * @param puzzle the puzzle
+     * @param counter where solutions go
+     * @param limit most solutions wanted
+     */
+    private void search(PuzzleDefinition puzzle, SolutionCounter counter, long limit) {
+        this.configCount.increment();
+        SolveBudget budget = SolveBudget.current();
+        BoardDecomposition parts = new BoardDecomposition(puzzle);
+        this.decomposition = parts;
+        if (!puzzle.countsMatch() || !parts.linesReachable()) {
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(this.parallelism);
+        try {
+            List<Callable<ComponentLayouts>> listings = new ArrayList<>();
+            for (int component = 0; component < parts.getComponentCount(); component++) {
+                int id = component;
+                listings.add(bound(budget, () -> list(parts, id)));
+            }
+            ComponentLayouts[] layouts = new ComponentLayouts[parts.getComponentCount()];
+            List<Future<ComponentLayouts>> listed = pool.invokeAll(listings);
+            for (int component = 0; component < layouts.length; component++) {
+                layouts[component] = listed.get(component).get();
+            }
+
+            List<Callable<GroupLayouts>> workings = new ArrayList<>();
+            for (int group = 0; group < parts.getGroupCount(); group++) {
+                int id = group;
+                boolean listable = true;
+                for (int component : parts.getGroup(group)) {
+                    listable &= layouts[component] != null;
+                }
+                workings.add(listable ? () -> new Budgeted(parts, id, layouts) :
+                        bound(budget, () -> solveGroup(parts, id, limit)));
+            }
+            List<Future<GroupLayouts>> worked = pool.invokeAll(workings);
+            GroupLayouts[] groups = new GroupLayouts[worked.size()];
+            for (int group = 0; group < groups.length; group++) {
+                groups[group] = worked.get(group).get();
+                if (groups[group].isEmpty()) {
+                    return;
+                }
+            }
+            if (SolveBudget.stopped()) {
+                return;
+            }
+
+            int dim = puzzle.getDim();
+            char[] board = new char[dim * dim];
+            Arrays.fill(board, EMPTY);
+            for (int tree = 0; tree < puzzle.getTreeCount(); tree++) {
+                board[puzzle.getTreeRow(tree) * dim + puzzle.getTreeCol(tree)] = TREE;
+            }
+            combine(puzzle, groups, 0, board, counter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * offers every choice of one layout per group from a group on
+     * @param puzzle the puzzle
+     * @param groups layouts of every group
+     * @param group first group to choose for
+     * @param board board with the earlier groups' tents on it
+     * @param counter where solutions go
+     * @return true once the counter has enough
+     */
+    private static boolean combine(PuzzleDefinition puzzle, GroupLayouts[] groups, int group,
+                                   char[] board, SolutionCounter counter) {
+        if (group == groups.length) {
+            return counter.offer(new SolutionConfig(puzzle.getDim(), puzzle.getTentsPerRow(),
+                    puzzle.getTentsPerColumn(), board));
+        }
+        return groups[group].forEach(board, () -> combine(puzzle, groups, group + 1, board, counter));
+    }
+
+    /**
+     * Lists a component's tent layouts, allowing each line up to its count.
+     * @param parts the decomposition
+     * @param component the component
+     * @return its layouts by line usage, or null if listing them took too
+     * many nodes
+     */
+    private ComponentLayouts list(BoardDecomposition parts, int component) {
+        ComponentLayouts result = new ComponentLayouts(parts, component);
+        Listing listing = new Listing(parts, component, result);
+        boolean finished = this.listingLimit > 0 && listing.place(0);
+        this.configCount.add(listing.nodes);
+        return finished ? result : null;
+    }
+
+    /**
+     * Runs work on a worker under the search's budget.
+     * @param budget the budget bound to the search's thread, null if none
+     * @param work the work
+     * @param <T> what the work makes
+     * @return the work, binding the budget while it runs
+     */
+    private static <T> Callable<T> bound(SolveBudget budget, Callable<T> work) {
+        if (budget == null) {
+            return work;
+        }
+        return () -> {
+            SolveBudget previous = budget.bind();
+            try {
+                return work.call();
+            } finally {
+                SolveBudget.unbind(previous);
+            }
+        };
+    }
+
+    /**
+     * Solves a group's puzzle with the inner solver.
+     * @param parts the decomposition
+     * @param group the group
+     * @param limit most solutions wanted
+     * @return the group's layouts
+     */
+    private GroupLayouts solveGroup(BoardDecomposition parts, int group, long limit) {
+        Solver solver = this.inner.get();
+        PuzzleDefinition sub = parts.subPuzzle(group);
+        int dim = sub.getDim();
+        List<int[]> found = new ArrayList<>();
+        solver.countSolutions(new TentConfig(sub), limit, solution -> {
+            ITentsAndTreesTest board = (ITentsAndTreesTest) solution;
+            int[] tents = new int[sub.getTreeCount()];
+            int size = 0;
+            for (int cell = 0; cell < dim * dim; cell++) {
+                if (board.getCell(cell / dim, cell % dim) == TENT) {
+                    tents[size++] = cell;
+                }
+            }
+            found.add(tents);
+        });
+        this.configCount.add(solver.getConfigCount());
+        return new Listed(found);
+    }
+
+    /**
+     * Sets a layout's tents on a board, or takes them off again.
+     * @param board the board
+     * @param tents cells of the tents
+     * @param value TENT or EMPTY
+     */
+    private static void mark(char[] board, int[] tents, char value) {
+        for (int cell : tents) {
+            board[cell] = value;
+        }
+    }
+
+    /**
+     * Every solution of one group.
+     */
+    private interface GroupLayouts {
+        /**
+         * @return true if the group has no solution
+         */
+        boolean isEmpty();
+
+        /**
+         * Puts each solution on the board in turn, calling next with it
+         * there, and takes it off again.
+         * @param board the board
+         * @param next goes on to the other groups; returns true to stop
+         * @return true if next asked to stop
+         */
+        boolean forEach(char[] board, BooleanSupplier next);
+    }
+
+    /**
+     * Solutions found by the inner solver.
+     * @param layouts tent cells of each solution
+     */
+    private record Listed(List<int[]> layouts) implements GroupLayouts {
+        @Override
+        public boolean isEmpty() {
+            return this.layouts.isEmpty();
+        }
+
+        @Override
+        public boolean forEach(char[] board, BooleanSupplier next) {
+            for (int[] tents : this.layouts) {
+                mark(board, tents, TENT);
+                boolean stop = next.getAsBoolean();
+                mark(board, tents, EMPTY);
+                if (stop) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * An int array usable as a map key.
+     * @param values the ints, not to be changed
+     */
+    private record Key(int[] values) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && Arrays.equals(this.values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.values);
+        }
+    }
+
+    /**
+     * A component's distinct tent layouts, filed by how many tents each
+     * puts in each of the component's lines.
+     */
+    private static class ComponentLayouts {
+        /** the component's lines */
+        private final int[] lines;
+        /** layouts under each line usage, in the order found */
+        private final Map<Key, List<int[]>> byUsage = new LinkedHashMap<>();
+        /** tent sets already seen; different trees can own the same tents */
+        private final Set<Key> seen = new HashSet<>();
+
+        /**
+         * @param parts the decomposition
+         * @param component the component
+         */
+        private ComponentLayouts(BoardDecomposition parts, int component) {
+            this.lines = parts.getComponentLines(component);
+        }
+
+        /**
+         * files a layout if its tents are new
+         * @param tents tent cells, in any order; copied
+         * @param dim square dimension
+         */
+        private void add(int[] tents, int dim) {
+            int[] sorted = tents.clone();
+            Arrays.sort(sorted);
+            if (!this.seen.add(new Key(sorted))) {
+                return;
+            }
+            int[] usage = new int[this.lines.length];
+            for (int cell : sorted) {
+                usage[Arrays.binarySearch(this.lines, cell / dim)]++;
+                usage[Arrays.binarySearch(this.lines, dim + cell % dim)]++;
+            }
+            this.byUsage.computeIfAbsent(new Key(usage), key -> new ArrayList<>()).add(sorted);
+        }
+    }
+
+    /**
+     * Depth first listing of one component, tree by tree.
+     */
+    private class Listing {
+        /** the puzzle */
+        private final PuzzleDefinition puzzle;
+        /** the decomposition */
+        private final BoardDecomposition parts;
+        /** the component's trees */
+        private final int[] trees;
+        /** where layouts go */
+        private final ComponentLayouts result;
+        /** cells with a tent */
+        private final boolean[] tent;
+        /** tents in each row */
+        private final int[] inRow;
+        /** tents in each column */
+        private final int[] inCol;
+        /** tent cell of each tree placed so far */
+        private final int[] placed;
+        /** nodes visited */
+        private int nodes;
+
+        /**
+         * @param parts the decomposition
+         * @param component the component
+         * @param result where layouts go
+         */
+        private Listing(BoardDecomposition parts, int component, ComponentLayouts result) {
+            this.parts = parts;
+            this.puzzle = parts.getPuzzle();
+            this.trees = parts.getComponent(component);
+            this.result = result;
+            int dim = this.puzzle.getDim();
+            this.tent = new boolean[dim * dim];
+            this.inRow = new int[dim];
+            this.inCol = new int[dim];
+            this.placed = new int[this.trees.length];
+        }
+
+        /**
+         * places every tree from one on, in every way that fits
+         * @param index position of the tree in the component
+         * @return false if the node limit or an interrupt cut it short
+         */
+        private boolean place(int index) {
+            if (++this.nodes > listingLimit ||
+                    ((this.nodes & INTERRUPT_CHECK_MASK) == 0 && SolveBudget.shouldStop())) {
+                return false;
+            }
+            int dim = this.puzzle.getDim();
+            if (index == this.trees.length) {
+                this.result.add(this.placed, dim);
+                return true;
+            }
+            int tree = this.trees[index];
+            for (int side = 0; side < 4; side++) {
+                int cell = this.parts.candidate(tree, side);
+                if (cell < 0 || this.tent[cell] || touching(cell)) {
+                    continue;
+                }
+                int row = cell / dim;
+                int col = cell % dim;
+                if (this.inRow[row] == this.puzzle.getTentsRow(row) ||
+                        this.inCol[col] == this.puzzle.getTentsCol(col)) {
+                    continue;
+                }
+                this.tent[cell] = true;
+                this.inRow[row]++;
+                this.inCol[col]++;
+                this.placed[index] = cell;
+                boolean finished = place(index + 1);
+                this.tent[cell] = false;
+                this.inRow[row]--;
+                this.inCol[col]--;
+                if (!finished) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @param cell a cell
+         * @return true if a tent touches it
+         */
+        private boolean touching(int cell) {
+            for (int i = this.puzzle.getAroundStart(cell); i < this.puzzle.getAroundEnd(cell); i++) {
+                if (this.tent[this.puzzle.getAroundRow(i) * this.puzzle.getDim() + this.puzzle.getAroundCol(i)]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A group whose components are fitted together through the count
+     * budgets of their shared lines.
+     */
+    private class Budgeted implements GroupLayouts {
+        /** layouts of each of the group's components, in order */
+        private final ComponentLayouts[] components;
+        /** the group's lines, lowest first */
+        private final int[] lines;
+        /** for each component, the group index of each of its lines */
+        private final int[][] lineIndex;
+        /** most tents the components from each position on can put in each group line */
+        private final int[][] most;
+        /** ways to finish from each position and budget, a key of both */
+        private final Map<Key, Long> ways = new HashMap<>();
+        /** tents each group line needs */
+        private final int[] start;
+        /** ways to solve the group, at most Long.MAX_VALUE */
+        private final long total;
+
+        /**
+         * Fits the group together, counting its solutions.
+         * @param parts the decomposition
+         * @param group the group
+         * @param layouts every component's layouts
+         */
+        private Budgeted(BoardDecomposition parts, int group, ComponentLayouts[] layouts) {
+            int[] members = parts.getGroup(group);
+            PuzzleDefinition puzzle = parts.getPuzzle();
+            int dim = puzzle.getDim();
+            this.components = new ComponentLayouts[members.length];
+            int[] groupLine = new int[2 * dim];
+            for (int i = 0; i < members.length; i++) {
+                this.components[i] = layouts[members[i]];
+            }
+            int size = 0;
+            for (int line = 0; line < 2 * dim; line++) {
+                if (parts.getLineGroup(line) == group) {
+                    groupLine[line] = size++;
+                }
+            }
+            this.lines = new int[size];
+            int[] budget = new int[size];
+            for (int line = 0; line < 2 * dim; line++) {
+                if (parts.getLineGroup(line) == group) {
+                    this.lines[groupLine[line]] = line;
+                    budget[groupLine[line]] = line < dim ? puzzle.getTentsRow(line) : puzzle.getTentsCol(line - dim);
+                }
+            }
+            this.lineIndex = new int[members.length][];
+            for (int i = 0; i < members.length; i++) {
+                int[] own = this.components[i].lines;
+                this.lineIndex[i] = new int[own.length];
+                for (int j = 0; j < own.length; j++) {
+                    this.lineIndex[i][j] = groupLine[own[j]];
+                }
+            }
+            this.most = new int[members.length + 1][size];
+            for (int i = members.length - 1; i >= 0; i--) {
+                this.most[i] = this.most[i + 1].clone();
+                for (Key usage : this.components[i].byUsage.keySet()) {
+                    int[] own = this.lineIndex[i];
+                    for (int j = 0; j < own.length; j++) {
+                        this.most[i][own[j]] = Math.max(this.most[i][own[j]],
+                                this.most[i + 1][own[j]] + usage.values()[j]);
+                    }
+                }
+            }
+            this.start = budget;
+            boolean reachable = true;
+            for (int i = 0; i < size; i++) {
+                reachable &= budget[i] <= this.most[0][i];
+            }
+            this.total = reachable ? count(0, budget) : 0;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return this.total == 0;
+        }
+
+        /**
+         * @param position next component to fit
+         * @param budget tents each group line still needs
+         * @return ways to fit the rest, at most Long.MAX_VALUE
+         */
+        private long count(int position, int[] budget) {
+            if (position == this.components.length) {
+                return 1;
+            }
+            Key key = key(position, budget);
+            Long known = this.ways.get(key);
+            if (known != null) {
+                return known;
+            }
+            configCount.increment();
+            long result = 0;
+            for (Map.Entry<Key, List<int[]>> usage : this.components[position].byUsage.entrySet()) {
+                int[] rest = spend(position, budget, usage.getKey().values());
+                if (rest == null) {
+                    continue;
+                }
+                long finish = count(position + 1, rest);
+                if (finish > 0) {
+                    long here = usage.getValue().size();
+                    result = finish > (Long.MAX_VALUE - result) / here ? Long.MAX_VALUE :
+                            result + here * finish;
+                }
+            }
+            this.ways.put(key, result);
+            return result;
+        }
+
+        /**
+         * @param position component taking a line usage
+         * @param budget tents each group line still needs
+         * @param usage tents the component puts in each of its lines
+         * @return the budget left, or null if the usage doesn't fit or leaves
+         * a line needing more than the components after can give it
+         */
+        private int[] spend(int position, int[] budget, int[] usage) {
+            int[] rest = budget.clone();
+            int[] index = this.lineIndex[position];
+            int[] most = this.most[position + 1];
+            for (int j = 0; j < index.length; j++) {
+                rest[index[j]] -= usage[j];
+                if (rest[index[j]] < 0 || rest[index[j]] > most[index[j]]) {
+                    return null;
+                }
+            }
+            return rest;
+        }
+
+        /**
+         * @param position next component to fit
+         * @param budget tents each group line still needs
+         * @return a key for both
+         */
+        private Key key(int position, int[] budget) {
+            int[] values = Arrays.copyOf(budget, budget.length + 1);
+            values[budget.length] = position;
+            return new Key(values);
+        }
+
+        @Override
+        public boolean forEach(char[] board, BooleanSupplier next) {
+            return fit(0, this.start, board, next);
+        }
+
+        /**
+         * puts each layout of a component that leaves the rest a way to
+         * finish on the board in turn, and goes on to the next
+         * @param position component to fit
+         * @param budget tents each group line still needs
+         * @param board the board
+         * @param next goes on to the other groups; returns true to stop
+         * @return true if next asked to stop
+         */
+        private boolean fit(int position, int[] budget, char[] board, BooleanSupplier next) {
+            if (position == this.components.length) {
+                return next.getAsBoolean();
+            }
+            for (Map.Entry<Key, List<int[]>> usage : this.components[position].byUsage.entrySet()) {
+                int[] rest = spend(position, budget, usage.getKey().values());
+                if (rest == null || count(position + 1, rest) == 0) {
+                    continue;
+                }
+                for (int[] tents : usage.getValue()) {
+                    mark(board, tents, TENT);
+                    boolean stop = fit(position + 1, rest, board, next);
+                    mark(board, tents, EMPTY);
+                    if (stop) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package tentsandtrees.backtracker;
+
+/**
+ * The 64 bit scrambler behind the package's hashes: checkpoint puzzle
+ * fingerprints, Zobrist keys and canonical puzzle keys.
+ *
+ * @author Lyx Huston
+ */
+final class Hashing {
+    /**
+     * No instances.
+     */
+    private Hashing() {
+    }
+
+    /**
+     * SplitMix64 finalizer
+     * @param value value to scramble
+     * @return scrambled value
+     */
+    static long mix(long value) {
+        long z = value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
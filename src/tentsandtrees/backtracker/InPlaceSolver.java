@@ -0,0 +1,996 @@
+package tentsandtrees.backtracker;
+
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static tentsandtrees.test.ITentsAndTreesTest.EMPTY;
+import static tentsandtrees.test.ITentsAndTreesTest.GRASS;
+import static tentsandtrees.test.ITentsAndTreesTest.TENT;
+import static tentsandtrees.test.ITentsAndTreesTest.TREE;
+
+/**
+ * Backtracking over a single mutable board.  Instead of copying a config for
+ * every successor, every tent placement and every max row/column change is
+ * written to an undo trail, and backtracking rolls the trail back to where
+ * the frame started.  All arrays are sized when the puzzle is loaded, so the
+ * search itself does not allocate.
+ * <p>
+ * With the static tree order, the tree order and required-move logic are
+ * the same as TentConfig, so the config count matches Backtracker on a
+ * TentConfig.  The most constrained order instead picks, at every frame, the
+ * remaining tree with the fewest valid directions, breaking ties on how many
+ * other trees it can interfere with.  Trees sit in an indexed heap whose keys
+ * are updated only for the trees around each placed or removed tent.
+ * <p>
+ * A LinePropagator can be plugged in; the grass it finds after every frame
+ * is written to the board and the trail like any other change.
+ *
+ * @author Lyx Huston
+ */
+public class InPlaceSolver implements Solver {
+    /**
+     * Order to visit the trees in.
+     */
+    public enum TreeOrder {
+        /** reverse read order, same as TentConfig */
+        STATIC,
+        /** fewest valid directions first, then most interfering trees */
+        MOST_CONSTRAINED
+    }
+
+    /** trail entry kind: a tent was placed, value is the cell */
+    private static final int TRAIL_TENT = 0;
+    /** trail entry kind: max row counts were lowered, value is the row */
+    private static final int TRAIL_MAX_ROW = 1;
+    /** trail entry kind: max column counts were lowered, value is the column */
+    private static final int TRAIL_MAX_COL = 2;
+    /** trail entry kind: a tree was given its tent, value is the tree */
+    private static final int TRAIL_TREE = 3;
+    /** trail entry kind: propagation marked a cell grass, value is the cell */
+    private static final int TRAIL_GRASS = 4;
+    /** bits used for the kind of a trail entry */
+    private static final int TRAIL_KIND_BITS = 3;
+    /** mask for the kind of a trail entry */
+    private static final int TRAIL_KIND_MASK = (1 << TRAIL_KIND_BITS) - 1;
+
+    /** direction to column change look array, same as TentConfig */
+    private static final int[] dirToCol = {0, 1, 1, 1, 0, -1, -1, -1};
+    /** direction to row change look array, same as TentConfig */
+    private static final int[] dirToRow = {1, 1, 0, -1, -1, -1, 0, 1};
+
+    /** Should debug output be enabled? */
+    private final boolean debug;
+    /** order to visit trees in */
+    private final TreeOrder order;
+    /** counts number of configurations generated */
+    private long configCount;
+    /** prune counters */
+    private final SearchStats stats = new SearchStats();
+    /** propagation run after every frame, null if off */
+    private LinePropagator propagator;
+    /** where progress is published, null if nowhere */
+    private SearchMetrics metrics;
+    /** config count at the last search event */
+    private long lastEvent;
+    /** frames popped since the last push */
+    private int popped;
+    /** deepest frame this search */
+    private int deepest;
+
+    /** square dimension of field */
+    private int dim;
+    /** number of tents per row */
+    private int[] tentsPerRow;
+    /** number of tents per column */
+    private int[] tentsPerColumn;
+    /** cells, row by row */
+    private char[] board;
+    /** rows of the trees, in search order */
+    private int[] treeRows;
+    /** columns of the trees, in search order */
+    private int[] treeCols;
+    /** check against number of tents per row */
+    private int[] checkTentsPerRow;
+    /** check against number of tents per column */
+    private int[] checkTentsPerColumn;
+    /** the maximum number of tents that can still be placed in a row */
+    private int[] maxTentsPerRow;
+    /** the maximum number of tents that can still be placed in a column */
+    private int[] maxTentsPerColumn;
+    /** number of trees that have their tent */
+    private int assigned;
+    /** whether each tree has its tent */
+    private boolean[] hasTent;
+    /** tent cell of each tree that has one, by tree number in read order */
+    private int[] pairing;
+    /** the puzzle, for telling repeated goals apart */
+    private PuzzleDefinition definition;
+    /** scratch board for propagation */
+    private char[] scratchCells;
+    /** scratch row counts for propagation */
+    private int[] scratchRowNeed;
+    /** scratch column counts for propagation */
+    private int[] scratchColNeed;
+    /** scratch cells next to remaining trees for propagation */
+    private boolean[] scratchClaimable;
+    /** trees without a tent, most constrained order only */
+    private TreeHeap remaining;
+    /** number of other trees each tree can interfere with */
+    private int[] degree;
+    /** largest degree of any tree */
+    private int maxDegree;
+    /** start of each row's trees in rowTrees, dim + 1 long */
+    private int[] rowStart;
+    /** trees sorted by row */
+    private int[] rowTrees;
+    /** start of each column's trees in colTrees, dim + 1 long */
+    private int[] colStart;
+    /** trees sorted by column */
+    private int[] colTrees;
+
+    /** undo trail, value shifted over the kind */
+    private int[] trail;
+    /** number of entries on the trail */
+    private int trailSize;
+    /** tree each frame is placing around */
+    private int[] frameTree;
+    /** direction each frame is looking at */
+    private int[] frameOn;
+    /** how much each frame steps when turning */
+    private int[] frameStep;
+    /** direction each frame started looking at */
+    private int[] frameStart;
+    /** trail size when each frame was entered */
+    private int[] frameMark;
+
+    /**
+     * Initialize a new in place solver using the static tree order.
+     *
+     * @param debug Is debugging output enabled?
+     */
+    public InPlaceSolver(boolean debug) {
+        this(debug, TreeOrder.STATIC);
+    }
+
+    /**
+     * Initialize a new in place solver.
+     *
+     * @param debug Is debugging output enabled?
+     * @param order order to visit trees in
+     */
+    public InPlaceSolver(boolean debug, TreeOrder order) {
+        this.debug = debug;
+        this.order = order;
+        if (this.debug) {
+            System.out.println("InPlaceSolver debugging enabled...");
+        }
+        this.configCount = 0;
+    }
+
+    /**
+     * Copies the puzzle out of an initial configuration and sizes every
+     * array the search needs.  Tents the configuration may already have
+     * placed are ignored, the search finds them again.
+     *
+     * @param config the initial configuration
+     */
+    private void load(ITentsAndTreesTest config) {
+        SearchEvents.PuzzleLoad event = new SearchEvents.PuzzleLoad();
+        event.begin();
+        this.dim = config.getDIM();
+        this.tentsPerRow = new int[this.dim];
+        this.tentsPerColumn = new int[this.dim];
+        for (int i = 0; i < this.dim; i++) {
+            this.tentsPerRow[i] = config.getTentsRow(i);
+            this.tentsPerColumn[i] = config.getTentsCol(i);
+        }
+        this.checkTentsPerRow = this.tentsPerRow.clone();
+        this.checkTentsPerColumn = this.tentsPerColumn.clone();
+        this.maxTentsPerRow = new int[this.dim];
+        this.maxTentsPerColumn = new int[this.dim];
+        this.board = new char[this.dim * this.dim];
+        int trees = 0;
+        for (int row = 0; row < this.dim; row++) {
+            for (int col = 0; col < this.dim; col++) {
+                char cell = config.getCell(row, col);
+                if (cell == TREE) {
+                    trees++;
+                    this.board[row * this.dim + col] = TREE;
+                    changeMaxRow(row, 1);
+                    changeMaxCol(col, 1);
+                } else {
+                    this.board[row * this.dim + col] = EMPTY;
+                }
+            }
+        }
+        // reverse read order, the same order TentConfig builds its list in
+        this.treeRows = new int[trees];
+        this.treeCols = new int[trees];
+        for (int cell = this.board.length - 1, tree = 0; cell >= 0; cell--) {
+            if (this.board[cell] == TREE) {
+                this.treeRows[tree] = cell / this.dim;
+                this.treeCols[tree] = cell % this.dim;
+                tree++;
+            }
+        }
+        this.assigned = 0;
+        this.hasTent = new boolean[trees];
+        this.pairing = new int[trees];
+        this.definition = PuzzleDefinition.of(config);
+        this.scratchCells = new char[this.board.length];
+        this.scratchRowNeed = new int[this.dim];
+        this.scratchColNeed = new int[this.dim];
+        this.scratchClaimable = new boolean[this.board.length];
+        this.trail = new int[4 * trees + this.board.length];
+        this.trailSize = 0;
+        this.frameTree = new int[trees + 1];
+        this.frameOn = new int[trees + 1];
+        this.frameStep = new int[trees + 1];
+        this.frameStart = new int[trees + 1];
+        this.frameMark = new int[trees + 1];
+        if (this.order == TreeOrder.MOST_CONSTRAINED) {
+            loadOrdering();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = getClass().getSimpleName();
+            event.dim = this.dim;
+            event.trees = trees;
+            event.commit();
+        }
+    }
+
+    /**
+     * Builds the row and column tree lists, the interference degrees, and
+     * the heap of remaining trees.
+     */
+    private void loadOrdering() {
+        int trees = this.treeRows.length;
+        this.rowStart = new int[this.dim + 1];
+        this.colStart = new int[this.dim + 1];
+        for (int tree = 0; tree < trees; tree++) {
+            this.rowStart[this.treeRows[tree] + 1]++;
+            this.colStart[this.treeCols[tree] + 1]++;
+        }
+        for (int i = 0; i < this.dim; i++) {
+            this.rowStart[i + 1] += this.rowStart[i];
+            this.colStart[i + 1] += this.colStart[i];
+        }
+        this.rowTrees = new int[trees];
+        this.colTrees = new int[trees];
+        int[] rowFill = this.rowStart.clone();
+        int[] colFill = this.colStart.clone();
+        for (int tree = 0; tree < trees; tree++) {
+            this.rowTrees[rowFill[this.treeRows[tree]]++] = tree;
+            this.colTrees[colFill[this.treeCols[tree]]++] = tree;
+        }
+
+        // two trees interfere if a cell next to one is the same as, or
+        // touches, a cell next to the other
+        this.degree = new int[trees];
+        this.maxDegree = 0;
+        for (int tree = 0; tree < trees; tree++) {
+            int row = this.treeRows[tree];
+            for (int other = this.rowStart[Math.max(0, row - 3)];
+                 other < this.rowStart[Math.min(this.dim, row + 4)]; other++) {
+                int otherTree = this.rowTrees[other];
+                if (otherTree != tree && interferes(tree, otherTree)) {
+                    this.degree[tree]++;
+                }
+            }
+            this.maxDegree = Math.max(this.maxDegree, this.degree[tree]);
+        }
+
+        this.remaining = new TreeHeap(trees);
+        for (int tree = 0; tree < trees; tree++) {
+            this.remaining.insert(tree, constraintKey(tree));
+        }
+    }
+
+    /**
+     * checks if two trees compete for cells, or for cells next to each other
+     * @param tree a tree
+     * @param other another tree
+     * @return true if a tent for one can block a tent for the other
+     */
+    private boolean interferes(int tree, int other) {
+        for (int direction = 0; direction < 4; direction++) {
+            int row = this.treeRows[tree] + dirToRow[direction * 2];
+            int col = this.treeCols[tree] + dirToCol[direction * 2];
+            if (!onBoard(row, col) || this.board[row * this.dim + col] == TREE) {
+                continue;
+            }
+            for (int otherDirection = 0; otherDirection < 4; otherDirection++) {
+                int otherRow = this.treeRows[other] + dirToRow[otherDirection * 2];
+                int otherCol = this.treeCols[other] + dirToCol[otherDirection * 2];
+                if (onBoard(otherRow, otherCol) &&
+                        this.board[otherRow * this.dim + otherCol] != TREE &&
+                        Math.abs(row - otherRow) <= 1 && Math.abs(col - otherCol) <= 1) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param row a row
+     * @param col a column
+     * @return true if the cell is on the board
+     */
+    private boolean onBoard(int row, int col) {
+        return row >= 0 && row < this.dim && col >= 0 && col < this.dim;
+    }
+
+    /**
+     * Heap key of a tree, smaller is more constrained: number of valid
+     * directions first, then larger degree.
+     * @param tree the tree
+     * @return its key
+     */
+    private int constraintKey(int tree) {
+        int valid = 0;
+        for (int direction = 0; direction < 4; direction++) {
+            if (validPlace(tree, direction)) {
+                valid++;
+            }
+        }
+        return valid * (this.maxDegree + 1) + this.maxDegree - this.degree[tree];
+    }
+
+    /**
+     * Refreshes the keys of every remaining tree a tent at a cell could
+     * affect: trees within two rows or two columns of it.  That covers the
+     * cells around the tent and the rows and columns whose counts changed.
+     * @param cell the cell a tent was placed on or removed from
+     */
+    private void refreshAround(int cell) {
+        int row = cell / this.dim;
+        int col = cell % this.dim;
+        for (int at = this.rowStart[Math.max(0, row - 2)];
+             at < this.rowStart[Math.min(this.dim, row + 3)]; at++) {
+            refresh(this.rowTrees[at]);
+        }
+        for (int at = this.colStart[Math.max(0, col - 2)];
+             at < this.colStart[Math.min(this.dim, col + 3)]; at++) {
+            refresh(this.colTrees[at]);
+        }
+    }
+
+    /**
+     * refreshes the key of a tree if it is still remaining
+     * @param tree the tree
+     */
+    private void refresh(int tree) {
+        if (this.remaining.contains(tree)) {
+            this.remaining.update(tree, constraintKey(tree));
+        }
+    }
+
+    /**
+     * picks the next tree to place a tent for
+     * @return the tree, or -1 if every tree has a tent
+     */
+    private int selectTree() {
+        if (this.order == TreeOrder.STATIC) {
+            return this.assigned < this.treeRows.length ? this.assigned : -1;
+        }
+        return this.remaining.isEmpty() ? -1 : this.remaining.peek();
+    }
+
+    /**
+     * Sets a propagator to run after every frame has placed its required
+     * tents.
+     *
+     * @param propagator the propagator, or null to turn propagation off
+     */
+    public void setPropagator(LinePropagator propagator) {
+        this.propagator = propagator;
+    }
+
+    /**
+     * Publishes the progress of every later search.
+     *
+     * @param metrics where progress goes, or null for nowhere
+     */
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the prune counters.
+     *
+     * @return the search stats
+     */
+    public SearchStats getStats() {
+        return this.stats;
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid initial configuration, must implement
+     *               ITentsAndTreesTest so the puzzle can be read from it
+     * @return A solution config, or empty if no solution
+     */
+    @Override
+    public Optional<Configuration> solve(Configuration config) {
+        Configuration[] found = new Configuration[1];
+        search((ITentsAndTreesTest) config, SolutionCounter.first(solution -> found[0] = solution));
+        return Optional.ofNullable(found[0]);
+    }
+
+    /**
+     * Keeps searching past each goal, handing every solution to the
+     * consumer as a snapshot, until the search is exhausted or the limit is
+     * reached.
+     *
+     * @param config A valid initial configuration, must implement
+     *               ITentsAndTreesTest
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    @Override
+    public long countSolutions(Configuration config, long limit, Consumer<Configuration> consumer) {
+        return countPuzzleSolutions((ITentsAndTreesTest) config, limit, consumer);
+    }
+
+    /**
+     * Same as countSolutions, for a puzzle that isn't a configuration, such
+     * as a freshly generated board.  Only the trees and counts are read.
+     *
+     * @param puzzle the puzzle
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    public long countPuzzleSolutions(ITentsAndTreesTest puzzle, long limit,
+                                     Consumer<Configuration> consumer) {
+        SolutionCounter counter = new SolutionCounter(limit, consumer);
+        search(puzzle, counter);
+        return counter.getCount();
+    }
+
+    /**
+     * runs the search, offering a snapshot of each goal to the counter and
+     * backing out of it until the counter says to stop, telling the metrics
+     * when it starts and ends
+     * @param puzzle the puzzle
+     * @param counter where goals go
+     */
+    private void search(ITentsAndTreesTest puzzle, SolutionCounter counter) {
+        SearchEvents.Search event = new SearchEvents.Search();
+        event.begin();
+        long start = this.configCount;
+        this.lastEvent = start;
+        this.popped = 0;
+        this.deepest = 0;
+        if (this.metrics != null) {
+            this.metrics.start(this.configCount, this.stats);
+        }
+        boolean exhausted = explore(puzzle, counter);
+        if (this.metrics != null) {
+            this.metrics.finish(this.configCount, exhausted);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.solver = getClass().getSimpleName() + " " + this.order.name().toLowerCase();
+            event.dim = this.dim;
+            event.nodes = this.configCount - start;
+            event.solutions = counter.getCount();
+            event.exhausted = exhausted;
+            event.commit();
+        }
+    }
+
+    /**
+     * the search itself, frame by frame
+     * @param puzzle the puzzle
+     * @param counter where goals go
+     * @return true if the whole tree was searched, false if the counter had
+     * enough or the thread was interrupted
+     */
+    private boolean explore(ITentsAndTreesTest puzzle, SolutionCounter counter) {
+        load(puzzle);
+        int trees = this.treeRows.length;
+        if (trees != sum(this.tentsPerRow) || trees != sum(this.tentsPerColumn)) {
+            return true;
+        }
+        int top = 0;
+        this.frameMark[0] = 0;
+        settle(0);
+        configCount++;
+        while (top >= 0) {
+            if (isGoal()) {
+                // other pairings of the same tents are reached too; when
+                // counting, only the first is a solution of its own
+                if (!counter.isCounting() || this.definition.isFirstPairing(this.pairing)) {
+                    solved(top);
+                    SolutionConfig solution = new SolutionConfig(this.dim,
+                            this.tentsPerRow, this.tentsPerColumn, this.board);
+                    if (this.debug) {
+                        System.out.print("Goal config: " + System.lineSeparator() + solution);
+                    }
+                    if (counter.offer(solution)) {
+                        return false;
+                    }
+                }
+                undo(this.frameMark[top]);
+                top--;
+                popped++;
+            } else if (hasNext(top)) {
+                int direction = this.frameOn[top];
+                this.frameOn[top] += this.frameStep[top];
+                int mark = this.trailSize;
+                placeTent(this.frameTree[top], direction);
+                top++;
+                this.frameMark[top] = mark;
+                settle(top);
+                configCount++;
+                pushed(top);
+                if ((configCount & INTERRUPT_CHECK_MASK) == 0 && interrupted(top)) {
+                    return false;
+                }
+            } else {
+                undo(this.frameMark[top]);
+                top--;
+                popped++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * called after every push: records a backtrack event if a burst of pops
+     * just ended, and a depth event if the search is deeper than before
+     * @param top the new top frame
+     */
+    private void pushed(int top) {
+        if (this.popped >= SearchEvents.BACKTRACK_BURST) {
+            SearchEvents.Backtrack event = new SearchEvents.Backtrack();
+            if (event.shouldCommit()) {
+                event.from = top - 1 + this.popped;
+                event.depth = top - 1;
+                event.tree = this.frameTree[top - 1];
+                event.nodes = sinceLastEvent();
+                event.commit();
+            }
+        }
+        this.popped = 0;
+        if (top > this.deepest) {
+            this.deepest = top;
+            SearchEvents.DepthMilestone event = new SearchEvents.DepthMilestone();
+            if (event.shouldCommit()) {
+                event.depth = top;
+                event.tree = this.frameTree[top - 1];
+                event.nodes = sinceLastEvent();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * records a solution event
+     * @param top the goal frame
+     */
+    private void solved(int top) {
+        SearchEvents.Solution event = new SearchEvents.Solution();
+        if (event.shouldCommit()) {
+            event.depth = top;
+            event.nodes = sinceLastEvent();
+            event.commit();
+        }
+    }
+
+    /**
+     * @return configs since the last search event, now the latest
+     */
+    private long sinceLastEvent() {
+        long nodes = this.configCount - this.lastEvent;
+        this.lastEvent = this.configCount;
+        return nodes;
+    }
+
+    /**
+     * called every INTERRUPT_CHECK_MASK + 1 configs: samples the metrics
+     * when it is their turn, then looks at the budget, or the interrupt flag
+     * if there is none
+     * @param top the top frame
+     * @return true if the search should stop
+     */
+    private boolean interrupted(int top) {
+        if (this.metrics != null && (this.configCount & SearchMetrics.SAMPLE_MASK) == 0) {
+            this.metrics.sample(this.configCount, top, explored(top));
+        }
+        return SolveBudget.shouldStop();
+    }
+
+    /**
+     * Estimates how much of the tree is behind the search, counting each of
+     * a frame's directions as an equal share of the frame's subtree.
+     * @param top the top frame
+     * @return fraction searched, 0 to 1
+     */
+    private double explored(int top) {
+        double fraction = 0;
+        double share = 1;
+        for (int frame = 0; frame < top; frame++) {
+            int step = this.frameStep[frame];
+            int options = (4 - this.frameStart[frame] + step - 1) / step;
+            int done = (this.frameOn[frame] - this.frameStart[frame]) / step - 1;
+            fraction += share * done / options;
+            share /= options;
+        }
+        return fraction;
+    }
+
+    /**
+     * adds up an array
+     * @param values the array
+     * @return the sum
+     */
+    private static int sum(int[] values) {
+        int total = 0;
+        for (int value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    /**
+     * pushes an entry onto the undo trail
+     * @param kind what was changed
+     * @param value where it was changed
+     */
+    private void record(int kind, int value) {
+        this.trail[this.trailSize++] = (value << TRAIL_KIND_BITS) | kind;
+    }
+
+    /**
+     * rolls back the trail until it is the given size
+     * @param mark trail size to roll back to
+     */
+    private void undo(int mark) {
+        while (this.trailSize > mark) {
+            int entry = this.trail[--this.trailSize];
+            int value = entry >>> TRAIL_KIND_BITS;
+            switch (entry & TRAIL_KIND_MASK) {
+                case TRAIL_TENT -> {
+                    this.board[value] = EMPTY;
+                    this.checkTentsPerRow[value / this.dim] += 1;
+                    this.checkTentsPerColumn[value % this.dim] += 1;
+                    if (this.remaining != null) {
+                        refreshAround(value);
+                    }
+                }
+                case TRAIL_MAX_ROW -> changeMaxRow(value, 1);
+                case TRAIL_MAX_COL -> changeMaxCol(value, 1);
+                case TRAIL_GRASS -> {
+                    this.board[value] = EMPTY;
+                    if (this.remaining != null) {
+                        refreshAround(value);
+                    }
+                }
+                case TRAIL_TREE -> {
+                    this.assigned--;
+                    this.hasTent[value] = false;
+                    if (this.remaining != null) {
+                        this.remaining.insert(value, constraintKey(value));
+                    }
+                }
+                default -> throw new IllegalStateException("Bad trail entry " + entry);
+            }
+        }
+    }
+
+    /**
+     * places a tent for a tree, recording every change on the trail
+     * @param tree tree placing for
+     * @param direction direction from the tree
+     */
+    private void placeTent(int tree, int direction) {
+        int row = this.treeRows[tree];
+        int col = this.treeCols[tree];
+        int lookRow = row + dirToRow[direction * 2];
+        int lookCol = col + dirToCol[direction * 2];
+        this.assigned++;
+        this.hasTent[tree] = true;
+        if (this.remaining != null) {
+            this.remaining.remove(tree);
+        }
+        record(TRAIL_TREE, tree);
+        this.board[lookRow * this.dim + lookCol] = TENT;
+        this.pairing[this.treeRows.length - 1 - tree] = lookRow * this.dim + lookCol;
+        this.checkTentsPerRow[lookRow] -= 1;
+        this.checkTentsPerColumn[lookCol] -= 1;
+        record(TRAIL_TENT, lookRow * this.dim + lookCol);
+        if (this.remaining != null) {
+            refreshAround(lookRow * this.dim + lookCol);
+        }
+        changeMaxRow(row, -1);
+        record(TRAIL_MAX_ROW, row);
+        changeMaxCol(col, -1);
+        record(TRAIL_MAX_COL, col);
+    }
+
+    /**
+     * changes values in max detector arrays
+     * @param row row centered at
+     * @param value value to change by
+     */
+    private void changeMaxRow(int row, int value) {
+        this.maxTentsPerRow[row] += value;
+        if (row + 1 < this.dim) {
+            this.maxTentsPerRow[row + 1] += value;
+        }
+        if (row > 0) {
+            this.maxTentsPerRow[row - 1] += value;
+        }
+    }
+
+    /**
+     * changes values in max detector arrays
+     * @param col column centered at
+     * @param value value to change by
+     */
+    private void changeMaxCol(int col, int value) {
+        this.maxTentsPerColumn[col] += value;
+        if (col + 1 < this.dim) {
+            this.maxTentsPerColumn[col + 1] += value;
+        }
+        if (col > 0) {
+            this.maxTentsPerColumn[col - 1] += value;
+        }
+    }
+
+    /**
+     * places the frame's required tents, then alternates propagation and
+     * required tents until neither changes the board
+     * @param frame the frame
+     */
+    private void settle(int frame) {
+        skipRequired(frame);
+        while (this.propagator != null && this.frameTree[frame] >= 0) {
+            SearchEvents.Propagation event = new SearchEvents.Propagation();
+            event.begin();
+            int grass = propagate();
+            event.end();
+            if (event.shouldCommit()) {
+                event.depth = this.assigned;
+                event.tree = this.frameTree[frame];
+                event.grass = Math.max(grass, 0);
+                event.contradiction = grass < 0;
+                event.commit();
+            }
+            if (grass < 0) {
+                this.frameTree[frame] = -1;
+                return;
+            }
+            if (grass == 0) {
+                return;
+            }
+            skipRequired(frame);
+        }
+    }
+
+    /**
+     * runs the propagator over a scratch copy of the board and writes the
+     * grass it finds back to the board and the trail
+     * @return number of cells made grass, or -1 if the board can't be solved
+     */
+    private int propagate() {
+        System.arraycopy(this.board, 0, this.scratchCells, 0, this.board.length);
+        System.arraycopy(this.checkTentsPerRow, 0, this.scratchRowNeed, 0, this.dim);
+        System.arraycopy(this.checkTentsPerColumn, 0, this.scratchColNeed, 0, this.dim);
+        Arrays.fill(this.scratchClaimable, false);
+        for (int tree = 0; tree < this.treeRows.length; tree++) {
+            if (this.hasTent[tree]) {
+                continue;
+            }
+            for (int direction = 0; direction < 4; direction++) {
+                int row = this.treeRows[tree] + dirToRow[direction * 2];
+                int col = this.treeCols[tree] + dirToCol[direction * 2];
+                if (onBoard(row, col)) {
+                    this.scratchClaimable[row * this.dim + col] = true;
+                }
+            }
+        }
+        if (this.propagator.propagate(this.dim, this.scratchCells, this.scratchRowNeed,
+                this.scratchColNeed, this.scratchClaimable) < 0) {
+            this.stats.prune(SearchStats.PruneReason.PROPAGATION);
+            return -1;
+        }
+        int grass = 0;
+        for (int cell = 0; cell < this.board.length; cell++) {
+            if (this.scratchCells[cell] == GRASS && this.board[cell] == EMPTY) {
+                this.board[cell] = GRASS;
+                record(TRAIL_GRASS, cell);
+                grass++;
+                if (this.remaining != null) {
+                    refreshAround(cell);
+                }
+            }
+        }
+        return grass;
+    }
+
+    /**
+     * picks the frame's tree, placing tents while there is a single required
+     * move.  With the static order a move is required when the row and column
+     * counts leave one direction, as in TentConfig.  With the most constrained
+     * order it is also required when only one direction is valid at all.
+     * @param frame the frame
+     */
+    private void skipRequired(int frame) {
+        int tree;
+        while ((tree = selectTree()) >= 0) {
+            this.frameTree[frame] = tree;
+            checkRequired(frame);
+            int forced = forcedDirection(frame);
+            if (forced < 0) {
+                return;
+            }
+            placeTent(tree, forced);
+        }
+        this.frameTree[frame] = -1;
+    }
+
+    /**
+     * finds the frame's single required direction
+     * @param frame the frame, after checkRequired()
+     * @return the direction, or -1 if the frame has to branch or is dead
+     */
+    private int forcedDirection(int frame) {
+        int tree = this.frameTree[frame];
+        int on = this.frameOn[frame];
+        int step = this.frameStep[frame];
+        if (on >= 4) {
+            return -1;
+        }
+        if (this.order == TreeOrder.STATIC) {
+            return step == 4 && validPlace(tree, on) ? on : -1;
+        }
+        int forced = -1;
+        for (int direction = on; direction < 4; direction += step) {
+            if (validPlace(tree, direction)) {
+                if (forced >= 0) {
+                    return -1;
+                }
+                forced = direction;
+            }
+        }
+        return forced;
+    }
+
+    /**
+     * checks if there is a required move forwards for the frame's tree, and
+     * sets where the frame should start looking and how it steps.  Same table
+     * as TentConfig.checkRequired().
+     * @param frame the frame
+     */
+    private void checkRequired(int frame) {
+        int row = this.treeRows[this.frameTree[frame]];
+        int col = this.treeCols[this.frameTree[frame]];
+        int requiredConstant =
+                this.checkRequiredColumn(col - 1) +
+                        this.checkRequiredColumn(col) * 2 +
+                        this.checkRequiredColumn(col + 1) * 4 +
+                        this.checkRequiredRow(row - 1) * 8 +
+                        this.checkRequiredRow(row) * 16 +
+                        this.checkRequiredRow(row + 1) * 32;
+        int on;
+        int step = 4;
+        switch (requiredConstant) {
+            case 0 -> { on = 0; step = 1; }
+            case 16 -> { on = 1; step = 2; }
+            case 1, 17 -> on = 3;
+            case 4, 20 -> on = 1;
+            case 2 -> { on = 0; step = 2; }
+            case 8, 10 -> on = 2;
+            case 32, 34 -> on = 0;
+            default -> on = 4;
+        }
+        this.frameOn[frame] = on;
+        this.frameStep[frame] = step;
+        this.frameStart[frame] = on;
+    }
+
+    /**
+     * checks if the solver has to place a tent in a given row
+     * @param row row to check
+     * @return 1 if it has to place a tent there, 0 otherwise
+     */
+    private int checkRequiredRow(int row) {
+        if (row < 0 || row >= this.dim) {
+            return 0;
+        }
+        int max = this.maxTentsPerRow[row];
+        return max > 0 && max == this.checkTentsPerRow[row] ? 1 : 0;
+    }
+
+    /**
+     * checks if the solver has to place a tent in a given column
+     * @param col column to check
+     * @return 1 if it has to place a tent there, 0 otherwise
+     */
+    private int checkRequiredColumn(int col) {
+        if (col < 0 || col >= this.dim) {
+            return 0;
+        }
+        int max = this.maxTentsPerColumn[col];
+        return max > 0 && max == this.checkTentsPerColumn[col] ? 1 : 0;
+    }
+
+    /**
+     * moves the frame's direction forward to the next valid placement
+     * @param frame the frame
+     * @return true if there is a valid placement left
+     */
+    private boolean hasNext(int frame) {
+        int tree = this.frameTree[frame];
+        if (tree < 0) {
+            return false;
+        }
+        while (this.frameOn[frame] < 4) {
+            if (validPlace(tree, this.frameOn[frame])) {
+                return true;
+            }
+            this.frameOn[frame] += this.frameStep[frame];
+        }
+        return false;
+    }
+
+    /**
+     * checks if every tent has been placed
+     * @return true if the board is a solution
+     */
+    private boolean isGoal() {
+        if (this.assigned != this.treeRows.length) {
+            return false;
+        }
+        for (int i = 0; i < this.dim; i++) {
+            if (this.checkTentsPerRow[i] != 0 || this.checkTentsPerColumn[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * checks if it's ok to place in a direction from a tree
+     * @param tree the tree
+     * @param direction direction to look from tree
+     * @return if it's ok to place there
+     */
+    private boolean validPlace(int tree, int direction) {
+        int row = this.treeRows[tree] + dirToRow[direction * 2];
+        int col = this.treeCols[tree] + dirToCol[direction * 2];
+        if (row < 0 || row >= this.dim || col < 0 || col >= this.dim) {
+            return false;
+        }
+        if (this.board[row * this.dim + col] != EMPTY) {
+            return false;
+        }
+        if (this.checkTentsPerRow[row] <= 0 || this.checkTentsPerColumn[col] <= 0) {
+            return false;
+        }
+        for (int look = 0; look < 8; look++) {
+            int lookRow = row + dirToRow[look];
+            int lookCol = col + dirToCol[look];
+            if (lookRow >= 0 && lookRow < this.dim && lookCol >= 0 &&
+                    lookCol < this.dim && this.board[lookRow * this.dim + lookCol] == TENT) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long getConfigCount() {
+        return this.configCount;
+    }
+}
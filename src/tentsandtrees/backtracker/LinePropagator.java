@@ -0,0 +1,244 @@
+package tentsandtrees.backtracker;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static tentsandtrees.test.ITentsAndTreesTest.EMPTY;
+import static tentsandtrees.test.ITentsAndTreesTest.GRASS;
+import static tentsandtrees.test.ITentsAndTreesTest.TENT;
+
+/**
+ * Deduces cells from the row and column counts, running until nothing more
+ * can be deduced.  Works on a scratch copy of a board:
+ * <ul>
+ *     <li>an empty cell no remaining tree is next to becomes grass</li>
+ *     <li>an empty cell next to a tent becomes grass</li>
+ *     <li>the empty cells of a row or column that has all its tents become
+ *     grass</li>
+ *     <li>a row or column that needs as many tents as its empty cells can
+ *     hold gets them: tents can't touch, so a run of n empty cells holds at
+ *     most (n + 1) / 2 tents, and when every run has to be full, odd runs
+ *     alternate tent, grass, tent</li>
+ * </ul>
+ * The tents it forces aren't tied to a tree, so callers should only keep the
+ * grass it finds.  The grass is still sound: it follows from the forced
+ * tents, which every solution has.
+ * <p>
+ * The propagator itself only keeps counters, so one instance can be shared
+ * by every config of a search and by several threads.
+ *
+ * @author Lyx Huston
+ */
+public class LinePropagator {
+    /**
+     * Rules the propagator fixes cells with.
+     */
+    public enum Rule {
+        /** no remaining tree is next to the cell */
+        UNCLAIMED_CELL,
+        /** the cell touches a tent */
+        TENT_NEIGHBOUR,
+        /** the row or column already has all its tents */
+        SATISFIED_LINE,
+        /** the row or column needs every tent its empty cells can hold */
+        FORCED_LINE
+    }
+
+    /** number of cells fixed, indexed by rule ordinal */
+    private final LongAdder[] fixed;
+    /** number of times propagation found a contradiction */
+    private final LongAdder contradictions = new LongAdder();
+
+    /**
+     * Creates a propagator with counters at zero.
+     */
+    public LinePropagator() {
+        this.fixed = new LongAdder[Rule.values().length];
+        for (int i = 0; i < this.fixed.length; i++) {
+            this.fixed[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Runs every rule until no more cells change.
+     *
+     * @param dim square dimension of the board
+     * @param cells scratch board row by row, updated with grass and forced tents
+     * @param rowNeed tents each row still needs, lowered for forced tents
+     * @param colNeed tents each column still needs, lowered for forced tents
+     * @param claimable whether each cell is next to a tree that still needs
+     *                  its tent
+     * @return number of cells fixed, or -1 if the board can't be solved
+     */
+    public int propagate(int dim, char[] cells, int[] rowNeed, int[] colNeed,
+                         boolean[] claimable) {
+        int total = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] == EMPTY && !claimable[cell]) {
+                cells[cell] = GRASS;
+                total++;
+                this.fixed[Rule.UNCLAIMED_CELL.ordinal()].increment();
+            }
+        }
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] == TENT) {
+                total += grassAround(dim, cells, cell);
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int line = 0; line < 2 * dim; line++) {
+                int result = solveLine(dim, cells, rowNeed, colNeed, line);
+                if (result < 0) {
+                    this.contradictions.increment();
+                    return -1;
+                }
+                if (result > 0) {
+                    total += result;
+                    changed = true;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Applies the line rules to a row or column.
+     *
+     * @param dim square dimension of the board
+     * @param cells scratch board
+     * @param rowNeed tents each row still needs
+     * @param colNeed tents each column still needs
+     * @param line rows are 0 to dim - 1, columns dim to 2 * dim - 1
+     * @return number of cells fixed, or -1 on a contradiction
+     */
+    private int solveLine(int dim, char[] cells, int[] rowNeed, int[] colNeed, int line) {
+        boolean isRow = line < dim;
+        int index = isRow ? line : line - dim;
+        int need = isRow ? rowNeed[index] : colNeed[index];
+        int start = isRow ? index * dim : index;
+        int stride = isRow ? 1 : dim;
+        if (need < 0) {
+            return -1;
+        }
+        if (need == 0) {
+            int changed = 0;
+            for (int i = 0, cell = start; i < dim; i++, cell += stride) {
+                if (cells[cell] == EMPTY) {
+                    cells[cell] = GRASS;
+                    changed++;
+                }
+            }
+            this.fixed[Rule.SATISFIED_LINE.ordinal()].add(changed);
+            return changed;
+        }
+        int capacity = 0;
+        for (int i = 0, cell = start; i < dim; ) {
+            if (cells[cell] != EMPTY) {
+                i++;
+                cell += stride;
+                continue;
+            }
+            int run = 0;
+            while (i < dim && cells[cell] == EMPTY) {
+                run++;
+                i++;
+                cell += stride;
+            }
+            capacity += (run + 1) / 2;
+        }
+        if (capacity < need) {
+            return -1;
+        }
+        if (capacity > need) {
+            return 0;
+        }
+        // every run has to hold as many tents as it can, which pins down the
+        // odd runs
+        int changed = 0;
+        for (int i = 0, cell = start; i < dim; ) {
+            if (cells[cell] != EMPTY) {
+                i++;
+                cell += stride;
+                continue;
+            }
+            int runStart = cell;
+            int run = 0;
+            while (i < dim && cells[cell] == EMPTY) {
+                run++;
+                i++;
+                cell += stride;
+            }
+            if (run % 2 == 1) {
+                for (int j = 0; j < run; j += 2) {
+                    int tent = runStart + j * stride;
+                    cells[tent] = TENT;
+                    rowNeed[tent / dim]--;
+                    colNeed[tent % dim]--;
+                    changed++;
+                }
+            }
+        }
+        this.fixed[Rule.FORCED_LINE.ordinal()].add(changed);
+        for (int i = 0, cell = start; i < dim; i++, cell += stride) {
+            if (cells[cell] == TENT) {
+                changed += grassAround(dim, cells, cell);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * turns the empty cells around a tent into grass
+     * @param dim square dimension of the board
+     * @param cells scratch board
+     * @param cell the tent
+     * @return number of cells fixed
+     */
+    private int grassAround(int dim, char[] cells, int cell) {
+        int row = cell / dim;
+        int col = cell % dim;
+        int changed = 0;
+        for (int lookRow = Math.max(0, row - 1); lookRow <= Math.min(dim - 1, row + 1); lookRow++) {
+            for (int lookCol = Math.max(0, col - 1); lookCol <= Math.min(dim - 1, col + 1); lookCol++) {
+                int look = lookRow * dim + lookCol;
+                if (cells[look] == EMPTY) {
+                    cells[look] = GRASS;
+                    changed++;
+                }
+            }
+        }
+        this.fixed[Rule.TENT_NEIGHBOUR.ordinal()].add(changed);
+        return changed;
+    }
+
+    /**
+     * Gets the number of cells a rule has fixed.
+     * @param rule the rule
+     * @return cells fixed
+     */
+    public long getFixed(Rule rule) {
+        return this.fixed[rule.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of times propagation proved a board unsolvable.
+     * @return contradiction count
+     */
+    public long getContradictions() {
+        return this.contradictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (Rule rule : Rule.values()) {
+            result.append("Fixed by ").append(rule.name().toLowerCase())
+                    .append(": ").append(getFixed(rule))
+                    .append(System.lineSeparator());
+        }
+        result.append("Contradictions: ").append(getContradictions())
+                .append(System.lineSeparator());
+        return result.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package tentsandtrees.backtracker;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints a line of search metrics every so often, from a daemon thread of
+ * its own, until closed.  The search never waits on it.
+ *
+ * @author Lyx Huston
+ */
+public class MetricsReporter implements AutoCloseable {
+    /** the timer thread */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Starts reporting to standard error.
+     * @param metrics what to report
+     * @param seconds time between lines
+     */
+    public MetricsReporter(SearchMetrics metrics, double seconds) {
+        this(metrics, seconds, System.err);
+    }
+
+    /**
+     * Starts reporting.
+     * @param metrics what to report
+     * @param seconds time between lines
+     * @param out where the lines go
+     */
+    public MetricsReporter(SearchMetrics metrics, double seconds, PrintStream out) {
+        if (!(seconds > 0)) {
+            throw new IllegalArgumentException("Report interval must be positive, got " + seconds);
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = (long) (seconds * 1e9);
+        this.timer.scheduleAtFixedRate(() -> out.println(String.format("[%8.1fs] ",
+                metrics.getElapsedSeconds()) + metrics), period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops reporting.
+     */
+    @Override
+    public void close() {
+        this.timer.shutdownNow();
+    }
+}
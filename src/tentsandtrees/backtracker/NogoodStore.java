@@ -0,0 +1,195 @@
+package tentsandtrees.backtracker;
+
+import java.util.Arrays;
+
+/**
+ * A bounded store of learned nogoods: sets of placements, tree and
+ * direction, that can't all hold at once.  Each placement is one int,
+ * tree * 4 + direction.  Every nogood is listed under each of its
+ * placements, so checking whether a placement is ruled out only looks at
+ * the nogoods that mention it.
+ * <p>
+ * Nogoods that rule something out have their activity bumped, and the
+ * bump grows after every nogood learned so recent use counts for more.
+ * When the store is full the less active half is thrown away.
+ *
+ * @author Lyx Huston
+ */
+class NogoodStore {
+    /** activity bump growth per nogood learned, 1 / 0.95 */
+    private static final double DECAY = 1 / 0.95;
+    /** activities are scaled down once the bump passes this */
+    private static final double RESCALE = 1e100;
+
+    /** most nogoods kept at once */
+    private final int capacity;
+    /** longest nogood kept */
+    private final int maxLength;
+    /** placements of each nogood, null for a free slot */
+    private final int[][] nogoods;
+    /** activity of each nogood */
+    private final double[] activity;
+    /** ids of the nogoods mentioning each placement */
+    private final int[][] occurs;
+    /** number of ids listed for each placement */
+    private final int[] occursSize;
+    /** free slots, used as a stack */
+    private final int[] free;
+    /** number of free slots */
+    private int freeSize;
+    /** current activity bump */
+    private double bump = 1;
+    /** nogoods learned */
+    private long learned;
+    /** nogoods thrown away */
+    private long evicted;
+
+    /**
+     * Creates an empty store.
+     * @param placements number of placements, trees * 4
+     * @param capacity most nogoods kept at once, at least 2
+     * @param maxLength longest nogood kept
+     */
+    NogoodStore(int placements, int capacity, int maxLength) {
+        this.capacity = capacity;
+        this.maxLength = maxLength;
+        this.nogoods = new int[capacity][];
+        this.activity = new double[capacity];
+        this.occurs = new int[placements][];
+        this.occursSize = new int[placements];
+        this.free = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            this.free[i] = capacity - 1 - i;
+        }
+        this.freeSize = capacity;
+    }
+
+    /**
+     * Learns a nogood, making room if the store is full.
+     * @param placements the placements, owned by the store from now on
+     * @return true if it was kept, false if it was too long or empty
+     */
+    boolean add(int[] placements) {
+        if (placements.length == 0 || placements.length > this.maxLength) {
+            return false;
+        }
+        if (this.freeSize == 0) {
+            reduce();
+        }
+        int id = this.free[--this.freeSize];
+        this.nogoods[id] = placements;
+        this.activity[id] = this.bump;
+        for (int placement : placements) {
+            int[] list = this.occurs[placement];
+            if (list == null) {
+                list = this.occurs[placement] = new int[4];
+            } else if (this.occursSize[placement] == list.length) {
+                list = this.occurs[placement] = Arrays.copyOf(list, 2 * list.length);
+            }
+            list[this.occursSize[placement]++] = id;
+        }
+        this.learned++;
+        this.bump *= DECAY;
+        if (this.bump > RESCALE) {
+            for (int i = 0; i < this.capacity; i++) {
+                this.activity[i] /= RESCALE;
+            }
+            this.bump /= RESCALE;
+        }
+        return true;
+    }
+
+    /**
+     * Finds a nogood that rules a placement out: one that mentions it and
+     * whose other placements all hold.
+     * @param placement tree * 4 + direction
+     * @param assignment direction of each tree, -1 if it has none
+     * @return the nogood's placements, or null if none rules it out
+     */
+    int[] find(int placement, int[] assignment) {
+        int[] list = this.occurs[placement];
+        int size = this.occursSize[placement];
+        for (int i = 0; i < size; i++) {
+            int id = list[i];
+            int[] nogood = this.nogoods[id];
+            if (holds(nogood, placement, assignment)) {
+                this.activity[id] += this.bump;
+                return nogood;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return nogoods learned
+     */
+    long getLearned() {
+        return this.learned;
+    }
+
+    /**
+     * @return nogoods thrown away to make room
+     */
+    long getEvicted() {
+        return this.evicted;
+    }
+
+    /**
+     * @return nogoods kept right now
+     */
+    int size() {
+        return this.capacity - this.freeSize;
+    }
+
+    /**
+     * throws away the less active half of the nogoods
+     */
+    private void reduce() {
+        double[] sorted = this.activity.clone();
+        Arrays.sort(sorted);
+        double median = sorted[this.capacity / 2];
+        int toFree = this.capacity / 2;
+        for (int id = 0; id < this.capacity && toFree > 0; id++) {
+            if (this.activity[id] <= median) {
+                for (int placement : this.nogoods[id]) {
+                    unlist(placement, id);
+                }
+                this.nogoods[id] = null;
+                this.activity[id] = 0;
+                this.free[this.freeSize++] = id;
+                this.evicted++;
+                toFree--;
+            }
+        }
+    }
+
+    /**
+     * takes a nogood off a placement's list
+     * @param placement the placement
+     * @param id the nogood
+     */
+    private void unlist(int placement, int id) {
+        int[] list = this.occurs[placement];
+        for (int i = 0; i < this.occursSize[placement]; i++) {
+            if (list[i] == id) {
+                list[i] = list[--this.occursSize[placement]];
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param nogood a nogood
+     * @param except placement to skip
+     * @param assignment direction of each tree, -1 if it has none
+     * @return true if every other placement of the nogood holds
+     */
+    private static boolean holds(int[] nogood, int except, int[] assignment) {
+        for (int other : nogood) {
+            if (other != except && assignment[other >> 2] != (other & 3)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
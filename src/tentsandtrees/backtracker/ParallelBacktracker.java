@@ -0,0 +1,238 @@
+package tentsandtrees.backtracker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Backtracking split over a ForkJoinPool.  The first few levels of the
+ * search (one level per tree taken from the TreeNode list, forced trees
+ * are placed inside a level just like TentConfig does) each become their own
+ * task, and below that every task runs the same stack search as Backtracker.
+ * Idle workers steal the unstarted subtrees.  Goals go to a shared
+ * SolutionCounter; once it has enough (just one, for solve) every other task
+ * stops as soon as it sees that, and subtasks that haven't started are
+ * cancelled.  The same goes once the search's SolveBudget is spent, or the
+ * thread that started the search is interrupted; the workers look every
+ * INTERRUPT_CHECK_MASK + 1 configs.
+ * <p>
+ * Works on any configuration Backtracker can solve.  Configurations of one
+ * puzzle only read shared data while searching, so they can be expanded on
+ * different threads.
+ *
+ * @author Lyx Huston
+ */
+public class ParallelBacktracker implements Solver {
+    /** default number of levels to split into tasks */
+    public static final int DEFAULT_SPLIT_DEPTH = 4;
+
+    /** number of worker threads */
+    private final int parallelism;
+    /** number of levels split into tasks */
+    private final int splitDepth;
+    /** counts number of configurations generated, over every worker */
+    private final LongAdder configCount = new LongAdder();
+    /** where goals go during the current search */
+    private SolutionCounter counter;
+    /** budget of the current search, unlimited if it wasn't given one */
+    private SolveBudget budget;
+    /** set once the counter has enough solutions or the budget is spent */
+    private volatile boolean stopped;
+
+    /**
+     * Initialize a parallel backtracker using every available processor.
+     */
+    public ParallelBacktracker() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_SPLIT_DEPTH);
+    }
+
+    /**
+     * Initialize a parallel backtracker.
+     *
+     * @param parallelism number of worker threads
+     * @param splitDepth number of levels at the top of the search that are
+     *                   split into separate tasks
+     */
+    public ParallelBacktracker(int parallelism, int splitDepth) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.splitDepth = Math.max(0, splitDepth);
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid configuration
+     * @return A solution config, or empty if no solution
+     */
+    @Override
+    public Optional<Configuration> solve(Configuration config) {
+        Configuration[] found = new Configuration[1];
+        search(config, SolutionCounter.first(solution -> found[0] = solution));
+        return Optional.ofNullable(found[0]);
+    }
+
+    /**
+     * Searches every subtree for solutions until the search is exhausted or
+     * the limit is reached.  The consumer is called from the worker threads,
+     * one at a time.
+     *
+     * @param config A valid configuration
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    @Override
+    public long countSolutions(Configuration config, long limit, Consumer<Configuration> consumer) {
+        SolutionCounter solutions = new SolutionCounter(limit, consumer);
+        search(config, solutions);
+        return solutions.getCount();
+    }
+
+    /**
+     * runs the search on a fresh pool
+     * @param config A valid configuration
+     * @param solutions where goals go
+     */
+    private void search(Configuration config, SolutionCounter solutions) {
+        this.counter = solutions;
+        this.stopped = false;
+        SolveBudget given = SolveBudget.current();
+        this.budget = given != null ? given : SolveBudget.unlimited();
+        // binding makes this thread the owner, so interrupting it stops the workers
+        SolveBudget previous = this.budget.bind();
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            this.configCount.increment();
+            pool.invoke(new SearchTask(config, 0));
+        } finally {
+            pool.shutdownNow();
+            SolveBudget.unbind(previous);
+        }
+    }
+
+    /**
+     * hands a goal to the counter, unless counting and it repeats another
+     * goal's tents, stopping every worker once the counter has enough
+     * @param goal the goal
+     */
+    private void offer(Configuration goal) {
+        if (!(this.counter.isCounting() && goal.isRepeat()) && this.counter.offer(goal)) {
+            this.stopped = true;
+        }
+    }
+
+    /**
+     * Get the number of configurations processed by every worker.
+     *
+     * @return config count
+     */
+    @Override
+    public long getConfigCount() {
+        return this.configCount.sum();
+    }
+
+    /**
+     * Get the parallelism level.
+     *
+     * @return number of worker threads
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Searches below a single configuration.  Above the split depth the
+     * successors are forked as subtasks, below it the search runs on this
+     * thread.
+     */
+    private class SearchTask extends RecursiveAction {
+        /** RecursiveAction is Serializable, though tasks never are serialized */
+        private static final long serialVersionUID = 1L;
+
+        /** configuration to search below, already counted */
+        private final Configuration config;
+        /** level of the configuration in the search */
+        private final int depth;
+
+        /**
+         * @param config configuration to search below
+         * @param depth level of the configuration
+         */
+        private SearchTask(Configuration config, int depth) {
+            this.config = config;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (stopped) {
+                return;
+            }
+            if (this.depth >= splitDepth) {
+                searchSequential(this.config);
+                return;
+            }
+            if (this.config.isGoal()) {
+                offer(this.config);
+                return;
+            }
+            Iterator<?> successors = (Iterator<?>) this.config;
+            List<SearchTask> subtasks = new ArrayList<>();
+            while (successors.hasNext()) {
+                SearchTask task = new SearchTask((Configuration) successors.next(), this.depth + 1);
+                configCount.increment();
+                task.fork();
+                subtasks.add(task);
+            }
+            for (int i = subtasks.size() - 1; i >= 0; i--) {
+                subtasks.get(i).join();
+                if (stopped) {
+                    for (SearchTask task : subtasks) {
+                        task.cancel(false);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Same loop as Backtracker.countSolutions(), stopping early once the
+     * counter has enough solutions or the budget is spent.
+     *
+     * @param config configuration to search below, already counted
+     */
+    private void searchSequential(Configuration config) {
+        Deque<Configuration> configStack = new ArrayDeque<>();
+        configStack.push(config);
+        long pushed = 0;
+        while (!configStack.isEmpty() && !this.stopped) {
+            Configuration onConfig = configStack.peek();
+            if (onConfig.isGoal()) {
+                offer(onConfig);
+                configStack.pop();
+                continue;
+            }
+            Iterator<?> successors = (Iterator<?>) onConfig;
+            if (successors.hasNext()) {
+                configStack.push((Configuration) successors.next());
+                this.configCount.increment();
+                if ((++pushed & INTERRUPT_CHECK_MASK) == 0 && this.budget.spend(INTERRUPT_CHECK_MASK + 1)) {
+                    this.stopped = true;
+                }
+            } else {
+                configStack.pop();
+            }
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package tentsandtrees.backtracker;
+
+import tentsandtrees.io.PuzzleReader;
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static tentsandtrees.test.ITentsAndTreesTest.EMPTY;
+import static tentsandtrees.test.ITentsAndTreesTest.TREE;
+
+/**
+ * Everything about a puzzle that doesn't change while it is searched: the
+ * dimension, the row and column counts, where the trees are, and lookup
+ * tables worked out once so the search doesn't have to.  Immutable, so one
+ * definition can be shared by every configuration of a search, and by any
+ * number of searches on different threads.
+ * <p>
+ * Cells are numbered row by row, row * dim + col.  Trees are numbered in
+ * read order.  Sides of a tree use the search's direction order: south,
+ * east, north, west.
+ *
+ * @author Lyx Huston
+ */
+public final class PuzzleDefinition {
+    /** scratch arrays for isFirstPairing, one set per thread */
+    private static final ThreadLocal<PairingScratch> pairingScratch =
+            ThreadLocal.withInitial(PairingScratch::new);
+    /** row change for each side of a tree, S E N W */
+    private static final int[] SIDE_ROW = {1, 0, -1, 0};
+    /** column change for each side of a tree, S E N W */
+    private static final int[] SIDE_COL = {0, 1, 0, -1};
+
+    /** square dimension of field */
+    private final int dim;
+    /** number of tents per row */
+    private final int[] tentsPerRow;
+    /** number of tents per column */
+    private final int[] tentsPerColumn;
+    /** cells row by row, as read */
+    private final char[] cells;
+    /** row of each tree */
+    private final int[] treeRows;
+    /** column of each tree */
+    private final int[] treeCols;
+    /** cell on each side of each tree, tree * 4 + side, -1 off the board */
+    private final int[] sides;
+    /** where each cell's neighbours start in aroundRows/aroundCols; cell + 1
+     * is where they end */
+    private final int[] aroundStart;
+    /** rows of the up to 8 cells touching each cell */
+    private final int[] aroundRows;
+    /** columns of the up to 8 cells touching each cell */
+    private final int[] aroundCols;
+    /** cell each tree could put its tent in on each side, tree * 4 + side,
+     * -1 if off the board, a tree, or in a row or column that needs none */
+    private final int[] candidates;
+    /** row of each candidate cell, tree * 4 + side */
+    private final int[] candidateRows;
+    /** column of each candidate cell, tree * 4 + side */
+    private final int[] candidateCols;
+    /** where each cell's conflicts start in conflicts; cell + 1 is where
+     * they end */
+    private final int[] conflictStart;
+    /** the candidate cells touching each cell, the only places a tent beside
+     * it can be */
+    private final int[] conflicts;
+
+    /**
+     * Creates a definition.
+     * @param dim square dimension of field
+     * @param tentsPerRow number of tents per row, copied
+     * @param tentsPerColumn number of tents per column, copied
+     * @param cells cells row by row, copied; only trees matter to the search
+     */
+    public PuzzleDefinition(int dim, int[] tentsPerRow, int[] tentsPerColumn, char[] cells) {
+        if (dim < 1 || tentsPerRow.length != dim || tentsPerColumn.length != dim ||
+                cells.length != dim * dim) {
+            throw new IllegalArgumentException("Puzzle of dimension " + dim + " needs " +
+                    dim + " row counts, " + dim + " column counts and " + dim * dim + " cells");
+        }
+        this.dim = dim;
+        this.tentsPerRow = tentsPerRow.clone();
+        this.tentsPerColumn = tentsPerColumn.clone();
+        this.cells = cells.clone();
+
+        int trees = 0;
+        for (char cell : this.cells) {
+            if (cell == TREE) {
+                trees++;
+            }
+        }
+        this.treeRows = new int[trees];
+        this.treeCols = new int[trees];
+        this.sides = new int[4 * trees];
+        for (int cell = 0, tree = 0; cell < this.cells.length; cell++) {
+            if (this.cells[cell] != TREE) {
+                continue;
+            }
+            int row = cell / dim;
+            int col = cell % dim;
+            this.treeRows[tree] = row;
+            this.treeCols[tree] = col;
+            for (int side = 0; side < 4; side++) {
+                int lookRow = row + SIDE_ROW[side];
+                int lookCol = col + SIDE_COL[side];
+                this.sides[4 * tree + side] = lookRow >= 0 && lookRow < dim &&
+                        lookCol >= 0 && lookCol < dim ? lookRow * dim + lookCol : -1;
+            }
+            tree++;
+        }
+
+        this.aroundStart = new int[dim * dim + 1];
+        int[] rows = new int[8 * dim * dim];
+        int[] cols = new int[8 * dim * dim];
+        int size = 0;
+        for (int row = 0; row < dim; row++) {
+            for (int col = 0; col < dim; col++) {
+                this.aroundStart[row * dim + col] = size;
+                for (int lookRow = Math.max(0, row - 1); lookRow <= Math.min(dim - 1, row + 1); lookRow++) {
+                    for (int lookCol = Math.max(0, col - 1); lookCol <= Math.min(dim - 1, col + 1); lookCol++) {
+                        if (lookRow != row || lookCol != col) {
+                            rows[size] = lookRow;
+                            cols[size] = lookCol;
+                            size++;
+                        }
+                    }
+                }
+            }
+        }
+        this.aroundStart[dim * dim] = size;
+        this.aroundRows = Arrays.copyOf(rows, size);
+        this.aroundCols = Arrays.copyOf(cols, size);
+
+        this.candidates = new int[4 * trees];
+        this.candidateRows = new int[4 * trees];
+        this.candidateCols = new int[4 * trees];
+        boolean[] candidate = new boolean[dim * dim];
+        for (int i = 0; i < this.sides.length; i++) {
+            int cell = this.sides[i];
+            if (cell >= 0 && this.cells[cell] != TREE &&
+                    tentsPerRow[cell / dim] > 0 && tentsPerColumn[cell % dim] > 0) {
+                this.candidates[i] = cell;
+                this.candidateRows[i] = cell / dim;
+                this.candidateCols[i] = cell % dim;
+                candidate[cell] = true;
+            } else {
+                this.candidates[i] = -1;
+            }
+        }
+        this.conflictStart = new int[dim * dim + 1];
+        int[] conflicts = new int[size];
+        size = 0;
+        for (int cell = 0; cell < dim * dim; cell++) {
+            this.conflictStart[cell] = size;
+            for (int i = this.aroundStart[cell]; i < this.aroundStart[cell + 1]; i++) {
+                int near = this.aroundRows[i] * dim + this.aroundCols[i];
+                if (candidate[near]) {
+                    conflicts[size++] = near;
+                }
+            }
+        }
+        this.conflictStart[dim * dim] = size;
+        this.conflicts = Arrays.copyOf(conflicts, size);
+    }
+
+    /**
+     * Reads a puzzle file whose contents are, for example:
+     * <pre>
+     * 3        # square dimension of field
+     * 2 0 1    # row looking values, top to bottom
+     * 2 0 1    # column looking values, left to right
+     * . % .    # row 1, .=empty, %=tree
+     * % . .    # row 2
+     * . % .    # row 3
+     * </pre>
+     * The file is scanned straight from a memory mapping by PuzzleReader.
+     * @param filename the name of the file to read from
+     * @return the puzzle
+     * @throws IOException if the file is not found or there are errors reading
+     */
+    public static PuzzleDefinition read(String filename) throws IOException {
+        SearchEvents.PuzzleLoad event = new SearchEvents.PuzzleLoad();
+        event.begin();
+        PuzzleDefinition puzzle = PuzzleReader.readOne(Path.of(filename));
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = filename;
+            event.dim = puzzle.getDim();
+            event.trees = puzzle.getTreeCount();
+            event.commit();
+        }
+        return puzzle;
+    }
+
+    /**
+     * Takes the counts and trees off any board.  Anything that isn't a tree
+     * becomes empty.
+     * @param board the board
+     * @return the puzzle
+     */
+    public static PuzzleDefinition of(ITentsAndTreesTest board) {
+        int dim = board.getDIM();
+        int[] tentsPerRow = new int[dim];
+        int[] tentsPerColumn = new int[dim];
+        char[] cells = new char[dim * dim];
+        for (int i = 0; i < dim; i++) {
+            tentsPerRow[i] = board.getTentsRow(i);
+            tentsPerColumn[i] = board.getTentsCol(i);
+        }
+        for (int row = 0; row < dim; row++) {
+            for (int col = 0; col < dim; col++) {
+                cells[row * dim + col] = board.getCell(row, col) == TREE ? TREE : EMPTY;
+            }
+        }
+        return new PuzzleDefinition(dim, tentsPerRow, tentsPerColumn, cells);
+    }
+
+    /**
+     * @return square dimension of field
+     */
+    public int getDim() {
+        return this.dim;
+    }
+
+    /**
+     * @param row the row
+     * @return number of tents the row needs
+     */
+    public int getTentsRow(int row) {
+        return this.tentsPerRow[row];
+    }
+
+    /**
+     * @param col the column
+     * @return number of tents the column needs
+     */
+    public int getTentsCol(int col) {
+        return this.tentsPerColumn[col];
+    }
+
+    /**
+     * @return a copy of the row counts
+     */
+    public int[] getTentsPerRow() {
+        return this.tentsPerRow.clone();
+    }
+
+    /**
+     * @return a copy of the column counts
+     */
+    public int[] getTentsPerColumn() {
+        return this.tentsPerColumn.clone();
+    }
+
+    /**
+     * @param row the row
+     * @param col the column
+     * @return the cell as read
+     */
+    public char getCell(int row, int col) {
+        return this.cells[row * this.dim + col];
+    }
+
+    /**
+     * @return number of trees
+     */
+    public int getTreeCount() {
+        return this.treeRows.length;
+    }
+
+    /**
+     * @param tree tree number, in read order
+     * @return row of the tree
+     */
+    public int getTreeRow(int tree) {
+        return this.treeRows[tree];
+    }
+
+    /**
+     * @param tree tree number, in read order
+     * @return column of the tree
+     */
+    public int getTreeCol(int tree) {
+        return this.treeCols[tree];
+    }
+
+    /**
+     * @param tree tree number, in read order
+     * @param side 0 to 3, south, east, north, west
+     * @return the cell on that side, or -1 if it is off the board
+     */
+    public int getSide(int tree, int side) {
+        return this.sides[4 * tree + side];
+    }
+
+    /**
+     * @param cell a cell
+     * @return index of the cell's first neighbour in getAroundRow and
+     * getAroundCol
+     */
+    public int getAroundStart(int cell) {
+        return this.aroundStart[cell];
+    }
+
+    /**
+     * @param cell a cell
+     * @return one past the index of the cell's last neighbour
+     */
+    public int getAroundEnd(int cell) {
+        return this.aroundStart[cell + 1];
+    }
+
+    /**
+     * @param index neighbour index, from getAroundStart
+     * @return row of the neighbour
+     */
+    public int getAroundRow(int index) {
+        return this.aroundRows[index];
+    }
+
+    /**
+     * @param index neighbour index, from getAroundStart
+     * @return column of the neighbour
+     */
+    public int getAroundCol(int index) {
+        return this.aroundCols[index];
+    }
+
+    /**
+     * Gets a cell a tree could put its tent in.  Unlike getSide, cells that
+     * could never hold a tent are left out: trees, and cells in a row or
+     * column that needs no tents.
+     * @param tree tree number, in read order
+     * @param side 0 to 3, south, east, north, west
+     * @return the cell on that side, or -1 if no tent can go there
+     */
+    public int getCandidate(int tree, int side) {
+        return this.candidates[4 * tree + side];
+    }
+
+    /**
+     * @param tree tree number, in read order
+     * @param side 0 to 3, south, east, north, west
+     * @return row of the candidate cell on that side, if there is one
+     */
+    public int getCandidateRow(int tree, int side) {
+        return this.candidateRows[4 * tree + side];
+    }
+
+    /**
+     * @param tree tree number, in read order
+     * @param side 0 to 3, south, east, north, west
+     * @return column of the candidate cell on that side, if there is one
+     */
+    public int getCandidateCol(int tree, int side) {
+        return this.candidateCols[4 * tree + side];
+    }
+
+    /**
+     * Tents only ever go in candidate cells, so these are the only cells
+     * that need looking at to see if a tent touches a cell.
+     * @param cell a cell
+     * @return index of the first candidate cell touching it, in getConflict
+     */
+    public int getConflictStart(int cell) {
+        return this.conflictStart[cell];
+    }
+
+    /**
+     * @param cell a cell
+     * @return one past the index of the last candidate cell touching it
+     */
+    public int getConflictEnd(int cell) {
+        return this.conflictStart[cell + 1];
+    }
+
+    /**
+     * @param index conflict index, from getConflictStart
+     * @return the candidate cell
+     */
+    public int getConflict(int index) {
+        return this.conflicts[index];
+    }
+
+    /**
+     * Checks whether a pairing of every tree with its tent comes first, in
+     * tree order then cell order, among the pairings that put the tents in
+     * the same cells.  Two trees can swap a pair of tents they both touch,
+     * or more trees can pass tents round a ring, so a search over pairings
+     * reaches one tent layout once for each pairing; counting only the
+     * first counts each layout once without remembering any.
+     * <p>
+     * A pairing is first exactly when no ring of trees can pass tents round
+     * so a tree gets a lower cell and every tree before it keeps its own.
+     * @param tents cell of each tree's tent, by tree number in read order
+     * @return true if no pairing of the same tents comes before this one
+     */
+    public boolean isFirstPairing(int[] tents) {
+        int trees = this.treeRows.length;
+        PairingScratch scratch = pairingScratch.get();
+        scratch.ensure(this.dim * this.dim, trees);
+        // tree number + 1 of the tent in each cell, 0 for no tent
+        int[] owner = scratch.owner;
+        for (int tree = 0; tree < trees; tree++) {
+            owner[tents[tree]] = tree + 1;
+        }
+        try {
+            return noRing(tents, scratch);
+        } finally {
+            for (int tree = 0; tree < trees; tree++) {
+                owner[tents[tree]] = 0;
+            }
+        }
+    }
+
+    /**
+     * the search behind isFirstPairing
+     * @param tents cell of each tree's tent, by tree number in read order
+     * @param scratch the owner of each tent's cell filled in
+     * @return true if no ring gives a tree a lower cell
+     */
+    private boolean noRing(int[] tents, PairingScratch scratch) {
+        int[] owner = scratch.owner;
+        int[] stack = scratch.stack;
+        int[] visited = scratch.visited;
+        for (int tree = 0; tree < this.treeRows.length; tree++) {
+            for (int side = 0; side < 4; side++) {
+                int cell = this.sides[4 * tree + side];
+                if (cell < 0 || cell >= tents[tree] || owner[cell] - 1 <= tree) {
+                    continue;
+                }
+                // a later tree has a lower tent beside this one: see if the
+                // trees after this one can pass this one's tent round to it
+                int stamp = scratch.nextStamp();
+                int size = 0;
+                stack[size++] = owner[cell] - 1;
+                visited[owner[cell] - 1] = stamp;
+                while (size > 0) {
+                    int from = stack[--size];
+                    for (int look = 0; look < 4; look++) {
+                        int next = this.sides[4 * from + look];
+                        if (next < 0 || next == tents[from]) {
+                            continue;
+                        }
+                        if (next == tents[tree]) {
+                            return false;
+                        }
+                        int other = owner[next] - 1;
+                        if (other > tree && visited[other] != stamp) {
+                            visited[other] = stamp;
+                            stack[size++] = other;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the row counts and the column counts each add up to
+     * the number of trees
+     */
+    public boolean countsMatch() {
+        int trees = this.treeRows.length;
+        return trees == Arrays.stream(this.tentsPerRow).sum() &&
+                trees == Arrays.stream(this.tentsPerColumn).sum();
+    }
+
+    /**
+     * Per thread arrays for isFirstPairing.  The owners are cleared after
+     * each check, and stamps avoid clearing the visited marks.
+     */
+    private static class PairingScratch {
+        /** tree number + 1 of the tent in each cell, 0 for no tent */
+        private int[] owner = new int[0];
+        /** trees still to search from */
+        private int[] stack = new int[0];
+        /** stamp of the search that visited each tree */
+        private int[] visited = new int[0];
+        /** stamp of the current search */
+        private int stamp;
+
+        /**
+         * makes sure the arrays can hold a puzzle
+         * @param cells number of cells on the board
+         * @param trees number of trees
+         */
+        private void ensure(int cells, int trees) {
+            if (this.owner.length < cells) {
+                this.owner = new int[cells];
+            }
+            if (this.stack.length < trees) {
+                this.stack = new int[trees];
+                this.visited = new int[trees];
+                this.stamp = 0;
+            }
+        }
+
+        /**
+         * @return a stamp no tree has been visited with
+         */
+        private int nextStamp() {
+            if (this.stamp == Integer.MAX_VALUE) {
+                Arrays.fill(this.visited, 0);
+                this.stamp = 0;
+            }
+            return ++this.stamp;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package tentsandtrees.backtracker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events for the phases of a search, so a recording
+ * shows where a solver was, and how deep, when a GC pause or a hot method
+ * turns up.  Start a recording as usual, for example
+ * <pre>
+ *     java -XX:StartFlightRecording=filename=search.jfr TentsAndTrees ...
+ * </pre>
+ * and the events are under Tents and Trees.
+ * <p>
+ * Every event is made and checked with shouldCommit() before any of its
+ * fields are worked out.  While an event type isn't being recorded that
+ * check is a constant false to the JIT and the event is never allocated,
+ * so the events can be left in.  The counts behind them (frames popped,
+ * deepest frame, configs at the last event) are kept by the solvers
+ * either way and cost a compare or an increment per config.
+ * <p>
+ * Nodes are configs generated since the solver's previous solution,
+ * backtrack or depth event, and trees are numbered the solver's own way,
+ * -1 if it can't tell.
+ *
+ * @author Lyx Huston
+ */
+public final class SearchEvents {
+    /** a backtrack event is only made for a burst popping at least this many frames */
+    public static final int BACKTRACK_BURST = 8;
+
+    /**
+     * No instances.
+     */
+    private SearchEvents() {
+    }
+
+    /**
+     * A whole search, from the first config to the last.
+     */
+    @Name("tentsandtrees.Search")
+    @Label("Search")
+    @Category("Tents and Trees")
+    @Description("One solve or count, from start to finish")
+    static final class Search extends Event {
+        /** solver class */
+        @Label("Solver")
+        String solver;
+        /** square dimension */
+        @Label("Dimension")
+        int dim;
+        /** configs generated */
+        @Label("Nodes")
+        long nodes;
+        /** solutions found */
+        @Label("Solutions")
+        long solutions;
+        /** whether the tree was searched to the end */
+        @Label("Exhausted")
+        boolean exhausted;
+    }
+
+    /**
+     * Reading a puzzle and setting up for it.
+     */
+    @Name("tentsandtrees.PuzzleLoad")
+    @Label("Puzzle Load")
+    @Category("Tents and Trees")
+    @Description("A puzzle read from a file, or copied into a solver")
+    static final class PuzzleLoad extends Event {
+        /** file name, or the solver copying it */
+        @Label("Source")
+        String source;
+        /** square dimension */
+        @Label("Dimension")
+        int dim;
+        /** number of trees */
+        @Label("Trees")
+        int trees;
+    }
+
+    /**
+     * One run of the line propagator.  There can be one for every config,
+     * so by default only rounds over a millisecond are kept; a recording
+     * can lower the threshold to see them all.
+     */
+    @Name("tentsandtrees.Propagation")
+    @Label("Propagation Round")
+    @Category("Tents and Trees")
+    @Description("One run of the line propagator over the board")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static final class Propagation extends Event {
+        /** trees with their tent when it ran */
+        @Label("Depth")
+        int depth;
+        /** tree about to be branched on */
+        @Label("Tree")
+        int tree;
+        /** cells it made grass */
+        @Label("Grass")
+        int grass;
+        /** whether it found the board can't be solved */
+        @Label("Contradiction")
+        boolean contradiction;
+    }
+
+    /**
+     * A goal reached.
+     */
+    @Name("tentsandtrees.Solution")
+    @Label("Solution Found")
+    @Category("Tents and Trees")
+    @StackTrace(false)
+    static final class Solution extends Event {
+        /** depth of the goal */
+        @Label("Depth")
+        int depth;
+        /** configs since the last event */
+        @Label("Nodes")
+        long nodes;
+    }
+
+    /**
+     * A run of frames popped without pushing, at least BACKTRACK_BURST long.
+     */
+    @Name("tentsandtrees.Backtrack")
+    @Label("Backtrack Burst")
+    @Category("Tents and Trees")
+    @Description("Many frames given up in a row")
+    @StackTrace(false)
+    static final class Backtrack extends Event {
+        /** depth before the burst */
+        @Label("From Depth")
+        int from;
+        /** depth the search went on from */
+        @Label("To Depth")
+        int depth;
+        /** tree branched on at that depth */
+        @Label("Tree")
+        int tree;
+        /** configs since the last event */
+        @Label("Nodes")
+        long nodes;
+    }
+
+    /**
+     * The search going deeper than it has before.
+     */
+    @Name("tentsandtrees.DepthMilestone")
+    @Label("Depth Milestone")
+    @Category("Tents and Trees")
+    @Description("A new deepest frame for this search")
+    @StackTrace(false)
+    static final class DepthMilestone extends Event {
+        /** the new deepest depth */
+        @Label("Depth")
+        int depth;
+        /** tree branched on to get there */
+        @Label("Tree")
+        int tree;
+        /** configs since the last event */
+        @Label("Nodes")
+        long nodes;
+    }
+}
@@ -0,0 +1,221 @@
+package tentsandtrees.backtracker;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Progress of a long search, for watching while it runs.  The solver hands
+ * over a sample once every SAMPLE_MASK + 1 configs, from the points where it
+ * already looks at its interrupt flag, so the search itself pays nothing
+ * between samples.  Anyone can read the latest sample at any time, over JMX
+ * once registered or through a MetricsReporter.
+ * <p>
+ * Only one thread, the one searching, may call start, sample and finish.
+ *
+ * @author Lyx Huston
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+    /**
+     * Solvers sample once every this many configs (a power of two, used as
+     * a mask); a multiple of Solver.INTERRUPT_CHECK_MASK + 1.
+     */
+    public static final int SAMPLE_MASK = 1023;
+    /** JMX domain metrics are registered under */
+    public static final String DOMAIN = "tentsandtrees";
+
+    /** nanoseconds the rate is worked out over */
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    /** solver's config count when the search started */
+    private long base;
+    /** configs when the rate window opened */
+    private long windowNodes;
+    /** time the rate window opened */
+    private long windowStart;
+
+    /** true while a search is running */
+    private volatile boolean running;
+    /** configs generated by this search */
+    private volatile long nodes;
+    /** rate over the last full window, NaN before the first window closes */
+    private volatile double rate = Double.NaN;
+    /** time the search started */
+    private volatile long startTime;
+    /** time the search finished, 0 while running */
+    private volatile long endTime;
+    /** stack depth at the last sample */
+    private volatile int depth;
+    /** deepest sampled stack */
+    private volatile int maxDepth;
+    /** estimated fraction searched */
+    private volatile double explored = Double.NaN;
+    /** prune counters of the search, null if it keeps none */
+    private volatile SearchStats stats;
+    /** name registered under, null if not registered */
+    private ObjectName name;
+
+    /**
+     * Called by the solver as a search starts.
+     * @param configCount the solver's config count so far
+     * @param stats its prune counters, or null
+     */
+    public void start(long configCount, SearchStats stats) {
+        long now = System.nanoTime();
+        this.base = configCount;
+        this.windowNodes = 0;
+        this.windowStart = now;
+        this.nodes = 0;
+        this.rate = Double.NaN;
+        this.depth = 0;
+        this.maxDepth = 0;
+        this.explored = Double.NaN;
+        this.stats = stats;
+        this.startTime = now;
+        this.endTime = 0;
+        this.running = true;
+    }
+
+    /**
+     * Called by the solver every SAMPLE_MASK + 1 configs.
+     * @param configCount the solver's config count
+     * @param depth current depth of its stack
+     * @param explored estimated fraction of the tree searched, NaN if
+     *                 unknown
+     */
+    public void sample(long configCount, int depth, double explored) {
+        long count = configCount - this.base;
+        this.nodes = count;
+        this.depth = depth;
+        if (depth > this.maxDepth) {
+            this.maxDepth = depth;
+        }
+        this.explored = explored;
+        long now = System.nanoTime();
+        if (now - this.windowStart >= WINDOW_NANOS) {
+            this.rate = (count - this.windowNodes) * 1e9 / (now - this.windowStart);
+            this.windowNodes = count;
+            this.windowStart = now;
+        }
+    }
+
+    /**
+     * Called by the solver as a search ends, however it ends.
+     * @param configCount the solver's config count
+     * @param exhausted true if the whole tree was searched
+     */
+    public void finish(long configCount, boolean exhausted) {
+        this.nodes = configCount - this.base;
+        this.depth = 0;
+        if (exhausted) {
+            this.explored = 1;
+        }
+        this.endTime = System.nanoTime();
+        this.running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    @Override
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    @Override
+    public double getNodesPerSecond() {
+        double windowRate = this.rate;
+        if (!Double.isNaN(windowRate) && this.running) {
+            return windowRate;
+        }
+        double seconds = getElapsedSeconds();
+        return seconds > 0 ? this.nodes / seconds : 0;
+    }
+
+    @Override
+    public double getElapsedSeconds() {
+        long start = this.startTime;
+        if (start == 0) {
+            return 0;
+        }
+        long end = this.running ? System.nanoTime() : this.endTime;
+        return (end - start) / 1e9;
+    }
+
+    @Override
+    public int getDepth() {
+        return this.depth;
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    @Override
+    public double getExploredFraction() {
+        return this.explored;
+    }
+
+    @Override
+    public Map<String, Long> getPrunes() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        SearchStats current = this.stats;
+        if (current != null) {
+            for (SearchStats.PruneReason reason : SearchStats.PruneReason.values()) {
+                result.put(reason.name().toLowerCase(), current.getPrunes(reason));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Publishes these metrics on the platform MBean server, as
+     * tentsandtrees:type=SearchMetrics,name=the name.
+     * @param name name to tell searches apart
+     * @return the object name registered
+     * @throws JMException if the name is taken or not allowed
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=SearchMetrics,name=" + name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.name = objectName;
+        return objectName;
+    }
+
+    /**
+     * Takes these metrics off the platform MBean server, if registered.
+     * @throws JMException if they were registered but can't be removed
+     */
+    public synchronized void unregister() throws JMException {
+        if (this.name != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(this.name)) {
+                server.unregisterMBean(this.name);
+            }
+            this.name = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("Nodes: %d (%.0f/s), depth %d, max %d", getNodes(),
+                getNodesPerSecond(), getDepth(), getMaxDepth()));
+        double fraction = getExploredFraction();
+        if (!Double.isNaN(fraction)) {
+            result.append(String.format(", explored %.6f%%", fraction * 100));
+        }
+        for (Map.Entry<String, Long> prunes : getPrunes().entrySet()) {
+            if (prunes.getValue() > 0) {
+                result.append(", ").append(prunes.getKey()).append(' ').append(prunes.getValue());
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package tentsandtrees.backtracker;
+
+import java.util.Map;
+
+/**
+ * What a running search publishes over JMX.  Every value is a sample taken
+ * by the searching thread now and then, so it may be a little behind.
+ *
+ * @author Lyx Huston
+ */
+public interface SearchMetricsMXBean {
+    /**
+     * @return true while a search is running
+     */
+    boolean isRunning();
+
+    /**
+     * @return configs generated by the current or last search
+     */
+    long getNodes();
+
+    /**
+     * @return configs generated per second, over the last second or so
+     */
+    double getNodesPerSecond();
+
+    /**
+     * @return seconds the current or last search has taken
+     */
+    double getElapsedSeconds();
+
+    /**
+     * @return depth of the search stack when last sampled
+     */
+    int getDepth();
+
+    /**
+     * @return deepest the search stack was seen to go
+     */
+    int getMaxDepth();
+
+    /**
+     * @return estimated fraction of the search tree already searched, 0 to
+     * 1, or NaN if the solver can't tell
+     */
+    double getExploredFraction();
+
+    /**
+     * @return configs pruned so far, by lower case reason name
+     */
+    Map<String, Long> getPrunes();
+}
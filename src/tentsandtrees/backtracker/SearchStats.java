@@ -0,0 +1,69 @@
+package tentsandtrees.backtracker;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters shared by every configuration of one search, so the effect of
+ * each kind of pruning can be measured.  Safe to update from several
+ * threads at once.
+ *
+ * @author Lyx Huston
+ */
+public class SearchStats {
+    /**
+     * Why a configuration was thrown away before it was searched.
+     */
+    public enum PruneReason {
+        /** the remaining trees can't each get their own free cell */
+        MATCHING,
+        /** line propagation found a row or column that can't be filled */
+        PROPAGATION,
+        /** the same state was already searched and had no solution */
+        TRANSPOSITION,
+        /** a learned nogood rules the placement out */
+        NOGOOD,
+        /** placing the tent left a line short or a nearby tree stuck */
+        LOOKAHEAD
+    }
+
+    /** prune counts, indexed by reason ordinal */
+    private final LongAdder[] prunes;
+
+    /**
+     * Creates a set of counters at zero.
+     */
+    public SearchStats() {
+        this.prunes = new LongAdder[PruneReason.values().length];
+        for (int i = 0; i < this.prunes.length; i++) {
+            this.prunes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records that a configuration was pruned.
+     * @param reason why it was pruned
+     */
+    public void prune(PruneReason reason) {
+        this.prunes[reason.ordinal()].increment();
+    }
+
+    /**
+     * Gets the number of configurations pruned for a reason.
+     * @param reason the reason
+     * @return prune count
+     */
+    public long getPrunes(PruneReason reason) {
+        return this.prunes[reason.ordinal()].sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (PruneReason reason : PruneReason.values()) {
+            result.append("Pruned by ").append(reason.name().toLowerCase())
+                    .append(": ").append(getPrunes(reason))
+                    .append(System.lineSeparator());
+        }
+        return result.toString();
+    }
+}
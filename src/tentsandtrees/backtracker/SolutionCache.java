@@ -0,0 +1,135 @@
+package tentsandtrees.backtracker;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Remembers the answers to the puzzles asked most recently, so the same
+ * puzzle asked again isn't searched again.  Puzzles are looked up by their
+ * CanonicalPuzzle key, so a rotation or reflection of a puzzle, or a copy
+ * laid out differently in its text, finds the same answer; answers should
+ * be kept in the canonical orientation.  Each answer has a size, and once
+ * the sizes add up to more than the capacity the answers used longest ago
+ * are dropped.  Safe to share between threads.
+ *
+ * @param <V> the answers
+ * @author Lyx Huston
+ */
+public class SolutionCache<V> {
+    /** most the sizes of the answers kept may add up to */
+    private final long capacity;
+    /** size of each answer */
+    private final ToLongFunction<V> sizes;
+    /** answers by key, least recently used first */
+    private final LinkedHashMap<CanonicalPuzzle.Key, V> answers = new LinkedHashMap<>(16, 0.75f, true);
+    /** sizes of the answers kept, added up */
+    private long size;
+    /** lookups that found an answer */
+    private long hits;
+    /** lookups that didn't */
+    private long misses;
+    /** answers dropped to make room */
+    private long evictions;
+
+    /**
+     * Makes an empty cache counting answers.
+     * @param capacity most answers kept, 0 to keep none
+     */
+    public SolutionCache(long capacity) {
+        this(capacity, answer -> 1);
+    }
+
+    /**
+     * Makes an empty cache.
+     * @param capacity most the sizes of the answers kept may add up to
+     * @param sizes size of each answer, say in bytes
+     */
+    public SolutionCache(long capacity, ToLongFunction<V> sizes) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Cache capacity can't be negative, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Looks up an answer, making it the most recently used.
+     * @param key the puzzle's key
+     * @return the answer, null if it isn't kept
+     */
+    public synchronized V get(CanonicalPuzzle.Key key) {
+        V answer = this.answers.get(key);
+        if (answer == null) {
+            this.misses++;
+        } else {
+            this.hits++;
+        }
+        return answer;
+    }
+
+    /**
+     * Keeps an answer, dropping the least recently used until it fits.  An
+     * answer bigger than the whole cache isn't kept.
+     * @param key the puzzle's key
+     * @param answer the answer
+     */
+    public synchronized void put(CanonicalPuzzle.Key key, V answer) {
+        long added = this.sizes.applyAsLong(answer);
+        if (added > this.capacity) {
+            return;
+        }
+        V old = this.answers.put(key, answer);
+        this.size += added - (old == null ? 0 : this.sizes.applyAsLong(old));
+        Iterator<Map.Entry<CanonicalPuzzle.Key, V>> eldest = this.answers.entrySet().iterator();
+        while (this.size > this.capacity) {
+            Map.Entry<CanonicalPuzzle.Key, V> entry = eldest.next();
+            this.size -= this.sizes.applyAsLong(entry.getValue());
+            eldest.remove();
+            this.evictions++;
+        }
+    }
+
+    /**
+     * @return answers kept
+     */
+    public synchronized int size() {
+        return this.answers.size();
+    }
+
+    /**
+     * @return sizes of the answers kept, added up
+     */
+    public synchronized long weight() {
+        return this.size;
+    }
+
+    /**
+     * @return lookups that found an answer
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return lookups that didn't
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * @return answers dropped to make room
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Cached answers: " + this.answers.size() + ", size " + this.size + " of " + this.capacity +
+                ", hits: " + this.hits + ", misses: " + this.misses +
+                ", evicted: " + this.evictions + System.lineSeparator();
+    }
+}
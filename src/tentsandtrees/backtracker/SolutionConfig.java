@@ -0,0 +1,104 @@
+package tentsandtrees.backtracker;
+
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A finished board, handed back by solvers that don't search over
+ * configurations themselves.  It is always a goal and has no successors.
+ *
+ * @author Lyx Huston
+ */
+public class SolutionConfig implements Configuration, ITentsAndTreesTest {
+    /** square dimension of field */
+    private final int dim;
+    /** number of tents per row */
+    private final int[] tentsPerRow;
+    /** number of tents per column */
+    private final int[] tentsPerColumn;
+    /** cells, row by row */
+    private final char[] board;
+
+    /**
+     * Creates a solution.  Any empty cells are shown as grass.
+     * @param dim square dimension of field
+     * @param tentsPerRow number of tents per row
+     * @param tentsPerColumn number of tents per column
+     * @param board cells row by row, copied
+     */
+    public SolutionConfig(int dim, int[] tentsPerRow, int[] tentsPerColumn, char[] board) {
+        this.dim = dim;
+        this.tentsPerRow = tentsPerRow;
+        this.tentsPerColumn = tentsPerColumn;
+        this.board = board.clone();
+        for (int i = 0; i < this.board.length; i++) {
+            if (this.board[i] == EMPTY) {
+                this.board[i] = GRASS;
+            }
+        }
+    }
+
+    /**
+     * a solution has nowhere further to go
+     * @return an empty collection
+     */
+    @Override
+    public Collection<Configuration> getSuccessors() {
+        return List.of();
+    }
+
+    @Override
+    public boolean isValid() {
+        return true;
+    }
+
+    @Override
+    public boolean isGoal() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return getDisplay();
+    }
+
+    @Override
+    public int getDIM() {
+        return this.dim;
+    }
+
+    @Override
+    public int getTentsRow(int row) {
+        return this.tentsPerRow[row];
+    }
+
+    @Override
+    public int getTentsCol(int col) {
+        return this.tentsPerColumn[col];
+    }
+
+    @Override
+    public char getCell(int row, int col) {
+        return this.board[row * this.dim + col];
+    }
+
+    /**
+     * every tree has its tent, so there is no cursor
+     * @return -1
+     */
+    @Override
+    public int getCursorRow() {
+        return -1;
+    }
+
+    /**
+     * every tree has its tent, so there is no cursor
+     * @return -1
+     */
+    @Override
+    public int getCursorCol() {
+        return -1;
+    }
+}
@@ -0,0 +1,109 @@
+package tentsandtrees.backtracker;
+
+import java.util.function.Consumer;
+
+/**
+ * Counts the solutions a solver finds, passing each new one on to a
+ * consumer as soon as it is found.  The solvers search tree to tent
+ * pairings, and two pairings can put the same tents in the same cells (two
+ * trees swapping a pair of shared cells), so they only offer the first
+ * pairing of each layout (see PuzzleDefinition.isFirstPairing) and nothing
+ * is kept here but the count.  A counter made by first() is for a solve,
+ * where any pairing of the first layout will do, so repeats aren't skipped.
+ * <p>
+ * Safe to share between threads; the consumer is only ever called by one
+ * thread at a time.
+ *
+ * @author Lyx Huston
+ */
+public class SolutionCounter {
+    /** stop after this many distinct solutions */
+    private final long limit;
+    /** where solutions are sent */
+    private final Consumer<Configuration> consumer;
+    /** whether solutions are being counted, so repeated layouts are skipped */
+    private final boolean counting;
+    /** number of distinct solutions */
+    private long count;
+
+    /**
+     * Creates a counter.
+     * @param limit stop after this many distinct solutions
+     * @param consumer gets each distinct solution as it is found
+     */
+    public SolutionCounter(long limit, Consumer<Configuration> consumer) {
+        this(limit, consumer, true);
+    }
+
+    /**
+     * Creates a counter.
+     * @param limit stop after this many distinct solutions
+     * @param consumer gets each distinct solution as it is found
+     * @param counting whether repeated layouts are to be skipped
+     */
+    private SolutionCounter(long limit, Consumer<Configuration> consumer, boolean counting) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1, got " + limit);
+        }
+        this.limit = limit;
+        this.consumer = consumer;
+        this.counting = counting;
+        this.count = 0;
+    }
+
+    /**
+     * Creates a counter for a solve, which stops at the first goal, whatever
+     * pairing it is.
+     * @param consumer gets the goal
+     * @return the counter
+     */
+    public static SolutionCounter first(Consumer<Configuration> consumer) {
+        return new SolutionCounter(1, consumer, false);
+    }
+
+    /**
+     * @return true if the search must only offer the first pairing of each
+     * layout, false if any goal will do
+     */
+    public boolean isCounting() {
+        return this.counting;
+    }
+
+    /**
+     * Records a goal configuration and passes it on.  While counting, each
+     * tent layout must only be offered once.
+     * @param goal a goal
+     * @return true if the limit has been reached and the search should stop
+     */
+    public synchronized boolean offer(Configuration goal) {
+        if (this.count >= this.limit) {
+            return true;
+        }
+        this.count++;
+        this.consumer.accept(goal);
+        return this.count >= this.limit;
+    }
+
+    /**
+     * @return true once the limit has been reached
+     */
+    public synchronized boolean isDone() {
+        return this.count >= this.limit;
+    }
+
+    /**
+     * @return number of distinct solutions found
+     */
+    public synchronized long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Picks up counting where a checkpoint left off.  The solutions counted
+     * then are not handed to the consumer again.
+     * @param count distinct solutions found before
+     */
+    synchronized void restore(long count) {
+        this.count = count;
+    }
+}
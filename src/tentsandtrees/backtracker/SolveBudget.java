@@ -0,0 +1,199 @@
+package tentsandtrees.backtracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How long a search may run, how many configs it may generate, and a way
+ * to call it off from another thread.  Give one to Solver.solve(config,
+ * budget); the outcome says whether the search ran out of budget before
+ * it found a solution or showed there was none.
+ * <p>
+ * A budget is bound to the thread running the search, the same way the
+ * interrupt flag is, and the searches look at it where they used to look
+ * at the flag: once every Solver.INTERRUPT_CHECK_MASK + 1 configs, so a
+ * node limit may be overshot by that many configs per thread.  Solvers
+ * that search on other threads bind the same budget on their workers, and
+ * once any thread finds it spent, every thread stops.  Interrupting the
+ * thread that started the search still stops it too.
+ * <p>
+ * The clock starts when the budget is made, so time spent waiting for a
+ * worker counts.  A budget is for one search.
+ *
+ * @author Lyx Huston
+ */
+public final class SolveBudget {
+    /**
+     * Why a search stopped before it was finished.
+     */
+    public enum Reason {
+        /** cancel() was called */
+        CANCELLED,
+        /** the deadline passed */
+        DEADLINE,
+        /** the node limit was reached */
+        NODES,
+        /** the thread that started the search was interrupted */
+        INTERRUPTED
+    }
+
+    /** budget of the search running on each thread, if it has one */
+    private static final ThreadLocal<SolveBudget> bound = new ThreadLocal<>();
+
+    /** System.nanoTime() at the deadline */
+    private final long deadline;
+    /** whether there is a deadline */
+    private final boolean timed;
+    /** most configs the search may generate */
+    private final long maxNodes;
+    /** configs generated so far, counted a check at a time */
+    private final AtomicLong nodes = new AtomicLong();
+    /** set by cancel() */
+    private volatile boolean cancelled;
+    /** why the search stopped, null while it may carry on */
+    private volatile Reason reason;
+    /** thread that started the search, whose interrupt flag counts */
+    private volatile Thread owner;
+
+    /**
+     * Makes a budget.
+     * @param timeoutMillis how long the search may take from now, in
+     *                      milliseconds, 0 for no limit
+     * @param maxNodes most configs the search may generate, 0 for no limit
+     */
+    public SolveBudget(long timeoutMillis, long maxNodes) {
+        if (timeoutMillis < 0 || maxNodes < 0) {
+            throw new IllegalArgumentException("Budget can't be negative, got " + timeoutMillis +
+                    " ms and " + maxNodes + " configs");
+        }
+        this.timed = timeoutMillis > 0;
+        this.deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        this.maxNodes = maxNodes == 0 ? Long.MAX_VALUE : maxNodes;
+    }
+
+    /**
+     * @return a budget with no limits, which can still be cancelled
+     */
+    public static SolveBudget unlimited() {
+        return new SolveBudget(0, 0);
+    }
+
+    /**
+     * Calls the search off.  Safe from any thread; the search notices at its
+     * next check.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * @return true if cancel() has been called
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * @return why the search stopped early, or null if it hasn't
+     */
+    public Reason getReason() {
+        return this.reason;
+    }
+
+    /**
+     * @return configs charged to the budget, a check's worth at a time
+     */
+    public long getNodes() {
+        return this.nodes.get();
+    }
+
+    /**
+     * Charges configs to the budget and sees whether any of it is left.
+     * @param configs configs generated since the last check
+     * @return true if the search should stop
+     */
+    public boolean spend(long configs) {
+        if (this.reason != null) {
+            return true;
+        }
+        long used = this.nodes.addAndGet(configs);
+        Reason stop = null;
+        if (this.cancelled) {
+            stop = Reason.CANCELLED;
+        } else if (used >= this.maxNodes) {
+            stop = Reason.NODES;
+        } else if (this.timed && System.nanoTime() - this.deadline >= 0) {
+            stop = Reason.DEADLINE;
+        } else if (this.owner != null ? this.owner.isInterrupted() : Thread.currentThread().isInterrupted()) {
+            stop = Reason.INTERRUPTED;
+        }
+        if (stop != null) {
+            synchronized (this) {
+                if (this.reason == null) {
+                    this.reason = stop;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Binds this budget to the current thread, as the search's own thread.
+     * @return the budget bound before, to give back to unbind
+     */
+    SolveBudget bind() {
+        if (this.owner == null) {
+            this.owner = Thread.currentThread();
+        }
+        SolveBudget previous = bound.get();
+        bound.set(this);
+        return previous;
+    }
+
+    /**
+     * Puts back the budget that was bound before bind.
+     * @param previous what bind returned
+     */
+    static void unbind(SolveBudget previous) {
+        if (previous == null) {
+            bound.remove();
+        } else {
+            bound.set(previous);
+        }
+    }
+
+    /**
+     * @return the budget bound to the current thread, or null if none is
+     */
+    static SolveBudget current() {
+        return bound.get();
+    }
+
+    /**
+     * Called by searches once every Solver.INTERRUPT_CHECK_MASK + 1
+     * configs.  Without a budget, looks at the interrupt flag, as searches
+     * always have.
+     * @return true if the search should stop
+     */
+    public static boolean shouldStop() {
+        SolveBudget budget = bound.get();
+        return budget == null ? Thread.currentThread().isInterrupted() :
+                budget.spend(Solver.INTERRUPT_CHECK_MASK + 1);
+    }
+
+    /**
+     * For code after a search that needs to know whether it finished, such
+     * as whether an empty answer means there is no solution.
+     * @return true if the search on this thread was stopped early
+     */
+    public static boolean stopped() {
+        SolveBudget budget = bound.get();
+        return budget == null ? Thread.currentThread().isInterrupted() : budget.reason != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Budget: " + this.nodes.get() + " configs charged" +
+                (this.reason == null ? "" : ", stopped: " + this.reason) + System.lineSeparator();
+    }
+}
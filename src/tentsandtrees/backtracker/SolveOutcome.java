@@ -0,0 +1,93 @@
+package tentsandtrees.backtracker;
+
+import java.util.Optional;
+
+/**
+ * What came of a search run on a budget: a solution, proof there is none,
+ * or the budget ran out first.  Either way it says how far the search got.
+ *
+ * @author Lyx Huston
+ */
+public final class SolveOutcome {
+    /**
+     * How a search on a budget ended.
+     */
+    public enum Status {
+        /** a solution was found */
+        SOLVED,
+        /** the whole search ran without finding one, so there is none */
+        UNSOLVABLE,
+        /** the budget ran out first, so there may still be one */
+        EXHAUSTED
+    }
+
+    /** how the search ended */
+    private final Status status;
+    /** the solution, null unless solved */
+    private final Configuration solution;
+    /** why the budget ran out, null unless exhausted */
+    private final SolveBudget.Reason reason;
+    /** configs generated by the search */
+    private final long configs;
+    /** time the search took, in nanoseconds */
+    private final long nanos;
+
+    /**
+     * Works out how a search ended.  Anything short of a solution is
+     * unsolvable unless the budget stopped the search.
+     * @param solution what the search returned
+     * @param budget the budget it ran on
+     * @param configs configs it generated
+     * @param nanos time it took, in nanoseconds
+     */
+    SolveOutcome(Optional<Configuration> solution, SolveBudget budget, long configs, long nanos) {
+        this.solution = solution.orElse(null);
+        this.reason = this.solution == null ? budget.getReason() : null;
+        this.status = this.solution != null ? Status.SOLVED :
+                this.reason != null ? Status.EXHAUSTED : Status.UNSOLVABLE;
+        this.configs = configs;
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return how the search ended
+     */
+    public Status getStatus() {
+        return this.status;
+    }
+
+    /**
+     * @return the solution, empty unless solved
+     */
+    public Optional<Configuration> getSolution() {
+        return Optional.ofNullable(this.solution);
+    }
+
+    /**
+     * @return why the budget ran out, null unless exhausted
+     */
+    public SolveBudget.Reason getReason() {
+        return this.reason;
+    }
+
+    /**
+     * @return configs generated by the search, up to where it stopped
+     */
+    public long getConfigs() {
+        return this.configs;
+    }
+
+    /**
+     * @return time the search took, in nanoseconds
+     */
+    public long getNanos() {
+        return this.nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Outcome: " + this.status + (this.reason == null ? "" : " (" + this.reason + ")") +
+                " after " + this.configs + " configs in " + this.nanos / 1_000_000 + " ms" +
+                System.lineSeparator();
+    }
+}
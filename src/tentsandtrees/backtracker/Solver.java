@@ -0,0 +1,83 @@
+package tentsandtrees.backtracker;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Something that can search a puzzle for a solution.  Backtracker works on
+ * configurations that hand out their own successors; other solvers may read
+ * the puzzle out of the initial configuration and search it their own way.
+ *
+ * @author Lyx Huston
+ */
+public interface Solver {
+    /**
+     * Searches look at the thread's interrupt flag, or its SolveBudget if
+     * it has one, once every this many configs (a power of two, used as a
+     * mask), and give up as if there were no more solutions when it is set
+     * or spent.  The flag is left set.
+     */
+    int INTERRUPT_CHECK_MASK = 63;
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid initial configuration
+     * @return A solution config, or empty if no solution
+     */
+    Optional<Configuration> solve(Configuration config);
+
+    /**
+     * Looks for a solution within a budget.  The budget is bound to this
+     * thread while the search runs, and the search stops at its next check
+     * once the deadline passes, the node limit is reached or the budget is
+     * cancelled.
+     *
+     * @param config A valid initial configuration
+     * @param budget time, configs and cancellation for this search
+     * @return solved, unsolvable, or exhausted, with the configs generated
+     * and time taken
+     */
+    default SolveOutcome solve(Configuration config, SolveBudget budget) {
+        long start = System.nanoTime();
+        long before = getConfigCount();
+        SolveBudget previous = budget.bind();
+        Optional<Configuration> solution;
+        try {
+            solution = solve(config);
+        } finally {
+            SolveBudget.unbind(previous);
+        }
+        return new SolveOutcome(solution, budget, getConfigCount() - before, System.nanoTime() - start);
+    }
+
+    /**
+     * Searches for every solution, up to a limit, handing each one to a
+     * consumer as it is found.  Solutions that only differ in which tree
+     * owns which tent count once.
+     *
+     * @param config A valid initial configuration, not yet searched
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found, at most limit
+     */
+    long countSolutions(Configuration config, long limit, Consumer<Configuration> consumer);
+
+    /**
+     * Checks whether a puzzle has exactly one solution, stopping as soon as
+     * a second one turns up.
+     *
+     * @param config A valid initial configuration, not yet searched
+     * @return true if there is exactly one solution
+     */
+    default boolean isUnique(Configuration config) {
+        return countSolutions(config, 2, solution -> { }) == 1;
+    }
+
+    /**
+     * Get the number of configurations processed during solving.
+     *
+     * @return config count
+     */
+    long getConfigCount();
+}
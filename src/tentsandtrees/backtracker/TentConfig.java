@@ -1,5 +1,6 @@
 package tentsandtrees.backtracker;
 
+import jdk.jfr.EventType;
 import tentsandtrees.test.ITentsAndTreesTest;
 
 import java.io.*;
@@ -119,6 +120,7 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
     @Override
     public boolean hasNext() {
         if (this.treeOn == null) {
+            this.searched(false);
             return false;
         }
         while (this.on < 4) {
@@ -129,6 +131,7 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
             this.on += this.step;
         }
         //System.out.println("No more valid successors");
+        this.searched(false);
         return false;
     }
 
@@ -146,18 +149,28 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
      * @param next tree that comes after this one in the search
      * @param col  x (column) value of tree
      * @param row  y (row) value of tree
+     * @param id   index of the tree in read order
      */
-    private record TreeNode(int col, int row, TentConfig.TreeNode next) {
+    private record TreeNode(int col, int row, int id, TentConfig.TreeNode next) {
     }
 
+    /**
+     * @param tree index of the tree given a tent
+     * @param cell cell of its tent
+     * @param previous the tent placed before it, shared with the configs
+     *                 above this one
+     */
+    private record Placed(int tree, int cell, Placed previous) {
+    }
+
+    /** the puzzle, shared by every config of the search */
+    private final PuzzleDefinition puzzle;
     /** square dimension of field */
-    private static int DIM;
+    private final int dim;
     /** character representation of board */
     private final char[][] board;
-    /** number of tents per row */
-    private static int[] tentsPerRow;
-    /** number of tents per column */
-    private static int[] tentsPerColumn;
+    /** bit set of the cells with tents, cell / 64 then cell % 64 */
+    private final long[] tents;
     /** check against number of tents per row */
     private final int[] checkTentsPerRow;
     /** check against number of tents per column */
@@ -170,70 +183,90 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
     private final int[] maxTentsPerColumn;
     /** tree placing around */
     private TreeNode treeOn;
-    /** direction to column change look array */
-    private static final int[] dirToCol = {0, 1, 1, 1, 0, -1, -1, -1};
-    /** direction to row change look array */
-    private static final int[] dirToRow = {1, 1, 0, -1, -1, -1, 0, 1};
+    /** the tent placed last, null until one is */
+    private Placed placed;
+    /** bits of the directions successors have been made in */
     private int dirRecord = 0;
+    /** side of the tree each remaining tree is matched to, by tree id, -1
+     * if unmatched.  null if matching pruning is off. */
+    private int[] matching;
+    /** counters shared by every config of the search */
+    private final SearchStats stats;
+    /** propagation run on every config, null if off */
+    private LinePropagator propagator;
+    /** scratch arrays for the matching check, one set per thread */
+    private static final ThreadLocal<MatchScratch> matchScratch =
+            ThreadLocal.withInitial(MatchScratch::new);
+    /** scratch board and counts for propagation, one set per thread */
+    private static final ThreadLocal<PropagationScratch> propagationScratch =
+            ThreadLocal.withInitial(PropagationScratch::new);
+    /** the propagation event type, to skip making events nobody records */
+    private static final EventType PROPAGATION_EVENT =
+            EventType.getEventType(SearchEvents.Propagation.class);
+    /** dead states shared by every config of the search, null if off */
+    private TranspositionTable table;
+    /** keys for the hash, null if the table is off */
+    private ZobristKeys keys;
+    /** Zobrist hash of what is left to solve, kept while the table is on */
+    private long hash;
+    /** config this one is a successor of, until this one is searched */
+    private TentConfig parent;
+    /** successors not yet searched, plus one until this config has run out
+     * of successors */
+    private int unfinished = 1;
+    /** whether a goal has been found at or below this config */
+    private boolean solved;
+    /** whether this config has run out of successors or been a goal */
+    private boolean done;
 
     /**
-     * Construct the initial configuration from an input file whose contents
-     * are, for example:
-     * <pre>
-     * 3        # square dimension of field
-     * 2 0 1    # row looking values, top to bottom
-     * 2 0 1    # column looking values, left to right
-     * . % .    # row 1, .=empty, %=tree
-     * % . .    # row 2
-     * . % .    # row 3
-     * </pre>
+     * Construct the initial configuration from an input file, in the format
+     * described by PuzzleDefinition.read().
      * @param filename the name of the file to read from
      * @throws IOException if the file is not found or there are errors reading
      */
     public TentConfig(String filename) throws IOException {
-        int trees = 0;
+        this(PuzzleDefinition.read(filename));
+    }
+
+    /**
+     * Construct the initial configuration for a puzzle.  The puzzle is
+     * shared with every successor, so any number of searches, on the same
+     * puzzle or not, can run at once.
+     * @param puzzle the puzzle
+     */
+    public TentConfig(PuzzleDefinition puzzle) {
+        this.puzzle = puzzle;
+        this.dim = puzzle.getDim();
         this.treeOn = null;
-        try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
-            // get the field dimension
-            DIM = Integer.parseInt(in.readLine());
-
-            String[] rowStore = in.readLine().split("\\s+");
-            tentsPerRow = new int[DIM];
-            for (int i = 0; i < DIM; i++) {
-                tentsPerRow[i] = Integer.parseInt(rowStore[i]);
-            }
-            rowStore = in.readLine().split("\\s+");
-            tentsPerColumn = new int[DIM];
-            for (int i = 0; i < DIM; i++) {
-                tentsPerColumn[i] = Integer.parseInt(rowStore[i]);
-            }
-            this.checkTentsPerColumn = tentsPerColumn.clone();
-            this.checkTentsPerRow = tentsPerRow.clone();
-            String[] stringBoard;
-            this.board = new char[DIM][DIM];
-            this.maxTentsPerRow = new int[DIM];
-            this.maxTentsPerColumn = new int[DIM];
-            for (int row = 0; row < DIM; row++) {
-                stringBoard = in.readLine().split("\\s+");
-                for (int col = 0; col < DIM; col++) {
-                    this.board[row][col] = stringBoard[col].charAt(0);
-                    if (stringBoard[col].charAt(0) == TREE) {
-                        trees++;
-                        this.treeOn = new TreeNode(col, row, this.treeOn);
-                        changeMaxRow(row, 1);
-                        changeMaxCol(col, 1);
-                    }
-                }
-            }
-            if (trees != Arrays.stream(tentsPerColumn).sum() ||
-                    trees != Arrays.stream(tentsPerRow).sum()) {
-                System.out.println("Error in data file: different number of" +
-                "required tents by tree count and row/column count.");
-                this.treeOn = null;
+        this.matching = null;
+        this.propagator = null;
+        this.stats = new SearchStats();
+        this.checkTentsPerRow = puzzle.getTentsPerRow();
+        this.checkTentsPerColumn = puzzle.getTentsPerColumn();
+        this.board = new char[this.dim][this.dim];
+        this.tents = new long[(this.dim * this.dim + 63) >>> 6];
+        this.maxTentsPerRow = new int[this.dim];
+        this.maxTentsPerColumn = new int[this.dim];
+        for (int row = 0; row < this.dim; row++) {
+            for (int col = 0; col < this.dim; col++) {
+                this.board[row][col] = puzzle.getCell(row, col);
             }
-            this.skipRequired();
-        } // <3 Jim
-    }
+        }
+        for (int tree = 0; tree < puzzle.getTreeCount(); tree++) {
+            int row = puzzle.getTreeRow(tree);
+            int col = puzzle.getTreeCol(tree);
+            this.treeOn = new TreeNode(col, row, tree, this.treeOn);
+            changeMaxRow(row, 1);
+            changeMaxCol(col, 1);
+        }
+        if (!puzzle.countsMatch()) {
+            System.out.println("Error in data file: different number of" +
+            "required tents by tree count and row/column count.");
+            this.treeOn = null;
+        }
+        this.skipRequired();
+    } // <3 Jim
 
     /**
      * checks if the solver has to place a tent in a given row
@@ -241,7 +274,7 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
      * @return if it has to place a thing there
      */
     private int checkRequiredRow(int row) {
-        if (row < 0 || row >= DIM) {
+        if (row < 0 || row >= this.dim) {
             return 0;
         }
         if (this.maxTentsPerRow[row] <= 0 || this.checkTentsPerRow[row] <= 0) {
@@ -260,7 +293,7 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
      * @return if it has to place a thing there
      */
     private int checkRequiredColumn(int col) {
-        if (col < 0 || col >= DIM) {
+        if (col < 0 || col >= this.dim) {
             return 0;
         }
         if (this.maxTentsPerColumn[col] <= 0 || this.checkTentsPerColumn[col] <= 0) {
@@ -280,7 +313,7 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
      */
     private void changeMaxRow(int row, int value) {
         this.maxTentsPerRow[row] += value;
-        if (row + 1 < DIM) {
+        if (row + 1 < this.dim) {
             this.maxTentsPerRow[row + 1] += value;
         }
         if (row > 0) {
@@ -295,7 +328,7 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
      */
     private void changeMaxCol(int col, int value) {
         this.maxTentsPerColumn[col] += value;
-        if (col + 1 < DIM) {
+        if (col + 1 < this.dim) {
             this.maxTentsPerColumn[col + 1] += value;
         }
         if (col > 0) {
@@ -309,33 +342,41 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
      * @param other the config to copy
      */
     private TentConfig(TentConfig other, int lookRow, int lookCol) {
-        this.checkTentsPerColumn = new int[DIM];
-        this.checkTentsPerRow = new int[DIM];
+        this.puzzle = other.puzzle;
+        this.dim = other.dim;
+        this.checkTentsPerColumn = new int[this.dim];
+        this.checkTentsPerRow = new int[this.dim];
         System.arraycopy(other.checkTentsPerColumn, 0,
-                this.checkTentsPerColumn, 0, DIM);
+                this.checkTentsPerColumn, 0, this.dim);
         System.arraycopy(other.checkTentsPerRow, 0,
-                this.checkTentsPerRow, 0, DIM);
-        this.maxTentsPerColumn = new int[DIM];
-        this.maxTentsPerRow = new int[DIM];
+                this.checkTentsPerRow, 0, this.dim);
+        this.maxTentsPerColumn = new int[this.dim];
+        this.maxTentsPerRow = new int[this.dim];
         System.arraycopy(other.maxTentsPerColumn, 0,
-                this.maxTentsPerColumn, 0, DIM);
+                this.maxTentsPerColumn, 0, this.dim);
         System.arraycopy(other.maxTentsPerRow, 0,
-                this.maxTentsPerRow, 0, DIM);
-        this.board = new char[DIM][DIM];
+                this.maxTentsPerRow, 0, this.dim);
+        this.stats = other.stats;
+        this.propagator = other.propagator;
+        this.table = other.table;
+        this.keys = other.keys;
+        this.hash = other.hash;
+        this.matching = other.matching == null ? null : other.matching.clone();
+        this.board = new char[this.dim][this.dim];
+        this.tents = other.tents.clone();
         //System.arraycopy(other.board, 0, this.board, 0, DIM);
-        for (int i = 0; i < DIM; ++i) {
+        for (int i = 0; i < this.dim; ++i) {
             System.arraycopy(other.board[i], 0, this.board[i],
-                    0, DIM);
+                    0, this.dim);
         }
 
-        this.board[lookRow][lookCol] = TENT;
-        this.checkTentsPerRow[lookRow] -= 1;
-        this.checkTentsPerColumn[lookCol] -= 1;
-        changeMaxRow(other.treeOn.row, -1);
-        changeMaxCol(other.treeOn.col, -1);
-
-        this.treeOn = other.treeOn.next;
+        this.treeOn = other.treeOn;
+        this.placed = other.placed;
+        this.placeTent(lookRow, lookCol);
         this.skipRequired();
+        this.pruneTransposed();
+        this.propagate();
+        this.pruneUnmatchable();
 
         //System.out.println(this.treeOn);
         // checks if there's a required direction or place for the tent based on
@@ -343,6 +384,509 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
 
     }
 
+    /**
+     * Gets the tree this config's successors place a tent for.
+     * @return its index in read order, -1 if every tree has its tent
+     */
+    public int getTreeIndex() {
+        return this.treeOn == null ? -1 : this.treeOn.id;
+    }
+
+    /**
+     * Turns on pruning configurations whose remaining trees can't each be
+     * given their own valid cell.  Set on the initial config before solving,
+     * successors inherit it.
+     * @param enabled whether to prune on the matching
+     */
+    public void setMatchingPruning(boolean enabled) {
+        if (!enabled) {
+            this.matching = null;
+            return;
+        }
+        this.matching = new int[this.puzzle.getTreeCount()];
+        Arrays.fill(this.matching, -1);
+        this.pruneUnmatchable();
+    }
+
+    /**
+     * Sets a propagator to run on this config and every successor, marking
+     * cells it proves can't hold a tent as grass.  Set on the initial config
+     * before solving.
+     * @param propagator the propagator, or null to turn propagation off
+     */
+    public void setPropagator(LinePropagator propagator) {
+        this.propagator = propagator;
+        this.propagate();
+    }
+
+    /**
+     * Runs the propagator over a scratch copy of the board.  Grass it finds
+     * is copied back, the tents it forces are left for the trees to find.
+     * If the board can't be solved, marks this config as having no
+     * successors.
+     */
+    private void propagate() {
+        if (this.propagator == null || this.treeOn == null || this.on >= 4) {
+            return;
+        }
+        PropagationScratch scratch = propagationScratch.get();
+        scratch.ensure(this.dim);
+        char[] cells = scratch.cells;
+        for (int row = 0; row < this.dim; row++) {
+            System.arraycopy(this.board[row], 0, cells, row * this.dim, this.dim);
+        }
+        System.arraycopy(this.checkTentsPerRow, 0, scratch.rowNeed, 0, this.dim);
+        System.arraycopy(this.checkTentsPerColumn, 0, scratch.colNeed, 0, this.dim);
+        boolean[] claimable = scratch.claimable;
+        Arrays.fill(claimable, false);
+        for (TreeNode tree = this.treeOn; tree != null; tree = tree.next) {
+            for (int direction = 0; direction < 4; direction++) {
+                int cell = this.puzzle.getSide(tree.id, direction);
+                if (cell >= 0) {
+                    claimable[cell] = true;
+                }
+            }
+        }
+        SearchEvents.Propagation event = null;
+        if (PROPAGATION_EVENT.isEnabled()) {
+            event = new SearchEvents.Propagation();
+            event.begin();
+        }
+        if (this.propagator.propagate(this.dim, cells, scratch.rowNeed,
+                scratch.colNeed, claimable) < 0) {
+            this.on = 4;
+            this.stats.prune(SearchStats.PruneReason.PROPAGATION);
+            propagated(event, -1);
+            return;
+        }
+        int grass = 0;
+        for (int row = 0; row < this.dim; row++) {
+            for (int col = 0; col < this.dim; col++) {
+                if (cells[row * this.dim + col] == GRASS && this.board[row][col] == EMPTY) {
+                    this.board[row][col] = GRASS;
+                    grass++;
+                }
+            }
+        }
+        propagated(event, grass);
+    }
+
+    /**
+     * Ends and records a propagation event, if it is being recorded.
+     * @param event the event, begun before propagating, or null if the
+     *              event type was off
+     * @param grass cells made grass, -1 if the board can't be solved
+     */
+    private void propagated(SearchEvents.Propagation event, int grass) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            int remaining = 0;
+            for (TreeNode tree = this.treeOn; tree != null; tree = tree.next) {
+                remaining++;
+            }
+            event.depth = this.puzzle.getTreeCount() - remaining;
+            event.tree = this.treeOn.id;
+            event.grass = Math.max(grass, 0);
+            event.contradiction = grass < 0;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return bits for the options that change which successors there are:
+     * 1 for matching pruning, 2 for propagation
+     */
+    int getSearchOptions() {
+        return (this.matching != null ? 1 : 0) | (this.propagator != null ? 2 : 0);
+    }
+
+    /**
+     * @return the direction the successor iterator is on
+     */
+    int getOn() {
+        return this.on;
+    }
+
+    /**
+     * @return how far the successor iterator steps
+     */
+    int getStep() {
+        return this.step;
+    }
+
+    /**
+     * @return bits of the directions successors were made in, plus 16 if a
+     * goal has been found below this config
+     */
+    synchronized int getRecord() {
+        return this.dirRecord | (this.solved ? 16 : 0);
+    }
+
+    /**
+     * Puts the successor iterator back where a checkpoint had it.
+     * @param on direction it was on
+     * @param step how far it stepped
+     * @param record directions successors had been made in, plus 16 if a
+     *               goal had been found below
+     */
+    void restore(int on, int step, int record) {
+        this.on = on;
+        this.step = step;
+        this.dirRecord = record & 15;
+        this.solved = (record & 16) != 0;
+    }
+
+    /**
+     * Makes the successor a checkpoint says was being searched below this
+     * config, leaving the iterator where it was then.
+     * @param on direction the iterator was on, one step past the successor
+     * @param step how far it stepped
+     * @param record directions successors had been made in, plus 16 if a
+     *               goal had been found below
+     * @return the successor
+     */
+    TentConfig replay(int on, int step, int record) {
+        this.on = on - step;
+        this.step = step;
+        TentConfig successor = this.next();
+        this.restore(on, step, record);
+        return successor;
+    }
+
+    /**
+     * Gets the counters shared by every config of this search.
+     * @return the search stats
+     */
+    public SearchStats getStats() {
+        return this.stats;
+    }
+
+    /**
+     * if matching pruning is on and the remaining trees can't be matched,
+     * marks this config as having no successors
+     */
+    private void pruneUnmatchable() {
+        if (this.matching != null && this.treeOn != null && this.on < 4 &&
+                !this.updateMatching()) {
+            this.on = 4;
+            this.stats.prune(SearchStats.PruneReason.MATCHING);
+        }
+    }
+
+    /**
+     * Shares a table of dead states with this config and every successor.
+     * A successor whose hash is in the table is pruned, and a config whose
+     * successors all run out without reaching a goal is added to it.  Set
+     * on the initial config before solving.
+     * <p>
+     * Configs only count as dead once every successor handed out has been
+     * searched, so this works with any solver that searches the successors
+     * it takes, in any order and on any thread.  A search that stops early
+     * leaves the configs it didn't finish out of the table.
+     * @param table the table, or null to turn it off
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+        this.keys = table == null ? null : new ZobristKeys(this.puzzle);
+        this.hash = table == null ? 0 : this.computeHash();
+    }
+
+    /**
+     * Gets the Zobrist hash of what is left to solve: which trees are left,
+     * what each row and column still needs, and which cells beside the
+     * trees left are blocked by a tent.  Configs that can only be finished
+     * the same ways hash the same.  Kept up to date only while a
+     * transposition table is set.
+     * @return the hash, 0 if the table is off
+     */
+    public long getHash() {
+        return this.hash;
+    }
+
+    /**
+     * works the hash out from scratch
+     * @return the hash
+     */
+    private long computeHash() {
+        int current = this.treeOn == null ? -1 : this.treeOn.id;
+        long result = this.keys.trees(current);
+        for (int i = 0; i < this.dim; i++) {
+            result ^= this.keys.row(i, this.checkTentsPerRow[i]) ^
+                    this.keys.col(i, this.checkTentsPerColumn[i]);
+        }
+        for (int cell = 0; cell < this.dim * this.dim; cell++) {
+            if (this.keys.matters(cell, current) && this.blocked(cell)) {
+                result ^= this.keys.cell(cell);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Puts the current tree's tent in a cell and moves on to the next tree.
+     * The hash is updated as it goes: cells the tent blocks, the row and
+     * column counts, and blocked cells no tree is left beside.
+     * @param row row of the tent
+     * @param col column of the tent
+     */
+    private void placeTent(int row, int col) {
+        int cell = row * this.dim + col;
+        int tree = this.treeOn.id;
+        if (this.keys != null) {
+            // the tent can go here, so nothing around it was blocked by a
+            // tent except what has one beside it further out
+            this.hash ^= this.keys.cell(cell);
+            for (int i = this.puzzle.getAroundStart(cell); i < this.puzzle.getAroundEnd(cell); i++) {
+                int near = this.puzzle.getAroundRow(i) * this.dim + this.puzzle.getAroundCol(i);
+                if (this.keys.matters(near, tree) && !this.tentBeside(near)) {
+                    this.hash ^= this.keys.cell(near);
+                }
+            }
+            this.hash ^= this.keys.row(row, this.checkTentsPerRow[row]) ^
+                    this.keys.row(row, this.checkTentsPerRow[row] - 1) ^
+                    this.keys.col(col, this.checkTentsPerColumn[col]) ^
+                    this.keys.col(col, this.checkTentsPerColumn[col] - 1);
+        }
+        this.board[row][col] = TENT;
+        this.tents[cell >>> 6] |= 1L << cell;
+        this.placed = new Placed(tree, cell, this.placed);
+        this.checkTentsPerRow[row] -= 1;
+        this.checkTentsPerColumn[col] -= 1;
+        changeMaxRow(this.treeOn.row, -1);
+        changeMaxCol(this.treeOn.col, -1);
+        this.treeOn = this.treeOn.next;
+        if (this.keys != null) {
+            int next = this.treeOn == null ? -1 : this.treeOn.id;
+            this.hash ^= this.keys.trees(tree) ^ this.keys.trees(next);
+            for (int side = 0; side < 4; side++) {
+                int look = this.puzzle.getSide(tree, side);
+                if (look >= 0 && this.keys.matters(look, tree) &&
+                        !this.keys.matters(look, next) && this.blocked(look)) {
+                    this.hash ^= this.keys.cell(look);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param cell a cell
+     * @return true if the cell has a tent on or beside it
+     */
+    private boolean blocked(int cell) {
+        return (this.tents[cell >>> 6] & 1L << cell) != 0 || this.tentBeside(cell);
+    }
+
+    /**
+     * @param cell a cell
+     * @return true if a tent touches the cell
+     */
+    private boolean tentBeside(int cell) {
+        for (int i = this.puzzle.getConflictStart(cell); i < this.puzzle.getConflictEnd(cell); i++) {
+            int near = this.puzzle.getConflict(i);
+            if ((this.tents[near >>> 6] & 1L << near) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * if the table is on and already has this config as dead, marks it as
+     * having no successors
+     */
+    private void pruneTransposed() {
+        if (this.table != null && this.treeOn != null && this.on < 4 &&
+                this.table.isDead(this.hash)) {
+            this.on = 4;
+            this.stats.prune(SearchStats.PruneReason.TRANSPOSITION);
+        }
+    }
+
+    /**
+     * Called once, when this config turns out to be a goal or runs out of
+     * successors.
+     * @param goal whether it is a goal
+     */
+    private void searched(boolean goal) {
+        if (this.table != null && !this.done) {
+            this.done = true;
+            this.finish(goal);
+        }
+    }
+
+    /**
+     * Counts off one unfinished part of this config: its own successors, or
+     * the search below one of them.  Once nothing is left, a config with no
+     * goal below it goes in the table, and the parent is told.
+     * @param goal whether the part finished reached a goal
+     */
+    private void finish(boolean goal) {
+        boolean dead;
+        synchronized (this) {
+            this.solved |= goal;
+            if (--this.unfinished > 0) {
+                return;
+            }
+            dead = !this.solved;
+        }
+        if (dead && this.treeOn != null) {
+            this.table.markDead(this.hash, this.treeOn.id + 1);
+        }
+        TentConfig up = this.parent;
+        this.parent = null;
+        if (up != null) {
+            up.finish(!dead);
+        }
+    }
+
+    /**
+     * Repairs the matching inherited from the parent config.  Pairs whose
+     * cell is no longer a valid place are dropped, then each unmatched
+     * remaining tree looks for an augmenting path.  Since only the few trees
+     * around the last placement usually lose their cell, this is much
+     * cheaper than matching from scratch.
+     * @return true if every remaining tree has its own valid cell
+     */
+    private boolean updateMatching() {
+        MatchScratch scratch = matchScratch.get();
+        scratch.ensure(this.dim * this.dim);
+        int check = scratch.nextCheck();
+        for (TreeNode tree = this.treeOn; tree != null; tree = tree.next) {
+            int side = this.matching[tree.id];
+            int cell = side < 0 ? -1 : this.puzzle.getCandidate(tree.id, side);
+            if (cell >= 0 && scratch.ownerStamp[cell] != check && this.free(cell,
+                    this.puzzle.getCandidateRow(tree.id, side), this.puzzle.getCandidateCol(tree.id, side))) {
+                scratch.owner[cell] = tree.id;
+                scratch.ownerStamp[cell] = check;
+            } else {
+                this.matching[tree.id] = -1;
+            }
+        }
+        for (TreeNode tree = this.treeOn; tree != null; tree = tree.next) {
+            if (this.matching[tree.id] < 0) {
+                scratch.nextSeen();
+                if (!this.augment(tree.id, scratch, check)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * looks for an augmenting path from a tree
+     * @param id tree looking for a cell
+     * @param scratch this thread's scratch arrays
+     * @param check stamp marking owners set during this check
+     * @return true if the tree was matched
+     */
+    private boolean augment(int id, MatchScratch scratch, int check) {
+        for (int direction = 0; direction < 4; direction++) {
+            int cell = this.puzzle.getCandidate(id, direction);
+            if (cell < 0 || scratch.seenStamp[cell] == scratch.seen) {
+                continue;
+            }
+            scratch.seenStamp[cell] = scratch.seen;
+            if (!this.free(cell, this.puzzle.getCandidateRow(id, direction),
+                    this.puzzle.getCandidateCol(id, direction))) {
+                continue;
+            }
+            if (scratch.ownerStamp[cell] != check ||
+                    this.augment(scratch.owner[cell], scratch, check)) {
+                scratch.owner[cell] = id;
+                scratch.ownerStamp[cell] = check;
+                this.matching[id] = direction;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Per thread board and counts for propagation, so a propagated config
+     * makes no garbage.  The propagator uses the whole board array, so the
+     * arrays are remade whenever the size changes.
+     */
+    private static class PropagationScratch {
+        /** copy of the board, row by row */
+        private char[] cells = new char[0];
+        /** copy of the tents each row still needs */
+        private int[] rowNeed = new int[0];
+        /** copy of the tents each column still needs */
+        private int[] colNeed = new int[0];
+        /** whether each cell is next to a tree still needing its tent */
+        private boolean[] claimable = new boolean[0];
+
+        /**
+         * makes sure the arrays fit a board exactly
+         * @param dim square dimension of the board
+         */
+        private void ensure(int dim) {
+            if (this.rowNeed.length != dim) {
+                this.cells = new char[dim * dim];
+                this.rowNeed = new int[dim];
+                this.colNeed = new int[dim];
+                this.claimable = new boolean[dim * dim];
+            }
+        }
+    }
+
+    /**
+     * Per thread arrays for the matching check.  Stamps avoid clearing the
+     * arrays between checks.
+     */
+    private static class MatchScratch {
+        /** tree matched to each cell, valid where ownerStamp is current */
+        private int[] owner = new int[0];
+        /** stamp of the check that set owner */
+        private int[] ownerStamp = new int[0];
+        /** stamp of the augmenting search that visited each cell */
+        private int[] seenStamp = new int[0];
+        /** stamp of the current augmenting search */
+        private int seen;
+        /** stamp of the current check */
+        private int check;
+
+        /**
+         * makes sure the arrays can hold a board
+         * @param cells number of cells on the board
+         */
+        private void ensure(int cells) {
+            if (this.owner.length < cells) {
+                this.owner = new int[cells];
+                this.ownerStamp = new int[cells];
+                this.seenStamp = new int[cells];
+                this.check = 0;
+                this.seen = 0;
+            }
+        }
+
+        /**
+         * @return a check stamp no owner has been marked with
+         */
+        private int nextCheck() {
+            if (this.check == Integer.MAX_VALUE) {
+                Arrays.fill(this.ownerStamp, 0);
+                this.check = 0;
+            }
+            return ++this.check;
+        }
+
+        /**
+         * @return a search stamp no cell has been visited with
+         */
+        private int nextSeen() {
+            if (this.seen == Integer.MAX_VALUE) {
+                Arrays.fill(this.seenStamp, 0);
+                this.seen = 0;
+            }
+            return ++this.seen;
+        }
+    }
+
     /**
      * okay, this needs an explanation to the graders.  Um, sorry.
      * <p>
@@ -369,15 +913,22 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
      * @return new tentconfig
      */
     private TentConfig getSuccessor(int direction) {
-        this.dirRecord += Math.pow(2, direction);
-        int lookRow = this.treeOn.row + dirToRow[direction * 2];
-        int lookCol = this.treeOn.col + dirToCol[direction * 2];
+        this.dirRecord |= 1 << direction;
+        int lookRow = this.puzzle.getCandidateRow(this.treeOn.id, direction);
+        int lookCol = this.puzzle.getCandidateCol(this.treeOn.id, direction);
         /* check to make sure it's ok to place there (offloaded to inside of
         successor iterator) */
 //        if (!this.validPlace(lookRow, lookCol)) {
 //            return null;
 //        }
-        return new TentConfig(this, lookRow, lookCol);
+        TentConfig successor = new TentConfig(this, lookRow, lookCol);
+        if (this.table != null) {
+            successor.parent = this;
+            synchronized (this) {
+                this.unfinished++;
+            }
+        }
+        return successor;
     }
 
     /**
@@ -401,14 +952,8 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
             }
             if (this.step == 4) {
                 if (this.validPlace(this.on)) {
-                    int lookRow = this.treeOn.row + dirToRow[this.on * 2];
-                    int lookCol = this.treeOn.col + dirToCol[this.on * 2];
-                    this.board[lookRow][lookCol] = TENT;
-                    this.checkTentsPerRow[lookRow] -= 1;
-                    this.checkTentsPerColumn[lookCol] -= 1;
-                    changeMaxRow(this.treeOn.row, -1);
-                    changeMaxCol(this.treeOn.col, -1);
-                    this.treeOn = this.treeOn.next;
+                    this.placeTent(this.puzzle.getCandidateRow(this.treeOn.id, this.on),
+                            this.puzzle.getCandidateCol(this.treeOn.id, this.on));
                 } else {
                     return;
                 }
@@ -479,20 +1024,21 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
 
 
     /**
-     * checks if it's ok to place in a direction.  Converts direction to
-     * coordinates based on current tree
+     * checks if it's ok to place in a direction.  Looks the cell up in the
+     * puzzle's candidate table for the current tree, so cells off the board
+     * or that can never hold a tent are already ruled out
      * @param direction direction to look from tree
      * @return if it's ok to place there
      */
     public boolean validPlace(int direction) {
-        if ((this.dirRecord / (Math.pow(2, direction))) % 2 == 1) {
+        if ((this.dirRecord >>> direction & 1) != 0) {
             System.out.println("Tried to place in direction " + direction + " more than once.");
             return false;
         }
-        int lookRow = this.treeOn.row + dirToRow[direction * 2];
-        int lookCol = this.treeOn.col + dirToCol[direction * 2];
-        return this.validPlace(lookRow, lookCol);
-
+        int tree = this.treeOn.id;
+        int cell = this.puzzle.getCandidate(tree, direction);
+        return cell >= 0 && this.free(cell, this.puzzle.getCandidateRow(tree, direction),
+                this.puzzle.getCandidateCol(tree, direction));
     }
 
     /**
@@ -505,12 +1051,23 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
     public boolean validPlace(int row, int col) {
         //System.out.println("Checking place for " + col + ", " + row);
         /* check if inside the board */
-        if (0 > row || DIM <= row) {
+        if (0 > row || this.dim <= row) {
             return false;
         }
-        if (0 > col || DIM <= col) {
+        if (0 > col || this.dim <= col) {
             return false;
         }
+        return this.free(row * this.dim + col, row, col);
+    }
+
+    /**
+     * the checks for a cell known to be on the board
+     * @param cell the cell
+     * @param row its row
+     * @param col its column
+     * @return checks if it's ok to place a tent there
+     */
+    private boolean free(int cell, int row, int col) {
         /* check if place is empty */
         if (this.board[row][col] != EMPTY) {
             return false;
@@ -520,17 +1077,9 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
                 0) {
             return false;
         }
-        /* check to make sure it's not next to tents */
-        for (int direction = 0; direction < 8; direction++) {
-            if (isTent(
-                    row + dirToRow[direction],
-                    col + dirToCol[direction])
-            ) {
-                return false;
-            }
-        }
-        /* if passes all checks, returns true */
-        return true;
+        /* check to make sure it's not next to tents; tents only go in
+        candidate cells, so only those around it are looked at */
+        return !this.tentBeside(cell);
     }
 
     /**
@@ -542,10 +1091,10 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
      */
     public boolean isTent(int row, int col) {
         /* check if inside the board */
-        if (0 > row || DIM <= row) {
+        if (0 > row || this.dim <= row) {
             return false;
         }
-        if (0 > col || DIM <= col) {
+        if (0 > col || this.dim <= col) {
             return false;
         }
         /* then returns if character is tent */
@@ -564,7 +1113,7 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
          * arrays have 0, then it placed the correct amount in each row and
          * column
          * */
-        for (int i = 0; i < DIM; i++) {
+        for (int i = 0; i < this.dim; i++) {
             if (this.checkTentsPerRow[i] != 0 ||
                     this.checkTentsPerColumn[i] != 0) {
 //                System.out.println("Required row/column counts not fulfilled.");
@@ -572,16 +1121,31 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
             }
         }
         /* changes empty to grass. */
-        for (int row = 0; row < DIM; row++) {
-            for (int col = 0; col < DIM; col++) {
+        for (int row = 0; row < this.dim; row++) {
+            for (int col = 0; col < this.dim; col++) {
                 if (this.board[row][col] == EMPTY) {
                     this.board[row][col] = GRASS;
                 }
             }
         }
+        this.searched(true);
         return true;
     }
 
+    /**
+     * A goal is a repeat unless its trees own their tents the first way
+     * they can; see PuzzleDefinition.isFirstPairing.
+     * @return true if the same tents are counted at another goal
+     */
+    @Override
+    public boolean isRepeat() {
+        int[] cells = new int[this.puzzle.getTreeCount()];
+        for (Placed tent = this.placed; tent != null; tent = tent.previous) {
+            cells[tent.tree] = tent.cell;
+        }
+        return !this.puzzle.isFirstPairing(cells);
+    }
+
     @Override
     public String toString() {
         // modified version of getDisplay() specified in ITentsAndTreesTest to
@@ -627,17 +1191,17 @@ public class TentConfig implements Configuration, ITentsAndTreesTest, Iterator<T
 
     @Override
     public int getDIM() {
-        return DIM;
+        return this.dim;
     }
 
     @Override
     public int getTentsRow(int row) {
-        return tentsPerRow[row];
+        return this.puzzle.getTentsRow(row);
     }
 
     @Override
     public int getTentsCol(int col) {
-        return tentsPerColumn[col];
+        return this.puzzle.getTentsCol(col);
     }
 
     @Override
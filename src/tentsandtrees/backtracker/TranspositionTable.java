@@ -0,0 +1,200 @@
+package tentsandtrees.backtracker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size table of search states known to have no solution, keyed by
+ * the 64 bit Zobrist hash TentConfig keeps of what is left to solve.
+ * Reaching a state in the table again means the whole subtree below it
+ * can be skipped.
+ * <p>
+ * Entries come in buckets of two.  The first keeps whichever state had the
+ * most trees left to place, since skipping it saves the most work; the
+ * second takes anything, including states pushed out of the first.  Each
+ * entry is two longs, the key xor the data and the data, written without
+ * locks; a reader that catches an entry half written sees a key that
+ * doesn't match and just misses.  Two states sharing a 64 bit key would be
+ * mistaken for each other, which for any table that fits in memory is far
+ * less likely than a hardware fault.
+ * <p>
+ * Safe to share between threads and between searches of the same puzzle.
+ *
+ * @author Lyx Huston
+ */
+public class TranspositionTable {
+    /** memory budget used when none is given, in bytes */
+    public static final long DEFAULT_BUDGET = 64L << 20;
+    /** bytes in one bucket: two entries of two longs */
+    private static final int BUCKET_BYTES = 32;
+
+    /** key xor data, data; for each entry of each bucket */
+    private final AtomicLongArray slots;
+    /** bucket count minus one */
+    private final int mask;
+    /** lookups that found the state */
+    private final LongAdder hits = new LongAdder();
+    /** lookups that didn't */
+    private final LongAdder misses = new LongAdder();
+    /** states stored */
+    private final LongAdder stores = new LongAdder();
+    /** stored states pushed out of the table by others */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a table with the default budget.
+     */
+    public TranspositionTable() {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * Creates a table using as many buckets as fit in a budget, rounded
+     * down to a power of two.
+     * @param budget memory to use, in bytes, at least 32
+     */
+    public TranspositionTable(long budget) {
+        if (budget < BUCKET_BYTES) {
+            throw new IllegalArgumentException("Budget must be at least " + BUCKET_BYTES +
+                    " bytes, got " + budget);
+        }
+        // AtomicLongArray holds at most 2^31 - 1 longs
+        long buckets = Long.highestOneBit(Math.min(budget / BUCKET_BYTES, 1L << 28));
+        this.slots = new AtomicLongArray((int) buckets * 4);
+        this.mask = (int) buckets - 1;
+    }
+
+    /**
+     * Looks a state up.
+     * @param key Zobrist hash of the state
+     * @return true if the state is known to have no solution
+     */
+    public boolean isDead(long key) {
+        int base = ((int) key & this.mask) << 2;
+        if (matches(base, key) || matches(base + 2, key)) {
+            this.hits.increment();
+            return true;
+        }
+        this.misses.increment();
+        return false;
+    }
+
+    /**
+     * Records a state with no solution.
+     * @param key Zobrist hash of the state
+     * @param size trees left to place in the state, how much work it saves
+     */
+    public void markDead(long key, int size) {
+        int base = ((int) key & this.mask) << 2;
+        if (matches(base, key) || matches(base + 2, key)) {
+            return;
+        }
+        long data = (long) Math.max(1, size) << 1 | 1;
+        long first = this.slots.getOpaque(base + 1);
+        if (first == 0 || size >= first >>> 1) {
+            // move the old first entry down to the second, over whatever is there
+            if (first != 0) {
+                if (this.slots.getOpaque(base + 3) != 0) {
+                    this.evictions.increment();
+                }
+                this.slots.setOpaque(base + 2, this.slots.getOpaque(base));
+                this.slots.setOpaque(base + 3, first);
+            }
+            write(base, key, data);
+        } else {
+            if (this.slots.getOpaque(base + 3) != 0) {
+                this.evictions.increment();
+            }
+            write(base + 2, key, data);
+        }
+        this.stores.increment();
+    }
+
+    /**
+     * Empties the table and zeroes the counters.  Not safe to call while a
+     * search is using the table.
+     */
+    public void clear() {
+        for (int i = 0; i < this.slots.length(); i++) {
+            this.slots.setPlain(i, 0);
+        }
+        this.hits.reset();
+        this.misses.reset();
+        this.stores.reset();
+        this.evictions.reset();
+    }
+
+    /**
+     * @return number of states the table can hold
+     */
+    public int getCapacity() {
+        return this.slots.length() / 2;
+    }
+
+    /**
+     * @return memory used by the entries, in bytes
+     */
+    public long getBytes() {
+        return (long) this.slots.length() * Long.BYTES;
+    }
+
+    /**
+     * @return lookups that found a dead state
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return lookups that didn't
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return dead states stored
+     */
+    public long getStores() {
+        return this.stores.sum();
+    }
+
+    /**
+     * @return stored states pushed out by later ones
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * @param entry index of the entry's first long
+     * @param key key to look for
+     * @return true if the entry holds the key
+     */
+    private boolean matches(int entry, long key) {
+        long data = this.slots.getOpaque(entry + 1);
+        return data != 0 && (this.slots.getOpaque(entry) ^ data) == key;
+    }
+
+    /**
+     * @param entry index of the entry's first long
+     * @param key the key
+     * @param data the data, never 0
+     */
+    private void write(int entry, long key, long data) {
+        this.slots.setOpaque(entry, key ^ data);
+        this.slots.setOpaque(entry + 1, data);
+    }
+
+    @Override
+    public String toString() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return "Transposition table: " + getCapacity() + " entries, " + getBytes() / 1024 + " KB" +
+                System.lineSeparator() +
+                "Transposition hits: " + hits + " of " + lookups + " lookups (" +
+                (lookups == 0 ? 0 : 100 * hits / lookups) + "%)" + System.lineSeparator() +
+                "Transposition stores: " + getStores() + ", evicted: " + getEvictions() +
+                System.lineSeparator();
+    }
+}
@@ -0,0 +1,157 @@
+package tentsandtrees.backtracker;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap of trees keyed by an int.  Knows where every tree
+ * sits, so a tree's key can be changed or the tree removed in log time
+ * without searching for it.  Ties go to the lower tree index.
+ *
+ * @author Lyx Huston
+ */
+class TreeHeap {
+    /** trees, in heap order */
+    private final int[] heap;
+    /** position of each tree in the heap, -1 if not in it */
+    private final int[] position;
+    /** key of each tree */
+    private final int[] key;
+    /** number of trees in the heap */
+    private int size;
+
+    /**
+     * Creates an empty heap.
+     * @param trees number of trees that may be added
+     */
+    TreeHeap(int trees) {
+        this.heap = new int[trees];
+        this.position = new int[trees];
+        this.key = new int[trees];
+        Arrays.fill(this.position, -1);
+        this.size = 0;
+    }
+
+    /**
+     * @return true if there are no trees in the heap
+     */
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @param tree a tree
+     * @return true if the tree is in the heap
+     */
+    boolean contains(int tree) {
+        return this.position[tree] >= 0;
+    }
+
+    /**
+     * @return the tree with the smallest key, without removing it
+     */
+    int peek() {
+        return this.heap[0];
+    }
+
+    /**
+     * Adds a tree that isn't in the heap.
+     * @param tree the tree
+     * @param value its key
+     */
+    void insert(int tree, int value) {
+        this.key[tree] = value;
+        this.heap[this.size] = tree;
+        this.position[tree] = this.size;
+        this.size++;
+        siftUp(this.size - 1);
+    }
+
+    /**
+     * Removes a tree that is in the heap.
+     * @param tree the tree
+     */
+    void remove(int tree) {
+        int at = this.position[tree];
+        this.size--;
+        this.position[tree] = -1;
+        if (at == this.size) {
+            return;
+        }
+        int last = this.heap[this.size];
+        this.heap[at] = last;
+        this.position[last] = at;
+        siftDown(at);
+        siftUp(this.position[last]);
+    }
+
+    /**
+     * Changes the key of a tree that is in the heap.
+     * @param tree the tree
+     * @param value its new key
+     */
+    void update(int tree, int value) {
+        int old = this.key[tree];
+        if (old == value) {
+            return;
+        }
+        this.key[tree] = value;
+        if (value < old) {
+            siftUp(this.position[tree]);
+        } else {
+            siftDown(this.position[tree]);
+        }
+    }
+
+    /**
+     * @param a a tree
+     * @param b another tree
+     * @return true if a should sit above b
+     */
+    private boolean less(int a, int b) {
+        return this.key[a] < this.key[b] || (this.key[a] == this.key[b] && a < b);
+    }
+
+    /**
+     * moves the tree at a heap position up until its parent is smaller
+     * @param at heap position
+     */
+    private void siftUp(int at) {
+        int tree = this.heap[at];
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (!less(tree, this.heap[parent])) {
+                break;
+            }
+            this.heap[at] = this.heap[parent];
+            this.position[this.heap[at]] = at;
+            at = parent;
+        }
+        this.heap[at] = tree;
+        this.position[tree] = at;
+    }
+
+    /**
+     * moves the tree at a heap position down until its children are larger
+     * @param at heap position
+     */
+    private void siftDown(int at) {
+        int tree = this.heap[at];
+        while (true) {
+            int child = 2 * at + 1;
+            if (child >= this.size) {
+                break;
+            }
+            if (child + 1 < this.size && less(this.heap[child + 1], this.heap[child])) {
+                child++;
+            }
+            if (!less(this.heap[child], tree)) {
+                break;
+            }
+            this.heap[at] = this.heap[child];
+            this.position[this.heap[at]] = at;
+            at = child;
+        }
+        this.heap[at] = tree;
+        this.position[tree] = at;
+    }
+}
@@ -0,0 +1,114 @@
+package tentsandtrees.backtracker;
+
+import java.util.Arrays;
+
+/**
+ * Random keys for hashing what is left of a TentConfig search, and which
+ * cells still matter to it.  A state is hashed as the xor of a key for the
+ * trees left to place, a key for what each row and column still needs,
+ * and a key for each cell beside a remaining tree that can no longer take
+ * a tent.  Tents and grass anywhere else don't change what can still be
+ * done, so states that differ only there hash the same.
+ * <p>
+ * Trees are placed from the highest id down, so the trees left are always
+ * 0 to the id of the current tree, and a cell stops mattering once every
+ * tree beside it is placed.
+ *
+ * @author Lyx Huston
+ */
+final class ZobristKeys {
+    /** key for each cell being blocked */
+    private final long[] cells;
+    /** key for each number of trees left, id of the current tree + 1 */
+    private final long[] trees;
+    /** key for each row needing each number of tents, row * stride + count */
+    private final long[] rows;
+    /** key for each column needing each number of tents */
+    private final long[] cols;
+    /** largest count plus one */
+    private final int stride;
+    /** lowest id of a tree beside each cell, MAX_VALUE if none */
+    private final int[] firstTree;
+
+    /**
+     * Makes the keys for a puzzle.  The same puzzle always gets the same
+     * keys, so tables can be shared between searches.
+     * @param puzzle the puzzle
+     */
+    ZobristKeys(PuzzleDefinition puzzle) {
+        int dim = puzzle.getDim();
+        int most = 0;
+        for (int i = 0; i < dim; i++) {
+            most = Math.max(most, Math.max(puzzle.getTentsRow(i), puzzle.getTentsCol(i)));
+        }
+        this.stride = most + 1;
+        long seed = dim;
+        this.cells = new long[dim * dim];
+        for (int i = 0; i < this.cells.length; i++) {
+            this.cells[i] = Hashing.mix(++seed);
+        }
+        this.trees = new long[puzzle.getTreeCount() + 1];
+        for (int i = 0; i < this.trees.length; i++) {
+            this.trees[i] = Hashing.mix(++seed);
+        }
+        this.rows = new long[dim * this.stride];
+        this.cols = new long[dim * this.stride];
+        for (int i = 0; i < this.rows.length; i++) {
+            this.rows[i] = Hashing.mix(++seed);
+            this.cols[i] = Hashing.mix(++seed);
+        }
+        this.firstTree = new int[dim * dim];
+        Arrays.fill(this.firstTree, Integer.MAX_VALUE);
+        for (int tree = 0; tree < puzzle.getTreeCount(); tree++) {
+            for (int side = 0; side < 4; side++) {
+                int cell = puzzle.getSide(tree, side);
+                if (cell >= 0 && this.firstTree[cell] == Integer.MAX_VALUE) {
+                    this.firstTree[cell] = tree;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param cell a cell
+     * @return key for the cell being blocked
+     */
+    long cell(int cell) {
+        return this.cells[cell];
+    }
+
+    /**
+     * @param current id of the current tree, -1 once every tree is placed
+     * @return key for the trees left
+     */
+    long trees(int current) {
+        return this.trees[current + 1];
+    }
+
+    /**
+     * @param row a row
+     * @param count tents it still needs
+     * @return key for the row needing that many
+     */
+    long row(int row, int count) {
+        return this.rows[row * this.stride + count];
+    }
+
+    /**
+     * @param col a column
+     * @param count tents it still needs
+     * @return key for the column needing that many
+     */
+    long col(int col, int count) {
+        return this.cols[col * this.stride + count];
+    }
+
+    /**
+     * @param cell a cell
+     * @param current id of the current tree, -1 once every tree is placed
+     * @return true if a tree still to be placed is beside the cell
+     */
+    boolean matters(int cell, int current) {
+        return this.firstTree[cell] <= current;
+    }
+}
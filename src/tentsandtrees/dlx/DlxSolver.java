@@ -0,0 +1,125 @@
+package tentsandtrees.dlx;
+
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionCounter;
+import tentsandtrees.backtracker.Solver;
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Solves a puzzle as an exact cover problem with dancing links, so the
+ * classic exact cover search can be compared with the backtracking
+ * solvers on the same puzzles.  Counting enumerates every cover of the
+ * matrix.
+ * <p>
+ * The config count is the number of matrix rows tried, one per tent
+ * placed, the same as the backtracking solvers count.
+ *
+ * @author Lyx Huston
+ */
+public class DlxSolver implements Solver {
+    /** Should debug output be enabled? */
+    private final boolean debug;
+    /** rows tried by every search so far */
+    private long configCount;
+    /** matrix of the last search */
+    private ExactCover last;
+
+    /**
+     * Initialize a new dancing links solver.
+     *
+     * @param debug Is debugging output enabled?
+     */
+    public DlxSolver(boolean debug) {
+        this.debug = debug;
+        if (this.debug) {
+            System.out.println("DlxSolver debugging enabled...");
+        }
+        this.configCount = 0;
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid initial configuration, must implement
+     *               ITentsAndTreesTest so the puzzle can be read from it
+     * @return A solution config, or empty if no solution
+     */
+    @Override
+    public Optional<Configuration> solve(Configuration config) {
+        Configuration[] found = new Configuration[1];
+        search((ITentsAndTreesTest) config, SolutionCounter.first(this.printing(solution -> found[0] = solution)));
+        return Optional.ofNullable(found[0]);
+    }
+
+    /**
+     * Enumerates the covers of the puzzle's matrix until there are no more
+     * or the limit is reached.
+     *
+     * @param config A valid initial configuration, must implement
+     *               ITentsAndTreesTest
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    @Override
+    public long countSolutions(Configuration config, long limit, Consumer<Configuration> consumer) {
+        return countPuzzleSolutions((ITentsAndTreesTest) config, limit, consumer);
+    }
+
+    /**
+     * Same as countSolutions, for a puzzle that isn't a configuration, such
+     * as a freshly generated board.  Only the trees and counts are read.
+     *
+     * @param puzzle the puzzle
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    public long countPuzzleSolutions(ITentsAndTreesTest puzzle, long limit,
+                                     Consumer<Configuration> consumer) {
+        SolutionCounter counter = new SolutionCounter(limit, this.printing(consumer));
+        search(puzzle, counter);
+        return counter.getCount();
+    }
+
+    /**
+     * @param consumer where solutions go
+     * @return the consumer, printing each solution first when debugging
+     */
+    private Consumer<Configuration> printing(Consumer<Configuration> consumer) {
+        return solution -> {
+            if (this.debug) {
+                System.out.print("Goal config: " + System.lineSeparator() + solution);
+            }
+            consumer.accept(solution);
+        };
+    }
+
+    /**
+     * Builds the puzzle's matrix and searches it.
+     * @param puzzle the puzzle
+     * @param counter where covers go
+     */
+    private void search(ITentsAndTreesTest puzzle, SolutionCounter counter) {
+        ExactCover matrix = new ExactCover(PuzzleDefinition.of(puzzle));
+        this.last = matrix;
+        matrix.search(counter);
+        this.configCount += matrix.getNodes();
+    }
+
+    @Override
+    public long getConfigCount() {
+        return this.configCount;
+    }
+
+    /**
+     * @return matrix size and rows tried by the last search
+     */
+    public String getSummary() {
+        return this.last == null ? "" : this.last.toString();
+    }
+}
@@ -0,0 +1,373 @@
+package tentsandtrees.dlx;
+
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionConfig;
+import tentsandtrees.backtracker.SolutionCounter;
+import tentsandtrees.backtracker.SolveBudget;
+import tentsandtrees.backtracker.Solver;
+
+import java.util.Arrays;
+
+import static tentsandtrees.test.ITentsAndTreesTest.EMPTY;
+import static tentsandtrees.test.ITentsAndTreesTest.TENT;
+import static tentsandtrees.test.ITentsAndTreesTest.TREE;
+
+/**
+ * A puzzle as a generalized exact cover problem, searched with Knuth's
+ * dancing links.  There is a matrix row for each tree putting its tent in
+ * each of its candidate cells, and the columns are:
+ * <ul>
+ *     <li>one for each tree, primary, covered exactly once</li>
+ *     <li>one for each 2x2 window of the board, secondary, covered at most
+ *     once; two tents touch, or share a cell, exactly when some window
+ *     holds both</li>
+ *     <li>one for each row and each column of the board, bounded counters
+ *     that must be covered exactly their count of times.  A counter column
+ *     stays in the matrix until it is used up, then is covered like any
+ *     other, and a counter with fewer rows left than it still needs is a
+ *     dead end</li>
+ * </ul>
+ * The search always branches on the tree with the fewest rows left.
+ * <p>
+ * The links live in flat int arrays, one entry per node, with the column
+ * headers first, so the search only ever follows array indices.  A matrix
+ * is good for one search: one that stops early leaves it part way.
+ *
+ * @author Lyx Huston
+ */
+public class ExactCover {
+    /** the root header, linking the primary columns */
+    private static final int ROOT = 0;
+
+    /** the puzzle */
+    private final PuzzleDefinition puzzle;
+    /** first window column; tree columns come before it, from 1 */
+    private final int firstWindow;
+    /** first counter column: the board's rows, then its columns */
+    private final int firstCount;
+    /** number of columns, plus one for the root */
+    private final int columns;
+    /** number of rows */
+    private final int rows;
+    /** node to the left of each node */
+    private final int[] left;
+    /** node to the right of each node */
+    private final int[] right;
+    /** node above each node */
+    private final int[] up;
+    /** node below each node */
+    private final int[] down;
+    /** column header of each node */
+    private final int[] column;
+    /** cell the tent of each node's row goes in */
+    private final int[] cell;
+    /** nodes left in each column */
+    private final int[] length;
+    /** times each counter column must still be covered */
+    private final int[] bound;
+    /** node of the row tried at each level of the search */
+    private final int[] chosen;
+    /** rows tried */
+    private long nodes;
+
+    /**
+     * Builds the matrix for a puzzle.
+     * @param puzzle the puzzle
+     */
+    public ExactCover(PuzzleDefinition puzzle) {
+        this.puzzle = puzzle;
+        int dim = puzzle.getDim();
+        int trees = puzzle.getTreeCount();
+        int windows = (dim - 1) * (dim - 1);
+        this.firstWindow = 1 + trees;
+        this.firstCount = this.firstWindow + windows;
+        this.columns = this.firstCount + 2 * dim;
+        int rows = 0;
+        for (int tree = 0; tree < trees; tree++) {
+            for (int side = 0; side < 4; side++) {
+                if (puzzle.getCandidate(tree, side) >= 0) {
+                    rows++;
+                }
+            }
+        }
+        this.rows = rows;
+        // a tree, up to four windows and two counters per row
+        int capacity = this.columns + 7 * rows;
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.up = new int[capacity];
+        this.down = new int[capacity];
+        this.column = new int[capacity];
+        this.cell = new int[capacity];
+        this.length = new int[this.columns];
+        this.bound = new int[this.columns];
+        this.chosen = new int[trees + 1];
+
+        for (int header = 0; header < this.columns; header++) {
+            this.up[header] = header;
+            this.down[header] = header;
+            this.column[header] = header;
+            // only the trees are on the root's list
+            boolean primary = header < this.firstWindow;
+            this.left[header] = primary ? (header + this.firstWindow - 1) % this.firstWindow : header;
+            this.right[header] = primary ? (header + 1) % this.firstWindow : header;
+        }
+        for (int line = 0; line < dim; line++) {
+            this.bound[this.firstCount + line] = puzzle.getTentsRow(line);
+            this.bound[this.firstCount + dim + line] = puzzle.getTentsCol(line);
+        }
+
+        int size = this.columns;
+        for (int tree = 0; tree < trees; tree++) {
+            for (int side = 0; side < 4; side++) {
+                int place = puzzle.getCandidate(tree, side);
+                if (place < 0) {
+                    continue;
+                }
+                int row = puzzle.getCandidateRow(tree, side);
+                int col = puzzle.getCandidateCol(tree, side);
+                int first = size;
+                size = this.append(first, size, 1 + tree, place);
+                for (int windowRow = Math.max(0, row - 1); windowRow <= Math.min(dim - 2, row); windowRow++) {
+                    for (int windowCol = Math.max(0, col - 1); windowCol <= Math.min(dim - 2, col); windowCol++) {
+                        size = this.append(first, size, this.firstWindow + windowRow * (dim - 1) + windowCol, place);
+                    }
+                }
+                size = this.append(first, size, this.firstCount + row, place);
+                size = this.append(first, size, this.firstCount + dim + col, place);
+            }
+        }
+    }
+
+    /**
+     * Adds a node to the end of a column and of the row being built.
+     * @param first first node of the row
+     * @param node the new node
+     * @param header its column
+     * @param place cell of the row's tent
+     * @return the next free node
+     */
+    private int append(int first, int node, int header, int place) {
+        this.column[node] = header;
+        this.cell[node] = place;
+        this.up[node] = this.up[header];
+        this.down[node] = header;
+        this.down[this.up[header]] = node;
+        this.up[header] = node;
+        this.length[header]++;
+        this.left[node] = node == first ? node : this.left[first];
+        this.right[node] = first;
+        this.right[this.left[node]] = node;
+        this.left[first] = node;
+        return node + 1;
+    }
+
+    /**
+     * Searches for every way to cover the matrix, passing each tent layout
+     * on to the counter.  Stops early once the counter has enough, or when
+     * the thread is interrupted or its SolveBudget is spent.
+     * @param counter gets each solution
+     */
+    public void search(SolutionCounter counter) {
+        int level = 0;
+        while (true) {
+            // a new level: a solution, a dead end, or branch on the tree
+            // with the fewest rows left
+            boolean branching = false;
+            if (this.right[ROOT] == ROOT) {
+                // a cover is a pairing of trees and tents, and when counting
+                // only the first pairing of each set of tents is a solution
+                if (this.countsMet() && (!counter.isCounting() || this.firstPairing(level)) &&
+                        counter.offer(this.solution(level))) {
+                    return;
+                }
+            } else if (this.feasible()) {
+                int header = this.choose();
+                this.cover(header);
+                this.chosen[level] = this.down[header];
+                branching = true;
+            }
+            // try the next row, backing up while a level has none left
+            while (true) {
+                if (branching) {
+                    int node = this.chosen[level];
+                    int header = this.column[node];
+                    if (node != header) {
+                        this.nodes++;
+                        if ((this.nodes & Solver.INTERRUPT_CHECK_MASK) == 0 && SolveBudget.shouldStop()) {
+                            return;
+                        }
+                        this.commit(node);
+                        level++;
+                        break;
+                    }
+                    this.uncover(header);
+                }
+                if (level == 0) {
+                    return;
+                }
+                level--;
+                int node = this.chosen[level];
+                this.uncommit(node);
+                this.chosen[level] = this.down[node];
+                branching = true;
+            }
+        }
+    }
+
+    /**
+     * @return the tree column with the fewest rows left
+     */
+    private int choose() {
+        int best = this.right[ROOT];
+        for (int header = this.right[best]; header != ROOT; header = this.right[header]) {
+            if (this.length[header] < this.length[best]) {
+                best = header;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return false if some row or column of the board needs more tents
+     * than it has rows left to give them
+     */
+    private boolean feasible() {
+        for (int header = this.firstCount; header < this.columns; header++) {
+            if (this.bound[header] > this.length[header]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if every row and column of the board has its count
+     */
+    private boolean countsMet() {
+        for (int header = this.firstCount; header < this.columns; header++) {
+            if (this.bound[header] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Covers the rest of a chosen row's columns: windows are covered, and
+     * counters counted down, covered once used up.  The row's tree column
+     * is already covered.
+     * @param node the row's node in the tree column
+     */
+    private void commit(int node) {
+        for (int j = this.right[node]; j != node; j = this.right[j]) {
+            int header = this.column[j];
+            if (header < this.firstCount || --this.bound[header] == 0) {
+                this.cover(header);
+            }
+        }
+    }
+
+    /**
+     * Undoes commit, in reverse.
+     * @param node the row's node in the tree column
+     */
+    private void uncommit(int node) {
+        for (int j = this.left[node]; j != node; j = this.left[j]) {
+            int header = this.column[j];
+            if (header < this.firstCount || this.bound[header]++ == 0) {
+                this.uncover(header);
+            }
+        }
+    }
+
+    /**
+     * Takes a column off the header list and every row in it out of the
+     * other columns.
+     * @param header the column
+     */
+    private void cover(int header) {
+        this.right[this.left[header]] = this.right[header];
+        this.left[this.right[header]] = this.left[header];
+        for (int i = this.down[header]; i != header; i = this.down[i]) {
+            for (int j = this.right[i]; j != i; j = this.right[j]) {
+                this.down[this.up[j]] = this.down[j];
+                this.up[this.down[j]] = this.up[j];
+                this.length[this.column[j]]--;
+            }
+        }
+    }
+
+    /**
+     * Puts back a column, in exactly the reverse order of cover.
+     * @param header the column
+     */
+    private void uncover(int header) {
+        for (int i = this.up[header]; i != header; i = this.up[i]) {
+            for (int j = this.left[i]; j != i; j = this.left[j]) {
+                this.length[this.column[j]]++;
+                this.down[this.up[j]] = j;
+                this.up[this.down[j]] = j;
+            }
+        }
+        this.right[this.left[header]] = header;
+        this.left[this.right[header]] = header;
+    }
+
+    /**
+     * @param level rows chosen, one per tree
+     * @return true if the trees own the chosen tents the first way they can
+     */
+    private boolean firstPairing(int level) {
+        int[] cells = new int[this.puzzle.getTreeCount()];
+        for (int i = 0; i < level; i++) {
+            cells[this.column[this.chosen[i]] - 1] = this.cell[this.chosen[i]];
+        }
+        return this.puzzle.isFirstPairing(cells);
+    }
+
+    /**
+     * @param level rows chosen
+     * @return the board with a tent in each chosen row's cell
+     */
+    private SolutionConfig solution(int level) {
+        int dim = this.puzzle.getDim();
+        char[] cells = new char[dim * dim];
+        Arrays.fill(cells, EMPTY);
+        for (int tree = 0; tree < this.puzzle.getTreeCount(); tree++) {
+            cells[this.puzzle.getTreeRow(tree) * dim + this.puzzle.getTreeCol(tree)] = TREE;
+        }
+        for (int i = 0; i < level; i++) {
+            cells[this.cell[this.chosen[i]]] = TENT;
+        }
+        return new SolutionConfig(dim, this.puzzle.getTentsPerRow(),
+                this.puzzle.getTentsPerColumn(), cells);
+    }
+
+    /**
+     * @return rows tried so far
+     */
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * @return number of matrix rows, one per tree and candidate cell
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * @return number of columns: trees, windows and counters
+     */
+    public int getColumns() {
+        return this.columns - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "Exact cover: " + this.rows + " rows, " + (this.columns - 1) + " columns, " +
+                this.nodes + " rows tried" + System.lineSeparator();
+    }
+}
@@ -0,0 +1,157 @@
+package tentsandtrees.generator;
+
+import tentsandtrees.backtracker.SolutionConfig;
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A puzzle made by PuzzleGenerator, along with the tents it was made from.
+ * Shows as the unsolved board: trees and empty cells.
+ *
+ * @author Lyx Huston
+ */
+public class GeneratedPuzzle implements ITentsAndTreesTest {
+    /** seed the puzzle was made from */
+    private final long seed;
+    /** square dimension of field */
+    private final int dim;
+    /** number of tents per row */
+    private final int[] tentsPerRow;
+    /** number of tents per column */
+    private final int[] tentsPerColumn;
+    /** cells row by row, trees and tents */
+    private final char[] cells;
+    /** number of trees */
+    private final int trees;
+
+    /**
+     * @param seed seed the puzzle was made from
+     * @param dim square dimension of field
+     * @param cells cells row by row with trees and the tents they were made
+     *              from, empty everywhere else; kept, not copied
+     */
+    GeneratedPuzzle(long seed, int dim, char[] cells) {
+        this.seed = seed;
+        this.dim = dim;
+        this.cells = cells;
+        this.tentsPerRow = new int[dim];
+        this.tentsPerColumn = new int[dim];
+        int count = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] == TENT) {
+                this.tentsPerRow[cell / dim]++;
+                this.tentsPerColumn[cell % dim]++;
+            } else if (cells[cell] == TREE) {
+                count++;
+            }
+        }
+        this.trees = count;
+    }
+
+    /**
+     * @return seed the puzzle was made from
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * @return number of trees
+     */
+    public int getTrees() {
+        return this.trees;
+    }
+
+    /**
+     * Gets the board the puzzle was made from.  If the puzzle isn't unique
+     * this is just one of its solutions.
+     * @return the tents the puzzle was made from, grass everywhere else
+     */
+    public SolutionConfig getSolution() {
+        return new SolutionConfig(this.dim, this.tentsPerRow, this.tentsPerColumn, this.cells);
+    }
+
+    /**
+     * Writes the puzzle in the format TentConfig reads.
+     * @return the puzzle file contents
+     */
+    public String toText() {
+        StringBuilder result = new StringBuilder(2 * this.cells.length + 8 * this.dim);
+        result.append(this.dim).append('\n');
+        appendLine(result, this.tentsPerRow);
+        appendLine(result, this.tentsPerColumn);
+        for (int row = 0; row < this.dim; row++) {
+            for (int col = 0; col < this.dim; col++) {
+                if (col > 0) {
+                    result.append(' ');
+                }
+                result.append(getCell(row, col));
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    /**
+     * adds a line of counts
+     * @param result where to add it
+     * @param counts the counts
+     */
+    private static void appendLine(StringBuilder result, int[] counts) {
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) {
+                result.append(' ');
+            }
+            result.append(counts[i]);
+        }
+        result.append('\n');
+    }
+
+    /**
+     * Writes the puzzle to a file TentConfig can read.
+     * @param path file to write
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path path) throws IOException {
+        Files.writeString(path, toText());
+    }
+
+    @Override
+    public String toString() {
+        return getDisplay();
+    }
+
+    @Override
+    public int getDIM() {
+        return this.dim;
+    }
+
+    @Override
+    public int getTentsRow(int row) {
+        return this.tentsPerRow[row];
+    }
+
+    @Override
+    public int getTentsCol(int col) {
+        return this.tentsPerColumn[col];
+    }
+
+    @Override
+    public char getCell(int row, int col) {
+        char cell = this.cells[row * this.dim + col];
+        return cell == TREE ? TREE : EMPTY;
+    }
+
+    @Override
+    public int getCursorRow() {
+        return -1;
+    }
+
+    @Override
+    public int getCursorCol() {
+        return -1;
+    }
+}
@@ -0,0 +1,172 @@
+package tentsandtrees.generator;
+
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.LinePropagator;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static tentsandtrees.test.ITentsAndTreesTest.EMPTY;
+import static tentsandtrees.test.ITentsAndTreesTest.TENT;
+import static tentsandtrees.test.ITentsAndTreesTest.TREE;
+
+/**
+ * Makes random puzzles that always have a solution.  Tents are dropped on
+ * the board in random order wherever they don't touch another tent, each
+ * with a tree on a random free side, and the row and column counts are read
+ * off the result.  The same seed always makes the same puzzle.
+ * <p>
+ * Density is trees per cell.  Tents can't touch, so no more than about a
+ * quarter of the cells can hold a tree; past roughly a fifth the generator
+ * runs out of room and the puzzle just has fewer trees than asked for.
+ * <p>
+ * Making a puzzle is a shuffle and one pass over the board.  Asking for
+ * unique puzzles adds a solve (the most constrained InPlaceSolver with line
+ * propagation, stopping at a second solution) for every try, which costs a
+ * lot more on big dense boards.
+ *
+ * @author Lyx Huston
+ */
+public class PuzzleGenerator {
+    /** number of seeds tried for a unique puzzle before giving up */
+    public static final int MAX_ATTEMPTS = 1000;
+
+    /** rows to look at for each side, S E N W */
+    private static final int[] SIDE_ROW = {1, 0, -1, 0};
+    /** columns to look at for each side, S E N W */
+    private static final int[] SIDE_COL = {0, 1, 0, -1};
+
+    /** square dimension of the puzzles */
+    private final int dim;
+    /** trees to place */
+    private final int target;
+    /** whether to only keep puzzles with one solution */
+    private boolean uniqueOnly;
+    /** solver for the uniqueness check, made when first needed */
+    private InPlaceSolver solver;
+    /** cells in the order tents are tried */
+    private final int[] order;
+
+    /**
+     * Creates a generator.
+     * @param dim square dimension of the puzzles
+     * @param density trees per cell, 0 to 0.25
+     */
+    public PuzzleGenerator(int dim, double density) {
+        if (dim < 1) {
+            throw new IllegalArgumentException("Dimension must be at least 1, got " + dim);
+        }
+        if (!(density >= 0 && density <= 0.25)) {
+            throw new IllegalArgumentException("Density must be from 0 to 0.25, got " + density);
+        }
+        this.dim = dim;
+        this.target = (int) Math.round(dim * dim * density);
+        this.uniqueOnly = false;
+        this.order = new int[dim * dim];
+    }
+
+    /**
+     * Turns the uniqueness filter on or off.  With it on, generate keeps
+     * trying new seeds, worked out from the one given, until it finds a
+     * puzzle with exactly one solution.
+     * @param uniqueOnly whether to only make puzzles with one solution
+     */
+    public void setUniqueOnly(boolean uniqueOnly) {
+        this.uniqueOnly = uniqueOnly;
+    }
+
+    /**
+     * Makes a puzzle.  Not safe to call from several threads at once; give
+     * each thread its own generator.
+     * @param seed seed for the puzzle
+     * @return the puzzle; its seed is the one that made it, which is not
+     * the one given if earlier tries weren't unique
+     * @throws IllegalStateException if no unique puzzle turned up in
+     * MAX_ATTEMPTS tries
+     */
+    public GeneratedPuzzle generate(long seed) {
+        if (!this.uniqueOnly) {
+            return place(seed);
+        }
+        if (this.solver == null) {
+            this.solver = new InPlaceSolver(false, InPlaceSolver.TreeOrder.MOST_CONSTRAINED);
+            this.solver.setPropagator(new LinePropagator());
+        }
+        long trySeed = seed;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            GeneratedPuzzle puzzle = place(trySeed);
+            if (this.solver.countPuzzleSolutions(puzzle, 2, solution -> { }) == 1) {
+                return puzzle;
+            }
+            trySeed = new SplittableRandom(trySeed).nextLong();
+        }
+        throw new IllegalStateException("No unique " + this.dim + "x" + this.dim +
+                " puzzle with " + this.target + " trees in " + MAX_ATTEMPTS +
+                " tries from seed " + seed);
+    }
+
+    /**
+     * places tents and trees for one seed
+     * @param seed the seed
+     * @return the puzzle
+     */
+    private GeneratedPuzzle place(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int dim = this.dim;
+        char[] cells = new char[dim * dim];
+        Arrays.fill(cells, EMPTY);
+        int[] order = this.order;
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        int[] free = new int[4];
+        int trees = 0;
+        // shuffle lazily, stopping once there are enough trees
+        for (int i = 0; i < order.length && trees < this.target; i++) {
+            int pick = i + random.nextInt(order.length - i);
+            int cell = order[pick];
+            order[pick] = order[i];
+            order[i] = cell;
+            if (cells[cell] != EMPTY || touchesTent(cells, cell)) {
+                continue;
+            }
+            int row = cell / dim;
+            int col = cell % dim;
+            int sides = 0;
+            for (int side = 0; side < 4; side++) {
+                int lookRow = row + SIDE_ROW[side];
+                int lookCol = col + SIDE_COL[side];
+                if (lookRow >= 0 && lookRow < dim && lookCol >= 0 && lookCol < dim &&
+                        cells[lookRow * dim + lookCol] == EMPTY) {
+                    free[sides++] = lookRow * dim + lookCol;
+                }
+            }
+            if (sides == 0) {
+                continue;
+            }
+            cells[cell] = TENT;
+            cells[free[random.nextInt(sides)]] = TREE;
+            trees++;
+        }
+        return new GeneratedPuzzle(seed, dim, cells);
+    }
+
+    /**
+     * checks the 8 cells around a cell for a tent
+     * @param cells the board
+     * @param cell the cell
+     * @return true if a tent touches the cell
+     */
+    private boolean touchesTent(char[] cells, int cell) {
+        int row = cell / this.dim;
+        int col = cell % this.dim;
+        for (int lookRow = Math.max(0, row - 1); lookRow <= Math.min(this.dim - 1, row + 1); lookRow++) {
+            for (int lookCol = Math.max(0, col - 1); lookCol <= Math.min(this.dim - 1, col + 1); lookCol++) {
+                if (cells[lookRow * this.dim + lookCol] == TENT) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
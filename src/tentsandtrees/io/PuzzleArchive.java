@@ -0,0 +1,156 @@
+package tentsandtrees.io;
+
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Reads puzzles by number out of an archive written by PuzzleArchiveWriter.
+ * Opening it reads only the header, trailer and index; each puzzle is read
+ * from the file when asked for, with positioned reads, so an archive can
+ * be bigger than a memory mapping allows and several threads can read one
+ * archive at once.
+ *
+ * @author Lyx Huston
+ */
+public class PuzzleArchive implements Closeable {
+    /** the file, for error messages */
+    private final Path path;
+    /** the file */
+    private final FileChannel channel;
+    /** where each record starts, and where the index starts after the last */
+    private final long[] offsets;
+
+    /**
+     * Opens an archive.
+     * @param path the file
+     * @throws IOException if the file can't be read, isn't an archive, or is
+     * a version this doesn't know
+     */
+    public PuzzleArchive(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = this.channel.size();
+            if (size < PuzzleFormat.HEADER_SIZE + PuzzleFormat.TRAILER_SIZE) {
+                throw error("too short to be an archive");
+            }
+            ByteBuffer header = read(0, PuzzleFormat.HEADER_SIZE);
+            if (header.getInt() != PuzzleFormat.MAGIC) {
+                throw error("not a puzzle archive");
+            }
+            if (header.get() != PuzzleFormat.VERSION) {
+                throw error("archive version " + header.get(4) + " isn't supported");
+            }
+            ByteBuffer trailer = read(size - PuzzleFormat.TRAILER_SIZE, PuzzleFormat.TRAILER_SIZE);
+            long index = trailer.getLong();
+            int count = trailer.getInt();
+            if (trailer.getInt() != PuzzleFormat.MAGIC ||
+                    count < 0 || count > Integer.MAX_VALUE / 8 || index < PuzzleFormat.HEADER_SIZE ||
+                    index + 8L * count != size - PuzzleFormat.TRAILER_SIZE) {
+                throw error("archive index is missing or broken");
+            }
+            this.offsets = new long[count + 1];
+            ByteBuffer offsets = read(index, 8 * count);
+            for (int i = 0; i < count; i++) {
+                this.offsets[i] = offsets.getLong();
+                if (this.offsets[i] < (i == 0 ? PuzzleFormat.HEADER_SIZE : this.offsets[i - 1]) ||
+                        this.offsets[i] >= index) {
+                    throw error("record " + i + " is out of place");
+                }
+            }
+            this.offsets[count] = index;
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of puzzles in the archive
+     */
+    public int size() {
+        return this.offsets.length - 1;
+    }
+
+    /**
+     * Reads a puzzle.
+     * @param index puzzle number, from 0
+     * @return the puzzle; only trees are kept, every other cell is empty
+     * @throws IOException if the file can't be read or the record is broken
+     */
+    public PuzzleDefinition getPuzzle(int index) throws IOException {
+        return PuzzleFormat.decodePuzzle(record(index));
+    }
+
+    /**
+     * Reads a solution.
+     * @param index puzzle number, from 0
+     * @return the solution, or empty if the archive doesn't have one
+     * @throws IOException if the file can't be read or the record is broken
+     */
+    public Optional<SolutionConfig> getSolution(int index) throws IOException {
+        ByteBuffer record = record(index);
+        return PuzzleFormat.hasSolution(record) ?
+                Optional.of(PuzzleFormat.decodeSolution(record)) : Optional.empty();
+    }
+
+    /**
+     * closes the file
+     * @throws IOException if it can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * reads the bytes of a record
+     * @param index puzzle number
+     * @return the record
+     * @throws IOException if the file can't be read
+     */
+    private ByteBuffer record(int index) throws IOException {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Puzzle " + index + " of " + size());
+        }
+        long start = this.offsets[index];
+        long length = this.offsets[index + 1] - start;
+        if (length > Integer.MAX_VALUE) {
+            throw error("record " + index + " is too big");
+        }
+        return read(start, (int) length);
+    }
+
+    /**
+     * reads bytes from anywhere in the file
+     * @param position where to start
+     * @param length how many bytes
+     * @return the bytes, ready to read
+     * @throws IOException if the file can't be read or is too short
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0) {
+                throw error("file ends early");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * @param problem what went wrong
+     * @return an exception saying where
+     */
+    private IOException error(String problem) {
+        return new IOException("Error in " + this.path + ": " + problem);
+    }
+}
@@ -0,0 +1,120 @@
+package tentsandtrees.io;
+
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Writes puzzles, and their solutions if known, to a packed archive that
+ * PuzzleArchive can read back in any order.  The archive is an 8 byte
+ * header, the records one after another (see PuzzleFormat), an index of
+ * where each record starts, and a 16 byte trailer:
+ * <pre>
+ * header   "TNTS", version, 3 spare bytes
+ * records  one per puzzle
+ * index    8 byte offset of each record
+ * trailer  8 byte offset of the index, 4 byte record count, "TNTS"
+ * </pre>
+ * The index is only written by close, so an archive that wasn't closed
+ * can't be read.
+ *
+ * @author Lyx Huston
+ */
+public class PuzzleArchiveWriter implements Closeable {
+    /** the file */
+    private final DataOutputStream out;
+    /** where each record starts */
+    private long[] offsets;
+    /** number of records written */
+    private int count;
+    /** bytes written so far */
+    private long position;
+
+    /**
+     * Starts a new archive, replacing any file already there.
+     * @param path the file
+     * @throws IOException if the file can't be written
+     */
+    public PuzzleArchiveWriter(Path path) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        this.out.writeInt(PuzzleFormat.MAGIC);
+        this.out.writeByte(PuzzleFormat.VERSION);
+        this.out.write(new byte[3]);
+        this.position = PuzzleFormat.HEADER_SIZE;
+        this.offsets = new long[64];
+        this.count = 0;
+    }
+
+    /**
+     * Adds a puzzle with no solution.
+     * @param puzzle the puzzle
+     * @throws IOException if the file can't be written
+     */
+    public void add(PuzzleDefinition puzzle) throws IOException {
+        write(PuzzleFormat.encode(puzzle, null));
+    }
+
+    /**
+     * Adds a puzzle and a solution.  Only the tents of the solution are
+     * looked at.
+     * @param puzzle the puzzle
+     * @param solution a solved board of the puzzle
+     * @throws IOException if the file can't be written
+     * @throws IllegalArgumentException if the solution doesn't give every
+     * tree its own tent beside it
+     */
+    public void add(PuzzleDefinition puzzle, ITentsAndTreesTest solution) throws IOException {
+        write(PuzzleFormat.encode(puzzle, solution));
+    }
+
+    /**
+     * @return number of puzzles added so far
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * appends a record and remembers where it starts
+     * @param record the record
+     * @throws IOException if the file can't be written
+     */
+    private void write(byte[] record) throws IOException {
+        if (this.count == Integer.MAX_VALUE) {
+            throw new IOException("Archive is full");
+        }
+        if (this.count == this.offsets.length) {
+            this.offsets = Arrays.copyOf(this.offsets,
+                    (int) Math.min(Integer.MAX_VALUE, 2L * this.offsets.length));
+        }
+        this.offsets[this.count++] = this.position;
+        this.out.write(record);
+        this.position += record.length;
+    }
+
+    /**
+     * Writes the index and trailer and closes the file.
+     * @throws IOException if the file can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            long index = this.position;
+            for (int i = 0; i < this.count; i++) {
+                this.out.writeLong(this.offsets[i]);
+            }
+            this.out.writeLong(index);
+            this.out.writeInt(this.count);
+            this.out.writeInt(PuzzleFormat.MAGIC);
+        } finally {
+            this.out.close();
+        }
+    }
+}
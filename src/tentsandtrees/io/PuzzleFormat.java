@@ -0,0 +1,361 @@
+package tentsandtrees.io;
+
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionConfig;
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static tentsandtrees.test.ITentsAndTreesTest.EMPTY;
+import static tentsandtrees.test.ITentsAndTreesTest.TENT;
+import static tentsandtrees.test.ITentsAndTreesTest.TREE;
+
+/**
+ * The binary record for one puzzle, and optionally one of its solutions,
+ * as kept in a PuzzleArchive.  Version 1 records are byte aligned:
+ * <pre>
+ * flags        1 byte, bit 0 set if a solution follows
+ * dim          varint
+ * trees        varint
+ * row counts   dim varints
+ * col counts   dim varints
+ * tree cells   trees * b bits, b = bits needed for dim * dim - 1
+ * directions   trees * 2 bits, if there is a solution
+ * </pre>
+ * Varints are 7 bits a byte, low bits first, high bit set on every byte
+ * but the last.  Bit fields fill each byte from the low bit up, and are
+ * padded to a whole byte.  Tree cells are row * dim + col in read order,
+ * and a solution is the side of each tree its tent is on, in the order
+ * PuzzleDefinition.getSide uses: south, east, north, west.
+ *
+ * @author Lyx Huston
+ */
+final class PuzzleFormat {
+    /** first four bytes of an archive, and of its trailer */
+    static final int MAGIC = 0x544E5453; // "TNTS"
+    /** format version written, and the only one read */
+    static final byte VERSION = 1;
+    /** header size: magic, version and three spare bytes */
+    static final int HEADER_SIZE = 8;
+    /** trailer size: index offset, record count and magic */
+    static final int TRAILER_SIZE = 16;
+
+    /** flag for a record with a solution */
+    private static final int HAS_SOLUTION = 1;
+
+    /** no instances */
+    private PuzzleFormat() {
+    }
+
+    /**
+     * Encodes a puzzle and, if given, a solution.
+     * @param puzzle the puzzle
+     * @param solution a solved board of the puzzle, or null
+     * @return the record
+     * @throws IllegalArgumentException if the solution doesn't give every
+     * tree its own tent
+     */
+    static byte[] encode(PuzzleDefinition puzzle, ITentsAndTreesTest solution) {
+        int dim = puzzle.getDim();
+        int trees = puzzle.getTreeCount();
+        int[] directions = solution == null ? null : directions(puzzle, solution);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + 2 * dim + trees * 3);
+        out.write(directions == null ? 0 : HAS_SOLUTION);
+        writeVarint(out, dim);
+        writeVarint(out, trees);
+        for (int row = 0; row < dim; row++) {
+            writeVarint(out, puzzle.getTentsRow(row));
+        }
+        for (int col = 0; col < dim; col++) {
+            writeVarint(out, puzzle.getTentsCol(col));
+        }
+        BitWriter bits = new BitWriter(out);
+        int cellBits = cellBits(dim);
+        for (int tree = 0; tree < trees; tree++) {
+            bits.write(puzzle.getTreeRow(tree) * dim + puzzle.getTreeCol(tree), cellBits);
+        }
+        bits.flush();
+        if (directions != null) {
+            for (int direction : directions) {
+                bits.write(direction, 2);
+            }
+            bits.flush();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param record a record, positioned at its start
+     * @return true if the record has a solution
+     */
+    static boolean hasSolution(ByteBuffer record) {
+        return (record.get(record.position()) & HAS_SOLUTION) != 0;
+    }
+
+    /**
+     * Decodes the puzzle of a record.  Only trees are kept; every other
+     * cell is empty.
+     * @param record a record, positioned at its start; left just past the
+     *               tree cells
+     * @return the puzzle
+     * @throws IOException if the record is broken
+     */
+    static PuzzleDefinition decodePuzzle(ByteBuffer record) throws IOException {
+        try {
+            record.get();
+            int dim = readVarint(record);
+            int trees = readVarint(record);
+            if (dim < 1 || dim > 46340 || trees > dim * dim) {
+                throw new IOException("bad record: dimension " + dim + " with " + trees + " trees");
+            }
+            int[] tentsPerRow = new int[dim];
+            int[] tentsPerColumn = new int[dim];
+            for (int row = 0; row < dim; row++) {
+                tentsPerRow[row] = readVarint(record);
+            }
+            for (int col = 0; col < dim; col++) {
+                tentsPerColumn[col] = readVarint(record);
+            }
+            char[] cells = new char[dim * dim];
+            Arrays.fill(cells, EMPTY);
+            BitReader bits = new BitReader(record);
+            int cellBits = cellBits(dim);
+            for (int tree = 0; tree < trees; tree++) {
+                int cell = bits.read(cellBits);
+                if (cell >= cells.length) {
+                    throw new IOException("bad record: tree at cell " + cell + " of " + cells.length);
+                }
+                cells[cell] = TREE;
+            }
+            PuzzleDefinition puzzle = new PuzzleDefinition(dim, tentsPerRow, tentsPerColumn, cells);
+            if (puzzle.getTreeCount() != trees) {
+                throw new IOException("bad record: two trees in one cell");
+            }
+            return puzzle;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("bad record: cut short", e);
+        }
+    }
+
+    /**
+     * Decodes the solution of a record.
+     * @param record a record with a solution, positioned at its start
+     * @return the solved board
+     * @throws IOException if the record is broken or has no solution
+     */
+    static SolutionConfig decodeSolution(ByteBuffer record) throws IOException {
+        if (!hasSolution(record)) {
+            throw new IOException("record has no solution");
+        }
+        PuzzleDefinition puzzle = decodePuzzle(record);
+        int dim = puzzle.getDim();
+        char[] cells = new char[dim * dim];
+        Arrays.fill(cells, EMPTY);
+        try {
+            BitReader bits = new BitReader(record);
+            for (int tree = 0; tree < puzzle.getTreeCount(); tree++) {
+                cells[puzzle.getTreeRow(tree) * dim + puzzle.getTreeCol(tree)] = TREE;
+                int tent = puzzle.getSide(tree, bits.read(2));
+                if (tent < 0) {
+                    throw new IOException("bad record: tent off the board");
+                }
+                cells[tent] = TENT;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("bad record: cut short", e);
+        }
+        return new SolutionConfig(dim, puzzle.getTentsPerRow(), puzzle.getTentsPerColumn(), cells);
+    }
+
+    /**
+     * Pairs every tree with a tent beside it, trying the first free side of
+     * each tree and moving earlier trees along when that side is taken.
+     * @param puzzle the puzzle
+     * @param solution the solved board
+     * @return the side of each tree its tent is on
+     * @throws IllegalArgumentException if the trees can't all be paired
+     */
+    static int[] directions(PuzzleDefinition puzzle, ITentsAndTreesTest solution) {
+        int dim = puzzle.getDim();
+        if (solution.getDIM() != dim) {
+            throw new IllegalArgumentException("Solution is " + solution.getDIM() +
+                    " wide, puzzle is " + dim);
+        }
+        boolean[] tent = new boolean[dim * dim];
+        int tents = 0;
+        for (int cell = 0; cell < tent.length; cell++) {
+            tent[cell] = solution.getCell(cell / dim, cell % dim) == TENT;
+            if (tent[cell]) {
+                tents++;
+            }
+        }
+        int trees = puzzle.getTreeCount();
+        int[] owner = new int[dim * dim];
+        Arrays.fill(owner, -1);
+        int[] directions = new int[trees];
+        int[] visited = new int[dim * dim];
+        for (int tree = 0; tree < trees; tree++) {
+            if (!pair(puzzle, tree, tent, owner, directions, visited, tree + 1)) {
+                throw new IllegalArgumentException("Solution has no tent for the tree at " +
+                        puzzle.getTreeRow(tree) + ", " + puzzle.getTreeCol(tree));
+            }
+        }
+        if (tents != trees) {
+            throw new IllegalArgumentException("Solution has " + tents + " tents for " +
+                    trees + " trees");
+        }
+        return directions;
+    }
+
+    /**
+     * looks for an augmenting path from a tree, like TentConfig does
+     * @param puzzle the puzzle
+     * @param tree the tree
+     * @param tent which cells hold tents
+     * @param owner tree paired with each tent, -1 for none
+     * @param directions side of each paired tree's tent
+     * @param visited stamp of the search that last visited each cell
+     * @param stamp stamp of this search
+     * @return true if the tree got a tent
+     */
+    private static boolean pair(PuzzleDefinition puzzle, int tree, boolean[] tent, int[] owner,
+                                int[] directions, int[] visited, int stamp) {
+        for (int side = 0; side < 4; side++) {
+            int cell = puzzle.getSide(tree, side);
+            if (cell < 0 || !tent[cell] || visited[cell] == stamp) {
+                continue;
+            }
+            visited[cell] = stamp;
+            if (owner[cell] < 0 ||
+                    pair(puzzle, owner[cell], tent, owner, directions, visited, stamp)) {
+                owner[cell] = tree;
+                directions[tree] = side;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param dim square dimension of field
+     * @return bits needed to hold any cell number
+     */
+    static int cellBits(int dim) {
+        return 32 - Integer.numberOfLeadingZeros(dim * dim - 1);
+    }
+
+    /**
+     * @param out where to write
+     * @param value a non-negative number
+     */
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * @param in where to read
+     * @return the number
+     * @throws IOException if it runs past 5 bytes
+     */
+    static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int next = in.get() & 0xFF;
+            value |= (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("bad record: negative varint");
+                }
+                return value;
+            }
+        }
+        throw new IOException("bad record: varint too long");
+    }
+
+    /**
+     * Packs bit fields into bytes, low bits first.
+     */
+    private static class BitWriter {
+        /** where whole bytes go */
+        private final ByteArrayOutputStream out;
+        /** bits not yet written */
+        private long pending;
+        /** number of bits not yet written */
+        private int count;
+
+        /**
+         * @param out where whole bytes go
+         */
+        private BitWriter(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * @param value the field, which must fit in bits
+         * @param bits width of the field, up to 32
+         */
+        private void write(int value, int bits) {
+            this.pending |= (value & 0xFFFFFFFFL) << this.count;
+            this.count += bits;
+            while (this.count >= 8) {
+                this.out.write((int) this.pending);
+                this.pending >>>= 8;
+                this.count -= 8;
+            }
+        }
+
+        /**
+         * writes out any part byte
+         */
+        private void flush() {
+            if (this.count > 0) {
+                this.out.write((int) this.pending);
+            }
+            this.pending = 0;
+            this.count = 0;
+        }
+    }
+
+    /**
+     * Unpacks bit fields written by BitWriter.  Only reads whole bytes, so
+     * the buffer ends up just past the last byte a field touched.
+     */
+    private static class BitReader {
+        /** where bytes come from */
+        private final ByteBuffer in;
+        /** bits read but not used */
+        private long pending;
+        /** number of bits read but not used */
+        private int count;
+
+        /**
+         * @param in where bytes come from
+         */
+        private BitReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        /**
+         * @param bits width of the field, up to 32
+         * @return the field
+         */
+        private int read(int bits) {
+            while (this.count < bits) {
+                this.pending |= (this.in.get() & 0xFFL) << this.count;
+                this.count += 8;
+            }
+            int value = (int) (this.pending & ((1L << bits) - 1));
+            this.pending >>>= bits;
+            this.count -= bits;
+            return value;
+        }
+    }
+}
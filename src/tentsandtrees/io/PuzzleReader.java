@@ -0,0 +1,219 @@
+package tentsandtrees.io;
+
+import tentsandtrees.backtracker.PuzzleDefinition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads puzzles straight out of a memory mapped file, a byte at a time,
+ * without making a String for every line or cell.  A file may hold any
+ * number of puzzles one after another, each in the usual format:
+ * <pre>
+ * 3
+ * 2 0 1
+ * 2 0 1
+ * . % .
+ * % . .
+ * . % .
+ * </pre>
+ * Numbers and cells are separated by spaces, tabs or line breaks, and
+ * blank lines between puzzles are fine.  As with the old line reader, only
+ * the first character of each cell counts.
+ * <p>
+ * The whole file is mapped at once, so it can't be bigger than 2GB.
+ * Puzzles that are already in memory, such as a request body, can be read
+ * from a ByteBuffer the same way.
+ *
+ * @author Lyx Huston
+ */
+public class PuzzleReader implements Iterator<PuzzleDefinition> {
+    /** the file, for error messages */
+    private final String source;
+    /** the file's bytes */
+    private final ByteBuffer buffer;
+    /** number of puzzles read so far */
+    private int count;
+
+    /**
+     * Maps a puzzle file.
+     * @param path the file
+     * @throws IOException if the file can't be opened or is too big to map
+     */
+    public PuzzleReader(Path path) throws IOException {
+        this.source = path.toString();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too big to map (" + size + " bytes)");
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        this.count = 0;
+    }
+
+    /**
+     * Reads puzzles from bytes already in memory, from the buffer's
+     * position to its limit.
+     * @param source what the bytes are, for error messages
+     * @param buffer the bytes
+     */
+    public PuzzleReader(String source, ByteBuffer buffer) {
+        this.source = source;
+        this.buffer = buffer;
+        this.count = 0;
+    }
+
+    /**
+     * Reads a file holding a single puzzle.
+     * @param path the file
+     * @return the puzzle
+     * @throws IOException if the file can't be read, has no puzzle, or has
+     * a broken one
+     */
+    public static PuzzleDefinition readOne(Path path) throws IOException {
+        return new PuzzleReader(path).readOne();
+    }
+
+    /**
+     * Reads the one puzzle this reader holds.
+     * @return the puzzle
+     * @throws IOException if there is no puzzle, or a broken one
+     */
+    public PuzzleDefinition readOne() throws IOException {
+        if (!hasNext()) {
+            throw new IOException(this.source + " has no puzzle");
+        }
+        return read();
+    }
+
+    /**
+     * @return true if there is another puzzle to read
+     */
+    @Override
+    public boolean hasNext() {
+        skipSpace();
+        return this.buffer.hasRemaining();
+    }
+
+    /**
+     * Reads the next puzzle.
+     * @return the puzzle
+     * @throws UncheckedIOException if the puzzle is broken
+     * @throws NoSuchElementException if there are no more puzzles
+     */
+    @Override
+    public PuzzleDefinition next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return read();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return number of puzzles read so far
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * reads one puzzle starting at the current position
+     * @return the puzzle
+     * @throws IOException if the puzzle is broken or cut short
+     */
+    private PuzzleDefinition read() throws IOException {
+        int dim = readInt();
+        if (dim < 1) {
+            throw error("dimension must be at least 1");
+        }
+        if ((long) dim * dim > this.buffer.remaining()) {
+            throw error("a board of dimension " + dim + " won't fit in the rest of the file");
+        }
+        int[] tentsPerRow = new int[dim];
+        int[] tentsPerColumn = new int[dim];
+        for (int i = 0; i < dim; i++) {
+            tentsPerRow[i] = readInt();
+        }
+        for (int i = 0; i < dim; i++) {
+            tentsPerColumn[i] = readInt();
+        }
+        char[] cells = new char[dim * dim];
+        for (int cell = 0; cell < cells.length; cell++) {
+            skipSpace();
+            if (!this.buffer.hasRemaining()) {
+                throw error("board ends early");
+            }
+            cells[cell] = (char) (this.buffer.get() & 0xFF);
+            while (this.buffer.hasRemaining() && !isSpace(this.buffer.get(this.buffer.position()))) {
+                this.buffer.get();
+            }
+        }
+        this.count++;
+        return new PuzzleDefinition(dim, tentsPerRow, tentsPerColumn, cells);
+    }
+
+    /**
+     * reads a whitespace separated non-negative number
+     * @return the number
+     * @throws IOException if there is no number, or it isn't one
+     */
+    private int readInt() throws IOException {
+        skipSpace();
+        if (!this.buffer.hasRemaining()) {
+            throw error("file ends early");
+        }
+        long value = 0;
+        while (this.buffer.hasRemaining()) {
+            byte next = this.buffer.get(this.buffer.position());
+            if (isSpace(next)) {
+                break;
+            }
+            if (next < '0' || next > '9') {
+                throw error("expected a number");
+            }
+            value = value * 10 + (next - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw error("number too big");
+            }
+            this.buffer.get();
+        }
+        return (int) value;
+    }
+
+    /**
+     * moves past spaces, tabs and line breaks
+     */
+    private void skipSpace() {
+        while (this.buffer.hasRemaining() && isSpace(this.buffer.get(this.buffer.position()))) {
+            this.buffer.get();
+        }
+    }
+
+    /**
+     * @param value a byte
+     * @return true if it is a space, tab or line break
+     */
+    private static boolean isSpace(byte value) {
+        return value == ' ' || value == '\n' || value == '\r' || value == '\t';
+    }
+
+    /**
+     * @param problem what went wrong
+     * @return an exception saying where
+     */
+    private IOException error(String problem) {
+        return new IOException("Error in " + this.source + ", puzzle " + (this.count + 1) +
+                " at byte " + this.buffer.position() + ": " + problem);
+    }
+}
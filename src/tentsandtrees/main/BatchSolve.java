@@ -0,0 +1,327 @@
+package tentsandtrees.main;
+
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.BitTentConfig;
+import tentsandtrees.backtracker.CachingSolver;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.LinePropagator;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionCache;
+import tentsandtrees.backtracker.SolveBudget;
+import tentsandtrees.backtracker.SolveOutcome;
+import tentsandtrees.backtracker.Solver;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.io.PuzzleReader;
+import tentsandtrees.dlx.DlxSolver;
+import tentsandtrees.sat.SatSolver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Solves many puzzles in one JVM on a fixed pool of worker threads.
+ * Puzzles come from a directory (every .txt file in it), a glob such as
+ * data/stress/50x50_*.txt, or - for a list of paths on standard input, one
+ * per line.
+ * <pre>
+ *     java BatchSolve --threads 8 --timeout 5000 data/stress
+ * </pre>
+ * Options:
+ * <ul>
+ *     <li>--threads N worker threads, every processor by default</li>
+ *     <li>--timeout MS give up on a puzzle after this many milliseconds,
+ *     no limit by default</li>
+ *     <li>--nodes N give up on a puzzle after this many configs, no limit
+ *     by default</li>
+ *     <li>--solver copy|bits|inplace|mrv|sat|dlx the Backtracker over
+ *     TentConfig or BitTentConfig, the InPlaceSolver, the InPlaceSolver
+ *     visiting the most constrained tree first (the default), the SatSolver
+ *     or the DlxSolver</li>
+ *     <li>--propagate runs the line propagator (the in place solvers
+ *     only)</li>
+ *     <li>--cache MB answers a puzzle that is a rotation or reflection of
+ *     one already solved from a cache of that many megabytes shared by the
+ *     workers, instead of searching again (not bits)</li>
+ * </ul>
+ * Each puzzle gets one tab separated line on standard output as soon as it
+ * finishes: the file, solved, unsolved, timeout, budget (out of configs)
+ * or error, the number of
+ * configs generated, and the time taken in nanoseconds.  Lines come out in
+ * the order puzzles finish, not the order they were given.  A file holding
+ * several puzzles one after another gets a line for each, labelled
+ * file#1, file#2 and so on.  A summary goes to standard error at the end.
+ * <p>
+ * Files are read with PuzzleReader on the thread listing them; each puzzle
+ * gets its own PuzzleDefinition, so workers don't trip over each other.
+ * Each puzzle is solved on a SolveBudget of the time and configs allowed;
+ * the solvers look at it every Solver.INTERRUPT_CHECK_MASK + 1 configs.
+ *
+ * @author Lyx Huston
+ */
+public class BatchSolve {
+    /** worker threads */
+    private int threads = Runtime.getRuntime().availableProcessors();
+    /** per puzzle time limit in milliseconds, 0 for none */
+    private long timeout = 0;
+    /** per puzzle config limit, 0 for none */
+    private long maxNodes = 0;
+    /** solver name */
+    private String solverName = "mrv";
+    /** whether to run the line propagator */
+    private boolean propagate = false;
+    /** answers shared by the workers, null if off */
+    private SolutionCache<int[]> cache;
+
+    /** puzzles solved */
+    private final LongAdder solved = new LongAdder();
+    /** puzzles with no solution */
+    private final LongAdder unsolved = new LongAdder();
+    /** puzzles that ran out of time */
+    private final LongAdder timedOut = new LongAdder();
+    /** puzzles that ran out of configs */
+    private final LongAdder overBudget = new LongAdder();
+    /** puzzles that couldn't be read */
+    private final LongAdder errors = new LongAdder();
+    /** configs generated over every puzzle */
+    private final LongAdder configs = new LongAdder();
+
+    /**
+     * The main method.
+     *
+     * @param args options, then a directory, glob or -
+     */
+    public static void main(String[] args) {
+        BatchSolve batch = new BatchSolve();
+        String source = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads" -> batch.threads = Integer.parseInt(args[++i]);
+                    case "--timeout" -> batch.timeout = Long.parseLong(args[++i]);
+                    case "--nodes" -> batch.maxNodes = Long.parseLong(args[++i]);
+                    case "--solver" -> batch.solverName = args[++i];
+                    case "--propagate" -> batch.propagate = true;
+                    case "--cache" -> batch.cache = CachingSolver.newCache(Long.parseLong(args[++i]) << 20);
+                    default -> source = args[i];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            source = null;
+        }
+        if (source == null || batch.threads < 1 || batch.timeout < 0 || batch.maxNodes < 0 ||
+                !List.of("copy", "bits", "inplace", "mrv", "sat", "dlx").contains(batch.solverName)) {
+            System.err.println("Usage: java BatchSolve [--threads N] [--timeout MS] [--nodes N] " +
+                    "[--solver copy|bits|inplace|mrv|sat|dlx] [--propagate] [--cache MB] (directory | glob | -)");
+            return;
+        }
+        try {
+            batch.run(source);
+        } catch (IOException ioe) {
+            System.err.println(ioe.getMessage());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Solves every puzzle from a source, then prints the summary.
+     *
+     * @param source directory, glob or -
+     * @throws IOException if the puzzle list can't be read
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    private void run(String source) throws IOException, InterruptedException {
+        // a short queue and running overflow on the reading thread keeps a
+        // long stdin list from piling up in memory
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(this.threads, this.threads,
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(2 * this.threads),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        long start = System.nanoTime();
+        try {
+            if (source.equals("-")) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        String file = line.strip();
+                        submit(file, pool);
+                    }
+                }
+            } else {
+                try (Stream<Path> files = list(source)) {
+                    files.forEach(file -> submit(file.toString(), pool));
+                }
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        long total = this.solved.sum() + this.unsolved.sum() +
+                this.timedOut.sum() + this.overBudget.sum() + this.errors.sum();
+        System.err.println("Puzzles: " + total +
+                ", solved: " + this.solved.sum() +
+                ", unsolved: " + this.unsolved.sum() +
+                ", timeout: " + this.timedOut.sum() +
+                ", budget: " + this.overBudget.sum() +
+                ", error: " + this.errors.sum());
+        System.err.println("Configs generated: " + this.configs.sum());
+        if (this.cache != null) {
+            System.err.print(this.cache);
+        }
+        System.err.println("Elapsed time: " + (System.nanoTime() - start) / 1e9 + " seconds.");
+    }
+
+    /**
+     * Lists the puzzle files of a directory or glob, in name order.
+     *
+     * @param source directory or glob
+     * @return the files
+     * @throws IOException if the directory can't be read
+     */
+    private static Stream<Path> list(String source) throws IOException {
+        Path path = Path.of(source);
+        if (Files.isDirectory(path)) {
+            return Files.list(path)
+                    .filter(file -> file.toString().endsWith(".txt") && Files.isRegularFile(file))
+                    .sorted();
+        }
+        // walk from the last directory before the first wildcard
+        int wildcard = 0;
+        while (wildcard < source.length() && "*?[{".indexOf(source.charAt(wildcard)) < 0) {
+            wildcard++;
+        }
+        int slash = source.lastIndexOf('/', wildcard);
+        Path root = slash < 0 ? Path.of(".") : Path.of(source.substring(0, slash + 1));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + source);
+        return Files.walk(root)
+                .filter(file -> Files.isRegularFile(file) &&
+                        matcher.matches(slash < 0 ? root.relativize(file) : file))
+                .sorted();
+    }
+
+    /**
+     * Reads every puzzle in a file and hands each to the pool.
+     *
+     * @param file puzzle file
+     * @param pool the workers
+     */
+    private void submit(String file, ThreadPoolExecutor pool) {
+        int index = 0;
+        try {
+            PuzzleReader reader = new PuzzleReader(Path.of(file));
+            if (!reader.hasNext()) {
+                report(file, "error", 0, 0);
+                return;
+            }
+            PuzzleDefinition first = reader.next();
+            index++;
+            if (!reader.hasNext()) {
+                pool.execute(() -> solveOne(file, first));
+                return;
+            }
+            pool.execute(() -> solveOne(file + "#1", first));
+            while (reader.hasNext()) {
+                PuzzleDefinition puzzle = reader.next();
+                index++;
+                String label = file + "#" + index;
+                pool.execute(() -> solveOne(label, puzzle));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            report(index == 0 ? file : file + "#" + (index + 1), "error", 0, 0);
+        }
+    }
+
+    /**
+     * Solves one puzzle and prints its line.  Runs on a worker thread.
+     *
+     * @param label name of the puzzle for its line
+     * @param puzzle the puzzle
+     */
+    private void solveOne(String label, PuzzleDefinition puzzle) {
+        long start = System.nanoTime();
+        String status;
+        long nodes = 0;
+        SolveBudget budget = new SolveBudget(this.timeout, this.maxNodes);
+        try {
+            Configuration init = this.solverName.equals("bits") ?
+                    new BitTentConfig(puzzle) : new TentConfig(puzzle);
+            SolveOutcome outcome = makeSolver().solve(init, budget);
+            nodes = outcome.getConfigs();
+            status = switch (outcome.getStatus()) {
+                case SOLVED -> "solved";
+                case UNSOLVABLE -> "unsolved";
+                case EXHAUSTED -> outcome.getReason() == SolveBudget.Reason.NODES ? "budget" : "timeout";
+            };
+        } catch (RuntimeException e) {
+            status = "error";
+        }
+        report(label, status, nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Counts a result and prints its line.
+     *
+     * @param label name of the puzzle
+     * @param status solved, unsolved, timeout, budget or error
+     * @param nodes configs generated
+     * @param elapsed time taken in nanoseconds
+     */
+    private void report(String label, String status, long nodes, long elapsed) {
+        switch (status) {
+            case "solved" -> this.solved.increment();
+            case "unsolved" -> this.unsolved.increment();
+            case "timeout" -> this.timedOut.increment();
+            case "budget" -> this.overBudget.increment();
+            default -> this.errors.increment();
+        }
+        this.configs.add(nodes);
+        String line = label + "\t" + status + "\t" + nodes + "\t" + elapsed;
+        synchronized (System.out) {
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * @return a new solver of the chosen kind, in front of the cache if
+     * there is one
+     */
+    private Solver makeSolver() {
+        Solver solver = makeSearch();
+        return this.cache == null || this.solverName.equals("bits") ? solver : new CachingSolver(solver, this.cache);
+    }
+
+    /**
+     * @return a new solver of the chosen kind
+     */
+    private Solver makeSearch() {
+        if (this.solverName.equals("copy") || this.solverName.equals("bits")) {
+            return new Backtracker(false);
+        }
+        if (this.solverName.equals("sat")) {
+            return new SatSolver(false);
+        }
+        if (this.solverName.equals("dlx")) {
+            return new DlxSolver(false);
+        }
+        InPlaceSolver solver = this.solverName.equals("mrv") ?
+                new InPlaceSolver(false, InPlaceSolver.TreeOrder.MOST_CONSTRAINED) :
+                new InPlaceSolver(false);
+        if (this.propagate) {
+            solver.setPropagator(new LinePropagator());
+        }
+        return solver;
+    }
+}
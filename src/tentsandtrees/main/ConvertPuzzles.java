@@ -0,0 +1,219 @@
+package tentsandtrees.main;
+
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionConfig;
+import tentsandtrees.io.PuzzleArchive;
+import tentsandtrees.io.PuzzleArchiveWriter;
+import tentsandtrees.io.PuzzleReader;
+import tentsandtrees.sat.CnfEncoder;
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Converts between puzzle text files and packed binary archives, and
+ * exports puzzles as CNF for outside SAT solvers.
+ * <pre>
+ *     java ConvertPuzzles pack archive.tnts puzzles.txt more.txt ...
+ *     java ConvertPuzzles unpack archive.tnts puzzles.txt
+ *     java ConvertPuzzles show archive.tnts 12345
+ *     java ConvertPuzzles dimacs puzzles.txt puzzle.cnf
+ * </pre>
+ * pack reads every puzzle of every text file, in order.  A board that has
+ * tents on it is taken as solved, and its tents are kept as the solution.
+ * unpack writes every puzzle back out one after another, solved boards with
+ * their tents.  show prints a single puzzle, and its solution if the
+ * archive has one, without reading any of the others.  dimacs writes the
+ * CnfEncoder formula of each puzzle of a text file; a file holding several
+ * gets puzzle-1.cnf, puzzle-2.cnf and so on.
+ *
+ * @author Lyx Huston
+ */
+public class ConvertPuzzles {
+    /**
+     * The main method.
+     *
+     * @param args pack, unpack or show, the archive, then text files or a
+     *             puzzle number
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || !(args[0].equals("pack") || args[0].equals("unpack") ||
+                args[0].equals("show") || args[0].equals("dimacs"))) {
+            System.err.println("Usage: java ConvertPuzzles (pack archive text-file... | " +
+                    "unpack archive text-file | show archive index | dimacs text-file cnf-file)");
+            return;
+        }
+        try {
+            Path archive = Path.of(args[1]);
+            long start = System.nanoTime();
+            switch (args[0]) {
+                case "pack" -> {
+                    Path[] inputs = new Path[args.length - 2];
+                    for (int i = 2; i < args.length; i++) {
+                        inputs[i - 2] = Path.of(args[i]);
+                    }
+                    int count = pack(archive, inputs);
+                    System.err.println("Packed " + count + " puzzles into " + Files.size(archive) +
+                            " bytes in " + (System.nanoTime() - start) / 1e9 + " seconds.");
+                }
+                case "unpack" -> {
+                    int count = unpack(archive, Path.of(args[2]));
+                    System.err.println("Unpacked " + count + " puzzles in " +
+                            (System.nanoTime() - start) / 1e9 + " seconds.");
+                }
+                case "dimacs" -> {
+                    int count = dimacs(Path.of(args[1]), Path.of(args[2]));
+                    System.err.println("Wrote " + count + " formulas in " +
+                            (System.nanoTime() - start) / 1e9 + " seconds.");
+                }
+                default -> {
+                    try (PuzzleArchive puzzles = new PuzzleArchive(archive)) {
+                        int index = Integer.parseInt(args[2]);
+                        PuzzleDefinition puzzle = puzzles.getPuzzle(index);
+                        System.out.print(toText(puzzle, null));
+                        Optional<SolutionConfig> solution = puzzles.getSolution(index);
+                        solution.ifPresent(board -> System.out.print(board.getDisplay()));
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Packs text files into a new archive.
+     * @param archive the archive to write
+     * @param inputs text files of one or more puzzles each
+     * @return number of puzzles packed
+     * @throws IOException if a file can't be read or written
+     * @throws IllegalArgumentException if a board's tents don't solve it
+     */
+    public static int pack(Path archive, Path... inputs) throws IOException {
+        try (PuzzleArchiveWriter writer = new PuzzleArchiveWriter(archive)) {
+            for (Path input : inputs) {
+                PuzzleReader reader = new PuzzleReader(input);
+                while (reader.hasNext()) {
+                    PuzzleDefinition puzzle = reader.next();
+                    if (hasTents(puzzle)) {
+                        writer.add(puzzle, new SolutionConfig(puzzle.getDim(),
+                                puzzle.getTentsPerRow(), puzzle.getTentsPerColumn(), cells(puzzle)));
+                    } else {
+                        writer.add(puzzle);
+                    }
+                }
+            }
+            return writer.getCount();
+        }
+    }
+
+    /**
+     * Writes every puzzle of an archive to one text file.
+     * @param archive the archive to read
+     * @param output text file to write
+     * @return number of puzzles written
+     * @throws IOException if a file can't be read or written
+     */
+    public static int unpack(Path archive, Path output) throws IOException {
+        try (PuzzleArchive puzzles = new PuzzleArchive(archive);
+             Writer out = Files.newBufferedWriter(output)) {
+            for (int i = 0; i < puzzles.size(); i++) {
+                Optional<SolutionConfig> solution = puzzles.getSolution(i);
+                out.write(toText(solution.isPresent() ? null : puzzles.getPuzzle(i),
+                        solution.orElse(null)));
+            }
+            return puzzles.size();
+        }
+    }
+
+    /**
+     * Writes the CNF of every puzzle of a text file in DIMACS format.
+     * @param input text file of one or more puzzles
+     * @param output file to write, numbered if there are several puzzles
+     * @return number of formulas written
+     * @throws IOException if a file can't be read or written
+     */
+    public static int dimacs(Path input, Path output) throws IOException {
+        List<PuzzleDefinition> puzzles = new ArrayList<>();
+        new PuzzleReader(input).forEachRemaining(puzzles::add);
+        int count = puzzles.size();
+        String name = output.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        for (int i = 1; i <= count; i++) {
+            PuzzleDefinition puzzle = puzzles.get(i - 1);
+            Path path = count == 1 ? output : output.resolveSibling(dot < 0 ? name + "-" + i :
+                    name.substring(0, dot) + "-" + i + name.substring(dot));
+            new CnfEncoder(puzzle).getCnf().write(path, "Tents and trees, " + input.getFileName() +
+                    (count == 1 ? "" : " puzzle " + i) + "\n" + toText(puzzle, null).strip());
+        }
+        return count;
+    }
+
+    /**
+     * Writes a board in the format PuzzleReader reads.  A solved board keeps
+     * its tents; grass is written as empty.
+     * @param puzzle the puzzle, used if there is no solution
+     * @param solution a solved board, or null
+     * @return the text
+     */
+    public static String toText(PuzzleDefinition puzzle, ITentsAndTreesTest solution) {
+        int dim = solution != null ? solution.getDIM() : puzzle.getDim();
+        StringBuilder result = new StringBuilder(2 * dim * dim + 8 * dim);
+        result.append(dim).append('\n');
+        for (int row = 0; row < dim; row++) {
+            result.append(row > 0 ? " " : "").append(solution != null ?
+                    solution.getTentsRow(row) : puzzle.getTentsRow(row));
+        }
+        result.append('\n');
+        for (int col = 0; col < dim; col++) {
+            result.append(col > 0 ? " " : "").append(solution != null ?
+                    solution.getTentsCol(col) : puzzle.getTentsCol(col));
+        }
+        result.append('\n');
+        for (int row = 0; row < dim; row++) {
+            for (int col = 0; col < dim; col++) {
+                char cell = solution != null ? solution.getCell(row, col) : puzzle.getCell(row, col);
+                if (col > 0) {
+                    result.append(' ');
+                }
+                result.append(cell == ITentsAndTreesTest.GRASS ? ITentsAndTreesTest.EMPTY : cell);
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param puzzle a puzzle as read
+     * @return true if it has tents on it
+     */
+    private static boolean hasTents(PuzzleDefinition puzzle) {
+        for (int row = 0; row < puzzle.getDim(); row++) {
+            for (int col = 0; col < puzzle.getDim(); col++) {
+                if (puzzle.getCell(row, col) == ITentsAndTreesTest.TENT) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param puzzle a puzzle as read
+     * @return its cells row by row
+     */
+    private static char[] cells(PuzzleDefinition puzzle) {
+        int dim = puzzle.getDim();
+        char[] cells = new char[dim * dim];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = puzzle.getCell(cell / dim, cell % dim);
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,66 @@
+package tentsandtrees.main;
+
+import tentsandtrees.generator.GeneratedPuzzle;
+import tentsandtrees.generator.PuzzleGenerator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes a batch of random puzzles.  Puzzle i is made from seed + i and
+ * written to DIMxDIM_SEED.txt in the output directory, so any one of them
+ * can be made again on its own.
+ * <pre>
+ *     java GeneratePuzzles 50 0.15 1000 42 data/stress
+ * </pre>
+ * Add --unique to only keep puzzles with exactly one solution.  If the
+ * output ends in .txt every puzzle goes into that one file, one after
+ * another, for PuzzleReader and BatchSolve to stream through.
+ *
+ * @author Lyx Huston
+ */
+public class GeneratePuzzles {
+    /**
+     * The main method.
+     *
+     * @param args dimension, density, count, seed, output directory or
+     *             file and optionally --unique
+     */
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            System.err.println("Usage: java GeneratePuzzles dim density count seed " +
+                    "(output-dir | output.txt) [--unique]");
+            return;
+        }
+        try {
+            int dim = Integer.parseInt(args[0]);
+            double density = Double.parseDouble(args[1]);
+            int count = Integer.parseInt(args[2]);
+            long seed = Long.parseLong(args[3]);
+            Path output = Path.of(args[4]);
+            PuzzleGenerator generator = new PuzzleGenerator(dim, density);
+            generator.setUniqueOnly(args.length > 5 && args[5].equals("--unique"));
+
+            long start = System.nanoTime();
+            if (args[4].endsWith(".txt")) {
+                try (Writer out = Files.newBufferedWriter(output)) {
+                    for (int i = 0; i < count; i++) {
+                        out.write(generator.generate(seed + i).toText());
+                    }
+                }
+            } else {
+                Files.createDirectories(output);
+                for (int i = 0; i < count; i++) {
+                    GeneratedPuzzle puzzle = generator.generate(seed + i);
+                    puzzle.write(output.resolve(dim + "x" + dim + "_" + (seed + i) + ".txt"));
+                }
+            }
+            System.out.println("Wrote " + count + " puzzles in " +
+                    (System.nanoTime() - start) / 1e9 + " seconds.");
+        } catch (IOException ioe) {
+            System.out.println(ioe.getMessage());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package tentsandtrees.main;
+
+import tentsandtrees.server.SolveServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Runs a SolveServer until the JVM is stopped.
+ * <pre>
+ *     java ServePuzzles --port 8080 --threads 8 --timeout 5000
+ * </pre>
+ * Options:
+ * <ul>
+ *     <li>--port N port to listen on, 8080 by default</li>
+ *     <li>--bind ADDRESS address to listen on, localhost by default</li>
+ *     <li>--threads N worker threads, every processor by default</li>
+ *     <li>--queue N puzzles that may wait for a worker, twice the
+ *     threads by default</li>
+ *     <li>--cache N most answers cached, 10000 by default</li>
+ *     <li>--timeout MS longest a puzzle may take, 10000 by default</li>
+ * </ul>
+ *
+ * @author Lyx Huston
+ */
+public class ServePuzzles {
+    /**
+     * The main method.
+     *
+     * @param args options
+     */
+    public static void main(String[] args) {
+        int port = 8080;
+        String bind = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queue = -1;
+        int cache = 10000;
+        long timeout = 10000;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--port" -> port = Integer.parseInt(args[++i]);
+                    case "--bind" -> bind = args[++i];
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "--queue" -> queue = Integer.parseInt(args[++i]);
+                    case "--cache" -> cache = Integer.parseInt(args[++i]);
+                    case "--timeout" -> timeout = Long.parseLong(args[++i]);
+                    default -> throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Usage: java ServePuzzles [--port N] [--bind ADDRESS] [--threads N] " +
+                    "[--queue N] [--cache N] [--timeout MS]");
+            return;
+        }
+        try {
+            InetAddress address = bind == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+            SolveServer server = new SolveServer(new InetSocketAddress(address, port), threads,
+                    queue < 0 ? 2 * threads : queue, cache, timeout);
+            System.out.println("Solving puzzles at http://" + address.getHostAddress() + ":" +
+                    server.getPort() + "/solve");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                System.out.print(server);
+            }));
+            Thread.currentThread().join();
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
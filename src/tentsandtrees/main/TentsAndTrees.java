@@ -1,10 +1,30 @@
 package tentsandtrees.main;
 
 import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.BackjumpingSolver;
+import tentsandtrees.backtracker.BitTentConfig;
+import tentsandtrees.backtracker.Checkpoint;
+import tentsandtrees.backtracker.Checkpointer;
 import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.DecomposingSolver;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.LinePropagator;
+import tentsandtrees.backtracker.MetricsReporter;
+import tentsandtrees.backtracker.ParallelBacktracker;
+import tentsandtrees.backtracker.SearchMetrics;
+import tentsandtrees.backtracker.SolveBudget;
+import tentsandtrees.backtracker.SolveOutcome;
+import tentsandtrees.backtracker.Solver;
 import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.backtracker.TranspositionTable;
+import tentsandtrees.dlx.DlxSolver;
+import tentsandtrees.sat.SatSolver;
 
+import javax.management.JMException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -18,10 +38,92 @@ import java.util.Optional;
  * <pre>
  *     java TentsAndTrees tents1.txt false
  * </pre>
+ * An optional third argument picks the solver: copy (the default, a
+ * Backtracker over TentConfig), bits (a Backtracker over BitTentConfig),
+ * inplace (the InPlaceSolver), mrv (the InPlaceSolver visiting the most
+ * constrained tree first), parallel (a ParallelBacktracker over
+ * TentConfig using every processor), backjump (the BackjumpingSolver,
+ * learning from every dead end), backjump-mrv (the same, visiting the
+ * most constrained tree first), sat (the SatSolver, encoding the puzzle
+ * as CNF for the embedded CDCL solver), dlx (the DlxSolver, searching the
+ * puzzle as an exact cover problem with dancing links) or decompose (the
+ * DecomposingSolver, splitting the board into parts solved on their own).
+ * <pre>
+ *     java TentsAndTrees tents1.txt false inplace
+ * </pre>
+ * Options may follow:
+ * <ul>
+ *     <li>--match prunes configs whose remaining trees can't all be matched
+ *     to their own free cell (copy and parallel)</li>
+ *     <li>--propagate runs the line propagator on every config (copy,
+ *     parallel, inplace and mrv)</li>
+ *     <li>--count keeps searching after the first solution, printing every
+ *     solution and how many there are</li>
+ *     <li>--memo MB remembers states that turned out to have no solution in
+ *     a transposition table of that many megabytes, and skips them when
+ *     they come up again (copy and parallel)</li>
+ *     <li>--metrics publishes the search's progress over JMX, as
+ *     tentsandtrees:type=SearchMetrics,name=main (copy, bits, inplace and
+ *     mrv)</li>
+ *     <li>--report SECONDS prints the search's progress to standard error
+ *     that often (the same solvers)</li>
+ *     <li>--checkpoint FILE writes where the search has got to into FILE
+ *     every minute, and when it is stopped with Ctrl-C, deleting it once
+ *     the search finishes (copy only)</li>
+ *     <li>--every SECONDS checkpoints that often instead</li>
+ *     <li>--resume carries on from the checkpoint, if there is one, given
+ *     the same puzzle and options</li>
+ *     <li>--timeout MS gives up after this many milliseconds (solving, not
+ *     --count)</li>
+ *     <li>--nodes N gives up after this many configs (the same)</li>
+ * </ul>
+ * An unknown solver or option, an option missing its value, or an option
+ * the solver doesn't support prints the usage and nothing is solved.
  *
  * @author RIT CS
  */
 public class TentsAndTrees {
+    /** the solvers an argument can pick */
+    private static final List<String> MODES = List.of("copy", "bits", "inplace", "mrv", "parallel",
+            "backjump", "backjump-mrv", "sat", "dlx", "decompose");
+
+    /**
+     * Prints how to run the program.
+     */
+    private static void usage() {
+        System.err.println("Usage: java TentsAndTrees input-file debug " +
+                "[" + String.join("|", MODES) + "] [--match] [--propagate] [--count] [--memo MB]" +
+                " [--metrics] [--report SECONDS] [--checkpoint FILE [--every SECONDS] [--resume]]" +
+                " [--timeout MS] [--nodes N]");
+    }
+
+    /**
+     * Rejects an option the solver can't use, rather than ignoring it.
+     * @param option the option
+     * @param given whether it was given
+     * @param mode the solver
+     * @param modes the solvers that support it
+     * @throws IllegalArgumentException if it was given and isn't supported
+     */
+    private static void supported(String option, boolean given, String mode, String... modes) {
+        if (given && !List.of(modes).contains(mode)) {
+            throw new IllegalArgumentException(option + " only works with " + String.join(", ", modes));
+        }
+    }
+
+    /**
+     * Gets the value after an option.
+     * @param args the command line arguments
+     * @param i index of the value
+     * @return the value
+     * @throws IllegalArgumentException if the option is the last argument
+     */
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(args[i - 1] + " needs a value");
+        }
+        return args[i];
+    }
     /**
      * The main method.
      *
@@ -29,24 +131,154 @@ public class TentsAndTrees {
      */
     public static void main(String[] args) {
         // check for file name and debug flag on command line
-        if (args.length != 2) {
-            System.err.println("Usage: java TentsAndTrees input-file debug");
+        if (args.length < 2) {
+            usage();
         } else {
+            String mode = "copy";
+            boolean match = false;
+            boolean count = false;
+            LinePropagator propagator = null;
+            TranspositionTable table = null;
+            boolean jmx = false;
+            double report = 0;
+            Path checkpoint = null;
+            double every = 0;
+            boolean resume = false;
+            long timeout = 0;
+            long nodes = 0;
             try {
+                for (int i = 2; i < args.length; i++) {
+                    switch (args[i]) {
+                        case "--match" -> match = true;
+                        case "--propagate" -> propagator = new LinePropagator();
+                        case "--count" -> count = true;
+                        case "--memo" -> table = new TranspositionTable(Long.parseLong(value(args, ++i)) << 20);
+                        case "--metrics" -> jmx = true;
+                        case "--report" -> report = Double.parseDouble(value(args, ++i));
+                        case "--checkpoint" -> checkpoint = Path.of(value(args, ++i));
+                        case "--every" -> every = Double.parseDouble(value(args, ++i));
+                        case "--resume" -> resume = true;
+                        case "--timeout" -> timeout = Long.parseLong(value(args, ++i));
+                        case "--nodes" -> nodes = Long.parseLong(value(args, ++i));
+                        default -> {
+                            if (args[i].startsWith("--")) {
+                                throw new IllegalArgumentException("Unknown option " + args[i]);
+                            }
+                            if (!MODES.contains(args[i])) {
+                                throw new IllegalArgumentException("Unknown solver " + args[i]);
+                            }
+                            mode = args[i];
+                        }
+                    }
+                }
+                supported("--match", match, mode, "copy", "parallel");
+                supported("--propagate", propagator != null, mode, "copy", "parallel", "inplace", "mrv");
+                supported("--memo", table != null, mode, "copy", "parallel");
+                supported("--metrics", jmx, mode, "copy", "bits", "inplace", "mrv");
+                supported("--report", report > 0, mode, "copy", "bits", "inplace", "mrv");
+                supported("--checkpoint", checkpoint != null, mode, "copy");
+                if (checkpoint == null && (every > 0 || resume)) {
+                    throw new IllegalArgumentException("--every and --resume need --checkpoint");
+                }
+                if (count && (timeout > 0 || nodes > 0)) {
+                    throw new IllegalArgumentException("--timeout and --nodes don't work with --count");
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                usage();
+                return;
+            }
+            try {
+
                 // construct the initial configuration
-                Configuration init = new TentConfig(args[0]);
+                Configuration init = mode.equals("bits") ?
+                        new BitTentConfig(args[0]) : new TentConfig(args[0]);
+                if (init instanceof TentConfig tentConfig) {
+                    tentConfig.setMatchingPruning(match);
+                    if (!mode.equals("inplace") && !mode.equals("mrv")) {
+                        tentConfig.setPropagator(propagator);
+                        tentConfig.setTranspositionTable(table);
+                    }
+                }
 
                 System.out.println("Initial config:\n" + init);
 
-                // create the backtracker with the debug flag
+                // create the solver with the debug flag
                 boolean debug = args[1].equals("true");
-                Backtracker bt = new Backtracker(debug);
+                Solver bt = switch (mode) {
+                    case "inplace" -> new InPlaceSolver(debug);
+                    case "mrv" -> new InPlaceSolver(debug,
+                            InPlaceSolver.TreeOrder.MOST_CONSTRAINED);
+                    case "parallel" -> new ParallelBacktracker();
+                    case "backjump" -> new BackjumpingSolver(debug);
+                    case "backjump-mrv" -> new BackjumpingSolver(debug,
+                            InPlaceSolver.TreeOrder.MOST_CONSTRAINED);
+                    case "sat" -> new SatSolver(debug);
+                    case "dlx" -> new DlxSolver(debug);
+                    case "decompose" -> new DecomposingSolver();
+                    default -> new Backtracker(debug);
+                };
+                SearchMetrics metrics = jmx || report > 0 ? new SearchMetrics() : null;
+                if (bt instanceof InPlaceSolver inPlace) {
+                    inPlace.setPropagator(propagator);
+                    inPlace.setMetrics(metrics);
+                } else if (bt instanceof Backtracker backtracker) {
+                    backtracker.setMetrics(metrics);
+                }
+                if (jmx) {
+                    metrics.register("main");
+                }
+                MetricsReporter reporter = report > 0 ? new MetricsReporter(metrics, report) : null;
+                Checkpointer checkpointer = null;
+                if (checkpoint != null && bt instanceof Backtracker backtracker) {
+                    checkpointer = new Checkpointer(checkpoint, every > 0 ? every : 60);
+                    backtracker.setCheckpointer(checkpointer);
+                    if (resume && Files.exists(checkpoint)) {
+                        Checkpoint from = Checkpoint.read(checkpoint);
+                        System.out.println("Resuming from " + checkpoint + " after " + from.getNodes() +
+                                " configs, at depth " + from.getDepth());
+                        backtracker.setResume(from);
+                    }
+                    // Ctrl-C interrupts the search, which checkpoints before it stops
+                    Thread search = Thread.currentThread();
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        search.interrupt();
+                        try {
+                            search.join(10000);
+                        } catch (InterruptedException ignored) {
+                            // exiting anyway
+                        }
+                    }));
+                }
 
                 // start the clock
                 double start = System.currentTimeMillis();
 
                 // attempt to solve the puzzle
-                Optional<Configuration> sol = bt.solve(init);
+                Optional<Configuration> sol = Optional.empty();
+                long solutions = 0;
+                SolveOutcome outcome = null;
+                if (count) {
+                    solutions = bt.countSolutions(init, Long.MAX_VALUE,
+                            solution -> System.out.println("Solution:\n" + solution));
+                } else if (timeout > 0 || nodes > 0) {
+                    outcome = bt.solve(init, new SolveBudget(timeout, nodes));
+                    sol = outcome.getSolution();
+                } else {
+                    sol = bt.solve(init);
+                }
+                if (reporter != null) {
+                    reporter.close();
+                }
+                if (checkpointer != null) {
+                    checkpointer.close();
+                    if (checkpointer.getFailure() != null) {
+                        System.err.println("Writing a checkpoint failed: " + checkpointer.getFailure().getMessage());
+                    }
+                    if (Files.exists(checkpoint)) {
+                        System.out.println("Stopped; checkpoint left in " + checkpoint);
+                    }
+                }
 
                 // compute the elapsed time
                 System.out.println("Elapsed time: " +
@@ -54,15 +286,47 @@ public class TentsAndTrees {
 
                 // display the number of configs generated
                 System.out.println("Number of configs generated: " + bt.getConfigCount());
+                if (bt instanceof InPlaceSolver inPlace) {
+                    System.out.print(inPlace.getStats());
+                } else if (bt instanceof BackjumpingSolver backjumping) {
+                    System.out.print(backjumping.getStats());
+                    System.out.println("Frames backjumped over: " + backjumping.getBackjumps());
+                    System.out.println("Nogoods learned: " + backjumping.getNogoodsLearned() +
+                            ", evicted: " + backjumping.getNogoodsEvicted());
+                } else if (bt instanceof SatSolver sat) {
+                    System.out.print(sat.getSummary());
+                } else if (bt instanceof DlxSolver dlx) {
+                    System.out.print(dlx.getSummary());
+                } else if (bt instanceof DecomposingSolver decomposing) {
+                    System.out.print(decomposing.getDecomposition());
+                } else if (init instanceof TentConfig tentConfig) {
+                    System.out.print(tentConfig.getStats());
+                }
+                if (propagator != null) {
+                    System.out.print(propagator);
+                }
+                if (table != null) {
+                    System.out.print(table);
+                }
+                if (metrics != null) {
+                    System.out.println(metrics);
+                }
+                if (outcome != null) {
+                    System.out.print(outcome);
+                }
 
                 // indicate whether there was a solution, or not
-                if (sol.isPresent()) {
+                if (count) {
+                    System.out.println("Number of solutions: " + solutions);
+                } else if (sol.isPresent()) {
                     System.out.println("Solution:\n" + sol.get());
+                } else if (outcome != null && outcome.getStatus() == SolveOutcome.Status.EXHAUSTED) {
+                    System.out.println("Gave up before finding a solution.");
                 } else {
                     System.out.println("No solution!");
                 }
-            } catch (IOException ioe) {
-                System.out.println(ioe.getMessage());
+            } catch (IOException | JMException e) {
+                System.out.println(e.getMessage());
             }
         }
     }
@@ -0,0 +1,722 @@
+package tentsandtrees.sat;
+
+import tentsandtrees.backtracker.SolveBudget;
+import tentsandtrees.backtracker.Solver;
+
+import java.util.Arrays;
+
+/**
+ * A small conflict driven clause learning SAT solver, in the style of
+ * MiniSat.  Each clause watches two of its literals and is only looked at
+ * when one of them becomes false.  Every conflict is analysed back to its
+ * first unique implication point and the learned clause added; variables
+ * in recent conflicts are bumped (VSIDS) and picked first, with the
+ * polarity they last had.  Search restarts on the Luby sequence, and the
+ * less active half of the learned clauses is thrown away now and then.
+ * <p>
+ * Literals are stored as 2 * variable + 1 if negated, with variables from
+ * 0; the public methods take DIMACS literals.
+ *
+ * @author Lyx Huston
+ */
+public class CdclSolver {
+    /** conflicts in the first restart, scaled by the Luby sequence */
+    public static final int RESTART_BASE = 100;
+
+    /** variable activity bump growth per conflict, 1 / 0.95 */
+    private static final double VARIABLE_DECAY = 1 / 0.95;
+    /** clause activity bump growth per conflict, 1 / 0.999 */
+    private static final double CLAUSE_DECAY = 1 / 0.999;
+    /** activities are scaled down once they pass this */
+    private static final double RESCALE = 1e100;
+    /** literal values */
+    private static final byte TRUE = 1, FALSE = -1, UNSET = 0;
+    /** search results */
+    private static final int SAT = 0, UNSAT = 1, RESTART = 2, INTERRUPTED = 3;
+
+    /** number of variables */
+    private final int variables;
+    /** value of each literal */
+    private final byte[] value;
+    /** decision level each variable was set at */
+    private final int[] level;
+    /** clause that set each variable, -1 for a decision or a fact */
+    private final int[] reason;
+    /** last polarity of each variable, true for positive */
+    private final boolean[] phase;
+    /** marks used by conflict analysis */
+    private final boolean[] seen;
+    /** VSIDS activity of each variable */
+    private final double[] activity;
+    /** current variable bump */
+    private double variableBump = 1;
+
+    /** unset variables by activity, a binary heap */
+    private final int[] heap;
+    /** where each variable is in the heap, -1 if it isn't */
+    private final int[] heapIndex;
+    /** variables in the heap */
+    private int heapSize;
+
+    /** literals set, in order */
+    private final int[] trail;
+    /** literals on the trail */
+    private int trailSize;
+    /** where each decision level starts on the trail */
+    private final int[] trailStart;
+    /** current decision level */
+    private int decisionLevel;
+    /** next trail literal to propagate */
+    private int propagateHead;
+
+    /** clauses, first two literals watched; learned ones after the rest */
+    private int[][] clauses = new int[64][];
+    /** whether each clause was learned */
+    private boolean[] learned = new boolean[64];
+    /** activity of each clause */
+    private double[] clauseActivity = new double[64];
+    /** number of clauses */
+    private int clauseCount;
+    /** current clause bump */
+    private double clauseBump = 1;
+    /** learned clauses kept right now */
+    private int learnedCount;
+    /** learned clauses kept before the less active half is thrown away */
+    private double learnedLimit = 1000;
+    /** clauses watching each literal */
+    private final int[][] watches;
+    /** clauses watching each literal */
+    private final int[] watchSize;
+    /** false once the clauses are known to be unsatisfiable */
+    private boolean consistent = true;
+    /** satisfying assignment of the last solve, by variable */
+    private boolean[] model;
+
+    /** decisions made */
+    private long decisions;
+    /** conflicts hit */
+    private long conflicts;
+    /** literals propagated */
+    private long propagations;
+    /** restarts */
+    private long restarts;
+    /** learned clauses thrown away */
+    private long forgotten;
+
+    /**
+     * Creates a solver with no clauses.
+     * @param variables number of variables
+     */
+    public CdclSolver(int variables) {
+        this.variables = variables;
+        this.value = new byte[2 * variables];
+        this.level = new int[variables];
+        this.reason = new int[variables];
+        Arrays.fill(this.reason, -1);
+        this.phase = new boolean[variables];
+        this.seen = new boolean[variables];
+        this.activity = new double[variables];
+        this.heap = new int[variables];
+        this.heapIndex = new int[variables];
+        for (int v = 0; v < variables; v++) {
+            this.heap[v] = v;
+            this.heapIndex[v] = v;
+        }
+        this.heapSize = variables;
+        this.trail = new int[variables];
+        this.trailStart = new int[variables + 1];
+        this.watches = new int[2 * variables][];
+        this.watchSize = new int[2 * variables];
+        for (int i = 0; i < this.watches.length; i++) {
+            this.watches[i] = new int[4];
+        }
+    }
+
+    /**
+     * Creates a solver for a formula.
+     * @param cnf the formula
+     */
+    public CdclSolver(Cnf cnf) {
+        this(cnf.getVariables());
+        for (int[] clause : cnf.getClauses()) {
+            if (!addClause(clause)) {
+                break;
+            }
+        }
+        this.learnedLimit = Math.max(1000, this.clauseCount / 3.0);
+    }
+
+    /**
+     * Adds a clause.  Can be called between solves, for example to rule out
+     * a model just found.
+     * @param dimacs the clause as DIMACS literals
+     * @return false if the clauses are now known to be unsatisfiable
+     * @throws IllegalArgumentException if a literal names no variable
+     */
+    public boolean addClause(int... dimacs) {
+        if (!this.consistent) {
+            return false;
+        }
+        int[] literals = new int[dimacs.length];
+        for (int i = 0; i < dimacs.length; i++) {
+            int v = Math.abs(dimacs[i]) - 1;
+            if (v < 0 || v >= this.variables) {
+                throw new IllegalArgumentException("No variable " + dimacs[i] + " of " + this.variables);
+            }
+            literals[i] = 2 * v + (dimacs[i] < 0 ? 1 : 0);
+        }
+        Arrays.sort(literals);
+        // drop repeats and facts already false; a true or tautological clause is done
+        int size = 0;
+        for (int i = 0; i < literals.length; i++) {
+            int literal = literals[i];
+            if (this.value[literal] == TRUE || (i > 0 && literal == (literals[i - 1] ^ 1))) {
+                return true;
+            }
+            if (this.value[literal] != FALSE && (size == 0 || literals[size - 1] != literal)) {
+                literals[size++] = literal;
+            }
+        }
+        if (size == 0) {
+            this.consistent = false;
+        } else if (size == 1) {
+            assign(literals[0], -1);
+            this.consistent = propagate() < 0;
+        } else {
+            attach(Arrays.copyOf(literals, size), false);
+        }
+        return this.consistent;
+    }
+
+    /**
+     * Looks for a satisfying assignment.  Stops early, returning false, if
+     * the thread is interrupted or its SolveBudget is spent; it looks every
+     * Solver.INTERRUPT_CHECK_MASK + 1 decisions.
+     * @return true if one was found, read it with modelValue
+     */
+    public boolean solve() {
+        this.model = null;
+        if (!this.consistent) {
+            return false;
+        }
+        if (propagate() >= 0) {
+            this.consistent = false;
+            return false;
+        }
+        for (int restart = 0; ; restart++) {
+            int result = search(luby(restart) * RESTART_BASE);
+            if (result == SAT) {
+                this.model = new boolean[this.variables];
+                for (int v = 0; v < this.variables; v++) {
+                    this.model[v] = this.value[2 * v] == TRUE;
+                }
+                backtrack(0);
+                return true;
+            }
+            if (result == UNSAT) {
+                this.consistent = false;
+                return false;
+            }
+            backtrack(0);
+            if (result == INTERRUPTED) {
+                return false;
+            }
+            this.restarts++;
+        }
+    }
+
+    /**
+     * @param variable a variable, from 1
+     * @return its value in the model the last solve found
+     * @throws IllegalStateException if the last solve found none
+     */
+    public boolean modelValue(int variable) {
+        if (this.model == null) {
+            throw new IllegalStateException("No model");
+        }
+        return this.model[variable - 1];
+    }
+
+    /**
+     * @return decisions made over every solve
+     */
+    public long getDecisions() {
+        return this.decisions;
+    }
+
+    /**
+     * @return conflicts hit over every solve
+     */
+    public long getConflicts() {
+        return this.conflicts;
+    }
+
+    /**
+     * @return literals propagated over every solve
+     */
+    public long getPropagations() {
+        return this.propagations;
+    }
+
+    /**
+     * @return restarts over every solve
+     */
+    public long getRestarts() {
+        return this.restarts;
+    }
+
+    /**
+     * runs until a model, a proof there is none, or the conflict budget
+     * runs out
+     * @param budget conflicts before restarting
+     * @return SAT, UNSAT, RESTART or INTERRUPTED
+     */
+    private int search(long budget) {
+        long conflictsHere = 0;
+        while (true) {
+            int conflict = propagate();
+            if (conflict >= 0) {
+                this.conflicts++;
+                conflictsHere++;
+                if (this.decisionLevel == 0) {
+                    return UNSAT;
+                }
+                learn(conflict);
+                this.variableBump *= VARIABLE_DECAY;
+                this.clauseBump *= CLAUSE_DECAY;
+                continue;
+            }
+            if (conflictsHere >= budget) {
+                return RESTART;
+            }
+            if (this.learnedCount - this.trailSize >= this.learnedLimit) {
+                forget();
+                this.learnedLimit *= 1.1;
+            }
+            int next = pickBranch();
+            if (next < 0) {
+                return SAT;
+            }
+            this.decisions++;
+            if ((this.decisions & Solver.INTERRUPT_CHECK_MASK) == 0 && SolveBudget.shouldStop()) {
+                return INTERRUPTED;
+            }
+            this.trailStart[++this.decisionLevel] = this.trailSize;
+            assign(next, -1);
+        }
+    }
+
+    /**
+     * sets every literal the watched clauses force
+     * @return a clause left with every literal false, -1 if none
+     */
+    private int propagate() {
+        while (this.propagateHead < this.trailSize) {
+            int falseLiteral = this.trail[this.propagateHead++] ^ 1;
+            int[] watching = this.watches[falseLiteral];
+            int size = this.watchSize[falseLiteral];
+            int keep = 0;
+            this.propagations++;
+            for (int i = 0; i < size; ) {
+                int index = watching[i++];
+                int[] clause = this.clauses[index];
+                if (clause[0] == falseLiteral) {
+                    clause[0] = clause[1];
+                    clause[1] = falseLiteral;
+                }
+                if (this.value[clause[0]] == TRUE) {
+                    watching[keep++] = index;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < clause.length; k++) {
+                    if (this.value[clause[k]] != FALSE) {
+                        clause[1] = clause[k];
+                        clause[k] = falseLiteral;
+                        watch(clause[1], index);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                watching[keep++] = index;
+                if (this.value[clause[0]] == FALSE) {
+                    while (i < size) {
+                        watching[keep++] = watching[i++];
+                    }
+                    this.watchSize[falseLiteral] = keep;
+                    this.propagateHead = this.trailSize;
+                    return index;
+                }
+                assign(clause[0], index);
+            }
+            this.watchSize[falseLiteral] = keep;
+        }
+        return -1;
+    }
+
+    /**
+     * Analyses a conflict to its first unique implication point, learns the
+     * clause, jumps back to where it becomes unit and sets its literal.
+     * @param conflict clause with every literal false
+     */
+    private void learn(int conflict) {
+        int[] out = new int[this.decisionLevel + 16];
+        int size = 1;
+        int paths = 0;
+        int literal = -1;
+        int index = this.trailSize - 1;
+        do {
+            int[] clause = this.clauses[conflict];
+            if (this.learned[conflict]) {
+                bumpClause(conflict);
+            }
+            for (int k = literal < 0 ? 0 : 1; k < clause.length; k++) {
+                int q = clause[k];
+                int v = q >> 1;
+                if (!this.seen[v] && this.level[v] > 0) {
+                    bumpVariable(v);
+                    this.seen[v] = true;
+                    if (this.level[v] >= this.decisionLevel) {
+                        paths++;
+                    } else {
+                        if (size == out.length) {
+                            out = Arrays.copyOf(out, 2 * size);
+                        }
+                        out[size++] = q;
+                    }
+                }
+            }
+            while (!this.seen[this.trail[index--] >> 1]) {
+                // skip literals that played no part
+            }
+            literal = this.trail[index + 1];
+            conflict = this.reason[literal >> 1];
+            this.seen[literal >> 1] = false;
+            paths--;
+        } while (paths > 0);
+        out[0] = literal ^ 1;
+
+        // drop literals implied by the others, then clear every mark
+        int[] analysed = Arrays.copyOf(out, size);
+        int kept = 1;
+        for (int i = 1; i < size; i++) {
+            int because = this.reason[out[i] >> 1];
+            if (because < 0 || !implied(this.clauses[because])) {
+                out[kept++] = out[i];
+            }
+        }
+        for (int i = 1; i < size; i++) {
+            this.seen[analysed[i] >> 1] = false;
+        }
+        size = kept;
+
+        int back = 0;
+        if (size > 1) {
+            int deepest = 1;
+            for (int i = 2; i < size; i++) {
+                if (this.level[out[i] >> 1] > this.level[out[deepest] >> 1]) {
+                    deepest = i;
+                }
+            }
+            int swap = out[1];
+            out[1] = out[deepest];
+            out[deepest] = swap;
+            back = this.level[out[1] >> 1];
+        }
+        backtrack(back);
+        if (size == 1) {
+            assign(out[0], -1);
+        } else {
+            int clause = attach(Arrays.copyOf(out, size), true);
+            bumpClause(clause);
+            assign(out[0], clause);
+        }
+    }
+
+    /**
+     * @param because reason clause of a literal in a learned clause
+     * @return true if every other literal of it is already in the learned
+     * clause or a fact
+     */
+    private boolean implied(int[] because) {
+        for (int k = 1; k < because.length; k++) {
+            int v = because[k] >> 1;
+            if (!this.seen[v] && this.level[v] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the unset literal to decide on next, -1 if every variable is set
+     */
+    private int pickBranch() {
+        while (this.heapSize > 0) {
+            int v = heapPop();
+            if (this.value[2 * v] == UNSET) {
+                return 2 * v + (this.phase[v] ? 0 : 1);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * sets a literal true
+     * @param literal the literal
+     * @param because clause forcing it, -1 for a decision or a fact
+     */
+    private void assign(int literal, int because) {
+        int v = literal >> 1;
+        this.value[literal] = TRUE;
+        this.value[literal ^ 1] = FALSE;
+        this.level[v] = this.decisionLevel;
+        this.reason[v] = because;
+        this.trail[this.trailSize++] = literal;
+    }
+
+    /**
+     * undoes every decision level above one
+     * @param target level to go back to
+     */
+    private void backtrack(int target) {
+        if (this.decisionLevel <= target) {
+            return;
+        }
+        int start = this.trailStart[target + 1];
+        for (int i = this.trailSize - 1; i >= start; i--) {
+            int literal = this.trail[i];
+            int v = literal >> 1;
+            this.phase[v] = (literal & 1) == 0;
+            this.value[literal] = UNSET;
+            this.value[literal ^ 1] = UNSET;
+            this.reason[v] = -1;
+            if (this.heapIndex[v] < 0) {
+                heapPush(v);
+            }
+        }
+        this.trailSize = start;
+        this.propagateHead = start;
+        this.decisionLevel = target;
+    }
+
+    /**
+     * adds a clause and watches its first two literals
+     * @param literals at least two literals
+     * @param isLearned whether it was learned
+     * @return its index
+     */
+    private int attach(int[] literals, boolean isLearned) {
+        if (this.clauseCount == this.clauses.length) {
+            int length = 2 * this.clauseCount;
+            this.clauses = Arrays.copyOf(this.clauses, length);
+            this.learned = Arrays.copyOf(this.learned, length);
+            this.clauseActivity = Arrays.copyOf(this.clauseActivity, length);
+        }
+        int index = this.clauseCount++;
+        this.clauses[index] = literals;
+        this.learned[index] = isLearned;
+        this.clauseActivity[index] = 0;
+        if (isLearned) {
+            this.learnedCount++;
+        }
+        watch(literals[0], index);
+        watch(literals[1], index);
+        return index;
+    }
+
+    /**
+     * @param literal a watched literal
+     * @param clause clause watching it
+     */
+    private void watch(int literal, int clause) {
+        int size = this.watchSize[literal];
+        if (size == this.watches[literal].length) {
+            this.watches[literal] = Arrays.copyOf(this.watches[literal], 2 * size);
+        }
+        this.watches[literal][size] = clause;
+        this.watchSize[literal] = size + 1;
+    }
+
+    /**
+     * Throws away the less active half of the learned clauses longer than
+     * two, keeping any that are the reason for a literal now set, then
+     * packs the clauses down and watches them again.
+     */
+    private void forget() {
+        int candidates = 0;
+        double[] activities = new double[this.learnedCount];
+        for (int i = 0; i < this.clauseCount; i++) {
+            if (removable(i)) {
+                activities[candidates++] = this.clauseActivity[i];
+            }
+        }
+        if (candidates == 0) {
+            return;
+        }
+        Arrays.sort(activities, 0, candidates);
+        double median = activities[candidates / 2];
+        int toRemove = candidates / 2;
+        int[] moved = new int[this.clauseCount];
+        int kept = 0;
+        for (int i = 0; i < this.clauseCount; i++) {
+            if (toRemove > 0 && removable(i) && this.clauseActivity[i] <= median) {
+                moved[i] = -1;
+                toRemove--;
+                this.learnedCount--;
+                this.forgotten++;
+                continue;
+            }
+            moved[i] = kept;
+            this.clauses[kept] = this.clauses[i];
+            this.learned[kept] = this.learned[i];
+            this.clauseActivity[kept] = this.clauseActivity[i];
+            kept++;
+        }
+        Arrays.fill(this.clauses, kept, this.clauseCount, null);
+        this.clauseCount = kept;
+        for (int i = 0; i < this.trailSize; i++) {
+            int v = this.trail[i] >> 1;
+            if (this.reason[v] >= 0) {
+                this.reason[v] = moved[this.reason[v]];
+            }
+        }
+        Arrays.fill(this.watchSize, 0);
+        for (int i = 0; i < this.clauseCount; i++) {
+            watch(this.clauses[i][0], i);
+            watch(this.clauses[i][1], i);
+        }
+    }
+
+    /**
+     * @param index a clause
+     * @return true if it is learned, longer than two and no reason
+     */
+    private boolean removable(int index) {
+        int[] clause = this.clauses[index];
+        return this.learned[index] && clause.length > 2 &&
+                !(this.value[clause[0]] == TRUE && this.reason[clause[0] >> 1] == index);
+    }
+
+    /**
+     * @param v a variable in a conflict
+     */
+    private void bumpVariable(int v) {
+        this.activity[v] += this.variableBump;
+        if (this.activity[v] > RESCALE) {
+            for (int i = 0; i < this.variables; i++) {
+                this.activity[i] /= RESCALE;
+            }
+            this.variableBump /= RESCALE;
+        }
+        if (this.heapIndex[v] >= 0) {
+            siftUp(this.heapIndex[v]);
+        }
+    }
+
+    /**
+     * @param index a learned clause in a conflict
+     */
+    private void bumpClause(int index) {
+        this.clauseActivity[index] += this.clauseBump;
+        if (this.clauseActivity[index] > RESCALE) {
+            for (int i = 0; i < this.clauseCount; i++) {
+                this.clauseActivity[i] /= RESCALE;
+            }
+            this.clauseBump /= RESCALE;
+        }
+    }
+
+    /**
+     * @param v a variable not in the heap
+     */
+    private void heapPush(int v) {
+        this.heap[this.heapSize] = v;
+        this.heapIndex[v] = this.heapSize;
+        siftUp(this.heapSize++);
+    }
+
+    /**
+     * @return the most active variable, taken out of the heap
+     */
+    private int heapPop() {
+        int top = this.heap[0];
+        this.heapIndex[top] = -1;
+        int last = this.heap[--this.heapSize];
+        if (this.heapSize > 0) {
+            this.heap[0] = last;
+            this.heapIndex[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * @param at heap position to move up
+     */
+    private void siftUp(int at) {
+        int v = this.heap[at];
+        while (at > 0) {
+            int parent = (at - 1) >> 1;
+            if (this.activity[this.heap[parent]] >= this.activity[v]) {
+                break;
+            }
+            this.heap[at] = this.heap[parent];
+            this.heapIndex[this.heap[at]] = at;
+            at = parent;
+        }
+        this.heap[at] = v;
+        this.heapIndex[v] = at;
+    }
+
+    /**
+     * @param at heap position to move down
+     */
+    private void siftDown(int at) {
+        int v = this.heap[at];
+        while (2 * at + 1 < this.heapSize) {
+            int child = 2 * at + 1;
+            if (child + 1 < this.heapSize && this.activity[this.heap[child + 1]] > this.activity[this.heap[child]]) {
+                child++;
+            }
+            if (this.activity[this.heap[child]] <= this.activity[v]) {
+                break;
+            }
+            this.heap[at] = this.heap[child];
+            this.heapIndex[this.heap[at]] = at;
+            at = child;
+        }
+        this.heap[at] = v;
+        this.heapIndex[v] = at;
+    }
+
+    /**
+     * @param i restart number, from 0
+     * @return the ith term of the Luby sequence 1 1 2 1 1 2 4 ...
+     */
+    static long luby(int i) {
+        int size = 1;
+        int power = 0;
+        while (size < i + 1) {
+            power++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != i) {
+            size = (size - 1) >> 1;
+            power--;
+            i = i % size;
+        }
+        return 1L << power;
+    }
+
+    @Override
+    public String toString() {
+        return "SAT decisions: " + this.decisions + ", conflicts: " + this.conflicts +
+                ", propagations: " + this.propagations + System.lineSeparator() +
+                "SAT restarts: " + this.restarts + ", learned clauses kept: " + this.learnedCount +
+                ", forgotten: " + this.forgotten + System.lineSeparator();
+    }
+}
@@ -0,0 +1,93 @@
+package tentsandtrees.sat;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A formula in conjunctive normal form, built up a variable and a clause at
+ * a time.  Literals are DIMACS style: variable v is v, its negation -v,
+ * with variables numbered from 1.
+ *
+ * @author Lyx Huston
+ */
+public class Cnf {
+    /** variables made so far */
+    private int variables;
+    /** the clauses, in the order added */
+    private final List<int[]> clauses = new ArrayList<>();
+
+    /**
+     * @return a new variable
+     */
+    public int newVariable() {
+        return ++this.variables;
+    }
+
+    /**
+     * Adds a clause.  An empty clause makes the formula unsatisfiable.
+     * @param literals the literals, any of which satisfies the clause
+     * @throws IllegalArgumentException if a literal names no variable
+     */
+    public void addClause(int... literals) {
+        for (int literal : literals) {
+            if (literal == 0 || Math.abs(literal) > this.variables) {
+                throw new IllegalArgumentException("No variable " + literal + " of " + this.variables);
+            }
+        }
+        this.clauses.add(literals.clone());
+    }
+
+    /**
+     * @return number of variables
+     */
+    public int getVariables() {
+        return this.variables;
+    }
+
+    /**
+     * @return the clauses; not to be changed
+     */
+    public List<int[]> getClauses() {
+        return Collections.unmodifiableList(this.clauses);
+    }
+
+    /**
+     * Writes the formula in DIMACS format.
+     * @param out where to write
+     * @param comment text for the comment lines at the top, or null
+     * @throws IOException if the writer fails
+     */
+    public void writeDimacs(Writer out, String comment) throws IOException {
+        if (comment != null) {
+            for (String line : comment.split("\n")) {
+                out.write("c " + line + "\n");
+            }
+        }
+        out.write("p cnf " + this.variables + " " + this.clauses.size() + "\n");
+        StringBuilder line = new StringBuilder();
+        for (int[] clause : this.clauses) {
+            line.setLength(0);
+            for (int literal : clause) {
+                line.append(literal).append(' ');
+            }
+            out.write(line.append("0\n").toString());
+        }
+    }
+
+    /**
+     * Writes the formula to a DIMACS file.
+     * @param path the file
+     * @param comment text for the comment lines at the top, or null
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path path, String comment) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path)) {
+            writeDimacs(out, comment);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package tentsandtrees.sat;
+
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionConfig;
+
+import java.util.Arrays;
+
+import static tentsandtrees.test.ITentsAndTreesTest.EMPTY;
+import static tentsandtrees.test.ITentsAndTreesTest.TENT;
+import static tentsandtrees.test.ITentsAndTreesTest.TREE;
+
+/**
+ * Turns a puzzle into CNF.  There is a variable for each tree putting its
+ * tent on each side it can, and one for each cell that could hold a tent
+ * at all.  The clauses say:
+ * <ul>
+ *     <li>each tree puts its tent on exactly one side</li>
+ *     <li>a cell holds a tent exactly when some tree puts its tent there,
+ *     and at most one tree does</li>
+ *     <li>no two tents touch, diagonals included</li>
+ *     <li>each row and column holds exactly its count of tents, using
+ *     sequential counters (Sinz 2005) for at most k of the cells, and at
+ *     most n - k of them empty</li>
+ * </ul>
+ * Cells no tree is beside have no variable; they can never hold a tent.
+ *
+ * @author Lyx Huston
+ */
+public class CnfEncoder {
+    /** row and column steps to the neighbours after a cell, so each pair comes up once */
+    private static final int[][] AHEAD = {{0, 1}, {1, -1}, {1, 0}, {1, 1}};
+
+    /** the puzzle */
+    private final PuzzleDefinition puzzle;
+    /** the formula */
+    private final Cnf cnf = new Cnf();
+    /** variable for each tree and side, tree * 4 + side, 0 if none */
+    private final int[] placement;
+    /** variable for a tent on each cell, 0 if none */
+    private final int[] tent;
+
+    /**
+     * Encodes a puzzle.
+     * @param puzzle the puzzle
+     */
+    public CnfEncoder(PuzzleDefinition puzzle) {
+        this.puzzle = puzzle;
+        int dim = puzzle.getDim();
+        int trees = puzzle.getTreeCount();
+        boolean[] isTree = new boolean[dim * dim];
+        for (int tree = 0; tree < trees; tree++) {
+            isTree[puzzle.getTreeRow(tree) * dim + puzzle.getTreeCol(tree)] = true;
+        }
+        this.placement = new int[4 * trees];
+        this.tent = new int[dim * dim];
+        for (int tree = 0; tree < trees; tree++) {
+            for (int side = 0; side < 4; side++) {
+                int cell = puzzle.getSide(tree, side);
+                if (cell >= 0 && !isTree[cell]) {
+                    this.placement[tree * 4 + side] = this.cnf.newVariable();
+                    if (this.tent[cell] == 0) {
+                        this.tent[cell] = this.cnf.newVariable();
+                    }
+                }
+            }
+        }
+        encodeTrees(trees);
+        encodeCells(trees);
+        encodeTouching(dim);
+        for (int line = 0; line < dim; line++) {
+            int[] row = new int[dim];
+            int[] col = new int[dim];
+            for (int i = 0; i < dim; i++) {
+                row[i] = this.tent[line * dim + i];
+                col[i] = this.tent[i * dim + line];
+            }
+            exactly(present(row), puzzle.getTentsRow(line));
+            exactly(present(col), puzzle.getTentsCol(line));
+        }
+    }
+
+    /**
+     * @return the formula
+     */
+    public Cnf getCnf() {
+        return this.cnf;
+    }
+
+    /**
+     * @param tree a tree
+     * @param side S, E, N or W, 0 to 3
+     * @return variable for the tree's tent going there, 0 if it can't
+     */
+    public int getPlacementVariable(int tree, int side) {
+        return this.placement[tree * 4 + side];
+    }
+
+    /**
+     * @param row a row
+     * @param col a column
+     * @return variable for a tent on the cell, 0 if there can't be one
+     */
+    public int getTentVariable(int row, int col) {
+        return this.tent[row * this.puzzle.getDim() + col];
+    }
+
+    /**
+     * Reads the board out of a satisfying assignment.
+     * @param solver a solver that just found a model of the formula
+     * @return the solved board
+     */
+    public SolutionConfig decode(CdclSolver solver) {
+        int dim = this.puzzle.getDim();
+        char[] cells = new char[dim * dim];
+        Arrays.fill(cells, EMPTY);
+        for (int tree = 0; tree < this.puzzle.getTreeCount(); tree++) {
+            cells[this.puzzle.getTreeRow(tree) * dim + this.puzzle.getTreeCol(tree)] = TREE;
+        }
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (this.tent[cell] != 0 && solver.modelValue(this.tent[cell])) {
+                cells[cell] = TENT;
+            }
+        }
+        return new SolutionConfig(dim, this.puzzle.getTentsPerRow(),
+                this.puzzle.getTentsPerColumn(), cells);
+    }
+
+    /**
+     * Makes a clause ruling out the tent layout of a model, so the next
+     * solve finds a different one.
+     * @param solver a solver that just found a model of the formula
+     * @return the clause, empty if the layout has no tents
+     */
+    public int[] blockingClause(CdclSolver solver) {
+        int[] clause = new int[this.tent.length];
+        int size = 0;
+        for (int variable : this.tent) {
+            if (variable != 0 && solver.modelValue(variable)) {
+                clause[size++] = -variable;
+            }
+        }
+        return Arrays.copyOf(clause, size);
+    }
+
+    /**
+     * each tree puts its tent on exactly one side
+     * @param trees number of trees
+     */
+    private void encodeTrees(int trees) {
+        for (int tree = 0; tree < trees; tree++) {
+            int[] sides = present(Arrays.copyOfRange(this.placement, tree * 4, tree * 4 + 4));
+            this.cnf.addClause(sides);
+            atMostOne(sides);
+        }
+    }
+
+    /**
+     * a cell has a tent exactly when one tree puts its tent there
+     * @param trees number of trees
+     */
+    private void encodeCells(int trees) {
+        int[][] owners = new int[this.tent.length][];
+        int[] size = new int[this.tent.length];
+        for (int tree = 0; tree < trees; tree++) {
+            for (int side = 0; side < 4; side++) {
+                int variable = this.placement[tree * 4 + side];
+                if (variable == 0) {
+                    continue;
+                }
+                int cell = this.puzzle.getSide(tree, side);
+                if (owners[cell] == null) {
+                    owners[cell] = new int[4];
+                }
+                owners[cell][size[cell]++] = variable;
+                this.cnf.addClause(-variable, this.tent[cell]);
+            }
+        }
+        for (int cell = 0; cell < this.tent.length; cell++) {
+            if (this.tent[cell] == 0) {
+                continue;
+            }
+            int[] clause = new int[size[cell] + 1];
+            clause[0] = -this.tent[cell];
+            System.arraycopy(owners[cell], 0, clause, 1, size[cell]);
+            this.cnf.addClause(clause);
+            atMostOne(Arrays.copyOf(owners[cell], size[cell]));
+        }
+    }
+
+    /**
+     * no two tents touch
+     * @param dim square dimension
+     */
+    private void encodeTouching(int dim) {
+        for (int cell = 0; cell < this.tent.length; cell++) {
+            if (this.tent[cell] == 0) {
+                continue;
+            }
+            int row = cell / dim;
+            int col = cell % dim;
+            for (int[] step : AHEAD) {
+                int r = row + step[0];
+                int c = col + step[1];
+                if (r < dim && c >= 0 && c < dim && this.tent[r * dim + c] != 0) {
+                    this.cnf.addClause(-this.tent[cell], -this.tent[r * dim + c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * pairwise at most one, for the short lists here
+     * @param literals the literals
+     */
+    private void atMostOne(int[] literals) {
+        for (int i = 0; i < literals.length; i++) {
+            for (int j = i + 1; j < literals.length; j++) {
+                this.cnf.addClause(-literals[i], -literals[j]);
+            }
+        }
+    }
+
+    /**
+     * exactly k of the literals hold
+     * @param literals the literals
+     * @param k how many
+     */
+    private void exactly(int[] literals, int k) {
+        if (k > literals.length) {
+            this.cnf.addClause();
+            return;
+        }
+        atMost(literals, k);
+        int[] negated = new int[literals.length];
+        for (int i = 0; i < literals.length; i++) {
+            negated[i] = -literals[i];
+        }
+        atMost(negated, literals.length - k);
+    }
+
+    /**
+     * At most k of the literals hold, as a sequential counter: s(i, j)
+     * says at least j + 1 of the first i + 1 literals hold.
+     * @param x the literals
+     * @param k how many
+     */
+    private void atMost(int[] x, int k) {
+        int n = x.length;
+        if (k >= n) {
+            return;
+        }
+        if (k == 0) {
+            for (int literal : x) {
+                this.cnf.addClause(-literal);
+            }
+            return;
+        }
+        int[][] s = new int[n - 1][k];
+        for (int[] register : s) {
+            for (int j = 0; j < k; j++) {
+                register[j] = this.cnf.newVariable();
+            }
+        }
+        this.cnf.addClause(-x[0], s[0][0]);
+        for (int j = 1; j < k; j++) {
+            this.cnf.addClause(-s[0][j]);
+        }
+        for (int i = 1; i < n - 1; i++) {
+            this.cnf.addClause(-x[i], s[i][0]);
+            this.cnf.addClause(-s[i - 1][0], s[i][0]);
+            for (int j = 1; j < k; j++) {
+                this.cnf.addClause(-x[i], -s[i - 1][j - 1], s[i][j]);
+                this.cnf.addClause(-s[i - 1][j], s[i][j]);
+            }
+            this.cnf.addClause(-x[i], -s[i - 1][k - 1]);
+        }
+        this.cnf.addClause(-x[n - 1], -s[n - 2][k - 1]);
+    }
+
+    /**
+     * @param variables variables, 0 for none
+     * @return the ones that aren't 0
+     */
+    private static int[] present(int[] variables) {
+        int size = 0;
+        int[] result = new int[variables.length];
+        for (int variable : variables) {
+            if (variable != 0) {
+                result[size++] = variable;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+}
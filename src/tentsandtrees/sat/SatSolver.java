@@ -0,0 +1,113 @@
+package tentsandtrees.sat;
+
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionConfig;
+import tentsandtrees.backtracker.SolutionCounter;
+import tentsandtrees.backtracker.Solver;
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Solves a puzzle by encoding it as CNF and handing it to the embedded
+ * CDCL solver, so clause learning can be compared with the backtracking
+ * solvers on the same puzzles.  Counting rules out each tent layout found
+ * with one more clause and solves again.
+ * <p>
+ * The config count is the number of decisions the SAT solver made, the
+ * nearest thing it has to configurations searched.
+ *
+ * @author Lyx Huston
+ */
+public class SatSolver implements Solver {
+    /** Should debug output be enabled? */
+    private final boolean debug;
+    /** decisions made by every search so far */
+    private long configCount;
+    /** SAT solver of the last search */
+    private CdclSolver last;
+
+    /**
+     * Initialize a new SAT solver.
+     *
+     * @param debug Is debugging output enabled?
+     */
+    public SatSolver(boolean debug) {
+        this.debug = debug;
+        if (this.debug) {
+            System.out.println("SatSolver debugging enabled...");
+        }
+        this.configCount = 0;
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid initial configuration, must implement
+     *               ITentsAndTreesTest so the puzzle can be read from it
+     * @return A solution config, or empty if no solution
+     */
+    @Override
+    public Optional<Configuration> solve(Configuration config) {
+        Configuration[] found = new Configuration[1];
+        countPuzzleSolutions((ITentsAndTreesTest) config, 1, solution -> found[0] = solution);
+        return Optional.ofNullable(found[0]);
+    }
+
+    /**
+     * Keeps solving, ruling out each tent layout as it is found, until there
+     * are no more or the limit is reached.
+     *
+     * @param config A valid initial configuration, must implement
+     *               ITentsAndTreesTest
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    @Override
+    public long countSolutions(Configuration config, long limit, Consumer<Configuration> consumer) {
+        return countPuzzleSolutions((ITentsAndTreesTest) config, limit, consumer);
+    }
+
+    /**
+     * Same as countSolutions, for a puzzle that isn't a configuration, such
+     * as a freshly generated board.  Only the trees and counts are read.
+     *
+     * @param puzzle the puzzle
+     * @param limit stop after this many solutions
+     * @param consumer gets each solution as it is found
+     * @return number of solutions found
+     */
+    public long countPuzzleSolutions(ITentsAndTreesTest puzzle, long limit,
+                                     Consumer<Configuration> consumer) {
+        SolutionCounter counter = new SolutionCounter(limit, consumer);
+        CnfEncoder encoder = new CnfEncoder(PuzzleDefinition.of(puzzle));
+        CdclSolver solver = new CdclSolver(encoder.getCnf());
+        this.last = solver;
+        while (solver.solve()) {
+            SolutionConfig solution = encoder.decode(solver);
+            if (this.debug) {
+                System.out.print("Goal config: " + System.lineSeparator() + solution);
+            }
+            if (counter.offer(solution) || !solver.addClause(encoder.blockingClause(solver))) {
+                break;
+            }
+        }
+        this.configCount += solver.getDecisions();
+        return counter.getCount();
+    }
+
+    @Override
+    public long getConfigCount() {
+        return this.configCount;
+    }
+
+    /**
+     * @return decision, conflict and restart counts of the last search
+     */
+    public String getSummary() {
+        return this.last == null ? "" : this.last.toString();
+    }
+}
@@ -0,0 +1,485 @@
+package tentsandtrees.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import tentsandtrees.backtracker.CanonicalPuzzle;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.LinePropagator;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionCache;
+import tentsandtrees.backtracker.SolveBudget;
+import tentsandtrees.backtracker.SolveOutcome;
+import tentsandtrees.backtracker.Solver;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.io.PuzzleReader;
+import tentsandtrees.test.ITentsAndTreesTest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Solves puzzles sent over HTTP, on the JDK's own com.sun.net.httpserver.
+ * <pre>
+ *     curl --data-binary @data/10x10.txt 'http://localhost:8080/solve?format=json&amp;timeout=2000'
+ * </pre>
+ * POST /solve takes one puzzle in the usual text format as the body and
+ * answers with
+ * <ul>
+ *     <li>200 and the solved board, as getDisplay() text or, with
+ *     format=json or an Accept of application/json, as JSON</li>
+ *     <li>422 if the puzzle has no solution</li>
+ *     <li>400 if the puzzle can't be read, 413 if it is too big</li>
+ *     <li>503 if every worker is busy and the queue is full</li>
+ *     <li>504 if it isn't solved by its deadline</li>
+ * </ul>
+ * GET /stats answers with the counts of each outcome and the cache's.
+ * <p>
+ * Solving happens on a fixed pool of worker threads, one new solver per
+ * puzzle.  At most threads + queue puzzles are let in at once; any more
+ * are turned away straight away rather than left to wait.  Each puzzle has
+ * a deadline, timeout milliseconds after it arrived (the server's timeout,
+ * or a shorter timeout= of its own), which time in the queue counts
+ * against.  The deadline goes to the solver as a SolveBudget, which the
+ * solvers look at every Solver.INTERRUPT_CHECK_MASK + 1 configs.  A puzzle
+ * keeps its place until its worker has stopped, even if it was already
+ * answered as timed out, so no more than threads + queue searches ever run
+ * or wait at once.
+ * Solved and unsolvable puzzles go in a SolutionCache, so the same puzzle
+ * asked again, or any rotation or reflection of it, is answered without a
+ * search, the solution turned to fit.
+ *
+ * @author Lyx Huston
+ */
+public class SolveServer implements AutoCloseable {
+    /** biggest request body read, in bytes */
+    public static final int MAX_BODY = 1 << 20;
+
+    /** the HTTP server */
+    private final HttpServer server;
+    /** threads answering requests, waiting on the workers */
+    private final ExecutorService handlers;
+    /** threads solving */
+    private final ExecutorService workers;
+    /** puzzles that may be in the server at once */
+    private final Semaphore admitted;
+    /** answers to recent puzzles */
+    private final SolutionCache<Answer> cache;
+    /** longest a puzzle may take, in milliseconds */
+    private final long timeout;
+    /** makes a solver for each puzzle */
+    private volatile Supplier<Solver> solvers = SolveServer::defaultSolver;
+
+    /** puzzles being solved right now */
+    private final AtomicInteger running = new AtomicInteger();
+    /** puzzles solved, from the cache or not */
+    private final LongAdder solved = new LongAdder();
+    /** puzzles with no solution */
+    private final LongAdder unsolvable = new LongAdder();
+    /** puzzles that missed their deadline */
+    private final LongAdder timedOut = new LongAdder();
+    /** puzzles turned away */
+    private final LongAdder rejected = new LongAdder();
+    /** requests that couldn't be read */
+    private final LongAdder badRequests = new LongAdder();
+
+    /**
+     * The outcome of a search.
+     * @param tents tent cells of the solution in the canonical orientation,
+     *              null if there is none or time ran out
+     * @param finished whether the search got to its end
+     * @param nodes configs generated
+     * @param nanos time spent searching
+     */
+    record Answer(int[] tents, boolean finished, long nodes, long nanos) {
+    }
+
+    /**
+     * Starts a server.
+     * @param address where to listen; port 0 picks a free one
+     * @param threads worker threads
+     * @param queue puzzles that may wait for a worker
+     * @param cacheSize most answers cached
+     * @param timeout longest a puzzle may take, in milliseconds
+     * @throws IOException if the address can't be bound
+     */
+    public SolveServer(InetSocketAddress address, int threads, int queue, int cacheSize, long timeout)
+            throws IOException {
+        if (threads < 1 || queue < 0 || timeout < 1) {
+            throw new IllegalArgumentException("Need a worker, a queue of 0 or more and a positive timeout, got " +
+                    threads + ", " + queue + ", " + timeout);
+        }
+        this.admitted = new Semaphore(threads + queue);
+        this.cache = new SolutionCache<>(cacheSize);
+        this.timeout = timeout;
+        this.workers = Executors.newFixedThreadPool(threads, daemons("solve-worker"));
+        // one handler for each puzzle let in, plus a few for cache hits,
+        // stats and turning puzzles away
+        this.handlers = Executors.newFixedThreadPool(threads + queue + 4, daemons("solve-handler"));
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(this.handlers);
+        this.server.createContext("/solve", this::solve);
+        this.server.createContext("/stats", this::stats);
+        this.server.start();
+    }
+
+    /**
+     * @param name thread name prefix
+     * @return a factory of numbered daemon threads
+     */
+    private static ThreadFactory daemons(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @return the in place solver visiting the most constrained tree first,
+     * with the line propagator
+     */
+    private static Solver defaultSolver() {
+        InPlaceSolver solver = new InPlaceSolver(false, InPlaceSolver.TreeOrder.MOST_CONSTRAINED);
+        solver.setPropagator(new LinePropagator());
+        return solver;
+    }
+
+    /**
+     * Changes the solver used for later puzzles.  Each puzzle gets its own.
+     * @param solvers makes a solver for each puzzle
+     */
+    public void setSolvers(Supplier<Solver> solvers) {
+        this.solvers = solvers;
+    }
+
+    /**
+     * @return the port being listened on
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * @return puzzles being solved right now
+     */
+    public int getRunning() {
+        return this.running.get();
+    }
+
+    /**
+     * @return the answer cache
+     */
+    public SolutionCache<?> getCache() {
+        return this.cache;
+    }
+
+    /**
+     * Answers POST /solve.
+     * @param exchange the request
+     * @throws IOException if the response can't be sent
+     */
+    private void solve(HttpExchange exchange) throws IOException {
+        long arrived = System.nanoTime();
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                send(exchange, 405, false, "Method not allowed", null, null, false);
+                return;
+            }
+            Map<String, String> query = query(exchange);
+            boolean json = "json".equals(query.get("format")) || (!query.containsKey("format") &&
+                    String.valueOf(exchange.getRequestHeaders().getFirst("Accept")).contains("application/json"));
+            long limit = this.timeout;
+            PuzzleDefinition puzzle;
+            try {
+                if (query.containsKey("timeout")) {
+                    limit = Math.min(limit, Long.parseLong(query.get("timeout")));
+                    if (limit < 1) {
+                        throw new NumberFormatException("timeout must be positive");
+                    }
+                }
+                byte[] body = readBody(exchange.getRequestBody());
+                if (body == null) {
+                    this.badRequests.increment();
+                    send(exchange, 413, json, "Puzzle is over " + MAX_BODY + " bytes", null, null, false);
+                    return;
+                }
+                puzzle = new PuzzleReader("request", ByteBuffer.wrap(body)).readOne();
+            } catch (IOException | NumberFormatException e) {
+                this.badRequests.increment();
+                send(exchange, 400, json, e.getMessage(), null, null, false);
+                return;
+            }
+
+            CanonicalPuzzle canonical = CanonicalPuzzle.of(puzzle);
+            CanonicalPuzzle.Key key = canonical.getKey();
+            Answer answer = this.cache.get(key);
+            boolean cached = answer != null;
+            if (!cached) {
+                if (!this.admitted.tryAcquire()) {
+                    this.rejected.increment();
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    send(exchange, 503, json, "Too many puzzles, try again later", null, null, false);
+                    return;
+                }
+                // the worker gives the permit back once its search has
+                // actually stopped
+                try {
+                    answer = search(canonical, arrived + limit * 1_000_000);
+                } catch (IllegalStateException e) {
+                    send(exchange, 500, json, e.getMessage() + ": " + e.getCause(), null, null, false);
+                    return;
+                }
+                if (answer.finished()) {
+                    this.cache.put(key, answer);
+                }
+            }
+            if (answer.tents() != null) {
+                this.solved.increment();
+                send(exchange, 200, json, "solved", answer, canonical.fromCanonical(answer.tents()), cached);
+            } else if (answer.finished()) {
+                this.unsolvable.increment();
+                send(exchange, 422, json, "No solution!", answer, null, cached);
+            } else {
+                this.timedOut.increment();
+                send(exchange, 504, json, "Timed out after " + limit + " ms", answer, null, false);
+            }
+        }
+    }
+
+    /**
+     * Solves a puzzle on a worker, on a SolveBudget that runs out at the
+     * deadline.  Runs on a handler thread, holding a permit that the worker
+     * gives back when it is done with the puzzle, whether or not the handler
+     * is still waiting for it.
+     * @param canonical the puzzle
+     * @param deadline when to give up, by System.nanoTime()
+     * @return the answer
+     */
+    private Answer search(CanonicalPuzzle canonical, long deadline) {
+        Solver solver = this.solvers.get();
+        SolveBudget budget = new SolveBudget(Math.max(1, (deadline - System.nanoTime()) / 1_000_000), 0);
+        Future<Answer> future;
+        try {
+            future = this.workers.submit(() -> {
+                this.running.incrementAndGet();
+                try {
+                    // spent in the queue, or given up on already
+                    if (budget.spend(0)) {
+                        return new Answer(null, false, 0, 0);
+                    }
+                    SolveOutcome outcome = solver.solve(new TentConfig(canonical.getPuzzle()), budget);
+                    return new Answer(outcome.getSolution()
+                            .map(board -> canonical.toCanonical((ITentsAndTreesTest) board)).orElse(null),
+                            outcome.getStatus() != SolveOutcome.Status.EXHAUSTED, outcome.getConfigs(),
+                            outcome.getNanos());
+                } finally {
+                    this.admitted.release();
+                    this.running.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.admitted.release();
+            throw new IllegalStateException("Server is closing", e);
+        }
+        try {
+            return future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            budget.cancel();
+            return new Answer(null, false, budget.getNodes(), 0);
+        } catch (InterruptedException e) {
+            budget.cancel();
+            Thread.currentThread().interrupt();
+            return new Answer(null, false, budget.getNodes(), 0);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Solver failed", e.getCause());
+        }
+    }
+
+    /**
+     * Answers GET /stats.
+     * @param exchange the request
+     * @throws IOException if the response can't be sent
+     */
+    private void stats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            send(exchange, 200, false, toString(), null, null, false);
+        }
+    }
+
+    /**
+     * Reads a request body, up to MAX_BODY bytes.
+     * @param in the body
+     * @return its bytes, null if there are too many
+     * @throws IOException if it can't be read
+     */
+    private static byte[] readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY + 1);
+        return body.length > MAX_BODY ? null : body;
+    }
+
+    /**
+     * @param exchange the request
+     * @return its query parameters
+     */
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Sends a response.
+     * @param exchange the request
+     * @param code HTTP status
+     * @param json whether to answer in JSON
+     * @param message what happened, or the text to send if there's no answer
+     * @param answer the search's answer, null if there wasn't one
+     * @param board the solved board, null if there isn't one
+     * @param cached whether the answer came from the cache
+     * @throws IOException if it can't be sent
+     */
+    private static void send(HttpExchange exchange, int code, boolean json, String message,
+                             Answer answer, ITentsAndTreesTest board, boolean cached) throws IOException {
+        String body;
+        if (json) {
+            body = json(code, message, answer, board, cached);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+        } else {
+            body = board != null ? board.getDisplay() : message + System.lineSeparator();
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        }
+        if (answer != null) {
+            exchange.getResponseHeaders().set("X-Cache", cached ? "hit" : "miss");
+            exchange.getResponseHeaders().set("X-Nodes", String.valueOf(answer.nodes()));
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Writes a response as JSON: status, and for a solved board the rows,
+     * one string of cells each, and the tents as [row, col] pairs.
+     * @param code HTTP status
+     * @param message what happened
+     * @param answer the search's answer, null if there wasn't one
+     * @param board the solved board, null if there isn't one
+     * @param cached whether the answer came from the cache
+     * @return the JSON
+     */
+    private static String json(int code, String message, Answer answer, ITentsAndTreesTest board,
+                               boolean cached) {
+        String status = switch (code) {
+            case 200 -> "solved";
+            case 422 -> "unsolvable";
+            case 504 -> "timeout";
+            case 503 -> "busy";
+            default -> "error";
+        };
+        StringBuilder out = new StringBuilder("{\"status\":\"").append(status).append('"');
+        if (answer == null) {
+            out.append(",\"message\":\"").append(escape(message)).append('"');
+        } else {
+            out.append(",\"cached\":").append(cached)
+                    .append(",\"nodes\":").append(answer.nodes())
+                    .append(",\"millis\":").append(answer.nanos() / 1_000_000);
+            if (board != null) {
+                int dim = board.getDIM();
+                out.append(",\"dim\":").append(dim).append(",\"rows\":[");
+                StringBuilder tents = new StringBuilder();
+                for (int row = 0; row < dim; row++) {
+                    out.append(row == 0 ? "\"" : ",\"");
+                    for (int col = 0; col < dim; col++) {
+                        char cell = board.getCell(row, col);
+                        out.append(cell);
+                        if (cell == ITentsAndTreesTest.TENT) {
+                            tents.append(tents.length() == 0 ? "[" : ",[").append(row).append(',')
+                                    .append(col).append(']');
+                        }
+                    }
+                    out.append('"');
+                }
+                out.append("],\"tents\":[").append(tents).append(']');
+            }
+        }
+        return out.append('}').toString();
+    }
+
+    /**
+     * @param text any text
+     * @return it escaped for a JSON string
+     */
+    private static String escape(String text) {
+        StringBuilder out = new StringBuilder();
+        for (char c : String.valueOf(text).toCharArray()) {
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < ' ') {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Stops listening and stops every worker.
+     */
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.workers.shutdownNow();
+        this.handlers.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "Solved: " + this.solved.sum() +
+                ", unsolvable: " + this.unsolvable.sum() +
+                ", timeout: " + this.timedOut.sum() +
+                ", busy: " + this.rejected.sum() +
+                ", bad request: " + this.badRequests.sum() +
+                ", running: " + this.running.get() + System.lineSeparator() +
+                this.cache;
+    }
+}
@@ -0,0 +1,85 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.BackjumpingSolver;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.generator.GeneratedPuzzle;
+import tentsandtrees.generator.PuzzleGenerator;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that backjumping and learned nogoods never lose a solution.
+ *
+ * @author Lyx Huston
+ */
+public class TestBackjumpingSolver {
+    /**
+     * Checks a solution has one tent per tree and the right counts.
+     * @param solution the solution
+     */
+    private static void assertSolved(Configuration solution) {
+        assertTrue(solution.isGoal());
+        ITentsAndTreesTest board = (ITentsAndTreesTest) solution;
+        for (int row = 0; row < board.getDIM(); row++) {
+            int tents = 0;
+            for (int col = 0; col < board.getDIM(); col++) {
+                if (board.getCell(row, col) == ITentsAndTreesTest.TENT) {
+                    tents++;
+                }
+            }
+            assertEquals(board.getTentsRow(row), tents);
+        }
+    }
+
+    /** The static order solves the large puzzle, which plain backtracking can't. */
+    @Test
+    public void testSolve30x30() throws IOException {
+        BackjumpingSolver solver = new BackjumpingSolver(false);
+        Optional<Configuration> sol = solver.solve(new TentConfig("data/30x30.txt"));
+        assertTrue(sol.isPresent());
+        assertSolved(sol.get());
+        assertTrue(solver.getNogoodsLearned() > 0);
+        assertTrue(solver.getBackjumps() > 0);
+    }
+
+    /** Both orders count the same solutions as the in place solver. */
+    @Test
+    public void testCountsMatch() {
+        PuzzleGenerator generator = new PuzzleGenerator(7, 0.2);
+        for (long seed = 0; seed < 200; seed++) {
+            GeneratedPuzzle puzzle = generator.generate(seed);
+            Set<String> expected = new HashSet<>();
+            new InPlaceSolver(false).countPuzzleSolutions(puzzle, Long.MAX_VALUE,
+                    solution -> expected.add(solution.toString()));
+            for (InPlaceSolver.TreeOrder order : InPlaceSolver.TreeOrder.values()) {
+                BackjumpingSolver solver = new BackjumpingSolver(false, order);
+                // a tiny store keeps evicting, which must be just as safe
+                solver.setNogoodLimits(4, 8);
+                Set<String> actual = new HashSet<>();
+                solver.countPuzzleSolutions(puzzle, Long.MAX_VALUE, solution -> {
+                    assertSolved(solution);
+                    actual.add(solution.toString());
+                });
+                assertEquals(expected, actual, "seed " + seed + " " + order);
+            }
+        }
+    }
+
+    /** Nogood limits must leave room to work. */
+    @Test
+    public void testLimits() {
+        BackjumpingSolver solver = new BackjumpingSolver(false);
+        assertThrows(IllegalArgumentException.class, () -> solver.setNogoodLimits(1, 8));
+        assertThrows(IllegalArgumentException.class, () -> solver.setNogoodLimits(16, -1));
+    }
+}
@@ -0,0 +1,117 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tentsandtrees.main.BatchSolve;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs BatchSolve over small sets of files and checks the line it prints
+ * for each puzzle and the summary.
+ *
+ * @author Lyx Huston
+ */
+public class TestBatchSolve {
+    /** what a run printed */
+    private record Run(String out, String err) {
+        /**
+         * @return the status of each puzzle, by file name and #index
+         */
+        Map<String, String> statuses() {
+            Map<String, String> statuses = new TreeMap<>();
+            for (String line : this.out.split("\\R")) {
+                if (!line.isEmpty()) {
+                    String[] fields = line.split("\t");
+                    assertEquals(4, fields.length, line);
+                    Long.parseLong(fields[2]);
+                    Long.parseLong(fields[3]);
+                    statuses.put(Path.of(fields[0]).getFileName().toString(), fields[1]);
+                }
+            }
+            return statuses;
+        }
+    }
+
+    /**
+     * Runs BatchSolve with standard output and error captured.
+     * @param stdin what standard input holds
+     * @param args the arguments
+     * @return what it printed
+     */
+    private static Run run(String stdin, String... args) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        InputStream in = System.in;
+        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(outBytes, true));
+            System.setErr(new PrintStream(errBytes, true));
+            System.setIn(new ByteArrayInputStream(stdin.getBytes()));
+            BatchSolve.main(args);
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+            System.setIn(in);
+        }
+        return new Run(outBytes.toString(), errBytes.toString());
+    }
+
+    /**
+     * A directory of good, broken, several-puzzle and hard files, on one
+     * worker so most puzzles overflow its queue onto the reading thread.
+     */
+    @Test
+    public void testDirectory(@TempDir Path dir) throws IOException {
+        String test = Files.readString(Path.of("data/test.txt"));
+        Files.writeString(dir.resolve("good.txt"), test);
+        Files.writeString(dir.resolve("broken.txt"), "3\n2 0 1\n2 0 1\n. % .\n");
+        Files.writeString(dir.resolve("multi.txt"), test + "\n2\n0 1\n0 1\n% .\n. .\n2\n1\n");
+        Files.copy(Path.of("data/30x30.txt"), dir.resolve("hard.txt"));
+        Files.writeString(dir.resolve("notes.md"), "not a puzzle");
+
+        Run run = run("", "--threads", "1", "--solver", "copy", "--nodes", "1000", dir.toString());
+        Map<String, String> expected = new TreeMap<>(Map.of(
+                "good.txt", "solved",
+                "broken.txt", "error",
+                "multi.txt#1", "solved",
+                "multi.txt#2", "unsolved",
+                "multi.txt#3", "error",
+                "hard.txt", "budget"));
+        assertEquals(expected, run.statuses());
+        assertTrue(run.err().contains("Puzzles: 6, solved: 2, unsolved: 1, timeout: 0, budget: 1, error: 2"),
+                run.err());
+    }
+
+    /** A glob walks from the directory before its first wildcard. */
+    @Test
+    public void testGlob() {
+        Run run = run("", "--threads", "2", "data/bench/1*.txt");
+        assertEquals(Map.of("10x10.txt", "solved", "12x12.txt", "solved", "15x15.txt", "solved"),
+                run.statuses());
+        assertTrue(run.err().contains("Puzzles: 3, solved: 3,"), run.err());
+    }
+
+    /** Paths on standard input, and a missing directory reported on standard error only. */
+    @Test
+    public void testStdinAndMissing() {
+        Run run = run("data/bench/5x5.txt\n\n  data/missing.txt\n", "-");
+        assertEquals(Map.of("5x5.txt", "solved", "missing.txt", "error"), run.statuses());
+
+        run = run("", "no/such/dir/*.txt");
+        assertEquals("", run.out());
+        assertTrue(run.err().contains("no/such/dir"), run.err());
+    }
+}
@@ -0,0 +1,64 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.BitTentConfig;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.TentConfig;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the bitboard configuration loads and solves puzzles the same
+ * way TentConfig does.
+ *
+ * @author Lyx Huston
+ */
+public class TestBitTentConfig {
+    /**
+     * Solves a file with both configurations and compares the results.
+     * @param filename puzzle file
+     * @throws IOException if the file can't be read
+     */
+    private void compareSolve(String filename) throws IOException {
+        ITentsAndTreesTest chars = new TentConfig(filename);
+        ITentsAndTreesTest bits = new BitTentConfig(filename);
+        assertEquals(chars.getDisplay(), bits.getDisplay());
+
+        Backtracker charSolver = new Backtracker(false);
+        Backtracker bitSolver = new Backtracker(false);
+        Optional<Configuration> charSol = charSolver.solve((Configuration) chars);
+        Optional<Configuration> bitSol = bitSolver.solve((Configuration) bits);
+        assertTrue(charSol.isPresent());
+        assertTrue(bitSol.isPresent());
+        assertEquals(((ITentsAndTreesTest) charSol.get()).getDisplay(),
+                ((ITentsAndTreesTest) bitSol.get()).getDisplay());
+        assertEquals(charSolver.getConfigCount(), bitSolver.getConfigCount());
+    }
+
+    /** Test the single tree puzzle. */
+    @Test
+    public void testSolveTest() throws IOException {
+        compareSolve("data/test.txt");
+    }
+
+    /** Test the puzzle with more than one solution. */
+    @Test
+    public void testSolveMultiple() throws IOException {
+        compareSolve("data/multiple.txt");
+    }
+
+    /** Test loading the large puzzle. */
+    @Test
+    public void testLoad30x30() throws IOException {
+        ITentsAndTreesTest chars = new TentConfig("data/30x30.txt");
+        ITentsAndTreesTest bits = new BitTentConfig("data/30x30.txt");
+        assertEquals(chars.getDisplay(), bits.getDisplay());
+        assertEquals(chars.getCursorRow(), bits.getCursorRow());
+        assertEquals(chars.getCursorCol(), bits.getCursorCol());
+    }
+}
@@ -0,0 +1,170 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.CachingSolver;
+import tentsandtrees.backtracker.CanonicalPuzzle;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionCache;
+import tentsandtrees.backtracker.SolutionConfig;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.generator.GeneratedPuzzle;
+import tentsandtrees.generator.PuzzleGenerator;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks rotations and reflections of a puzzle share a key, and answers
+ * cached for one fit the others.
+ *
+ * @author Lyx Huston
+ */
+public class TestCanonicalPuzzle {
+    /**
+     * Turns a board a quarter turn clockwise, then transposes it if asked.
+     * @param board the board
+     * @param turns quarter turns
+     * @param transpose whether to transpose after turning
+     * @return the turned board, trees, tents and counts
+     */
+    private static SolutionConfig turn(ITentsAndTreesTest board, int turns, boolean transpose) {
+        int dim = board.getDIM();
+        char[] cells = new char[dim * dim];
+        int[] rows = new int[dim];
+        int[] cols = new int[dim];
+        for (int row = 0; row < dim; row++) {
+            for (int col = 0; col < dim; col++) {
+                int r = row;
+                int c = col;
+                for (int i = 0; i < turns; i++) {
+                    int swap = r;
+                    r = c;
+                    c = dim - 1 - swap;
+                }
+                if (transpose) {
+                    int swap = r;
+                    r = c;
+                    c = swap;
+                }
+                cells[r * dim + c] = board.getCell(row, col);
+                if (col == 0) {
+                    // row `row` lands on row r if it stayed a row, else column c
+                    if (turns % 2 == 1 ^ transpose) {
+                        cols[c] = board.getTentsRow(row);
+                    } else {
+                        rows[r] = board.getTentsRow(row);
+                    }
+                }
+                if (row == 0) {
+                    if (turns % 2 == 1 ^ transpose) {
+                        rows[r] = board.getTentsCol(col);
+                    } else {
+                        cols[c] = board.getTentsCol(col);
+                    }
+                }
+            }
+        }
+        return new SolutionConfig(dim, rows, cols, cells);
+    }
+
+    /** All eight orientations of a puzzle have one key; other puzzles don't share it. */
+    @Test
+    public void testKey() {
+        Set<CanonicalPuzzle.Key> keys = new HashSet<>();
+        for (int seed = 1; seed <= 40; seed++) {
+            GeneratedPuzzle puzzle = new PuzzleGenerator(9, 0.2).generate(seed);
+            CanonicalPuzzle.Key key = CanonicalPuzzle.of(PuzzleDefinition.of(puzzle)).getKey();
+            for (int turns = 0; turns < 4; turns++) {
+                for (boolean transpose : new boolean[]{false, true}) {
+                    assertEquals(key, CanonicalPuzzle.of(PuzzleDefinition.of(turn(puzzle, turns, transpose))).getKey());
+                }
+            }
+            assertTrue(keys.add(key));
+        }
+        // the counts are part of the key, not just the trees
+        GeneratedPuzzle puzzle = new PuzzleGenerator(9, 0.2).generate(1);
+        int[] rows = new int[9];
+        for (int row = 0; row < 9; row++) {
+            rows[row] = puzzle.getTentsRow(8 - row);
+        }
+        char[] cells = new char[81];
+        for (int cell = 0; cell < 81; cell++) {
+            cells[cell] = puzzle.getCell(cell / 9, cell % 9);
+        }
+        int[] cols = new int[9];
+        for (int col = 0; col < 9; col++) {
+            cols[col] = puzzle.getTentsCol(col);
+        }
+        assertFalse(keys.contains(CanonicalPuzzle.of(new PuzzleDefinition(9, rows, cols, cells)).getKey()));
+    }
+
+    /** A solution cached for one orientation is turned to fit each of the others. */
+    @Test
+    public void testSolutionMapping() {
+        PuzzleGenerator generator = new PuzzleGenerator(10, 0.2);
+        generator.setUniqueOnly(true);
+        GeneratedPuzzle puzzle = generator.generate(5);
+        CachingSolver solver = new CachingSolver(false);
+        assertTrue(solver.solve(new TentConfig(PuzzleDefinition.of(puzzle))).isPresent());
+        long searched = solver.getConfigCount();
+        assertTrue(searched > 0);
+        for (int turns = 0; turns < 4; turns++) {
+            for (boolean transpose : new boolean[]{false, true}) {
+                SolutionConfig expected = turn(puzzle.getSolution(), turns, transpose);
+                Optional<Configuration> solution = solver.solve(
+                        new TentConfig(PuzzleDefinition.of(turn(puzzle, turns, transpose))));
+                assertTrue(solution.isPresent());
+                assertEquals(expected.getDisplay(), ((ITentsAndTreesTest) solution.get()).getDisplay());
+            }
+        }
+        assertEquals(searched, solver.getConfigCount());
+        assertEquals(8, solver.getCache().getHits());
+
+        // no solution is remembered too
+        char[] cells = {'%', '.', '.', '.'};
+        PuzzleDefinition none = new PuzzleDefinition(2, new int[]{1, 0}, new int[]{0, 0}, cells);
+        assertFalse(solver.solve(new TentConfig(none)).isPresent());
+        assertFalse(solver.solve(new TentConfig(PuzzleDefinition.of(turn(new TentConfig(none), 1, false))))
+                .isPresent());
+        assertEquals(9, solver.getCache().getHits());
+    }
+
+    /** Once full, the cache drops what was used longest ago. */
+    @Test
+    public void testEviction() {
+        SolutionCache<int[]> cache = CachingSolver.newCache(3 * (96 + 4 * 10));
+        CanonicalPuzzle.Key[] keys = new CanonicalPuzzle.Key[4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new CanonicalPuzzle.Key(i, -i);
+        }
+        cache.put(keys[0], new int[10]);
+        cache.put(keys[1], new int[10]);
+        cache.put(keys[2], new int[10]);
+        assertNotNull(cache.get(keys[0]));
+        cache.put(keys[3], new int[10]);
+        assertNull(cache.get(keys[1]));
+        assertNotNull(cache.get(keys[0]));
+        assertNotNull(cache.get(keys[2]));
+        assertNotNull(cache.get(keys[3]));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3 * (96 + 4 * 10), cache.weight());
+        cache.put(keys[1], new int[1000]);
+        assertEquals(3, cache.size());
+
+        // every puzzle a Backtracker solves ends up in the cache
+        CachingSolver solver = new CachingSolver(new Backtracker(false), CachingSolver.newCache(1 << 20));
+        for (int seed = 1; seed <= 5; seed++) {
+            solver.solve(new TentConfig(PuzzleDefinition.of(new PuzzleGenerator(8, 0.2).generate(seed))));
+        }
+        assertEquals(5, solver.getCache().size());
+    }
+}
@@ -0,0 +1,193 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.BitTentConfig;
+import tentsandtrees.backtracker.Checkpoint;
+import tentsandtrees.backtracker.Checkpointer;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.LinePropagator;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.backtracker.TranspositionTable;
+import tentsandtrees.generator.PuzzleGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks a search stopped and resumed from its checkpoint ends the same
+ * as one left to run.
+ *
+ * @author Lyx Huston
+ */
+public class TestCheckpoint {
+    /** A generated puzzle taking tens of thousands of configs. */
+    private static final PuzzleDefinition PUZZLE =
+            PuzzleDefinition.of(new PuzzleGenerator(20, 0.2).generate(1));
+
+    /** where checkpoints go */
+    private Path file;
+
+    /**
+     * Makes a directory for the checkpoints.
+     * @throws IOException if it can't
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        this.file = Files.createTempDirectory("checkpoint").resolve("search.ckpt");
+    }
+
+    /**
+     * Cleans up after a test.
+     * @throws IOException if it can't
+     */
+    @AfterEach
+    public void tearDown() throws IOException {
+        Thread.interrupted();
+        Files.deleteIfExists(this.file);
+        Files.deleteIfExists(this.file.getParent());
+    }
+
+    /**
+     * @param pruning whether to turn on matching pruning and propagation
+     * @return a fresh initial config for the puzzle
+     */
+    private static TentConfig init(boolean pruning) {
+        TentConfig init = new TentConfig(PUZZLE);
+        if (pruning) {
+            init.setMatchingPruning(true);
+            init.setPropagator(new LinePropagator());
+        }
+        return init;
+    }
+
+    /** A count stopped after every solution finds them all, in as many configs. */
+    @Test
+    public void testCountResumed() {
+        for (boolean pruning : new boolean[]{false, true}) {
+            Backtracker whole = new Backtracker(false);
+            Set<String> expected = new HashSet<>();
+            long count = whole.countSolutions(init(pruning), Long.MAX_VALUE,
+                    solution -> expected.add(solution.toString()));
+            assertTrue(count > 1);
+            assertEquals(count, expected.size());
+
+            Set<String> found = new HashSet<>();
+            long resumed = 0;
+            Backtracker last = null;
+            int runs = 0;
+            do {
+                last = new Backtracker(false);
+                try (Checkpointer checkpointer = new Checkpointer(this.file, 1e-6)) {
+                    last.setCheckpointer(checkpointer);
+                    if (Files.exists(this.file)) {
+                        last.setResume(Checkpoint.read(this.file));
+                    }
+                    resumed = last.countSolutions(init(pruning), Long.MAX_VALUE, solution -> {
+                        assertTrue(found.add(solution.toString()));
+                        Thread.currentThread().interrupt();
+                    });
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+                Thread.interrupted();
+                runs++;
+            } while (Files.exists(this.file));
+            assertTrue(runs > 1);
+            assertEquals(count, resumed);
+            assertEquals(expected, found);
+            assertEquals(whole.getConfigCount(), last.getConfigCount());
+        }
+    }
+
+    /** A solve stopped straight away carries on to the same solution. */
+    @Test
+    public void testSolveResumed() throws IOException {
+        Backtracker whole = new Backtracker(false);
+        Optional<Configuration> expected = whole.solve(init(true));
+        assertTrue(expected.isPresent());
+
+        Backtracker first = new Backtracker(false);
+        try (Checkpointer checkpointer = new Checkpointer(this.file, 60)) {
+            first.setCheckpointer(checkpointer);
+            Thread.currentThread().interrupt();
+            assertFalse(first.solve(init(true)).isPresent());
+            assertTrue(Thread.interrupted());
+            assertEquals(1, checkpointer.getWritten());
+        }
+        Checkpoint checkpoint = Checkpoint.read(this.file);
+        assertEquals(first.getConfigCount(), checkpoint.getNodes());
+        assertTrue(checkpoint.getDepth() > 1);
+
+        Backtracker second = new Backtracker(false);
+        try (Checkpointer checkpointer = new Checkpointer(this.file, 60)) {
+            second.setCheckpointer(checkpointer);
+            second.setResume(checkpoint);
+            Optional<Configuration> solution = second.solve(init(true));
+            assertTrue(solution.isPresent());
+            assertEquals(expected.get().toString(), solution.get().toString());
+        }
+        assertEquals(whole.getConfigCount(), second.getConfigCount());
+        assertFalse(Files.exists(this.file));
+    }
+
+    /** The transposition table starts empty again but still finds every solution. */
+    @Test
+    public void testTableResumed() throws IOException {
+        TentConfig whole = init(false);
+        whole.setTranspositionTable(new TranspositionTable(1 << 20));
+        long count = new Backtracker(false).countSolutions(whole, Long.MAX_VALUE, solution -> { });
+
+        Backtracker first = new Backtracker(false);
+        TentConfig init = init(false);
+        init.setTranspositionTable(new TranspositionTable(1 << 20));
+        try (Checkpointer checkpointer = new Checkpointer(this.file, 60)) {
+            first.setCheckpointer(checkpointer);
+            first.countSolutions(init, Long.MAX_VALUE, solution -> Thread.currentThread().interrupt());
+        }
+        Thread.interrupted();
+        Backtracker second = new Backtracker(false);
+        init = init(false);
+        init.setTranspositionTable(new TranspositionTable(1 << 20));
+        second.setResume(Checkpoint.read(this.file));
+        assertEquals(count, second.countSolutions(init, Long.MAX_VALUE, solution -> { }));
+    }
+
+    /** A checkpoint is only resumed on its own puzzle and options. */
+    @Test
+    public void testMismatch() throws IOException {
+        Backtracker solver = new Backtracker(false);
+        try (Checkpointer checkpointer = new Checkpointer(this.file, 60)) {
+            solver.setCheckpointer(checkpointer);
+            Thread.currentThread().interrupt();
+            solver.solve(init(false));
+            Thread.interrupted();
+        }
+        Checkpoint checkpoint = Checkpoint.read(this.file);
+
+        Backtracker other = new Backtracker(false);
+        other.setResume(checkpoint);
+        assertThrows(IllegalArgumentException.class, () -> other.solve(init(true)));
+        other.setResume(checkpoint);
+        TentConfig different = new TentConfig(PuzzleDefinition.of(new PuzzleGenerator(20, 0.2).generate(2)));
+        assertThrows(IllegalArgumentException.class, () -> other.solve(different));
+        other.setResume(checkpoint);
+        assertThrows(IllegalArgumentException.class, () -> other.solve(new BitTentConfig(PUZZLE)));
+
+        Files.write(this.file, new byte[]{1, 2, 3, 4, 5});
+        assertThrows(IOException.class, () -> Checkpoint.read(this.file));
+        assertThrows(IllegalArgumentException.class, () -> new Checkpointer(this.file, 0));
+    }
+}
@@ -0,0 +1,150 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.BoardDecomposition;
+import tentsandtrees.backtracker.DecomposingSolver;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.generator.GeneratedPuzzle;
+import tentsandtrees.generator.PuzzleGenerator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks boards are split into parts correctly and the parts put back
+ * together give every solution once.
+ *
+ * @author Lyx Huston
+ */
+public class TestDecomposingSolver {
+    /**
+     * Two copies of the two solution puzzle, in opposite corners of an 8x8
+     * board, so they share no line.
+     * @return the puzzle
+     */
+    private static PuzzleDefinition twoCorners() {
+        int dim = 8;
+        char[] cells = new char[dim * dim];
+        Arrays.fill(cells, ITentsAndTreesTest.EMPTY);
+        cells[dim] = cells[dim + 2] = ITentsAndTreesTest.TREE;
+        cells[6 * dim + 5] = cells[6 * dim + 7] = ITentsAndTreesTest.TREE;
+        int[] counts = {1, 0, 1, 0, 0, 1, 0, 1};
+        return new PuzzleDefinition(dim, counts, counts, cells);
+    }
+
+    /** The large puzzle is many components all tied together by lines. */
+    @Test
+    public void testDecompose30x30() throws IOException {
+        BoardDecomposition parts = new BoardDecomposition(PuzzleDefinition.read("data/30x30.txt"));
+        assertEquals(16, parts.getComponentCount());
+        assertEquals(1, parts.getGroupCount());
+        assertTrue(parts.linesReachable());
+        int trees = 0;
+        for (int component = 0; component < parts.getComponentCount(); component++) {
+            for (int tree : parts.getComponent(component)) {
+                assertEquals(component, parts.getComponentOf(tree));
+                trees++;
+            }
+        }
+        assertEquals(parts.getPuzzle().getTreeCount(), trees);
+    }
+
+    /** Opposite corners are separate groups, each its own puzzle. */
+    @Test
+    public void testGroups() {
+        BoardDecomposition parts = new BoardDecomposition(twoCorners());
+        assertEquals(2, parts.getComponentCount());
+        assertEquals(2, parts.getGroupCount());
+        assertEquals(0, parts.getLineGroup(0));
+        assertEquals(-1, parts.getLineGroup(3));
+        assertEquals(1, parts.getLineGroup(8 + 7));
+        PuzzleDefinition first = parts.subPuzzle(0);
+        assertEquals(2, first.getTreeCount());
+        assertEquals(0, first.getTentsRow(4));
+        assertEquals(1, first.getTentsCol(2));
+        assertEquals(2, new InPlaceSolver(false).countSolutions(new TentConfig(first),
+                Long.MAX_VALUE, solution -> {}));
+    }
+
+    /** Every choice of one solution per group is a solution of the whole. */
+    @Test
+    public void testCombine() {
+        for (int limit : new int[]{0, DecomposingSolver.DEFAULT_LISTING_LIMIT}) {
+            DecomposingSolver solver = new DecomposingSolver(2, () -> new InPlaceSolver(false));
+            solver.setListingLimit(limit);
+            Set<String> found = new HashSet<>();
+            long count = solver.countSolutions(new TentConfig(twoCorners()), Long.MAX_VALUE,
+                    solution -> found.add(solution.toString()));
+            assertEquals(4, count);
+            assertEquals(4, found.size());
+            assertEquals(1, solver.countSolutions(new TentConfig(twoCorners()), 1, solution -> {}));
+        }
+    }
+
+    /** Listing, fitting and the inner solver all agree with the in place solver. */
+    @Test
+    public void testCountsMatch() {
+        PuzzleGenerator generator = new PuzzleGenerator(8, 0.15);
+        for (long seed = 0; seed < 100; seed++) {
+            GeneratedPuzzle puzzle = generator.generate(seed);
+            Set<String> expected = new HashSet<>();
+            new InPlaceSolver(false).countPuzzleSolutions(puzzle, Long.MAX_VALUE,
+                    solution -> expected.add(solution.toString()));
+            for (int limit : new int[]{0, 50, DecomposingSolver.DEFAULT_LISTING_LIMIT}) {
+                DecomposingSolver solver = new DecomposingSolver(3, () -> new InPlaceSolver(false));
+                solver.setListingLimit(limit);
+                Set<String> actual = new HashSet<>();
+                long count = solver.countPuzzleSolutions(puzzle, Long.MAX_VALUE, solution -> {
+                    assertTrue(solution.isGoal());
+                    assertTrue(actual.add(solution.toString()));
+                });
+                assertEquals(expected, actual, "seed " + seed + " limit " + limit);
+                assertEquals(expected.size(), count);
+            }
+        }
+    }
+
+    /** A line needing tents that no tree can reach has no solution. */
+    @Test
+    public void testUnreachable() {
+        PuzzleDefinition corners = twoCorners();
+        int[] rows = corners.getTentsPerRow().clone();
+        rows[3] = 1;
+        PuzzleDefinition puzzle = new PuzzleDefinition(8, rows, corners.getTentsPerColumn(),
+                cells(corners));
+        assertFalse(new BoardDecomposition(puzzle).linesReachable());
+        assertEquals(0, new DecomposingSolver().countSolutions(new TentConfig(puzzle),
+                Long.MAX_VALUE, solution -> {}));
+    }
+
+    /** Bad settings are refused. */
+    @Test
+    public void testLimits() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new DecomposingSolver(0, () -> new InPlaceSolver(false)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new DecomposingSolver().setListingLimit(-1));
+    }
+
+    /**
+     * @param puzzle a puzzle
+     * @return its cells, row by row
+     */
+    private static char[] cells(PuzzleDefinition puzzle) {
+        int dim = puzzle.getDim();
+        char[] cells = new char[dim * dim];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = puzzle.getCell(cell / dim, cell % dim);
+        }
+        return cells;
+    }
+}
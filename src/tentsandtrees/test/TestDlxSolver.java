@@ -0,0 +1,75 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.dlx.DlxSolver;
+import tentsandtrees.dlx.ExactCover;
+import tentsandtrees.generator.GeneratedPuzzle;
+import tentsandtrees.generator.PuzzleGenerator;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the exact cover matrix and the dancing links search behind
+ * DlxSolver.
+ *
+ * @author Lyx Huston
+ */
+public class TestDlxSolver {
+    /** One row per candidate cell; trees, windows and counters as columns. */
+    @Test
+    public void testMatrix() throws IOException {
+        ExactCover matrix = new ExactCover(PuzzleDefinition.read("data/test.txt"));
+        assertEquals(1, matrix.getRows());
+        assertEquals(1 + 4 + 6, matrix.getColumns());
+
+        // two trees side by side: each has only the cell below it, and those touch
+        PuzzleDefinition pair = new PuzzleDefinition(2, new int[]{1, 1},
+                new int[]{1, 1}, new char[]{'%', '%', '.', '.'});
+        DlxSolver solver = new DlxSolver(false);
+        assertFalse(solver.solve(new TentConfig(pair)).isPresent());
+        assertEquals(2, new ExactCover(pair).getRows());
+    }
+
+    /** The solver finds the same solutions as the in place solver. */
+    @Test
+    public void testCountsMatch() {
+        PuzzleGenerator generator = new PuzzleGenerator(8, 0.2);
+        for (long seed = 0; seed < 200; seed++) {
+            GeneratedPuzzle puzzle = generator.generate(seed);
+            Set<String> expected = new HashSet<>();
+            new InPlaceSolver(false).countPuzzleSolutions(puzzle, Long.MAX_VALUE,
+                    solution -> expected.add(solution.toString()));
+            Set<String> actual = new HashSet<>();
+            long count = new DlxSolver(false).countPuzzleSolutions(puzzle, Long.MAX_VALUE, solution -> {
+                assertTrue(solution.isGoal());
+                actual.add(solution.toString());
+            });
+            assertEquals(expected, actual, "seed " + seed);
+            assertEquals(expected.size(), count, "seed " + seed);
+        }
+    }
+
+    /** The large puzzle solves, matching the backtracker. */
+    @Test
+    public void testSolve30x30() throws IOException {
+        DlxSolver solver = new DlxSolver(false);
+        Optional<Configuration> sol = solver.solve(new TentConfig("data/30x30.txt"));
+        assertTrue(sol.isPresent());
+        assertTrue(sol.get().isGoal());
+        assertTrue(solver.getConfigCount() > 0);
+        assertEquals(new Backtracker(false).isUnique(new TentConfig("data/bench/20x20.txt")),
+                new DlxSolver(false).isUnique(new TentConfig("data/bench/20x20.txt")));
+    }
+}
@@ -0,0 +1,69 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.TentConfig;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the in place solver finds the same solutions as the
+ * Backtracker, with the same number of configurations.
+ *
+ * @author Lyx Huston
+ */
+public class TestInPlaceSolver {
+    /**
+     * Solves a file with both solvers and compares the results.
+     * @param filename puzzle file
+     * @throws IOException if the file can't be read
+     */
+    private void compareSolve(String filename) throws IOException {
+        Backtracker backtracker = new Backtracker(false);
+        InPlaceSolver inPlace = new InPlaceSolver(false);
+        Optional<Configuration> expected = backtracker.solve(new TentConfig(filename));
+        Optional<Configuration> actual = inPlace.solve(new TentConfig(filename));
+        assertTrue(expected.isPresent());
+        assertTrue(actual.isPresent());
+        assertEquals(((ITentsAndTreesTest) expected.get()).getDisplay(),
+                ((ITentsAndTreesTest) actual.get()).getDisplay());
+        assertEquals(backtracker.getConfigCount(), inPlace.getConfigCount());
+    }
+
+    /** Test the single tree puzzle. */
+    @Test
+    public void testSolveTest() throws IOException {
+        compareSolve("data/test.txt");
+    }
+
+    /** Test the puzzle with more than one solution. */
+    @Test
+    public void testSolveMultiple() throws IOException {
+        compareSolve("data/multiple.txt");
+    }
+
+    /** Test the most constrained order solves the large puzzle. */
+    @Test
+    public void testMostConstrained30x30() throws IOException {
+        InPlaceSolver solver = new InPlaceSolver(false,
+                InPlaceSolver.TreeOrder.MOST_CONSTRAINED);
+        Optional<Configuration> sol = solver.solve(new TentConfig("data/30x30.txt"));
+        assertTrue(sol.isPresent());
+        ITentsAndTreesTest board = (ITentsAndTreesTest) sol.get();
+        for (int row = 0; row < board.getDIM(); row++) {
+            int tents = 0;
+            for (int col = 0; col < board.getDIM(); col++) {
+                if (board.getCell(row, col) == ITentsAndTreesTest.TENT) {
+                    tents++;
+                }
+            }
+            assertEquals(board.getTentsRow(row), tents);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.LinePropagator;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the line propagator's rules on small boards.
+ *
+ * @author Lyx Huston
+ */
+public class TestLinePropagator {
+    /** A row needing two tents in a run of three gets both ends. */
+    @Test
+    public void testForcedLine() {
+        char[] cells = (
+                "..." +
+                "%.%" +
+                "...").toCharArray();
+        boolean[] claimable = new boolean[9];
+        Arrays.fill(claimable, true);
+        LinePropagator propagator = new LinePropagator();
+        int fixed = propagator.propagate(3, cells,
+                new int[]{2, 0, 0}, new int[]{1, 0, 1}, claimable);
+        assertTrue(fixed > 0);
+        assertEquals("^-^" + "%-%" + "---", new String(cells));
+        assertEquals(2, propagator.getFixed(LinePropagator.Rule.FORCED_LINE));
+    }
+
+    /** A row needing more tents than its cells can hold is a contradiction. */
+    @Test
+    public void testContradiction() {
+        char[] cells = (
+                ".." +
+                "%.").toCharArray();
+        boolean[] claimable = new boolean[4];
+        Arrays.fill(claimable, true);
+        LinePropagator propagator = new LinePropagator();
+        assertEquals(-1, propagator.propagate(2, cells,
+                new int[]{2, 0}, new int[]{1, 1}, claimable));
+        assertEquals(1, propagator.getContradictions());
+    }
+
+    /** Cells no tree can reach become grass. */
+    @Test
+    public void testUnclaimed() {
+        char[] cells = (
+                "%.." +
+                "..." +
+                "...").toCharArray();
+        boolean[] claimable = new boolean[9];
+        claimable[1] = true;
+        claimable[3] = true;
+        LinePropagator propagator = new LinePropagator();
+        propagator.propagate(3, cells, new int[]{1, 0, 0}, new int[]{0, 1, 0}, claimable);
+        assertEquals("%^-" + "---" + "---", new String(cells));
+    }
+}
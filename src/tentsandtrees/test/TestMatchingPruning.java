@@ -0,0 +1,91 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SearchStats;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.generator.PuzzleGenerator;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that pruning TentConfigs on the tree-to-cell matching only throws
+ * away configs with no solution below them.
+ *
+ * @author Lyx Huston
+ */
+public class TestMatchingPruning {
+    /**
+     * @param puzzle the puzzle
+     * @param pruning whether to prune on the matching
+     * @return the initial config
+     */
+    private static TentConfig init(PuzzleDefinition puzzle, boolean pruning) {
+        TentConfig init = new TentConfig(puzzle);
+        init.setMatchingPruning(pruning);
+        return init;
+    }
+
+    /** Solving finds the same solution in fewer configs, and counts the prunes. */
+    @Test
+    public void testSolve() throws IOException {
+        PuzzleDefinition puzzle = PuzzleDefinition.read("data/bench/20x20.txt");
+        Backtracker plain = new Backtracker(false);
+        Optional<Configuration> expected = plain.solve(init(puzzle, false));
+
+        Backtracker pruned = new Backtracker(false);
+        TentConfig init = init(puzzle, true);
+        Optional<Configuration> actual = pruned.solve(init);
+        assertTrue(actual.isPresent());
+        assertTrue(actual.get().isGoal());
+        assertEquals(expected.get().toString(), actual.get().toString());
+        assertTrue(pruned.getConfigCount() < plain.getConfigCount());
+        assertTrue(init.getStats().getPrunes(SearchStats.PruneReason.MATCHING) >= 1);
+    }
+
+    /** Counting finds every solution the unpruned search does, in fewer configs. */
+    @Test
+    public void testCount() throws IOException {
+        PuzzleDefinition puzzle = PuzzleDefinition.read("data/bench/30x30.txt");
+        Set<String> expected = new HashSet<>();
+        Backtracker plain = new Backtracker(false);
+        long count = plain.countSolutions(init(puzzle, false), Long.MAX_VALUE,
+                solution -> expected.add(solution.toString()));
+
+        Set<String> actual = new HashSet<>();
+        Backtracker pruned = new Backtracker(false);
+        TentConfig init = init(puzzle, true);
+        assertEquals(count, pruned.countSolutions(init, Long.MAX_VALUE,
+                solution -> actual.add(solution.toString())));
+        assertEquals(expected, actual);
+        assertTrue(pruned.getConfigCount() < plain.getConfigCount());
+        assertTrue(init.getStats().getPrunes(SearchStats.PruneReason.MATCHING) >= 1);
+    }
+
+    /**
+     * Many small puzzles, so the matching gets repaired from every kind of
+     * parent: the counts always agree with the unpruned search.
+     */
+    @Test
+    public void testRepair() {
+        PuzzleGenerator generator = new PuzzleGenerator(8, 0.2);
+        for (long seed = 0; seed < 200; seed++) {
+            PuzzleDefinition puzzle = PuzzleDefinition.of(generator.generate(seed));
+            Set<String> expected = new HashSet<>();
+            new Backtracker(false).countSolutions(init(puzzle, false), Long.MAX_VALUE,
+                    solution -> expected.add(solution.toString()));
+            Set<String> actual = new HashSet<>();
+            new Backtracker(false).countSolutions(init(puzzle, true), Long.MAX_VALUE,
+                    solution -> actual.add(solution.toString()));
+            assertEquals(expected, actual, "seed " + seed);
+        }
+    }
+}
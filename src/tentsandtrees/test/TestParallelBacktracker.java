@@ -0,0 +1,69 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.ParallelBacktracker;
+import tentsandtrees.backtracker.TentConfig;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the parallel backtracker finds valid solutions.
+ *
+ * @author Lyx Huston
+ */
+public class TestParallelBacktracker {
+    /** Test the single tree puzzle, which has one solution. */
+    @Test
+    public void testSolveTest() throws IOException {
+        ParallelBacktracker solver = new ParallelBacktracker(4, 2);
+        Optional<Configuration> sol = solver.solve(new TentConfig("data/test.txt"));
+        assertTrue(sol.isPresent());
+        final String expected =
+                " -----" + System.lineSeparator() +
+                "|- - -|0" + System.lineSeparator() +
+                "|^ % -|1" + System.lineSeparator() +
+                "|- - -|0" + System.lineSeparator() +
+                " -----" + System.lineSeparator() +
+                " 1 0 0 " + System.lineSeparator();
+        assertEquals(expected, sol.get().toString());
+        assertTrue(solver.getConfigCount() >= 1);
+    }
+
+    /** Test the puzzle with more than one solution. */
+    @Test
+    public void testSolveMultiple() throws IOException {
+        ParallelBacktracker solver = new ParallelBacktracker(2, 1);
+        Optional<Configuration> sol = solver.solve(new TentConfig("data/multiple.txt"));
+        assertTrue(sol.isPresent());
+        assertTrue(sol.get().isGoal());
+    }
+
+    /** Counting finds the same solutions as the backtracker; solving stops at the first. */
+    @Test
+    public void testCountMatches() throws IOException {
+        Set<String> expected = new HashSet<>();
+        long count = new Backtracker(false).countSolutions(new TentConfig("data/bench/30x30.txt"),
+                Long.MAX_VALUE, solution -> expected.add(solution.toString()));
+        assertEquals(216, count);
+
+        ParallelBacktracker counter = new ParallelBacktracker(4, 2);
+        Set<String> actual = new HashSet<>();
+        assertEquals(count, counter.countSolutions(new TentConfig("data/bench/30x30.txt"),
+                Long.MAX_VALUE, solution -> actual.add(solution.toString())));
+        assertEquals(expected, actual);
+
+        ParallelBacktracker solver = new ParallelBacktracker(4, 2);
+        Optional<Configuration> sol = solver.solve(new TentConfig("data/bench/30x30.txt"));
+        assertTrue(sol.isPresent());
+        assertTrue(sol.get().isGoal());
+        assertTrue(solver.getConfigCount() < counter.getConfigCount());
+    }
+}
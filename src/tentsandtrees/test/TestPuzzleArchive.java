@@ -0,0 +1,154 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionConfig;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.io.PuzzleArchive;
+import tentsandtrees.io.PuzzleArchiveWriter;
+import tentsandtrees.io.PuzzleReader;
+import tentsandtrees.main.ConvertPuzzles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that puzzles and solutions come back out of a packed archive the
+ * same as they went in, in any order.
+ *
+ * @author Lyx Huston
+ */
+public class TestPuzzleArchive {
+    /** bench puzzles small enough to solve quickly */
+    private static final int[] SIZES = {3, 5, 8, 10, 12, 15};
+
+    /** Solved bench puzzles, and one without a solution, read back backwards. */
+    @Test
+    public void testRoundTrip(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("bench.tnts");
+        List<PuzzleDefinition> puzzles = new ArrayList<>();
+        List<ITentsAndTreesTest> solutions = new ArrayList<>();
+        try (PuzzleArchiveWriter writer = new PuzzleArchiveWriter(file)) {
+            for (int size : SIZES) {
+                PuzzleDefinition puzzle = PuzzleDefinition.read("data/bench/" + size + "x" + size + ".txt");
+                Optional<Configuration> sol = new Backtracker(false).solve(new TentConfig(puzzle));
+                assertTrue(sol.isPresent());
+                writer.add(puzzle, (ITentsAndTreesTest) sol.get());
+                puzzles.add(puzzle);
+                solutions.add((ITentsAndTreesTest) sol.get());
+            }
+            PuzzleDefinition unsolved = PuzzleDefinition.read("data/30x30.txt");
+            writer.add(unsolved);
+            puzzles.add(unsolved);
+            solutions.add(null);
+        }
+
+        try (PuzzleArchive archive = new PuzzleArchive(file)) {
+            assertEquals(puzzles.size(), archive.size());
+            for (int i = archive.size() - 1; i >= 0; i--) {
+                assertSamePuzzle(puzzles.get(i), archive.getPuzzle(i));
+                Optional<SolutionConfig> solution = archive.getSolution(i);
+                assertEquals(solutions.get(i) != null, solution.isPresent());
+                if (solution.isPresent()) {
+                    assertSameTents(solutions.get(i), solution.get());
+                }
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> archive.getPuzzle(puzzles.size()));
+        }
+    }
+
+    /** Text to archive to text keeps every puzzle and its tents. */
+    @Test
+    public void testConvert(@TempDir Path dir) throws IOException {
+        Path text = dir.resolve("in.txt");
+        Files.writeString(text, Files.readString(Path.of("data/test.txt")) + "\n" +
+                "3\n0 1 0\n1 0 0\n. . .\n^ % .\n. . .\n" +
+                Files.readString(Path.of("data/bench/8x8.txt")));
+        Path archive = dir.resolve("in.tnts");
+        assertEquals(3, ConvertPuzzles.pack(archive, text));
+        assertTrue(Files.size(archive) < Files.size(text));
+
+        Path back = dir.resolve("out.txt");
+        assertEquals(3, ConvertPuzzles.unpack(archive, back));
+        PuzzleReader before = new PuzzleReader(text);
+        PuzzleReader after = new PuzzleReader(back);
+        while (before.hasNext()) {
+            PuzzleDefinition expected = before.next();
+            PuzzleDefinition actual = after.next();
+            assertSamePuzzle(expected, actual);
+            for (int row = 0; row < expected.getDim(); row++) {
+                for (int col = 0; col < expected.getDim(); col++) {
+                    assertEquals(expected.getCell(row, col) == ITentsAndTreesTest.TENT,
+                            actual.getCell(row, col) == ITentsAndTreesTest.TENT);
+                }
+            }
+        }
+        assertFalse(after.hasNext());
+    }
+
+    /** Bad files and bad solutions are refused. */
+    @Test
+    public void testBroken(@TempDir Path dir) throws IOException {
+        Path text = dir.resolve("text.txt");
+        Files.copy(Path.of("data/test.txt"), text);
+        assertThrows(IOException.class, () -> new PuzzleArchive(text));
+
+        Path file = dir.resolve("cut.tnts");
+        try (PuzzleArchiveWriter writer = new PuzzleArchiveWriter(file)) {
+            writer.add(PuzzleDefinition.read("data/test.txt"));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> new PuzzleArchive(file));
+
+        // a tent that isn't beside the tree
+        PuzzleDefinition puzzle = PuzzleDefinition.read("data/test.txt");
+        SolutionConfig wrong = new SolutionConfig(3, puzzle.getTentsPerRow(), puzzle.getTentsPerColumn(),
+                "^...%....".toCharArray());
+        try (PuzzleArchiveWriter writer = new PuzzleArchiveWriter(dir.resolve("wrong.tnts"))) {
+            assertThrows(IllegalArgumentException.class, () -> writer.add(puzzle, wrong));
+        }
+    }
+
+    /**
+     * @param expected puzzle written
+     * @param actual puzzle read back
+     */
+    private static void assertSamePuzzle(PuzzleDefinition expected, PuzzleDefinition actual) {
+        assertEquals(expected.getDim(), actual.getDim());
+        assertArrayEquals(expected.getTentsPerRow(), actual.getTentsPerRow());
+        assertArrayEquals(expected.getTentsPerColumn(), actual.getTentsPerColumn());
+        assertEquals(expected.getTreeCount(), actual.getTreeCount());
+        for (int tree = 0; tree < expected.getTreeCount(); tree++) {
+            assertEquals(expected.getTreeRow(tree), actual.getTreeRow(tree));
+            assertEquals(expected.getTreeCol(tree), actual.getTreeCol(tree));
+        }
+    }
+
+    /**
+     * @param expected solution written
+     * @param actual solution read back
+     */
+    private static void assertSameTents(ITentsAndTreesTest expected, ITentsAndTreesTest actual) {
+        for (int row = 0; row < expected.getDIM(); row++) {
+            for (int col = 0; col < expected.getDIM(); col++) {
+                assertEquals(expected.getCell(row, col) == ITentsAndTreesTest.TENT,
+                        actual.getCell(row, col) == ITentsAndTreesTest.TENT);
+            }
+        }
+    }
+}
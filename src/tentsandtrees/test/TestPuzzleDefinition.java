@@ -0,0 +1,118 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.TentConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the puzzle definition's tables, and that searches on different
+ * puzzles no longer get in each other's way.
+ *
+ * @author Lyx Huston
+ */
+public class TestPuzzleDefinition {
+    /** The tables for the single tree puzzle. */
+    @Test
+    public void testTables() throws IOException {
+        PuzzleDefinition puzzle = PuzzleDefinition.read("data/test.txt");
+        assertEquals(3, puzzle.getDim());
+        assertEquals(1, puzzle.getTreeCount());
+        assertEquals(1, puzzle.getTreeRow(0));
+        assertEquals(1, puzzle.getTreeCol(0));
+        // south, east, north, west of the middle cell
+        assertEquals(7, puzzle.getSide(0, 0));
+        assertEquals(5, puzzle.getSide(0, 1));
+        assertEquals(1, puzzle.getSide(0, 2));
+        assertEquals(3, puzzle.getSide(0, 3));
+        assertEquals(3, puzzle.getAroundEnd(0) - puzzle.getAroundStart(0));
+        assertEquals(5, puzzle.getAroundEnd(1) - puzzle.getAroundStart(1));
+        assertEquals(8, puzzle.getAroundEnd(4) - puzzle.getAroundStart(4));
+        assertTrue(puzzle.countsMatch());
+
+        PuzzleDefinition corner = new PuzzleDefinition(2, new int[]{1, 0},
+                new int[]{0, 1}, new char[]{'.', '.', '%', '.'});
+        assertEquals(-1, corner.getSide(0, 0));
+        assertEquals(3, corner.getSide(0, 1));
+        assertEquals(0, corner.getSide(0, 2));
+        assertEquals(-1, corner.getSide(0, 3));
+    }
+
+    /** Only cells a tent could go in are candidates, and conflicts list just those. */
+    @Test
+    public void testCandidates() throws IOException {
+        // only row 1 and column 0 need a tent, so west is the one candidate
+        PuzzleDefinition puzzle = PuzzleDefinition.read("data/test.txt");
+        assertEquals(-1, puzzle.getCandidate(0, 0));
+        assertEquals(-1, puzzle.getCandidate(0, 1));
+        assertEquals(-1, puzzle.getCandidate(0, 2));
+        assertEquals(3, puzzle.getCandidate(0, 3));
+        assertEquals(1, puzzle.getCandidateRow(0, 3));
+        assertEquals(0, puzzle.getCandidateCol(0, 3));
+        for (int cell = 0; cell < 9; cell++) {
+            int touching = cell == 0 || cell == 1 || cell == 4 || cell == 6 || cell == 7 ? 1 : 0;
+            assertEquals(touching, puzzle.getConflictEnd(cell) - puzzle.getConflictStart(cell));
+            if (touching == 1) {
+                assertEquals(3, puzzle.getConflict(puzzle.getConflictStart(cell)));
+            }
+        }
+
+        // two trees side by side can't use each other's cell
+        PuzzleDefinition pair = new PuzzleDefinition(2, new int[]{1, 1},
+                new int[]{1, 1}, new char[]{'%', '%', '.', '.'});
+        assertEquals(2, pair.getCandidate(0, 0));
+        assertEquals(-1, pair.getCandidate(0, 1));
+        assertEquals(3, pair.getCandidate(1, 0));
+        assertEquals(-1, pair.getCandidate(1, 3));
+        assertEquals(1, pair.getConflictEnd(2) - pair.getConflictStart(2));
+        assertEquals(3, pair.getConflict(pair.getConflictStart(2)));
+    }
+
+    /** Loading a puzzle doesn't change a search on another one. */
+    @Test
+    public void testLoadDuringSearch() throws IOException {
+        TentConfig small = new TentConfig("data/test.txt");
+        new TentConfig("data/30x30.txt");
+        Optional<Configuration> sol = new Backtracker(false).solve(small);
+        assertTrue(sol.isPresent());
+        assertEquals(3, ((ITentsAndTreesTest) sol.get()).getDIM());
+    }
+
+    /** Puzzles of different sizes solved on several threads at once. */
+    @Test
+    public void testConcurrentSolves() throws Exception {
+        String[] files = {"data/bench/8x8.txt", "data/bench/15x15.txt",
+                "data/bench/20x20.txt", "data/bench/25x25.txt"};
+        List<String> expected = new ArrayList<>();
+        for (String file : files) {
+            expected.add(new Backtracker(false).solve(new TentConfig(file)).orElseThrow().toString());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(files.length);
+        try {
+            for (int round = 0; round < 3; round++) {
+                List<Future<String>> results = new ArrayList<>();
+                for (String file : files) {
+                    results.add(pool.submit(() ->
+                            new Backtracker(false).solve(new TentConfig(file)).orElseThrow().toString()));
+                }
+                for (int i = 0; i < files.length; i++) {
+                    assertEquals(expected.get(i), results.get(i).get());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.generator.GeneratedPuzzle;
+import tentsandtrees.generator.PuzzleGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks generated puzzles are repeatable and solvable.
+ *
+ * @author Lyx Huston
+ */
+public class TestPuzzleGenerator {
+    /** The same seed makes the same puzzle, a different one doesn't. */
+    @Test
+    public void testSeeded() {
+        PuzzleGenerator generator = new PuzzleGenerator(20, 0.15);
+        String first = generator.generate(7).toText();
+        assertEquals(first, new PuzzleGenerator(20, 0.15).generate(7).toText());
+        assertNotEquals(first, generator.generate(8).toText());
+    }
+
+    /** The solution a puzzle was made from follows the rules. */
+    @Test
+    public void testSolutionValid() {
+        PuzzleGenerator generator = new PuzzleGenerator(50, 0.15);
+        for (long seed = 0; seed < 20; seed++) {
+            GeneratedPuzzle puzzle = generator.generate(seed);
+            assertEquals(375, puzzle.getTrees());
+            ITentsAndTreesTest solution = puzzle.getSolution();
+            int dim = solution.getDIM();
+            int tents = 0;
+            for (int row = 0; row < dim; row++) {
+                int inRow = 0;
+                for (int col = 0; col < dim; col++) {
+                    if (solution.getCell(row, col) != ITentsAndTreesTest.TENT) {
+                        continue;
+                    }
+                    inRow++;
+                    tents++;
+                    for (int lookRow = row - 1; lookRow <= row + 1; lookRow++) {
+                        for (int lookCol = col - 1; lookCol <= col + 1; lookCol++) {
+                            if ((lookRow != row || lookCol != col) && lookRow >= 0 &&
+                                    lookRow < dim && lookCol >= 0 && lookCol < dim) {
+                                assertNotEquals(ITentsAndTreesTest.TENT,
+                                        solution.getCell(lookRow, lookCol));
+                            }
+                        }
+                    }
+                }
+                assertEquals(puzzle.getTentsRow(row), inRow);
+            }
+            assertEquals(puzzle.getTrees(), tents);
+        }
+    }
+
+    /** A written puzzle reads back in and solves. */
+    @Test
+    public void testWriteAndSolve() throws IOException {
+        Path file = Files.createTempFile("generated", ".txt");
+        try {
+            GeneratedPuzzle puzzle = new PuzzleGenerator(10, 0.15).generate(3);
+            puzzle.write(file);
+            TentConfig init = new TentConfig(file.toString());
+            assertEquals(puzzle.getDisplay(), init.getDisplay());
+            Optional<Configuration> sol = new Backtracker(false).solve(init);
+            assertTrue(sol.isPresent());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /** Unique only puzzles have one solution. */
+    @Test
+    public void testUniqueOnly() {
+        PuzzleGenerator generator = new PuzzleGenerator(10, 0.15);
+        generator.setUniqueOnly(true);
+        InPlaceSolver solver = new InPlaceSolver(false);
+        for (long seed = 0; seed < 10; seed++) {
+            GeneratedPuzzle puzzle = generator.generate(seed);
+            assertEquals(1, solver.countPuzzleSolutions(puzzle, 2, solution -> { }));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new PuzzleGenerator(10, 0.5));
+    }
+}
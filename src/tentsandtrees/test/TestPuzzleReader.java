@@ -0,0 +1,86 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.io.PuzzleReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the memory mapped reader on single and multi puzzle files.
+ *
+ * @author Lyx Huston
+ */
+public class TestPuzzleReader {
+    /** The single tree puzzle reads the same as it always did. */
+    @Test
+    public void testSingle() throws IOException {
+        PuzzleDefinition puzzle = PuzzleReader.readOne(Path.of("data/test.txt"));
+        assertEquals(3, puzzle.getDim());
+        assertArrayEquals(new int[]{0, 1, 0}, puzzle.getTentsPerRow());
+        assertEquals(1, puzzle.getTreeCount());
+        assertEquals(ITentsAndTreesTest.TREE, puzzle.getCell(1, 1));
+        assertEquals(ITentsAndTreesTest.EMPTY, puzzle.getCell(0, 0));
+    }
+
+    /** Puzzles one after another, with blank lines and odd spacing. */
+    @Test
+    public void testMulti(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("multi.txt");
+        Files.writeString(file, Files.readString(Path.of("data/test.txt")) + "\n\n" +
+                "2\r\n1 0\r\n0\t1\r\n. %\r\n. .\r\n" +
+                Files.readString(Path.of("data/bench/10x10.txt")));
+        PuzzleReader reader = new PuzzleReader(file);
+        assertTrue(reader.hasNext());
+        assertEquals(3, reader.next().getDim());
+        PuzzleDefinition two = reader.next();
+        assertEquals(2, two.getDim());
+        assertArrayEquals(new int[]{0, 1}, two.getTentsPerColumn());
+        assertEquals(1, two.getTreeCount());
+        assertEquals(0, two.getTreeRow(0));
+        assertEquals(1, two.getTreeCol(0));
+        PuzzleDefinition ten = reader.next();
+        PuzzleDefinition alone = PuzzleDefinition.read("data/bench/10x10.txt");
+        assertEquals(alone.getTreeCount(), ten.getTreeCount());
+        for (int tree = 0; tree < ten.getTreeCount(); tree++) {
+            assertEquals(alone.getTreeRow(tree), ten.getTreeRow(tree));
+            assertEquals(alone.getTreeCol(tree), ten.getTreeCol(tree));
+        }
+        assertFalse(reader.hasNext());
+        assertEquals(3, reader.getCount());
+        assertThrows(NoSuchElementException.class, reader::next);
+    }
+
+    /** A file cut short, or with junk for a number, is an error. */
+    @Test
+    public void testBroken(@TempDir Path dir) throws IOException {
+        Path cut = dir.resolve("cut.txt");
+        Files.writeString(cut, "3\n2 0 1\n2 0 1\n. % .\n");
+        assertThrows(IOException.class, () -> PuzzleReader.readOne(cut));
+
+        Path junk = dir.resolve("junk.txt");
+        Files.writeString(junk, "2\n1 x\n0 1\n. %\n. .\n");
+        assertThrows(IOException.class, () -> PuzzleReader.readOne(junk));
+
+        Path empty = dir.resolve("empty.txt");
+        Files.writeString(empty, "\n\n");
+        assertThrows(IOException.class, () -> PuzzleReader.readOne(empty));
+
+        Path second = dir.resolve("second.txt");
+        Files.writeString(second, "1\n0\n0\n.\n2\n1\n");
+        PuzzleReader reader = new PuzzleReader(second);
+        assertEquals(1, reader.next().getDim());
+        assertThrows(UncheckedIOException.class, reader::next);
+    }
+}
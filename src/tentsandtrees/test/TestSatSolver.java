@@ -0,0 +1,99 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.generator.GeneratedPuzzle;
+import tentsandtrees.generator.PuzzleGenerator;
+import tentsandtrees.sat.CdclSolver;
+import tentsandtrees.sat.Cnf;
+import tentsandtrees.sat.CnfEncoder;
+import tentsandtrees.sat.SatSolver;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the CNF encoding and the CDCL solver behind SatSolver.
+ *
+ * @author Lyx Huston
+ */
+public class TestSatSolver {
+    /** The DIMACS output has a header and one zero ended line per clause. */
+    @Test
+    public void testDimacs() throws IOException {
+        Cnf cnf = new CnfEncoder(PuzzleDefinition.read("data/multiple.txt")).getCnf();
+        StringWriter out = new StringWriter();
+        cnf.writeDimacs(out, "multiple\ntwo trees");
+        String[] lines = out.toString().split("\n");
+        assertEquals("c multiple", lines[0]);
+        assertEquals("c two trees", lines[1]);
+        assertEquals("p cnf " + cnf.getVariables() + " " + cnf.getClauses().size(), lines[2]);
+        assertEquals(cnf.getClauses().size() + 3, lines.length);
+        for (int i = 3; i < lines.length; i++) {
+            assertTrue(lines[i].endsWith(" 0"), lines[i]);
+        }
+        assertThrows(IllegalArgumentException.class, () -> cnf.addClause(cnf.getVariables() + 1));
+    }
+
+    /** Four pigeons don't fit in three holes; three do. */
+    @Test
+    public void testPigeonhole() {
+        for (int pigeons = 3; pigeons <= 4; pigeons++) {
+            int holes = 3;
+            CdclSolver solver = new CdclSolver(pigeons * holes);
+            for (int p = 0; p < pigeons; p++) {
+                int[] somewhere = new int[holes];
+                for (int h = 0; h < holes; h++) {
+                    somewhere[h] = p * holes + h + 1;
+                    for (int q = 0; q < p; q++) {
+                        solver.addClause(-(p * holes + h + 1), -(q * holes + h + 1));
+                    }
+                }
+                solver.addClause(somewhere);
+            }
+            assertEquals(pigeons <= holes, solver.solve());
+        }
+        CdclSolver empty = new CdclSolver(1);
+        assertFalse(empty.addClause());
+        assertFalse(empty.solve());
+    }
+
+    /** The solver finds the same solutions as the in place solver. */
+    @Test
+    public void testCountsMatch() {
+        PuzzleGenerator generator = new PuzzleGenerator(8, 0.2);
+        for (long seed = 0; seed < 200; seed++) {
+            GeneratedPuzzle puzzle = generator.generate(seed);
+            Set<String> expected = new HashSet<>();
+            new InPlaceSolver(false).countPuzzleSolutions(puzzle, Long.MAX_VALUE,
+                    solution -> expected.add(solution.toString()));
+            Set<String> actual = new HashSet<>();
+            new SatSolver(false).countPuzzleSolutions(puzzle, Long.MAX_VALUE, solution -> {
+                assertTrue(solution.isGoal());
+                actual.add(solution.toString());
+            });
+            assertEquals(expected, actual, "seed " + seed);
+        }
+    }
+
+    /** The large puzzle solves, and the config count is the decisions made. */
+    @Test
+    public void testSolve30x30() throws IOException {
+        SatSolver solver = new SatSolver(false);
+        Optional<Configuration> sol = solver.solve(new TentConfig("data/30x30.txt"));
+        assertTrue(sol.isPresent());
+        assertTrue(sol.get().isGoal());
+        assertTrue(solver.getConfigCount() > 0);
+    }
+}
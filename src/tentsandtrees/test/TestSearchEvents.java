@@ -0,0 +1,147 @@
+package tentsandtrees.test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.LinePropagator;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SearchEvents;
+import tentsandtrees.backtracker.Solver;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.generator.PuzzleGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the flight recorder events describe the search they came from.
+ *
+ * @author Lyx Huston
+ */
+public class TestSearchEvents {
+    /** A generated puzzle taking tens of thousands of configs. */
+    private static final PuzzleDefinition PUZZLE =
+            PuzzleDefinition.of(new PuzzleGenerator(20, 0.2).generate(1));
+
+    /**
+     * Records every search event while a task runs.
+     * @param task what to record
+     * @return the events, in order
+     * @throws IOException if the recording can't be written or read
+     */
+    private static List<RecordedEvent> record(Runnable task) throws IOException {
+        Path file = Files.createTempFile("search", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[]{"Search", "PuzzleLoad", "Propagation", "Solution",
+                    "Backtrack", "DepthMilestone"}) {
+                recording.enable("tentsandtrees." + name).withoutThreshold();
+            }
+            recording.start();
+            task.run();
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            events.sort((a, b) -> a.getStartTime().compareTo(b.getStartTime()));
+            return events;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * @param events recorded events
+     * @param name short name of an event type
+     * @return the events of that type
+     */
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals("tentsandtrees." + name))
+                .toList();
+    }
+
+    /** Both solvers describe their search, and their events agree with it. */
+    @Test
+    public void testSearch() throws IOException {
+        for (Solver solver : new Solver[]{new Backtracker(false), new InPlaceSolver(false)}) {
+            String name = solver.getClass().getSimpleName();
+            long[] solutions = new long[1];
+            List<RecordedEvent> events = record(() -> solutions[0] = solver.countSolutions(
+                    new TentConfig(PUZZLE), Long.MAX_VALUE, solution -> { }));
+
+            List<RecordedEvent> searches = named(events, "Search");
+            assertEquals(1, searches.size(), name);
+            RecordedEvent search = searches.get(0);
+            assertEquals(solver.getConfigCount(), search.getLong("nodes"), name);
+            assertEquals(solutions[0], search.getLong("solutions"), name);
+            assertEquals(20, search.getInt("dim"));
+            assertTrue(search.getBoolean("exhausted"));
+            assertTrue(search.getString("solver").startsWith(name));
+
+            // the solution event can come more than once for the same layout
+            assertTrue(named(events, "Solution").size() >= solutions[0], name);
+
+            int deepest = 0;
+            for (RecordedEvent milestone : named(events, "DepthMilestone")) {
+                assertTrue(milestone.getInt("depth") > deepest, name);
+                deepest = milestone.getInt("depth");
+            }
+            assertTrue(deepest > 0, name);
+
+            List<RecordedEvent> bursts = named(events, "Backtrack");
+            assertFalse(bursts.isEmpty(), name);
+            long nodes = 0;
+            for (RecordedEvent event : events) {
+                if (event.getEventType().getName().equals("tentsandtrees.Backtrack")) {
+                    assertTrue(event.getInt("from") - event.getInt("depth")
+                            >= SearchEvents.BACKTRACK_BURST, name);
+                }
+                if (event.hasField("nodes") && !event.getEventType().getName().endsWith("Search")) {
+                    nodes += event.getLong("nodes");
+                }
+            }
+            assertTrue(nodes <= solver.getConfigCount(), name);
+        }
+    }
+
+    /** Reading a file, loading the solver and propagating each make events. */
+    @Test
+    public void testLoadAndPropagation() throws IOException {
+        InPlaceSolver solver = new InPlaceSolver(false, InPlaceSolver.TreeOrder.MOST_CONSTRAINED);
+        solver.setPropagator(new LinePropagator());
+        List<RecordedEvent> events = record(() -> {
+            try {
+                solver.solve(new TentConfig("data/30x30.txt"));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        List<RecordedEvent> loads = named(events, "PuzzleLoad");
+        assertEquals(2, loads.size());
+        assertEquals("data/30x30.txt", loads.get(0).getString("source"));
+        assertEquals("InPlaceSolver", loads.get(1).getString("source"));
+        assertEquals(89, loads.get(1).getInt("trees"));
+        List<RecordedEvent> rounds = named(events, "Propagation");
+        assertFalse(rounds.isEmpty());
+        assertTrue(rounds.stream().anyMatch(round -> round.getInt("grass") > 0));
+        assertFalse(named(events, "Search").get(0).getBoolean("exhausted"));
+    }
+
+    /** TentConfig only makes propagation events while they are recorded. */
+    @Test
+    public void testConfigPropagation() throws IOException {
+        TentConfig init = new TentConfig(PUZZLE);
+        init.setPropagator(new LinePropagator());
+        List<RecordedEvent> rounds = named(record(() -> new Backtracker(false).solve(init)), "Propagation");
+        assertFalse(rounds.isEmpty());
+        assertTrue(rounds.stream().anyMatch(round -> round.getInt("grass") > 0));
+    }
+}
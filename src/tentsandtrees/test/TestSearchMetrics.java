@@ -0,0 +1,124 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.MetricsReporter;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SearchMetrics;
+import tentsandtrees.backtracker.SearchStats;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.generator.PuzzleGenerator;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the published metrics follow the search.
+ *
+ * @author Lyx Huston
+ */
+public class TestSearchMetrics {
+    /** A generated puzzle taking tens of thousands of configs. */
+    private static final PuzzleDefinition PUZZLE =
+            PuzzleDefinition.of(new PuzzleGenerator(20, 0.2).generate(1));
+
+    /** The in place solver samples while it runs and settles at the end. */
+    @Test
+    public void testInPlace() {
+        InPlaceSolver solver = new InPlaceSolver(false);
+        List<Double> explored = new ArrayList<>();
+        SearchMetrics metrics = new SearchMetrics() {
+            @Override
+            public void sample(long configCount, int depth, double fraction) {
+                super.sample(configCount, depth, fraction);
+                explored.add(fraction);
+            }
+        };
+        solver.setMetrics(metrics);
+        solver.countSolutions(new TentConfig(PUZZLE), Long.MAX_VALUE, solution -> { });
+        assertFalse(metrics.isRunning());
+        assertEquals(solver.getConfigCount(), metrics.getNodes());
+        assertTrue(explored.size() >= metrics.getNodes() / (SearchMetrics.SAMPLE_MASK + 1) - 1);
+        for (int i = 1; i < explored.size(); i++) {
+            assertTrue(explored.get(i) >= explored.get(i - 1) - 1e-12);
+            assertTrue(explored.get(i) < 1);
+        }
+        assertEquals(1, metrics.getExploredFraction());
+        assertTrue(metrics.getMaxDepth() > 0);
+        assertEquals(0, metrics.getDepth());
+        assertTrue(metrics.getNodesPerSecond() > 0);
+        assertTrue(metrics.getPrunes().containsKey("propagation"));
+
+        // a second search counts its own configs only
+        long before = solver.getConfigCount();
+        solver.solve(new TentConfig(PUZZLE));
+        assertEquals(solver.getConfigCount() - before, metrics.getNodes());
+    }
+
+    /** The backtracker can't tell how far it is, but counts the same. */
+    @Test
+    public void testBacktracker() {
+        Backtracker solver = new Backtracker(false);
+        SearchMetrics metrics = new SearchMetrics();
+        solver.setMetrics(metrics);
+        assertTrue(solver.solve(new TentConfig(PUZZLE)).isPresent());
+        assertEquals(solver.getConfigCount(), metrics.getNodes());
+        assertTrue(Double.isNaN(metrics.getExploredFraction()));
+        assertTrue(metrics.getMaxDepth() > 0);
+    }
+
+    /** Registered metrics can be read over JMX, then taken down. */
+    @Test
+    public void testJmx() throws JMException {
+        InPlaceSolver solver = new InPlaceSolver(false);
+        SearchMetrics metrics = new SearchMetrics();
+        solver.setMetrics(metrics);
+        ObjectName name = metrics.register("testJmx");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            solver.solve(new TentConfig(PUZZLE));
+            assertEquals(solver.getConfigCount(), server.getAttribute(name, "Nodes"));
+            assertEquals(false, server.getAttribute(name, "Running"));
+            TabularData prunes = (TabularData) server.getAttribute(name, "Prunes");
+            assertEquals(SearchStats.PruneReason.values().length, prunes.size());
+            assertThrows(JMException.class, () -> new SearchMetrics().register("testJmx"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    /** The reporter prints lines until it is closed. */
+    @Test
+    public void testReporter() throws InterruptedException {
+        InPlaceSolver solver = new InPlaceSolver(false);
+        SearchMetrics metrics = new SearchMetrics();
+        solver.setMetrics(metrics);
+        solver.solve(new TentConfig(PUZZLE));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true);
+        MetricsReporter reporter = new MetricsReporter(metrics, 0.01, out);
+        try {
+            for (int i = 0; i < 500 && bytes.size() == 0; i++) {
+                Thread.sleep(10);
+            }
+        } finally {
+            reporter.close();
+        }
+        assertTrue(bytes.toString().contains("Nodes: " + metrics.getNodes()));
+        assertThrows(IllegalArgumentException.class, () -> new MetricsReporter(metrics, 0));
+    }
+}
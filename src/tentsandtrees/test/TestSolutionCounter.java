@@ -0,0 +1,118 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.BackjumpingSolver;
+import tentsandtrees.backtracker.BitTentConfig;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.DecomposingSolver;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.ParallelBacktracker;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionCounter;
+import tentsandtrees.backtracker.Solver;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.dlx.DlxSolver;
+import tentsandtrees.sat.SatSolver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks every solver counts solutions the same way.
+ *
+ * @author Lyx Huston
+ */
+public class TestSolutionCounter {
+    /**
+     * @return one of each solver
+     */
+    private static List<Solver> solvers() {
+        return List.of(
+                new Backtracker(false),
+                new InPlaceSolver(false),
+                new InPlaceSolver(false, InPlaceSolver.TreeOrder.MOST_CONSTRAINED),
+                new ParallelBacktracker(4, 2),
+                new BackjumpingSolver(false),
+                new BackjumpingSolver(false, InPlaceSolver.TreeOrder.MOST_CONSTRAINED),
+                new SatSolver(false),
+                new DecomposingSolver(2, () -> new InPlaceSolver(false)));
+    }
+
+    /** The two tree puzzle has two solutions, each handed over once. */
+    @Test
+    public void testCountMultiple() throws IOException {
+        for (Solver solver : solvers()) {
+            List<Configuration> found = new ArrayList<>();
+            long count = solver.countSolutions(new TentConfig("data/multiple.txt"),
+                    Long.MAX_VALUE, found::add);
+            assertEquals(2, count, solver.getClass().getSimpleName());
+            assertEquals(2, found.size());
+            Set<String> distinct = new HashSet<>();
+            for (Configuration solution : found) {
+                assertTrue(solution.isGoal());
+                distinct.add(solution.toString());
+            }
+            assertEquals(2, distinct.size());
+            assertFalse(solver.isUnique(new TentConfig("data/multiple.txt")));
+        }
+    }
+
+    /**
+     * Four trees round an empty middle cell can pass their tents round the
+     * ring either way, two pairings of the one solution, which is counted
+     * once.
+     */
+    @Test
+    public void testRing() {
+        PuzzleDefinition ring = new PuzzleDefinition(3, new int[]{2, 0, 2}, new int[]{2, 0, 2},
+                ".%.%.%.%.".toCharArray());
+        assertTrue(ring.isFirstPairing(new int[]{0, 6, 2, 8}));
+        assertFalse(ring.isFirstPairing(new int[]{2, 0, 8, 6}));
+        List<Solver> solvers = new ArrayList<>(solvers());
+        solvers.add(new DlxSolver(false));
+        for (Solver solver : solvers) {
+            List<Configuration> found = new ArrayList<>();
+            assertEquals(1, solver.countSolutions(new TentConfig(ring), Long.MAX_VALUE, found::add),
+                    solver.getClass().getSimpleName());
+            assertEquals(1, found.size());
+            // solving takes whichever pairing it reaches first
+            assertTrue(solver.solve(new TentConfig(ring)).orElseThrow().isGoal());
+        }
+        assertTrue(new SolutionCounter(1, solution -> { }).isCounting());
+        assertFalse(SolutionCounter.first(solution -> { }).isCounting());
+        assertEquals(1, new Backtracker(false).countSolutions(new BitTentConfig(ring),
+                Long.MAX_VALUE, solution -> { }));
+    }
+
+    /** The single tree puzzle has one solution, the big puzzle doesn't. */
+    @Test
+    public void testUnique() throws IOException {
+        for (Solver solver : solvers()) {
+            assertTrue(solver.isUnique(new TentConfig("data/test.txt")),
+                    solver.getClass().getSimpleName());
+        }
+        assertFalse(new InPlaceSolver(false, InPlaceSolver.TreeOrder.MOST_CONSTRAINED)
+                .isUnique(new TentConfig("data/30x30.txt")));
+        assertTrue(new Backtracker(false).isUnique(new BitTentConfig("data/test.txt")));
+    }
+
+    /** The limit stops the search early. */
+    @Test
+    public void testLimit() throws IOException {
+        for (Solver solver : solvers()) {
+            assertEquals(1, solver.countSolutions(new TentConfig("data/multiple.txt"),
+                    1, solution -> { }));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> new SolutionCounter(0, solution -> { }));
+    }
+}
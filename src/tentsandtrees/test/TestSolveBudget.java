@@ -0,0 +1,117 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.BackjumpingSolver;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.CachingSolver;
+import tentsandtrees.backtracker.DecomposingSolver;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.ParallelBacktracker;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolveBudget;
+import tentsandtrees.backtracker.SolveOutcome;
+import tentsandtrees.backtracker.Solver;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.dlx.DlxSolver;
+import tentsandtrees.sat.SatSolver;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that searches stop when their SolveBudget runs out, and say why.
+ *
+ * @author Lyx Huston
+ */
+public class TestSolveBudget {
+    /** A puzzle the plain backtracker takes far too long over. */
+    private static final String HARD = "data/30x30.txt";
+
+    /** The node limit stops the search within a check of the limit. */
+    @Test
+    public void testNodeLimit() throws IOException {
+        SolveOutcome outcome = new Backtracker(false).solve(new TentConfig(HARD), new SolveBudget(0, 10_000));
+        assertEquals(SolveOutcome.Status.EXHAUSTED, outcome.getStatus());
+        assertEquals(SolveBudget.Reason.NODES, outcome.getReason());
+        assertTrue(outcome.getSolution().isEmpty());
+        assertTrue(outcome.getConfigs() >= 10_000);
+        assertTrue(outcome.getConfigs() <= 10_000 + Solver.INTERRUPT_CHECK_MASK + 1);
+        assertThrows(IllegalArgumentException.class, () -> new SolveBudget(-1, 0));
+    }
+
+    /** The deadline stops the search soon after it passes. */
+    @Test
+    public void testDeadline() throws IOException {
+        SolveOutcome outcome = new InPlaceSolver(false).solve(new TentConfig(HARD), new SolveBudget(200, 0));
+        assertEquals(SolveOutcome.Status.EXHAUSTED, outcome.getStatus());
+        assertEquals(SolveBudget.Reason.DEADLINE, outcome.getReason());
+        assertTrue(outcome.getNanos() >= 200_000_000L);
+        assertTrue(outcome.getNanos() < 5_000_000_000L);
+    }
+
+    /** Cancelling from another thread stops every worker, and so does an interrupt. */
+    @Test
+    public void testCancel() throws IOException, InterruptedException {
+        SolveBudget budget = SolveBudget.unlimited();
+        Thread canceller = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            budget.cancel();
+        });
+        canceller.start();
+        SolveOutcome outcome = new ParallelBacktracker().solve(new TentConfig(HARD), budget);
+        canceller.join();
+        assertEquals(SolveOutcome.Status.EXHAUSTED, outcome.getStatus());
+        assertEquals(SolveBudget.Reason.CANCELLED, outcome.getReason());
+        assertTrue(budget.isCancelled());
+
+        TentConfig config = new TentConfig(HARD);
+        Thread.currentThread().interrupt();
+        try {
+            outcome = new Backtracker(false).solve(config, SolveBudget.unlimited());
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        assertEquals(SolveBudget.Reason.INTERRUPTED, outcome.getReason());
+    }
+
+    /** A search inside its budget is solved or unsolvable, whichever solver runs it. */
+    @Test
+    public void testFinished() throws IOException {
+        PuzzleDefinition none = new PuzzleDefinition(2, new int[]{1, 0},
+                new int[]{0, 0}, new char[]{'%', '.', '.', '.'});
+        List<Solver> solvers = List.of(new Backtracker(false), new InPlaceSolver(false),
+                new BackjumpingSolver(false), new ParallelBacktracker(), new DecomposingSolver(),
+                new SatSolver(false), new DlxSolver(false));
+        for (Solver solver : solvers) {
+            String name = solver.getClass().getSimpleName();
+            SolveOutcome outcome = solver.solve(new TentConfig("data/bench/30x30.txt"), new SolveBudget(60_000, 0));
+            assertEquals(SolveOutcome.Status.SOLVED, outcome.getStatus(), name);
+            assertTrue(outcome.getSolution().get().isGoal(), name);
+            assertNull(outcome.getReason(), name);
+            assertTrue(outcome.getConfigs() > 0, name);
+
+            outcome = solver.solve(new TentConfig(none), SolveBudget.unlimited());
+            assertEquals(SolveOutcome.Status.UNSOLVABLE, outcome.getStatus(), name);
+            assertNull(outcome.getReason(), name);
+        }
+    }
+
+    /** A search that ran out of budget isn't cached as having no solution. */
+    @Test
+    public void testNotCached() throws IOException {
+        CachingSolver solver = new CachingSolver(false);
+        SolveOutcome outcome = solver.solve(new TentConfig("data/bench/30x30.txt"), new SolveBudget(0, 1_000));
+        assertEquals(SolveOutcome.Status.EXHAUSTED, outcome.getStatus());
+        outcome = solver.solve(new TentConfig("data/bench/30x30.txt"), SolveBudget.unlimited());
+        assertEquals(SolveOutcome.Status.SOLVED, outcome.getStatus());
+    }
+}
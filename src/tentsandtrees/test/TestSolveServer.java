@@ -0,0 +1,235 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.Configuration;
+import tentsandtrees.backtracker.InPlaceSolver;
+import tentsandtrees.backtracker.LinePropagator;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SolutionConfig;
+import tentsandtrees.backtracker.Solver;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.generator.GeneratedPuzzle;
+import tentsandtrees.generator.PuzzleGenerator;
+import tentsandtrees.server.SolveServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the solve server against localhost.
+ *
+ * @author Lyx Huston
+ */
+public class TestSolveServer {
+    /** A generated puzzle with a solution. */
+    private static final GeneratedPuzzle PUZZLE = new PuzzleGenerator(12, 0.2).generate(3);
+
+    /** the server, one worker and no queue */
+    private SolveServer server;
+    /** the client */
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    /**
+     * Starts the server on a free port.
+     * @throws IOException if it can't
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        this.server = new SolveServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                1, 0, 16, 30000);
+    }
+
+    /**
+     * Stops the server.
+     */
+    @AfterEach
+    public void tearDown() {
+        this.server.close();
+    }
+
+    /**
+     * @param query query string, may be empty
+     * @param body the puzzle text
+     * @return the request
+     */
+    private HttpRequest post(String query, String body) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + this.server.getPort() + "/solve" + query))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    /**
+     * @param query query string, may be empty
+     * @param body the puzzle text
+     * @return the response
+     */
+    private HttpResponse<String> send(String query, String body) throws IOException, InterruptedException {
+        return this.client.send(post(query, body), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /** A puzzle comes back solved as text, then as JSON from the cache, and turned from the cache. */
+    @Test
+    public void testSolveAndCache() throws IOException, InterruptedException {
+        HttpResponse<String> text = send("", PUZZLE.toText());
+        assertEquals(200, text.statusCode());
+        assertEquals("miss", text.headers().firstValue("X-Cache").orElse(""));
+        InPlaceSolver local = new InPlaceSolver(false, InPlaceSolver.TreeOrder.MOST_CONSTRAINED);
+        local.setPropagator(new LinePropagator());
+        ITentsAndTreesTest expected = (ITentsAndTreesTest) local.solve(
+                new TentConfig(PuzzleDefinition.of(PUZZLE))).orElseThrow();
+        assertEquals(expected.getDisplay(), text.body());
+
+        // the same puzzle with its numbers spread over other lines is a hit
+        HttpResponse<String> json = send("?format=json", PUZZLE.toText().replace(' ', '\n'));
+        assertEquals(200, json.statusCode());
+        assertEquals("hit", json.headers().firstValue("X-Cache").orElse(""));
+        assertTrue(json.body().startsWith("{\"status\":\"solved\",\"cached\":true"));
+        assertTrue(json.body().contains("\"dim\":12"));
+        for (int row = 0; row < PUZZLE.getDIM(); row++) {
+            StringBuilder line = new StringBuilder();
+            for (int col = 0; col < PUZZLE.getDIM(); col++) {
+                line.append(expected.getCell(row, col));
+            }
+            assertTrue(json.body().contains("\"" + line + "\""));
+        }
+        assertEquals(1, this.server.getCache().getHits());
+
+        // so is its transpose, with the solution turned to fit
+        int dim = PUZZLE.getDIM();
+        StringBuilder transposed = new StringBuilder().append(dim).append('\n');
+        char[] cells = new char[dim * dim];
+        for (int i = 0; i < dim; i++) {
+            transposed.append(PUZZLE.getTentsCol(i)).append(' ');
+        }
+        transposed.append('\n');
+        for (int i = 0; i < dim; i++) {
+            transposed.append(PUZZLE.getTentsRow(i)).append(' ');
+        }
+        transposed.append('\n');
+        for (int row = 0; row < dim; row++) {
+            for (int col = 0; col < dim; col++) {
+                transposed.append(PUZZLE.getCell(col, row)).append(' ');
+                cells[row * dim + col] = expected.getCell(col, row);
+            }
+            transposed.append('\n');
+        }
+        HttpResponse<String> turned = send("", transposed.toString());
+        assertEquals("hit", turned.headers().firstValue("X-Cache").orElse(""));
+        int[] rows = new int[dim];
+        int[] cols = new int[dim];
+        for (int i = 0; i < dim; i++) {
+            rows[i] = PUZZLE.getTentsCol(i);
+            cols[i] = PUZZLE.getTentsRow(i);
+        }
+        assertEquals(new SolutionConfig(dim, rows, cols, cells).getDisplay(), turned.body());
+    }
+
+    /** Broken and unsolvable puzzles, and the wrong method, get their own statuses. */
+    @Test
+    public void testErrors() throws IOException, InterruptedException {
+        assertEquals(400, send("", "3\n1 0 x\n").statusCode());
+        HttpResponse<String> broken = send("?format=json", "2\n1 0\n");
+        assertEquals(400, broken.statusCode());
+        assertTrue(broken.body().startsWith("{\"status\":\"error\",\"message\":\"Error in request"));
+        assertEquals(400, send("?timeout=0", PUZZLE.toText()).statusCode());
+        HttpResponse<String> none = send("?format=json", "2\n1 0\n0 0\n% .\n. .\n");
+        assertEquals(422, none.statusCode());
+        assertTrue(none.body().contains("\"status\":\"unsolvable\""));
+        assertEquals(422, send("", "2 1 0 0 0 % . . .").statusCode());
+        HttpResponse<String> get = this.client.send(HttpRequest.newBuilder(
+                URI.create("http://localhost:" + this.server.getPort() + "/solve")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, get.statusCode());
+        HttpResponse<String> stats = this.client.send(HttpRequest.newBuilder(
+                URI.create("http://localhost:" + this.server.getPort() + "/stats")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertTrue(stats.body().contains("unsolvable: 2"));
+        assertTrue(stats.body().contains("bad request: 3"));
+    }
+
+    /** A puzzle past its deadline is given up on, and not cached. */
+    @Test
+    public void testDeadline() throws IOException, InterruptedException {
+        this.server.setSolvers(() -> new InPlaceSolver(false));
+        String hard = Files.readString(Path.of("data/30x30.txt"));
+        long start = System.nanoTime();
+        HttpResponse<String> response = send("?timeout=200&format=json", hard);
+        assertEquals(504, response.statusCode());
+        assertTrue(response.body().contains("\"status\":\"timeout\""));
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+        assertEquals(0, this.server.getCache().size());
+        // the worker notices and is free again
+        for (int i = 0; i < 500 && this.server.getRunning() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, this.server.getRunning());
+        assertEquals(200, send("", PUZZLE.toText()).statusCode());
+    }
+
+    /** With the one worker busy and no queue, another puzzle is turned away. */
+    @Test
+    public void testAdmission() throws IOException, InterruptedException {
+        this.server.setSolvers(() -> new Backtracker(false));
+        String hard = Files.readString(Path.of("data/30x30.txt"));
+        CompletableFuture<HttpResponse<String>> slow = this.client.sendAsync(post("?timeout=3000", hard),
+                HttpResponse.BodyHandlers.ofString());
+        for (int i = 0; i < 500 && this.server.getRunning() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, this.server.getRunning());
+        HttpResponse<String> busy = send("", PUZZLE.toText());
+        assertEquals(503, busy.statusCode());
+        assertEquals("1", busy.headers().firstValue("Retry-After").orElse(""));
+        assertEquals(504, slow.join().statusCode());
+    }
+
+    /** A puzzle answered as timed out keeps its place until its worker really stops. */
+    @Test
+    public void testSlowToStop() throws IOException, InterruptedException {
+        // a solver that never looks at its budget
+        this.server.setSolvers(() -> new Solver() {
+            @Override
+            public Optional<Configuration> solve(Configuration config) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Optional.empty();
+            }
+
+            @Override
+            public long countSolutions(Configuration config, long limit, Consumer<Configuration> consumer) {
+                return 0;
+            }
+
+            @Override
+            public long getConfigCount() {
+                return 0;
+            }
+        });
+        assertEquals(504, send("?timeout=100", PUZZLE.toText()).statusCode());
+        assertEquals(1, this.server.getRunning());
+        assertEquals(503, send("", PUZZLE.toText()).statusCode());
+        for (int i = 0; i < 500 && this.server.getRunning() > 0; i++) {
+            Thread.sleep(10);
+        }
+        this.server.setSolvers(() -> new InPlaceSolver(false));
+        assertEquals(200, send("", PUZZLE.toText()).statusCode());
+    }
+}
@@ -0,0 +1,113 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tentsandtrees.main.TentsAndTrees;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs TentsAndTrees on the command line it is given and checks what it
+ * prints.
+ *
+ * @author Lyx Huston
+ */
+public class TestTentsAndTreesMain {
+    /** what a run printed */
+    private record Run(String out, String err) {
+    }
+
+    /**
+     * Runs TentsAndTrees with standard output and error captured.
+     * @param args the arguments
+     * @return what it printed
+     */
+    private static Run run(String... args) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(outBytes, true));
+            System.setErr(new PrintStream(errBytes, true));
+            TentsAndTrees.main(args);
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return new Run(outBytes.toString(), errBytes.toString());
+    }
+
+    /**
+     * Checks a run printed the usage, after a message, and solved nothing.
+     * @param run the run
+     * @param message what it should say was wrong
+     */
+    private static void assertRejected(Run run, String message) {
+        assertEquals("", run.out());
+        assertTrue(run.err().startsWith(message), run.err());
+        assertTrue(run.err().contains("Usage: java TentsAndTrees"), run.err());
+    }
+
+    /** Every solver named in the usage solves the small puzzle. */
+    @Test
+    public void testModes() {
+        for (String mode : new String[]{"copy", "bits", "inplace", "mrv", "parallel", "backjump",
+                "backjump-mrv", "sat", "dlx", "decompose"}) {
+            Run run = run("data/test.txt", "false", mode);
+            assertTrue(run.out().contains("Solution:"), mode);
+            assertEquals("", run.err(), mode);
+        }
+    }
+
+    /** A misspelt solver or option is rejected rather than run as the default. */
+    @Test
+    public void testUnknown() {
+        assertRejected(run("data/test.txt", "false", "bitz"), "Unknown solver bitz");
+        assertRejected(run("data/test.txt", "false", "--propogate"), "Unknown option --propogate");
+    }
+
+    /** An option missing its value is rejected, and so is a value that isn't a number. */
+    @Test
+    public void testMissingValue() {
+        for (String option : new String[]{"--memo", "--report", "--checkpoint", "--every",
+                "--timeout", "--nodes"}) {
+            assertRejected(run("data/test.txt", "false", option), option + " needs a value");
+        }
+        assertRejected(run("data/test.txt", "false", "--nodes", "many"), "For input string");
+    }
+
+    /** Options the solver would ignore are rejected instead. */
+    @Test
+    public void testUnsupported() {
+        assertRejected(run("data/test.txt", "false", "inplace", "--checkpoint", "ck.bin"),
+                "--checkpoint only works with copy");
+        assertRejected(run("data/test.txt", "false", "bits", "--memo", "1"),
+                "--memo only works with copy, parallel");
+        assertRejected(run("data/test.txt", "false", "sat", "--propagate"),
+                "--propagate only works with copy, parallel, inplace, mrv");
+        assertRejected(run("data/test.txt", "false", "parallel", "--metrics"),
+                "--metrics only works with copy, bits, inplace, mrv");
+        assertRejected(run("data/test.txt", "false", "--resume"), "--every and --resume need --checkpoint");
+        assertRejected(run("data/test.txt", "false", "--count", "--nodes", "10"),
+                "--timeout and --nodes don't work with --count");
+    }
+
+    /** A checkpoint that can't be written is reported once the search stops. */
+    @Test
+    public void testCheckpointFailure(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("missing").resolve("search.ck");
+        Run run = run("data/bench/30x30.txt", "false", "--count", "--checkpoint", file.toString(),
+                "--every", "0.000001");
+        assertTrue(run.out().contains("Number of solutions: 216"), run.out());
+        assertTrue(run.err().contains("Writing a checkpoint failed"), run.err());
+        assertTrue(Files.notExists(file));
+    }
+}
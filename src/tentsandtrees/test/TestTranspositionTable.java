@@ -0,0 +1,122 @@
+package tentsandtrees.test;
+
+import org.junit.jupiter.api.Test;
+import tentsandtrees.backtracker.Backtracker;
+import tentsandtrees.backtracker.LinePropagator;
+import tentsandtrees.backtracker.ParallelBacktracker;
+import tentsandtrees.backtracker.PuzzleDefinition;
+import tentsandtrees.backtracker.SearchStats;
+import tentsandtrees.backtracker.Solver;
+import tentsandtrees.backtracker.TentConfig;
+import tentsandtrees.backtracker.TranspositionTable;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the transposition table on its own, and that searching with it
+ * finds exactly the solutions searching without it does.
+ *
+ * @author Lyx Huston
+ */
+public class TestTranspositionTable {
+    /** bench puzzles with more than one way to reach some states */
+    private static final int[] SIZES = {10, 12, 15, 20, 25, 30};
+
+    /** Stores, lookups, counters and the budget. */
+    @Test
+    public void testTable() {
+        TranspositionTable table = new TranspositionTable(1 << 20);
+        assertEquals(1 << 20, table.getBytes());
+        assertEquals(1 << 16, table.getCapacity());
+        assertEquals(1 << 15, new TranspositionTable((1 << 20) + 100).getCapacity() / 2);
+        assertThrows(IllegalArgumentException.class, () -> new TranspositionTable(31));
+
+        assertFalse(table.isDead(12345));
+        table.markDead(12345, 3);
+        table.markDead(12345, 3);
+        assertTrue(table.isDead(12345));
+        assertFalse(table.isDead(54321));
+        assertEquals(1, table.getHits());
+        assertEquals(2, table.getMisses());
+        assertEquals(1, table.getStores());
+        table.clear();
+        assertFalse(table.isDead(12345));
+        assertEquals(0, table.getStores());
+    }
+
+    /** A single bucket keeps the biggest state and the newest. */
+    @Test
+    public void testReplacement() {
+        TranspositionTable table = new TranspositionTable(32);
+        assertEquals(2, table.getCapacity());
+        table.markDead(1, 10);
+        table.markDead(2, 5);
+        table.markDead(3, 7);
+        assertTrue(table.isDead(1));
+        assertFalse(table.isDead(2));
+        assertTrue(table.isDead(3));
+        assertEquals(1, table.getEvictions());
+        // a bigger state takes the first entry, moving the old one down
+        table.markDead(4, 20);
+        assertTrue(table.isDead(4));
+        assertTrue(table.isDead(1));
+        assertFalse(table.isDead(3));
+    }
+
+    /** Solution counts don't change, and the table gets used. */
+    @Test
+    public void testSameCounts() throws IOException {
+        long hits = 0;
+        for (int size : SIZES) {
+            PuzzleDefinition puzzle = PuzzleDefinition.read("data/bench/" + size + "x" + size + ".txt");
+            long expected = new Backtracker(false).countSolutions(new TentConfig(puzzle),
+                    Long.MAX_VALUE, solution -> { });
+            for (Solver solver : new Solver[]{new Backtracker(false), new ParallelBacktracker(4, 3)}) {
+                for (boolean propagate : new boolean[]{false, true}) {
+                    TranspositionTable table = new TranspositionTable(1 << 20);
+                    TentConfig init = new TentConfig(puzzle);
+                    init.setPropagator(propagate ? new LinePropagator() : null);
+                    init.setTranspositionTable(table);
+                    assertEquals(expected, solver.countSolutions(init, Long.MAX_VALUE, solution -> { }),
+                            size + "x" + size + " " + solver.getClass().getSimpleName());
+                    assertEquals(table.getHits(),
+                            init.getStats().getPrunes(SearchStats.PruneReason.TRANSPOSITION));
+                    hits += table.getHits();
+                }
+            }
+            // solving with a table left from counting still finds a solution
+            TranspositionTable table = new TranspositionTable(1 << 20);
+            TentConfig first = new TentConfig(puzzle);
+            first.setTranspositionTable(table);
+            new Backtracker(false).countSolutions(first, Long.MAX_VALUE, solution -> { });
+            TentConfig again = new TentConfig(puzzle);
+            again.setTranspositionTable(table);
+            assertTrue(new Backtracker(false).solve(again).isPresent());
+        }
+        assertTrue(hits > 0);
+    }
+
+    /** The hash only depends on the state, and successors differ. */
+    @Test
+    public void testHash() throws IOException {
+        TentConfig one = new TentConfig("data/bench/8x8.txt");
+        TentConfig two = new TentConfig("data/bench/8x8.txt");
+        assertEquals(0, one.getHash());
+        one.setTranspositionTable(new TranspositionTable(1024));
+        two.setTranspositionTable(new TranspositionTable(1024));
+        assertNotEquals(0, one.getHash());
+        assertEquals(one.getHash(), two.getHash());
+        assertTrue(one.hasNext());
+        TentConfig first = one.next();
+        assertNotEquals(one.getHash(), first.getHash());
+        if (one.hasNext()) {
+            assertNotEquals(first.getHash(), one.next().getHash());
+        }
+    }
+}